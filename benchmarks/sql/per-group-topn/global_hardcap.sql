@@ -0,0 +1,17 @@
+-- Baseline: previous FULL_SQL (global order, HARD_CAP = 200, grouping/slicing in Java).
+-- pgbench -n -f global_hardcap.sql -c 8 -j 4 -T 60 "$READ_DB_URL"
+with q as (
+    select to_tsquery('english'::regconfig, 'sam:*') as query
+)
+select entity_type,
+    entity_id,
+    title,
+    subtitle,
+    ts_rank(tsv, q.query) as fts_score,
+    greatest(similarity(title_norm, 'sam'), similarity(subtitle_norm, 'sam')) as trigram,
+    (ts_rank(tsv, q.query) * 0.9 + greatest(0.0, similarity(title_norm, 'sam')) * 0.3) as score
+from search_items si, q
+where si.tenant_id = 'bench-skew'
+    and (tsv @@ q.query or title_norm like '%sam%' or subtitle_norm like '%sam%')
+order by score desc, entity_id asc
+limit 200;
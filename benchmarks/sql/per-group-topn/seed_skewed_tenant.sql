@@ -0,0 +1,28 @@
+-- Skewed tenant for the per-group top-N benchmark.
+-- 200k CONTACT rows that all match 'sam' strongly, and a few hundred weaker matches in the other groups.
+-- Run against the read DB (search_items from indexer-search migrations):
+--   psql "$READ_DB_URL" -f seed_skewed_tenant.sql
+
+delete from search_items where tenant_id = 'bench-skew';
+
+insert into search_items (tenant_id, entity_type, entity_id, title, subtitle)
+select 'bench-skew', 'CONTACT', 'c-' || g, 'Sam Samson ' || g, 'sam' || g || '@example.com'
+from generate_series(1, 200000) g;
+
+insert into search_items (tenant_id, entity_type, entity_id, title, subtitle)
+select 'bench-skew', t.entity_type, lower(left(t.entity_type, 1)) || '-' || g,
+       t.entity_type || ' ' || g || ' near Samford Ave', 'misc ' || g
+from (values ('LISTING'), ('REFERRAL'), ('TRANSACTION'), ('PRODUCT'), ('MAILING')) t(entity_type),
+     generate_series(1, 300) g;
+
+-- Short-query side table (the indexer maintains it for rows it writes itself)
+delete from search_prefixes where tenant_id = 'bench-skew';
+
+insert into search_prefixes (tenant_id, prefix, entity_type, entity_id, rank)
+select si.tenant_id, p.prefix, si.entity_type, si.entity_id, p.rank
+from search_items si
+cross join lateral search_items_prefixes(si.title_norm, si.subtitle_norm) p
+where si.tenant_id = 'bench-skew';
+
+analyze search_items;
+analyze search_prefixes;
@@ -0,0 +1,24 @@
+-- Previous FULL_SQL scoring: ts_rank twice and similarity three times per candidate row (limitPerGroup = 5).
+-- pgbench -n -f repeated_eval.sql -c 1 -T 60 "$READ_DB_URL"
+with q as (
+    select to_tsquery('english'::regconfig, 'sam:*') as query
+)
+select g.*
+from (values (1, 'CONTACT'), (2, 'LISTING'), (3, 'REFERRAL'), (4, 'TRANSACTION'), (5, 'PRODUCT'), (6, 'MAILING'))
+    as t(ord, entity_type)
+cross join lateral (
+    select si.entity_type,
+        si.entity_id,
+        si.title,
+        si.subtitle,
+        ts_rank(si.tsv, q.query) as fts_score,
+        greatest(similarity(si.title_norm, 'sam'), similarity(si.subtitle_norm, 'sam')) as trigram,
+        (ts_rank(si.tsv, q.query) * 0.9 + greatest(0.0, similarity(si.title_norm, 'sam')) * 0.3) as score
+    from search_items si, q
+    where si.tenant_id = 'bench-1m'
+        and si.entity_type = t.entity_type
+        and (si.tsv @@ q.query or si.title_norm like '%sam%' or si.subtitle_norm like '%sam%')
+    order by score desc, si.entity_id asc
+    limit 5
+) g
+order by t.ord, g.score desc, g.entity_id asc;
@@ -0,0 +1,36 @@
+-- One tenant with 1M items for the scoring benchmark: 700k contacts, 200k listings, 100k transactions.
+-- Names repeat, so 'sam:*' matches tens of thousands of rows and scoring dominates the query.
+-- Run against the read DB (search_items from indexer-search migrations):
+--   psql "$READ_DB_URL" -f seed_million_tenant.sql
+
+delete from search_prefixes where tenant_id = 'bench-1m';
+delete from search_items where tenant_id = 'bench-1m';
+
+with first_names(a) as (select array['Sam', 'Samantha', 'Samuel', 'Anna', 'Joanne', 'Bob', 'Maria', 'Zoë', 'Liam', 'Olivia']),
+     last_names(a) as (select array['Smith', 'Gallagher', 'Samson', 'Stone', 'García', 'Lee', 'Brown', 'O''Brien'])
+insert into search_items (tenant_id, entity_type, entity_id, title, subtitle, static_rank, updated_at)
+select 'bench-1m', x.entity_type, x.entity_id, x.title, x.subtitle,
+       (case x.entity_type when 'TRANSACTION' then 0.9 else 1.0 end)
+           / (1.0 + 0.1 * greatest(0, array_length(string_to_array(search_items_norm(x.title), ' '), 1) - 2)),
+       now() - (g % 730) * interval '1 day'
+from generate_series(1, 1000000) g
+cross join first_names f
+cross join last_names l
+cross join lateral (
+    select case when g <= 700000 then 'CONTACT' when g <= 900000 then 'LISTING' else 'TRANSACTION' end as entity_type,
+           'e-' || g as entity_id,
+           case when g <= 700000
+                then f.a[1 + g % 10] || ' ' || l.a[1 + (g / 10) % 8]
+                else (g % 900) || ' ' || l.a[1 + g % 8] || ' Street, ' || f.a[1 + (g / 7) % 10] || 'ville'
+           end as title,
+           case when g % 3 = 0 then null else lower(f.a[1 + g % 10]) || g || '@example.com' end as subtitle
+) x;
+
+insert into search_prefixes (tenant_id, prefix, entity_type, entity_id, rank)
+select si.tenant_id, p.prefix, si.entity_type, si.entity_id, p.rank
+from search_items si
+cross join lateral search_items_prefixes(si.title_norm, si.subtitle_norm) p
+where si.tenant_id = 'bench-1m';
+
+analyze search_items;
+analyze search_prefixes;
@@ -0,0 +1,33 @@
+-- Current FULL_SQL scoring: each function once per candidate row (offset 0 fence), combined with the stored
+-- static_rank and the updated_at recency factor (limitPerGroup = 5).
+-- pgbench -n -f single_eval.sql -c 1 -T 60 "$READ_DB_URL"
+with q as (
+    select to_tsquery('english'::regconfig, 'sam:*') as query
+)
+select g.*
+from (values (1, 'CONTACT'), (2, 'LISTING'), (3, 'REFERRAL'), (4, 'TRANSACTION'), (5, 'PRODUCT'), (6, 'MAILING'))
+    as t(ord, entity_type)
+cross join lateral (
+    select si.entity_type,
+        si.entity_id,
+        si.title,
+        si.subtitle,
+        f.fts as fts_score,
+        greatest(f.title_sim, f.subtitle_sim) as trigram,
+        (f.fts * 0.9 + f.title_sim * 0.3) * si.static_rank
+            * (0.8 + 0.2 / (1 + (current_date - si.updated_at::date) / 30.0)) as score
+    from search_items si
+    cross join q
+    cross join lateral (
+        select ts_rank(si.tsv, q.query) as fts,
+            similarity(si.title_norm, 'sam') as title_sim,
+            similarity(si.subtitle_norm, 'sam') as subtitle_sim
+        offset 0
+    ) f
+    where si.tenant_id = 'bench-1m'
+        and si.entity_type = t.entity_type
+        and (si.tsv @@ q.query or si.title_norm like '%sam%' or si.subtitle_norm like '%sam%')
+    order by score desc, si.entity_id asc
+    limit 5
+) g
+order by t.ord, g.score desc, g.entity_id asc;
@@ -0,0 +1,111 @@
+package com.github.dimitryivaniuta.gateway.bench.indexer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dimitryivaniuta.gateway.indexer.consumer.ContactEventsConsumer;
+import com.github.dimitryivaniuta.gateway.indexer.consumer.ListingEventsConsumer;
+import com.github.dimitryivaniuta.gateway.indexer.consumer.TransactionEventsConsumer;
+import com.github.dimitryivaniuta.gateway.indexer.repo.SearchUpsertRepo;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Indexer consumers per Kafka record: the real {@code onMessage} (Jackson tree parse, field extraction,
+ * event-type dispatch) with the repository stubbed out, so only the parsing and mapping cost is measured.
+ * <p>
+ * <pre>./gradlew :benchmarks:jmh -Pjmh.includes=EventParsingBenchmark</pre>
+ * Payloads have the shape write-oltp puts in the outbox ({@code occurredAt}, {@code version} and the other
+ * fields the indexer does not read included). {@code treeOnly} is the bare {@code readTree} for reference.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventParsingBenchmark {
+
+    @Param({"contact", "listing", "transaction"})
+    public String event;
+
+    private ObjectMapper om;
+    private ConsumerRecord<String, String> record;
+    private ContactEventsConsumer contacts;
+    private ListingEventsConsumer listings;
+    private TransactionEventsConsumer transactions;
+
+    @Setup
+    public void setup() {
+        om = new ObjectMapper();
+        final SearchUpsertRepo repo = new NoopRepo();
+        contacts = new ContactEventsConsumer(om, repo);
+        listings = new ListingEventsConsumer(om, repo);
+        transactions = new TransactionEventsConsumer(om, repo);
+
+        final String id = "6f1c2a5e-9b7d-4c3e-8a1f-2d4b6c8e0a13";
+        final String json = switch (event) {
+            case "contact" -> """
+                    {"type":"ContactUpdated","tenantId":"demo-tenant","contactId":"%s",\
+                    "title":"Samantha Gallagher","subtitle":"sam.gallagher@example.com (555) 123-4567",\
+                    "visible":true,"version":7,"occurredAt":"2025-10-01T12:34:56.789Z"}""".formatted(id);
+            case "listing" -> """
+                    {"type":"ListingUpdated","tenantId":"demo-tenant","listingId":"%s","mls_id":"MLS-12345",\
+                    "contactId":"0b7e4d2c-1a3f-4e5d-9c8b-7a6f5e4d3c2b","title":"1234 North Main Street",\
+                    "subtitle":"Springfield, IL 62704 - 3 bd / 2 ba","visible":true,"version":3,\
+                    "occurredAt":"2025-10-01T12:34:56.789Z"}""".formatted(id);
+            case "transaction" -> """
+                    {"type":"TransactionUpdated","tenantId":"demo-tenant","transactionId":"%s",\
+                    "title":"Purchase - 1234 North Main Street","subtitle":"Closing 2025-11-15",\
+                    "total":{"amount":"425000.00","currency":"USD"},"visible":true,"version":2,\
+                    "occurredAt":"2025-10-01T12:34:56.789Z"}""".formatted(id);
+            default -> throw new IllegalArgumentException(event);
+        };
+        record = new ConsumerRecord<>(event + ".events.v1", 0, 0L, id, json);
+    }
+
+    @Benchmark
+    public void onMessage() {
+        switch (event) {
+            case "contact" -> contacts.onMessage(record);
+            case "listing" -> listings.onMessage(record);
+            default -> transactions.onMessage(record);
+        }
+    }
+
+    @Benchmark
+    public Object treeOnly() throws Exception {
+        return om.readTree(record.value());
+    }
+
+    /** Swallows the writes into a field, so they cannot be optimized away; never touches its {@link JdbcTemplate}. */
+    private static final class NoopRepo extends SearchUpsertRepo {
+
+        long sink;
+
+        NoopRepo() {
+            super(new JdbcTemplate());
+        }
+
+        @Override
+        public void upsertContact(String tenantId, String contactId, String title, String subtitle) {
+            sink += title.length() + subtitle.length();
+        }
+
+        @Override
+        public void upsertListing(String tenantId, String listingId, String title, String subtitle) {
+            sink += title.length() + subtitle.length();
+        }
+
+        @Override
+        public void upsertTransaction(String tenantId, String transactionId, String title, String subtitle) {
+            sink += title.length() + subtitle.length();
+        }
+
+        @Override
+        public int delete(String tenantId, String entityType, String entityId) {
+            sink += entityId.length();
+            return 1;
+        }
+    }
+}
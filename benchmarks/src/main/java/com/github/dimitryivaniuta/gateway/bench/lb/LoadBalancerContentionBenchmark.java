@@ -0,0 +1,92 @@
+package com.github.dimitryivaniuta.gateway.bench.lb;
+
+import com.github.dimitryivaniuta.gateway.search.lb.DynamicLoadBalancer;
+import com.github.dimitryivaniuta.gateway.search.lb.InMemoryLoadBalancer;
+import com.github.dimitryivaniuta.gateway.search.lb.LoadBalancer;
+import com.github.dimitryivaniuta.gateway.search.lb.SelectionStrategy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Load balancer under contention: the fair read/write-lock registry (before) vs. the copy-on-write
+ * {@link InMemoryLoadBalancer} (after), 8 threads hammering one shared instance.
+ * <p>
+ * Run with the GC profiler and compare throughput and {@code gc.alloc.rate.norm} (bytes/op):
+ * <pre>./gradlew :benchmarks:jmh -Pjmh.includes=LoadBalancerContentionBenchmark</pre>
+ * {@code impl=locking} copies the set under the read lock on every call; every read also CASes the lock's
+ * shared reader count, which is what degrades with threads. {@code impl=cow-*} selects with the named strategy
+ * on a snapshot read with one volatile load; {@code pick} includes the {@code release} of the pick.
+ * <p>
+ * {@code readWrite} is the autoscaling case: 7 threads pick while 1 thread keeps deregistering and
+ * re-registering an instance. With the fair lock every write stalls the readers queued behind it; the
+ * copy-on-write readers never wait. Compare {@code readWrite:readers}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class LoadBalancerContentionBenchmark {
+
+    @Param({"locking", "cow-round-robin", "cow-random", "cow-p2c", "cow-least-outstanding"})
+    public String impl;
+
+    @Param({"10"})
+    public int instances;
+
+    private LoadBalancer lb;
+    private String churn;
+
+    @Setup
+    public void setup() {
+        lb = switch (impl) {
+            case "locking" -> new LockingLoadBalancer();
+            case "cow-round-robin" -> new InMemoryLoadBalancer(SelectionStrategy.roundRobin());
+            case "cow-random" -> new InMemoryLoadBalancer(SelectionStrategy.random());
+            case "cow-p2c" -> new InMemoryLoadBalancer(SelectionStrategy.powerOfTwoChoices());
+            case "cow-least-outstanding" -> new InMemoryLoadBalancer(SelectionStrategy.leastOutstanding());
+            default -> throw new IllegalArgumentException(impl);
+        };
+        for (int i = 0; i < instances; i++) {
+            lb.register("http://10.0.0." + i + ":8080");
+        }
+        churn = "http://10.0.0." + (instances - 1) + ":8080";
+    }
+
+    @Benchmark
+    public List<String> getInstances() {
+        return lb.getInstances();
+    }
+
+    @Benchmark
+    public int size() {
+        return lb.size();
+    }
+
+    @Benchmark
+    public void pick(Blackhole bh) {
+        final String address = lb.next().orElseThrow();
+        bh.consume(address);
+        lb.release(address);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(7)
+    public void readers(Blackhole bh) {
+        pick(bh);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void writer() {
+        if (lb instanceof DynamicLoadBalancer dynamic) dynamic.deregister(churn);
+        else ((LockingLoadBalancer) lb).deregister(churn);
+        lb.register(churn);
+    }
+}
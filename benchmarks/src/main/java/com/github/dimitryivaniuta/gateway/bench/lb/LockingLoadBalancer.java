@@ -0,0 +1,86 @@
+package com.github.dimitryivaniuta.gateway.bench.lb;
+
+import com.github.dimitryivaniuta.gateway.search.lb.CapacityExceededException;
+import com.github.dimitryivaniuta.gateway.search.lb.DuplicateAddressException;
+import com.github.dimitryivaniuta.gateway.search.lb.LoadBalancer;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.springframework.util.StringUtils;
+
+/**
+ * Baseline: {@code InMemoryLoadBalancer} before the copy-on-write snapshot, a {@link LinkedHashSet} behind a fair
+ * {@link ReentrantReadWriteLock} that copies the set on every {@link #getInstances()}. Kept verbatim; it had no
+ * selection API, so {@link #choose(Object)} is what a caller had to do: copy the instances, then pick round-robin.
+ * {@link #deregister(String)} did not exist either; it is added the way the lock would have guarded it, for the
+ * reader/writer benchmark.
+ */
+final class LockingLoadBalancer implements LoadBalancer {
+
+    private static final int MAX_CAPACITY = 10;
+
+    private final Set<String> addresses = new LinkedHashSet<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public void register(String address) {
+        if (!StringUtils.hasText(address)) {
+            throw new IllegalArgumentException("address must not be null/blank");
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (addresses.contains(address)) {
+                throw new DuplicateAddressException(address);
+            }
+
+            if (addresses.size() >= MAX_CAPACITY) {
+                throw new CapacityExceededException(MAX_CAPACITY);
+            }
+
+            addresses.add(address);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean deregister(String address) {
+        lock.writeLock().lock();
+        try {
+            return addresses.remove(address);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> getInstances() {
+        lock.readLock().lock();
+        try {
+            return List.copyOf(addresses);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return addresses.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<String> choose(Object key) {
+        final List<String> instances = getInstances();
+        if (instances.isEmpty()) return Optional.empty();
+        return Optional.of(instances.get(Math.floorMod(next.getAndIncrement(), instances.size())));
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.dimitryivaniuta.gateway.bench.money;
+
+import com.github.dimitryivaniuta.gateway.money.Money;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * {@link Money#of} as write-oltp calls it for every listing price and transaction total it reads or writes:
+ * scale check/rounding plus the ISO-4217 currency regex.
+ * <p>
+ * <pre>./gradlew :benchmarks:jmh -Pjmh.includes=MoneyBenchmark</pre>
+ * {@code cents} is already at scale 2, {@code rounding} needs {@code setScale(2, HALF_UP)}, {@code whole} is a
+ * scale-0 amount from JSON, {@code default} has no currency (falls back to USD).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    @Param({"cents", "rounding", "whole", "default"})
+    public String input;
+
+    private BigDecimal amount;
+    private String currency;
+
+    @Setup
+    public void setup() {
+        switch (input) {
+            case "cents" -> { amount = new BigDecimal("425000.00"); currency = "USD"; }
+            case "rounding" -> { amount = new BigDecimal("1234.5678"); currency = "EUR"; }
+            case "whole" -> { amount = new BigDecimal("425000"); currency = "USD"; }
+            case "default" -> { amount = new BigDecimal("99.99"); currency = null; }
+            default -> throw new IllegalArgumentException(input);
+        }
+    }
+
+    @Benchmark
+    public Money of() {
+        return Money.of(amount, currency);
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.dimitryivaniuta.gateway.bench.search;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Minimal read-only {@link java.sql.ResultSet} over a fixed table.
+ * <p>
+ * Implements only what Spring's row mappers and the omnibox extractor call
+ * ({@code next}, positional/label getters, {@code wasNull}, metadata). Values are stored pre-boxed and
+ * returned as-is ({@code getDouble} unboxes), so the fake itself does not allocate per cell; driver-side
+ * boxing is therefore <em>not</em> modelled, which only understates the cost of {@code getObject}-based
+ * mapping. Call {@link #reset()} before each pass.
+ */
+final class InMemoryResultSet extends ResultSetAdapter {
+
+    private final String[] labels;
+    private final Object[][] rows;
+    private final ResultSetMetaData metaData;
+
+    private int cursor = -1;
+    private boolean lastWasNull;
+
+    InMemoryResultSet(String[] labels, Object[][] rows) {
+        this.labels = labels;
+        this.rows = rows;
+        this.metaData = new ResultSetMetaDataAdapter() {
+            @Override
+            public int getColumnCount() {
+                return labels.length;
+            }
+
+            @Override
+            public String getColumnLabel(int columnIndex) {
+                return labels[columnIndex - 1];
+            }
+
+            @Override
+            public String getColumnName(int columnIndex) {
+                return labels[columnIndex - 1];
+            }
+
+            @Override
+            public String getColumnClassName(int columnIndex) {
+                return Object.class.getName();
+            }
+        };
+    }
+
+    void reset() {
+        cursor = -1;
+    }
+
+    @Override
+    public boolean next() {
+        return ++cursor < rows.length;
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        return (String) cell(columnIndex - 1);
+    }
+
+    @Override
+    public String getString(String columnLabel) throws SQLException {
+        return (String) cell(findColumn(columnLabel) - 1);
+    }
+
+    @Override
+    public Object getObject(int columnIndex) {
+        return cell(columnIndex - 1);
+    }
+
+    @Override
+    public Object getObject(String columnLabel) throws SQLException {
+        return cell(findColumn(columnLabel) - 1);
+    }
+
+    @Override
+    public double getDouble(int columnIndex) {
+        final Object v = cell(columnIndex - 1);
+        return v == null ? 0.0d : ((Number) v).doubleValue();
+    }
+
+    @Override
+    public double getDouble(String columnLabel) throws SQLException {
+        return getDouble(findColumn(columnLabel));
+    }
+
+    @Override
+    public int getInt(int columnIndex) {
+        final Object v = cell(columnIndex - 1);
+        return v == null ? 0 : ((Number) v).intValue();
+    }
+
+    @Override
+    public boolean wasNull() {
+        return lastWasNull;
+    }
+
+    @Override
+    public ResultSetMetaData getMetaData() {
+        return metaData;
+    }
+
+    @Override
+    public int findColumn(String columnLabel) throws SQLException {
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equalsIgnoreCase(columnLabel)) return i + 1;
+        }
+        throw new SQLException("No column " + columnLabel);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean isClosed() {
+        return false;
+    }
+
+    private Object cell(int idx) {
+        final Object v = rows[cursor][idx];
+        lastWasNull = v == null;
+        return v;
+    }
+}
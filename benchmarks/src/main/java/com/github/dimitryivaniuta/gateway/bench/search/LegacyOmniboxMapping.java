@@ -0,0 +1,71 @@
+package com.github.dimitryivaniuta.gateway.bench.search;
+
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.*;
+import com.github.dimitryivaniuta.gateway.search.util.ScoreNormalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Baseline: the {@code queryForList} + {@code Map<String,Object>} mapping that {@code OmniboxService}
+ * used before the typed {@code SearchRowsExtractor}/{@code OmniboxResultAssembler} path.
+ * Kept verbatim (modulo static-ness) so benchmarks compare like with like.
+ */
+final class LegacyOmniboxMapping {
+
+    private LegacyOmniboxMapping() {}
+
+    static OmniboxResult assemble(List<Map<String, Object>> rows, int perGroup) {
+        if (rows.isEmpty()) return OmniboxResult.builder().build();
+
+        double max = rows.stream().mapToDouble(r -> ((Number) r.get("score")).doubleValue()).max().orElse(1.0);
+        double min = rows.stream().mapToDouble(r -> ((Number) r.get("score")).doubleValue()).min().orElse(0.0);
+
+        Map<String, List<Map<String, Object>>> byType = new LinkedHashMap<>(8);
+        for (Map<String, Object> r : rows) {
+            final String t = str(r.get("entity_type"));
+            byType.computeIfAbsent(t, k -> new ArrayList<>()).add(r);
+        }
+
+        OmniboxResult.OmniboxResultBuilder builder = OmniboxResult.builder();
+        slice(byType.get("CONTACT"), perGroup).forEach(r -> builder.contact(SearchHitContact.builder()
+                .id("c_" + str(r.get("entity_id"))).title(str(r.get("title"))).subtitle(optStr(r.get("subtitle")))
+                .score(normScore(r, min, max)).contactId(str(r.get("entity_id"))).build()));
+        slice(byType.get("LISTING"), perGroup).forEach(r -> builder.listing(SearchHitListing.builder()
+                .id("l_" + str(r.get("entity_id"))).title(str(r.get("title"))).subtitle(optStr(r.get("subtitle")))
+                .score(normScore(r, min, max)).listingId(str(r.get("entity_id"))).mlsId(optStr(r.get("mls_id"))).build()));
+        slice(byType.get("REFERRAL"), perGroup).forEach(r -> builder.referral(SearchHitReferral.builder()
+                .id("r_" + str(r.get("entity_id"))).title(str(r.get("title"))).subtitle(optStr(r.get("subtitle")))
+                .score(normScore(r, min, max)).referralId(str(r.get("entity_id"))).build()));
+        slice(byType.get("TRANSACTION"), perGroup).forEach(r -> builder.transaction(SearchHitTransaction.builder()
+                .id("t_" + str(r.get("entity_id"))).title(str(r.get("title"))).subtitle(optStr(r.get("subtitle")))
+                .score(normScore(r, min, max)).transactionId(str(r.get("entity_id"))).build()));
+        slice(byType.get("PRODUCT"), perGroup).forEach(r -> builder.product(SearchHitProduct.builder()
+                .id("p_" + str(r.get("entity_id"))).title(str(r.get("title"))).subtitle(optStr(r.get("subtitle")))
+                .score(normScore(r, min, max)).productId(str(r.get("entity_id"))).build()));
+        slice(byType.get("MAILING"), perGroup).forEach(r -> builder.mailing(SearchHitMailing.builder()
+                .id("m_" + str(r.get("entity_id"))).title(str(r.get("title"))).subtitle(optStr(r.get("subtitle")))
+                .score(normScore(r, min, max)).mailingId(str(r.get("entity_id"))).build()));
+        return builder.build();
+    }
+
+    private static List<Map<String, Object>> slice(List<Map<String, Object>> list, int n) {
+        if (list == null || list.isEmpty()) return List.of();
+        return list.size() <= n ? list : list.subList(0, n);
+    }
+
+    private static float normScore(Map<String, Object> r, double min, double max) {
+        double raw = ((Number) r.get("score")).doubleValue();
+        return (float) ScoreNormalizer.normalize(raw, min, max);
+    }
+
+    private static String str(Object o) {
+        return o == null ? "" : String.valueOf(o);
+    }
+
+    private static String optStr(Object o) {
+        String s = (o == null ? "" : String.valueOf(o));
+        return s.isEmpty() ? null : s;
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.dimitryivaniuta.gateway.bench.search;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * {@link ResultSetMetaData} counterpart of {@link ResultSetAdapter}: everything throws unless overridden.
+ */
+abstract class ResultSetMetaDataAdapter implements ResultSetMetaData {
+
+    @Override
+    public String getCatalogName(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("getCatalogName");
+    }
+
+    @Override
+    public String getColumnClassName(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("getColumnClassName");
+    }
+
+    @Override
+    public int getColumnCount() throws SQLException {
+        throw ResultSetAdapter.unsupported("getColumnCount");
+    }
+
+    @Override
+    public int getColumnDisplaySize(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("getColumnDisplaySize");
+    }
+
+    @Override
+    public String getColumnLabel(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("getColumnLabel");
+    }
+
+    @Override
+    public String getColumnName(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("getColumnName");
+    }
+
+    @Override
+    public int getColumnType(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("getColumnType");
+    }
+
+    @Override
+    public String getColumnTypeName(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("getColumnTypeName");
+    }
+
+    @Override
+    public int getPrecision(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("getPrecision");
+    }
+
+    @Override
+    public int getScale(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("getScale");
+    }
+
+    @Override
+    public String getSchemaName(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("getSchemaName");
+    }
+
+    @Override
+    public String getTableName(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("getTableName");
+    }
+
+    @Override
+    public boolean isAutoIncrement(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("isAutoIncrement");
+    }
+
+    @Override
+    public boolean isCaseSensitive(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("isCaseSensitive");
+    }
+
+    @Override
+    public boolean isCurrency(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("isCurrency");
+    }
+
+    @Override
+    public boolean isDefinitelyWritable(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("isDefinitelyWritable");
+    }
+
+    @Override
+    public int isNullable(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("isNullable");
+    }
+
+    @Override
+    public boolean isReadOnly(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("isReadOnly");
+    }
+
+    @Override
+    public boolean isSearchable(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("isSearchable");
+    }
+
+    @Override
+    public boolean isSigned(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("isSigned");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        throw ResultSetAdapter.unsupported("isWrapperFor");
+    }
+
+    @Override
+    public boolean isWritable(int columnIndex) throws SQLException {
+        throw ResultSetAdapter.unsupported("isWritable");
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        throw ResultSetAdapter.unsupported("unwrap");
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.dimitryivaniuta.gateway.bench.search;
+
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.OmniboxResult;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRowsExtractor;
+import com.github.dimitryivaniuta.gateway.search.service.OmniboxResultAssembler;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+
+/**
+ * Omnibox result mapping per request: {@code queryForList} maps + string-keyed assembly (before)
+ * vs. positional {@link SearchRowsExtractor} + {@link OmniboxResultAssembler} (after).
+ * <p>
+ * Run with the GC profiler and compare {@code gc.alloc.rate.norm} (bytes/op):
+ * <pre>./gradlew :benchmarks:jmh -Pjmh.includes=RowMappingBenchmark</pre>
+ * {@code rows=30} is today's per-group answer (6 groups x 5); {@code rows=200} is the old HARD_CAP fetch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowMappingBenchmark {
+
+    private static final String[] COLUMNS =
+            {"entity_type", "entity_id", "title", "subtitle", "fts_score", "trigram", "score"};
+    private static final String[] TYPES = {"CONTACT", "LISTING", "REFERRAL", "TRANSACTION", "PRODUCT", "MAILING"};
+    private static final int PER_GROUP = 5;
+
+    private static final RowMapperResultSetExtractor<Map<String, Object>> LEGACY_EXTRACTOR =
+            new RowMapperResultSetExtractor<>(new ColumnMapRowMapper());
+
+    @Param({"30", "200"})
+    public int rows;
+
+    private InMemoryResultSet data;
+
+    @Setup
+    public void setup() {
+        Object[][] table = new Object[rows][];
+        for (int i = 0; i < rows; i++) {
+            final double score = 1.0d - (double) i / rows;
+            table[i] = new Object[]{
+                    TYPES[i % TYPES.length],
+                    "00000000-0000-0000-0000-" + String.format("%012d", i),
+                    "Sam Samson " + i,
+                    i % 3 == 0 ? null : "sam" + i + "@example.com",
+                    score * 0.9d,
+                    score * 0.3d,
+                    score
+            };
+        }
+        data = new InMemoryResultSet(COLUMNS, table);
+    }
+
+    @Benchmark
+    public OmniboxResult legacyMapsAndAssemble() throws SQLException {
+        data.reset();
+        List<Map<String, Object>> maps = LEGACY_EXTRACTOR.extractData(data);
+        return LegacyOmniboxMapping.assemble(maps, PER_GROUP);
+    }
+
+    @Benchmark
+    public OmniboxResult typedRowsAndAssemble() throws SQLException {
+        data.reset();
+        SearchRows typed = SearchRowsExtractor.INSTANCE.extractData(data);
+        return OmniboxResultAssembler.assemble(typed, PER_GROUP);
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.dimitryivaniuta.gateway.bench.search;
+
+import com.github.dimitryivaniuta.gateway.search.util.ScoreNormalizer;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Score normalization of one answer: find the min/max, then map every hit into [0, 1] with
+ * {@link ScoreNormalizer#normalize}, as {@code OmniboxResultAssembler} does.
+ * <p>
+ * <pre>./gradlew :benchmarks:jmh -Pjmh.includes=ScoreNormalizerBenchmark</pre>
+ * {@code hits=5} is one group, {@code hits=30} a full answer (6 groups x 5), {@code hits=200} the old
+ * HARD_CAP fetch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreNormalizerBenchmark {
+
+    @Param({"5", "30", "200"})
+    public int hits;
+
+    private double[] scores;
+    private double[] out;
+
+    @Setup
+    public void setup() {
+        final SplittableRandom random = new SplittableRandom(42);
+        scores = new double[hits];
+        for (int i = 0; i < hits; i++) {
+            scores[i] = random.nextDouble(0.01, 1.2);
+        }
+        out = new double[hits];
+    }
+
+    @Benchmark
+    public double[] normalizeAnswer() {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double s : scores) {
+            min = Math.min(min, s);
+            max = Math.max(max, s);
+        }
+        for (int i = 0; i < scores.length; i++) {
+            out[i] = ScoreNormalizer.normalize(scores[i], min, max);
+        }
+        return out;
+    }
+
+    /** All hits with the same score: the degenerate range every single-hit group has. */
+    @Benchmark
+    public double flatRange() {
+        return ScoreNormalizer.normalize(scores[0], scores[0], scores[0]);
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.dimitryivaniuta.gateway.bench.search;
+
+import com.github.dimitryivaniuta.gateway.search.graphql.Tokenizer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Query analysis per omnibox request, as {@code OmniboxService} runs it: normalize, tokenize, build the prefix
+ * tsquery.
+ * <p>
+ * <pre>./gradlew :benchmarks:jmh -Pjmh.includes=TokenizerBenchmark</pre>
+ * {@code short} is a first keystroke (prefix-table plan), {@code words} a typical 2-3 word query,
+ * {@code messy} needs case/space/accent folding, {@code long} is a pasted address.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    @Param({"short", "words", "messy", "long"})
+    public String input;
+
+    private String query;
+
+    @Setup
+    public void setup() {
+        query = switch (input) {
+            case "short" -> "sa";
+            case "words" -> "sam gal";
+            case "messy" -> "  Zoë   O'Brien-MÜLLER ";
+            case "long" -> "1234 North Main Street Apartment 5B Springfield Illinois 62704";
+            default -> throw new IllegalArgumentException(input);
+        };
+    }
+
+    @Benchmark
+    public void analyze(Blackhole bh) {
+        final String normalized = Tokenizer.normalize(query);
+        final List<String> tokens = Tokenizer.tokens(normalized);
+        bh.consume(normalized);
+        bh.consume(Tokenizer.toPrefixTsQuery(tokens));
+    }
+
+    @Benchmark
+    public List<String> tokens() {
+        return Tokenizer.tokens(query);
+    }
+}
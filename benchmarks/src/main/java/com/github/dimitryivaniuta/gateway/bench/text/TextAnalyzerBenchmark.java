@@ -0,0 +1,69 @@
+package com.github.dimitryivaniuta.gateway.bench.text;
+
+import com.github.dimitryivaniuta.gateway.text.TextAnalyzer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-keystroke query analysis: the former {@code Tokenizer} ({@code replaceAll("\\s+")} + {@code split} stream,
+ * no folding) vs. the single-pass {@link TextAnalyzer}; plus the index-side {@link TextAnalyzer#indexForm} the
+ * indexer runs per upserted title/subtitle.
+ * <p>
+ * Run with the GC profiler and compare {@code gc.alloc.rate.norm} (bytes/op):
+ * <pre>./gradlew :benchmarks:jmh -Pjmh.includes=TextAnalyzerBenchmark</pre>
+ * {@code plain} is an already-normalized query (the analyzer returns it as is), {@code typed} a raw one with
+ * case and extra spaces, {@code accented} needs folding, {@code identifier} is an email/MLS-id style subtitle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextAnalyzerBenchmark {
+
+    @Param({"plain", "typed", "accented", "identifier"})
+    public String input;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = switch (input) {
+            case "plain" -> "sam gal main";
+            case "typed" -> "  Sam   Gallagher  Main St ";
+            case "accented" -> "Zoë Ångström-Müller";
+            case "identifier" -> "MLS-12345 joe.doe@acme.io (555) 123-4567";
+            default -> throw new IllegalArgumentException(input);
+        };
+    }
+
+    @Benchmark
+    public void legacyNormalizeAndTokens(Blackhole bh) {
+        final String norm = text.strip().replaceAll("\\s+", " ");
+        bh.consume(norm);
+        bh.consume(legacyTokens(norm));
+    }
+
+    @Benchmark
+    public void analyzerNormalizeAndTokens(Blackhole bh) {
+        final String norm = TextAnalyzer.normalize(text);
+        bh.consume(norm);
+        bh.consume(TextAnalyzer.tokens(norm));
+    }
+
+    @Benchmark
+    public String analyzerIndexForm() {
+        return TextAnalyzer.indexForm(text);
+    }
+
+    /** The former {@code Tokenizer.tokens}, which normalized a second time. */
+    private static List<String> legacyTokens(String q) {
+        final String n = q.strip().replaceAll("\\s+", " ");
+        if (n.isEmpty()) return List.of();
+        return Arrays.stream(n.split(" ")).filter(t -> !t.isBlank()).toList();
+    }
+}
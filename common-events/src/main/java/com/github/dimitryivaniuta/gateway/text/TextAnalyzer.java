@@ -0,0 +1,234 @@
+package com.github.dimitryivaniuta.gateway.text;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text analysis shared by the indexer (what is stored in {@code search_items}) and the omnibox (what is
+ * queried), so both sides agree on what a word is.
+ * <p>
+ * One pass over the input, no regex:
+ * <ol>
+ *   <li>lowercase and fold accents and ligatures to ASCII ({@code "Zoë Ångström"} &rarr; {@code "zoe angstrom"});
+ *       combining marks are dropped, non-ASCII digits become ASCII digits;</li>
+ *   <li>split into words: runs of letters and digits, anything else separates
+ *       ({@code "o'brien"} &rarr; {@code "o brien"}, {@code "joe@acme.io"} &rarr; {@code "joe acme io"});</li>
+ *   <li>index side only ({@link #indexForm}): identifiers also get their joined and split forms, appended after
+ *       the words, so {@code "MLS-12345"} is found by {@code mls12345}, {@code 123-4567} by {@code 1234567}, and
+ *       {@code "MLS12345"} by {@code 12345}.</li>
+ * </ol>
+ * Words only ever contain {@code [a-z0-9]} (plus letters of scripts without an ASCII folding), so a word is
+ * safe inside a {@code to_tsquery} expression and a {@code LIKE} pattern without escaping.
+ */
+public final class TextAnalyzer {
+
+    private static final int SEPARATOR = 0;
+    private static final int LETTER = 1;
+    private static final int DIGIT = 2;
+    private static final int IGNORED = 3;
+    private static final int SPACE = 4;
+
+    /** Folding of Latin-1 Supplement and Latin Extended-A/B, indexed by lowercase code point. */
+    private static final int FOLD_FROM = 0xC0;
+    private static final int FOLD_TO = 0x250;
+    private static final String[] FOLD = foldTable();
+
+    private TextAnalyzer() {}
+
+    /**
+     * Query form: folded words joined by single spaces; {@code ""} for {@code null} or text without words.
+     * Already-normalized input is returned as is.
+     */
+    public static String normalize(String text) {
+        if (text == null || text.isEmpty()) return "";
+        if (isNormalized(text)) return text;
+        final StringBuilder out = new StringBuilder(text.length());
+        analyze(text, out, null);
+        return out.toString();
+    }
+
+    /** Words of {@link #normalize}, in order. */
+    public static List<String> tokens(String text) {
+        final String n = normalize(text);
+        if (n.isEmpty()) return List.of();
+        final List<String> out = new ArrayList<>(4);
+        int start = 0;
+        for (int sp = n.indexOf(' '); sp >= 0; sp = n.indexOf(' ', start)) {
+            out.add(n.substring(start, sp));
+            start = sp + 1;
+        }
+        out.add(n.substring(start));
+        return out;
+    }
+
+    /**
+     * Stored form: the words of {@link #normalize} followed by identifier variants. The words come first and
+     * in order, so a substring match of a normalized query still works across word boundaries.
+     */
+    public static String indexForm(String text) {
+        if (text == null || text.isEmpty()) return "";
+        final StringBuilder out = new StringBuilder(text.length() + 8);
+        final StringBuilder variants = new StringBuilder();
+        analyze(text, out, variants);
+        if (!variants.isEmpty()) {
+            if (!out.isEmpty()) out.append(' ');
+            out.append(variants);
+        }
+        return out.toString();
+    }
+
+    // --------------------------- Internals ---------------------------
+
+    /**
+     * Appends the folded words of {@code text} to {@code out}; with {@code variants}, also collects the joined
+     * form of multi-word chunks (no whitespace between the words) and the letter/digit parts of mixed words.
+     */
+    private static void analyze(String text, StringBuilder out, StringBuilder variants) {
+        int wordStart = -1;
+        int chunkStart = -1;
+        int chunkWords = 0;
+        int lastKind = SEPARATOR;
+        boolean mixed = false;
+
+        final int n = text.length();
+        for (int i = 0; i < n; ) {
+            final int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            final int kind = kind(cp);
+            if (kind == IGNORED) continue;
+            if (kind == LETTER || kind == DIGIT) {
+                if (wordStart < 0) {
+                    if (!out.isEmpty()) out.append(' ');
+                    wordStart = out.length();
+                    if (chunkStart < 0) chunkStart = wordStart;
+                    chunkWords++;
+                    mixed = false;
+                } else if (kind != lastKind) {
+                    mixed = true;
+                }
+                lastKind = kind;
+                appendFolded(cp, kind, out);
+                continue;
+            }
+            // Separator or whitespace ends the word; only whitespace ends the chunk
+            if (wordStart >= 0 && mixed && variants != null) splitMixed(out, wordStart, variants);
+            wordStart = -1;
+            if (kind == SPACE) {
+                if (chunkWords > 1 && variants != null) joinChunk(out, chunkStart, variants);
+                chunkStart = -1;
+                chunkWords = 0;
+            }
+        }
+        if (wordStart >= 0 && mixed && variants != null) splitMixed(out, wordStart, variants);
+        if (chunkWords > 1 && variants != null) joinChunk(out, chunkStart, variants);
+    }
+
+    private static int kind(int cp) {
+        if (cp < 0x80) {
+            if ((cp >= 'a' && cp <= 'z') || (cp >= 'A' && cp <= 'Z')) return LETTER;
+            if (cp >= '0' && cp <= '9') return DIGIT;
+            return cp == ' ' || (cp >= '\t' && cp <= '\r') ? SPACE : SEPARATOR;
+        }
+        switch (Character.getType(cp)) {
+            case Character.NON_SPACING_MARK, Character.ENCLOSING_MARK, Character.COMBINING_SPACING_MARK,
+                 Character.FORMAT -> {
+                return IGNORED;
+            }
+            case Character.SPACE_SEPARATOR, Character.LINE_SEPARATOR, Character.PARAGRAPH_SEPARATOR -> {
+                return SPACE;
+            }
+            default -> {
+                if (Character.isDigit(cp)) return DIGIT;
+                return Character.isLetter(cp) ? LETTER : SEPARATOR;
+            }
+        }
+    }
+
+    private static void appendFolded(int cp, int kind, StringBuilder out) {
+        if (cp < 0x80) {
+            out.append((char) (cp >= 'A' && cp <= 'Z' ? cp + ('a' - 'A') : cp));
+            return;
+        }
+        if (kind == DIGIT) {
+            out.append((char) ('0' + Character.digit(cp, 10)));
+            return;
+        }
+        final int lower = Character.toLowerCase(cp);
+        final String folded = lower >= FOLD_FROM && lower < FOLD_TO ? FOLD[lower - FOLD_FROM] : null;
+        if (folded != null) out.append(folded);
+        else out.appendCodePoint(lower);
+    }
+
+    /** {@code "mls12345"} &rarr; variants {@code "mls 12345"}. */
+    private static void splitMixed(StringBuilder out, int wordStart, StringBuilder variants) {
+        if (!variants.isEmpty()) variants.append(' ');
+        boolean digit = Character.isDigit(out.charAt(wordStart));
+        for (int i = wordStart; i < out.length(); i++) {
+            final char c = out.charAt(i);
+            if (Character.isDigit(c) != digit) {
+                variants.append(' ');
+                digit = !digit;
+            }
+            variants.append(c);
+        }
+    }
+
+    /** {@code "mls 12345"} (one whitespace-free chunk, e.g. {@code "MLS-12345"}) &rarr; variant {@code "mls12345"}. */
+    private static void joinChunk(StringBuilder out, int chunkStart, StringBuilder variants) {
+        if (!variants.isEmpty()) variants.append(' ');
+        for (int i = chunkStart; i < out.length(); i++) {
+            final char c = out.charAt(i);
+            if (c != ' ') variants.append(c);
+        }
+    }
+
+    /** Only {@code [a-z0-9]} words separated by single spaces: the common case of an already-normalized query. */
+    private static boolean isNormalized(String text) {
+        char prev = ' ';
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == ' ') {
+                if (prev == ' ') return false;
+            } else if (!((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9'))) {
+                return false;
+            }
+            prev = c;
+        }
+        return prev != ' ';
+    }
+
+    private static String[] foldTable() {
+        final String[] table = new String[FOLD_TO - FOLD_FROM];
+        for (int cp = FOLD_FROM; cp < FOLD_TO; cp++) {
+            // Compatibility decomposition splits accents off ("é" -> "e" + U+0301) and expands ligatures ("ĳ" -> "ij")
+            final String decomposed = Normalizer.normalize(String.valueOf((char) cp), Normalizer.Form.NFKD);
+            final StringBuilder base = new StringBuilder(2);
+            for (int i = 0; i < decomposed.length(); i++) {
+                final char c = decomposed.charAt(i);
+                if (Character.getType(c) != Character.NON_SPACING_MARK) base.append(Character.toLowerCase(c));
+            }
+            if (!base.isEmpty() && base.chars().allMatch(c -> c >= 'a' && c <= 'z')) {
+                table[cp - FOLD_FROM] = base.toString();
+            }
+        }
+        // Letters without a decomposition
+        fold(table, '\u00DF', "ss"); // ß
+        fold(table, '\u00E6', "ae"); // æ
+        fold(table, '\u0153', "oe"); // œ
+        fold(table, '\u00F8', "o"); // ø
+        fold(table, '\u0142', "l"); // ł
+        fold(table, '\u0111', "d"); // đ
+        fold(table, '\u00F0', "d"); // ð
+        fold(table, '\u0127', "h"); // ħ
+        fold(table, '\u0131', "i"); // ı
+        fold(table, '\u00FE', "th"); // þ
+        fold(table, '\u0167', "t"); // ŧ
+        fold(table, '\u014B', "n"); // ŋ
+        return table;
+    }
+
+    private static void fold(String[] table, char lower, String ascii) {
+        table[lower - FOLD_FROM] = ascii;
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.dimitryivaniuta.gateway.indexer.repo;
+
+import com.github.dimitryivaniuta.gateway.text.TextAnalyzer;
+
+/**
+ * Query-independent ranking features of an item, stored in {@code search_items.static_rank} so the omnibox
+ * does not derive them per candidate row. Must stay in sync with the
+ * {@code search_items_static_rank} SQL function (migration {@code V6}) used to backfill existing rows.
+ * <ul>
+ *   <li>Length norm: titles of up to 2 words get 1.0, every further word lowers it
+ *       ({@code 1 / (1 + 0.1 * (words - 2))}), so "Sam Gal" ranks above a long listing headline with the
+ *       same match.</li>
+ *   <li>Type boost: transactions are mostly closed deals and rank slightly lower (0.9); other types 1.0.</li>
+ * </ul>
+ * Recency is not static: the query derives it from {@code updated_at}.
+ */
+final class RankFeatures {
+
+    private RankFeatures() {}
+
+    static double staticRank(String entityType, String title) {
+        return typeBoost(entityType) * lengthNorm(words(TextAnalyzer.normalize(title)));
+    }
+
+    static double lengthNorm(int words) {
+        return 1.0 / (1.0 + 0.1 * Math.max(0, words - 2));
+    }
+
+    static double typeBoost(String entityType) {
+        return "TRANSACTION".equals(entityType) ? 0.9 : 1.0;
+    }
+
+    private static int words(String normalized) {
+        if (normalized.isEmpty()) return 0;
+        int words = 1;
+        for (int i = 0; i < normalized.length(); i++) {
+            if (normalized.charAt(i) == ' ') words++;
+        }
+        return words;
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.dimitryivaniuta.gateway.indexer.repo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rows of the {@code search_prefixes} edge-n-gram table for one item: every 1..{@value #MAX_LEN} character
+ * prefix of every normalized title/subtitle word, with a pre-computed rank.
+ * <p>
+ * Rank per occurrence: title first word 1.0, other title words 0.8, subtitle words 0.4, plus 0.1 when the
+ * prefix is the whole word; an item keeps its best rank per prefix. Must stay in sync with the
+ * {@code search_items_prefixes} SQL function used to backfill the table.
+ *
+ * @param prefixes distinct prefixes
+ * @param ranks    rank of {@code prefixes[i]}
+ */
+record SearchPrefixes(String[] prefixes, Double[] ranks) {
+
+    /** Longest stored prefix; omnibox short queries are at most this long. */
+    static final int MAX_LEN = 3;
+
+    /**
+     * @param titleNorm    normalized title ({@code TextAnalyzer.indexForm}), may be {@code null}
+     * @param subtitleNorm normalized subtitle, may be {@code null}
+     */
+    static SearchPrefixes of(String titleNorm, String subtitleNorm) {
+        final Map<String, Double> best = new HashMap<>();
+        collect(titleNorm, true, best);
+        collect(subtitleNorm, false, best);
+        final String[] prefixes = new String[best.size()];
+        final Double[] ranks = new Double[best.size()];
+        int i = 0;
+        for (Map.Entry<String, Double> e : best.entrySet()) {
+            prefixes[i] = e.getKey();
+            ranks[i++] = e.getValue();
+        }
+        return new SearchPrefixes(prefixes, ranks);
+    }
+
+    private static void collect(String norm, boolean title, Map<String, Double> best) {
+        if (norm == null || norm.isEmpty()) return;
+        int pos = 0;
+        for (String word : norm.split(" ")) {
+            if (word.isEmpty()) continue;
+            // In tenths, so 0.8 + 0.1 is the same double as the SQL function's 0.9
+            final int base = title ? (pos == 0 ? 10 : 8) : 4;
+            pos++;
+            final int chars = word.codePointCount(0, word.length());
+            for (int len = 1; len <= Math.min(MAX_LEN, chars); len++) {
+                final String prefix = word.substring(0, word.offsetByCodePoints(0, len));
+                best.merge(prefix, (base + (len == chars ? 1 : 0)) / 10.0, Math::max);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.dimitryivaniuta.gateway.indexer.repo;
 
+import com.github.dimitryivaniuta.gateway.text.TextAnalyzer;
 import java.util.Objects;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
@@ -14,8 +15,14 @@ import org.springframework.util.StringUtils;
  * <p>
  * Notes:
  * <ul>
- *   <li>The {@code tsv} column in {@code search_items} is a GENERATED ALWAYS expression from
- *       {@code title/subtitle}, so we don't need to manage it here.</li>
+ *   <li>{@code title_norm/subtitle_norm} hold the {@link TextAnalyzer#indexForm} of {@code title/subtitle}
+ *       (folded words plus identifier variants), the same analysis the omnibox applies to queries.</li>
+ *   <li>The {@code tsv} column in {@code search_items} is computed from the normalized columns by the
+ *       {@code search_items_default_norm} trigger, so we don't need to manage it here.</li>
+ *   <li>{@code static_rank} (see {@link RankFeatures}) and {@code updated_at} are written with the text; the
+ *       omnibox combines them with the match score.</li>
+ *   <li>{@code search_prefixes} (1-3 character word prefixes, see {@link SearchPrefixes}) is kept in step with
+ *       each item by the same statement that writes or deletes it.</li>
  *   <li>All methods are small single-statement operations; transactions are not required.</li>
  *   <li>Inputs are validated defensively to avoid empty keys being written.</li>
  * </ul>
@@ -26,6 +33,42 @@ public class SearchUpsertRepo {
     /** Low-level JDBC helper provided by Spring. */
     private final JdbcTemplate jdbc;
 
+    /**
+     * Idempotent on {@code (tenant_id, entity_type, entity_id)}; the normalized columns follow the text. The
+     * item's {@code search_prefixes} rows are replaced in the same statement: stale prefixes are deleted, the
+     * current ones upserted, so the side table never disagrees with the item after a commit.
+     */
+    private static final String UPSERT_SQL = """
+            WITH item AS (
+              INSERT INTO search_items (tenant_id, entity_type, entity_id, title, subtitle, title_norm, subtitle_norm,
+                                        static_rank, updated_at)
+              VALUES (?, ?, ?, ?, ?, ?, ?, ?, now())
+              ON CONFLICT (tenant_id, entity_type, entity_id)
+              DO UPDATE SET
+                title         = EXCLUDED.title,
+                subtitle      = EXCLUDED.subtitle,
+                title_norm    = EXCLUDED.title_norm,
+                subtitle_norm = EXCLUDED.subtitle_norm,
+                static_rank   = EXCLUDED.static_rank,
+                updated_at    = EXCLUDED.updated_at
+              RETURNING tenant_id, entity_type, entity_id
+            ), stale AS (
+              DELETE FROM search_prefixes sp
+               USING item
+               WHERE sp.tenant_id = item.tenant_id
+                 AND sp.entity_type = item.entity_type
+                 AND sp.entity_id = item.entity_id
+                 AND sp.prefix <> ALL (CAST(? AS text[]))
+            )
+            INSERT INTO search_prefixes (tenant_id, prefix, entity_type, entity_id, rank)
+            SELECT item.tenant_id, p.prefix, item.entity_type, item.entity_id, p.rank
+              FROM item
+             CROSS JOIN unnest(CAST(? AS text[]), CAST(? AS double precision[])) AS p(prefix, rank)
+            ON CONFLICT (tenant_id, prefix, entity_type, entity_id)
+            DO UPDATE SET rank = EXCLUDED.rank
+             WHERE search_prefixes.rank IS DISTINCT FROM EXCLUDED.rank
+            """;
+
     /** Logical entity type label persisted in {@code search_items.entity_type}. */
     private static final String ENTITY_CONTACT = "CONTACT";
     private static final String ENTITY_LISTING = "LISTING";
@@ -62,17 +105,7 @@ public class SearchUpsertRepo {
             throw new IllegalArgumentException("title must not be blank");
         }
 
-        // Null subtitle is fine; store as NULL (generated tsvector handles coalesce)
-        final String sql = """
-                INSERT INTO search_items (tenant_id, entity_type, entity_id, title, subtitle)
-                VALUES (?, ?, ?, ?, ?)
-                ON CONFLICT (tenant_id, entity_type, entity_id)
-                DO UPDATE SET
-                  title    = EXCLUDED.title,
-                  subtitle = EXCLUDED.subtitle
-                """;
-
-        jdbc.update(sql, tenantId, ENTITY_CONTACT, contactId, title, blankToNull(subtitle));
+        upsert(tenantId, ENTITY_CONTACT, contactId, title, subtitle);
     }
 
     public void upsertListing(String tenantId, String listingId, String title, String subtitle) {
@@ -86,17 +119,7 @@ public class SearchUpsertRepo {
             throw new IllegalArgumentException("title must not be blank");
         }
 
-        // Null subtitle is fine; store as NULL (generated tsvector handles coalesce)
-        final String sql = """
-            INSERT INTO search_items (tenant_id, entity_type, entity_id, title, subtitle)
-            VALUES (?, ?, ?, ?, ?)
-            ON CONFLICT (tenant_id, entity_type, entity_id)
-            DO UPDATE SET
-              title    = EXCLUDED.title,
-              subtitle = EXCLUDED.subtitle
-            """;
-
-        jdbc.update(sql, tenantId, ENTITY_LISTING, listingId, title, blankToNull(subtitle));
+        upsert(tenantId, ENTITY_LISTING, listingId, title, subtitle);
     }
 
     /** Upsert a Transaction row into search_items (idempotent via ON CONFLICT). */
@@ -110,15 +133,7 @@ public class SearchUpsertRepo {
         if (!org.springframework.util.StringUtils.hasText(title)) {
             throw new IllegalArgumentException("title must not be blank");
         }
-        final String sql = """
-      INSERT INTO search_items (tenant_id, entity_type, entity_id, title, subtitle)
-      VALUES (?, ?, ?, ?, ?)
-      ON CONFLICT (tenant_id, entity_type, entity_id)
-      DO UPDATE SET
-        title    = EXCLUDED.title,
-        subtitle = EXCLUDED.subtitle
-      """;
-        jdbc.update(sql, tenantId, ENTITY_TRANSACTION, transactionId, title, blankToNull(subtitle));
+        upsert(tenantId, ENTITY_TRANSACTION, transactionId, title, subtitle);
     }
 
     /**
@@ -141,19 +156,37 @@ public class SearchUpsertRepo {
             throw new IllegalArgumentException("entityId must not be blank");
         }
 
+        // The item's search_prefixes rows go in the same statement
         final String sql = """
+                WITH prefixes AS (
+                  DELETE FROM search_prefixes
+                   WHERE tenant_id = ?
+                     AND entity_type = ?
+                     AND entity_id = ?
+                )
                 DELETE FROM search_items
                  WHERE tenant_id = ?
                    AND entity_type = ?
                    AND entity_id = ?
                 """;
 
-        return jdbc.update(sql, tenantId, entityType, entityId);
+        return jdbc.update(sql, tenantId, entityType, entityId, tenantId, entityType, entityId);
+    }
+
+    private void upsert(String tenantId, String entityType, String entityId, String title, String subtitle) {
+        // Null subtitle is fine; store as NULL (the tsv trigger handles coalesce)
+        final String sub = blankToNull(subtitle);
+        final String titleNorm = blankToNull(TextAnalyzer.indexForm(title));
+        final String subtitleNorm = blankToNull(TextAnalyzer.indexForm(sub));
+        final SearchPrefixes prefixes = SearchPrefixes.of(titleNorm, subtitleNorm);
+        jdbc.update(UPSERT_SQL, tenantId, entityType, entityId, title, sub, titleNorm, subtitleNorm,
+                RankFeatures.staticRank(entityType, title),
+                prefixes.prefixes(), prefixes.prefixes(), prefixes.ranks());
     }
 
     /**
      * Convert blank strings to {@code null}. PostgreSQL distinguishes empty string and NULL,
-     * and the generated {@code tsvector} already coalesces NULLs for safe indexing.
+     * and the trigger-computed {@code tsvector} already coalesces NULLs for safe indexing.
      *
      * @param s input string (nullable)
      * @return {@code null} if input is null/blank; otherwise the original string
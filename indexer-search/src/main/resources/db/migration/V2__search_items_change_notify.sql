@@ -0,0 +1,20 @@
+-- Notify read-side caches (omnibox-search) when a tenant's rows change.
+-- Payload is the tenant id; Postgres de-duplicates identical payloads within one transaction.
+create or replace function search_items_notify_change() returns trigger
+    language plpgsql as
+$$
+begin
+    if tg_op = 'DELETE' then
+        perform pg_notify('search_items_changed', old.tenant_id);
+    else
+        perform pg_notify('search_items_changed', new.tenant_id);
+    end if;
+    return null;
+end;
+$$;
+
+drop trigger if exists trg_search_items_notify_change on search_items;
+
+create trigger trg_search_items_notify_change
+    after insert or update or delete on search_items
+    for each row execute function search_items_notify_change();
@@ -0,0 +1,5 @@
+-- Supports the omnibox per-entity-type top-N (LATERAL per type): tenant + type equality filter.
+-- Built concurrently so indexer writes go on during the build; CONCURRENTLY cannot run in a transaction,
+-- hence the .conf. A failed build leaves an INVALID index that "if not exists" would keep: drop it first.
+create index concurrently if not exists idx_search_items_tenant_type
+    on search_items (tenant_id, entity_type);
@@ -0,0 +1,23 @@
+-- Backfill of the V4 columns for rows written before it, in id ranges committed one by one (the script runs
+-- outside a transaction, see the .conf): row locks and WAL are bounded per batch, concurrent writes proceed,
+-- and an interrupted run resumes where it stopped. The trigger fills tsv_norm from the values set here.
+-- Rows written since V4 already have tsv_norm and are skipped.
+do
+$$
+declare
+    batch  constant bigint := 10000;
+    low    bigint;
+    high   bigint;
+begin
+    select min(id), max(id) into low, high from search_items where tsv_norm is null;
+    while low <= high loop
+        update search_items
+           set title_norm    = coalesce(title_norm, search_items_norm(title)),
+               subtitle_norm = coalesce(subtitle_norm, search_items_norm(subtitle))
+         where id >= low and id < low + batch
+           and tsv_norm is null;
+        commit;
+        low := low + batch;
+    end loop;
+end
+$$;
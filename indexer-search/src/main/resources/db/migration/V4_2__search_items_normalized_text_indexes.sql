@@ -0,0 +1,12 @@
+-- Indexes over the backfilled columns, built without blocking writes. CONCURRENTLY cannot run in a
+-- transaction, hence the .conf. A failed build leaves an INVALID index that "if not exists" would keep:
+-- drop it before re-running this migration.
+create index concurrently if not exists idx_search_items_tsv_norm_gin
+    on search_items using gin (tsv_norm);
+
+-- Substring / trigram matching moves from lower(title|subtitle) to the normalized columns
+create index concurrently if not exists idx_search_items_title_norm_trgm
+    on search_items using gin (title_norm gin_trgm_ops);
+
+create index concurrently if not exists idx_search_items_subtitle_norm_trgm
+    on search_items using gin (subtitle_norm gin_trgm_ops);
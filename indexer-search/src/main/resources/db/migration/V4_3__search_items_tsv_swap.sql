@@ -0,0 +1,33 @@
+-- Swap the FTS column: the generated tsv over the raw text goes (with its GIN index), the backfilled and
+-- indexed tsv_norm takes its name. Dropping and renaming columns only touch the catalog, so the exclusive
+-- lock is held for milliseconds; no row is rewritten.
+alter table search_items drop column if exists tsv;
+
+alter table search_items rename column tsv_norm to tsv;
+
+alter index idx_search_items_tsv_norm_gin rename to idx_search_items_tsv_gin;
+
+-- plpgsql resolves new.<column> at run time: keep the trigger writing the renamed column
+create or replace function search_items_default_norm() returns trigger
+    language plpgsql as
+$$
+begin
+    if new.title_norm is null
+        or (tg_op = 'UPDATE' and new.title is distinct from old.title
+            and new.title_norm is not distinct from old.title_norm) then
+        new.title_norm := search_items_norm(new.title);
+    end if;
+    if (tg_op = 'INSERT' and new.subtitle_norm is null and new.subtitle is not null)
+        or (tg_op = 'UPDATE' and new.subtitle is distinct from old.subtitle
+            and new.subtitle_norm is not distinct from old.subtitle_norm) then
+        new.subtitle_norm := search_items_norm(new.subtitle);
+    end if;
+    new.tsv := setweight(to_tsvector('english', coalesce(new.title_norm, new.title)), 'A') ||
+               setweight(to_tsvector('english', coalesce(new.subtitle_norm, new.subtitle, '')), 'B');
+    return new;
+end;
+$$;
+
+-- The lower(title|subtitle) trigram indexes have no reader left
+drop index if exists idx_search_items_title_trgm;
+drop index if exists idx_search_items_subtitle_trgm;
@@ -0,0 +1,50 @@
+-- Normalized text written by the indexer with the shared TextAnalyzer (lowercase, accent-folded words plus
+-- identifier variants). The omnibox folds queries the same way, so substring, trigram and FTS matching all
+-- compare analyzed text on both sides.
+--
+-- Rolled out in steps so no step rewrites or locks the whole table for long:
+--   V4   (this) nullable columns and the trigger keeping them filled for new writes: catalog changes only
+--   V4_1 backfill of existing rows in committed batches
+--   V4_2 indexes built concurrently (non-transactional)
+--   V4_3 swap of the FTS column, a short catalog-only transaction
+alter table search_items
+    add column if not exists title_norm    text,
+    add column if not exists subtitle_norm text,
+    -- becomes tsv in V4_3; kept by the trigger because a generated column cannot be added without a rewrite
+    add column if not exists tsv_norm      tsvector;
+
+-- SQL approximation of TextAnalyzer.normalize (no accent folding, no identifier variants). Used to backfill
+-- existing rows and for writers that do not send the normalized columns; the indexer overwrites it with the
+-- analyzed form on the next event for the row.
+create or replace function search_items_norm(t text) returns text
+    language sql immutable as
+$$
+select nullif(btrim(regexp_replace(lower(t), '[^[:alnum:]]+', ' ', 'g')), '')
+$$;
+
+-- FTS over the normalized words: same weights as before (A=title, B=subtitle), folded and identifier-split input
+create or replace function search_items_default_norm() returns trigger
+    language plpgsql as
+$$
+begin
+    if new.title_norm is null
+        or (tg_op = 'UPDATE' and new.title is distinct from old.title
+            and new.title_norm is not distinct from old.title_norm) then
+        new.title_norm := search_items_norm(new.title);
+    end if;
+    if (tg_op = 'INSERT' and new.subtitle_norm is null and new.subtitle is not null)
+        or (tg_op = 'UPDATE' and new.subtitle is distinct from old.subtitle
+            and new.subtitle_norm is not distinct from old.subtitle_norm) then
+        new.subtitle_norm := search_items_norm(new.subtitle);
+    end if;
+    new.tsv_norm := setweight(to_tsvector('english', coalesce(new.title_norm, new.title)), 'A') ||
+                    setweight(to_tsvector('english', coalesce(new.subtitle_norm, new.subtitle, '')), 'B');
+    return new;
+end;
+$$;
+
+drop trigger if exists trg_search_items_default_norm on search_items;
+
+create trigger trg_search_items_default_norm
+    before insert or update on search_items
+    for each row execute function search_items_default_norm();
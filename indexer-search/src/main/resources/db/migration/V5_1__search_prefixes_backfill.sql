@@ -0,0 +1,27 @@
+-- Backfill of search_prefixes (V5) for items written before it, in search_items id ranges committed one by
+-- one (the script runs outside a transaction, see the .conf), like V4_1. Only search_prefixes is written, so
+-- no search_items trigger fires.
+-- "for share of si" orders each batch with concurrent indexer writes of the same item: the batch either waits
+-- for the write and reads the new text, or the write waits and then replaces the prefixes inserted here.
+-- Prefixes the indexer already wrote are kept (on conflict do nothing), so a re-run only adds what is missing.
+do
+$$
+declare
+    batch  constant bigint := 10000;
+    low    bigint;
+    high   bigint;
+begin
+    select min(id), max(id) into low, high from search_items;
+    while low <= high loop
+        insert into search_prefixes (tenant_id, prefix, entity_type, entity_id, rank)
+        select si.tenant_id, p.prefix, si.entity_type, si.entity_id, p.rank
+          from search_items si
+         cross join lateral search_items_prefixes(si.title_norm, si.subtitle_norm) p
+         where si.id >= low and si.id < low + batch
+           for share of si
+        on conflict do nothing;
+        commit;
+        low := low + batch;
+    end loop;
+end
+$$;
@@ -0,0 +1,5 @@
+-- Per-group top-N: equality on (tenant, prefix, type), then read in score order. Built after the V5_1 load,
+-- which is cheaper than maintaining it row by row, and concurrently so indexer writes go on (hence the .conf).
+-- A failed build leaves an INVALID index that "if not exists" would keep: drop it before re-running.
+create index concurrently if not exists idx_search_prefixes_top
+    on search_prefixes (tenant_id, prefix, entity_type, rank desc, entity_id);
@@ -0,0 +1,39 @@
+-- Edge-n-gram side table for the omnibox's first keystrokes.
+-- pg_trgm cannot index patterns shorter than 3 characters, so `like '%x%'` on a 1-2 character query scans the
+-- whole tenant. Instead every 1-3 character prefix of every normalized word gets a pre-ranked row, and a short
+-- query is one index range read per entity type, already in (rank desc, entity_id) order.
+--
+-- Rolled out like V4, so the deploy does not wait on a table-sized transaction:
+--   V5   (this) the table and the prefix function: catalog changes only; the indexer fills the table from now on
+--   V5_1 backfill for existing items in committed batches
+--   V5_2 the top-N index, built concurrently once the table is loaded
+create table if not exists search_prefixes (
+    tenant_id   text             not null,
+    prefix      text             not null,
+    entity_type text             not null,
+    entity_id   text             not null,
+    rank        double precision not null,
+    primary key (tenant_id, prefix, entity_type, entity_id)
+);
+
+-- Prefixes and ranks of one item; must match SearchPrefixes in indexer-search, which maintains the table.
+-- A title's first word ranks 1.0, its other words 0.8, subtitle words 0.4; a prefix that is the whole word
+-- adds 0.1. An item keeps the best rank per prefix.
+create or replace function search_items_prefixes(title_norm text, subtitle_norm text)
+    returns table (prefix text, rank double precision)
+    language sql immutable as
+$$
+select left(w.word, n.len),
+       max(case when w.title then case when w.pos = 1 then 1.0 else 0.8 end else 0.4 end
+           + case when length(w.word) = n.len then 0.1 else 0.0 end)::double precision
+from (
+    select true as title, t.word, t.pos
+    from unnest(string_to_array(coalesce(title_norm, ''), ' ')) with ordinality as t(word, pos)
+    union all
+    select false, t.word, t.pos
+    from unnest(string_to_array(coalesce(subtitle_norm, ''), ' ')) with ordinality as t(word, pos)
+) w
+cross join generate_series(1, 3) as n(len)
+where w.word <> '' and length(w.word) >= n.len
+group by 1
+$$;
@@ -0,0 +1,26 @@
+-- Backfill of static_rank (V6) in id ranges committed one by one (the script runs outside a transaction, see
+-- the .conf), like V4_1. Only static_rank is set, so neither row trigger fires (see V6) and omnibox caches
+-- are not invalidated by it; cached answers pick the new ranks up when they expire.
+-- Rows untouched since V6 all read the V6 default as updated_at, the oldest value in the table; rows the
+-- indexer wrote since carry their own rank and a later updated_at, and are skipped. Rows already holding
+-- the value are not rewritten, so an interrupted run resumes cheaply.
+do
+$$
+declare
+    batch  constant bigint := 10000;
+    low    bigint;
+    high   bigint;
+    since  timestamptz;
+begin
+    select min(id), max(id), min(updated_at) into low, high, since from search_items;
+    while low <= high loop
+        update search_items
+           set static_rank = search_items_static_rank(entity_type, title)
+         where id >= low and id < low + batch
+           and updated_at <= since
+           and static_rank is distinct from search_items_static_rank(entity_type, title);
+        commit;
+        low := low + batch;
+    end loop;
+end
+$$;
@@ -0,0 +1,33 @@
+-- Static ranking features, written by the indexer with the item (see RankFeatures in indexer-search), so the
+-- omnibox scoring query only combines them:
+--   static_rank = length norm of the title x entity type boost
+--   updated_at  = last indexer write; the query turns it into a day-granular recency factor
+--
+-- Catalog changes only: constant / now() defaults are stored once, not written into every row. Existing rows
+-- read static_rank 1.0 and the migration time as updated_at until V6_1 backfills static_rank in batches.
+alter table search_items
+    add column if not exists static_rank double precision not null default 1.0,
+    add column if not exists updated_at  timestamptz      not null default now();
+
+-- static_rank of one item; must match RankFeatures in indexer-search. Used by the V6_1 backfill.
+create or replace function search_items_static_rank(entity_type text, title text) returns double precision
+    language sql immutable as
+$$
+select ((case entity_type when 'TRANSACTION' then 0.9 else 1.0 end)
+        / (1.0 + 0.1 * greatest(0, coalesce(array_length(string_to_array(search_items_norm(title), ' '), 1), 0) - 2))
+       )::double precision
+$$;
+
+-- Fire the row triggers only for writes that change the text, so the V6_1 backfill (static_rank only) neither
+-- recomputes tsv nor sends a cache-invalidation NOTIFY per row. Every indexer write sets title and subtitle.
+drop trigger if exists trg_search_items_default_norm on search_items;
+
+create trigger trg_search_items_default_norm
+    before insert or update of title, subtitle, title_norm, subtitle_norm on search_items
+    for each row execute function search_items_default_norm();
+
+drop trigger if exists trg_search_items_notify_change on search_items;
+
+create trigger trg_search_items_notify_change
+    after insert or delete or update of tenant_id, entity_type, entity_id, title, subtitle on search_items
+    for each row execute function search_items_notify_change();
@@ -0,0 +1,190 @@
+package com.github.dimitryivaniuta.gateway.search.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.OmniboxResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded, tenant-scoped in-process cache of assembled {@link OmniboxResult}s.
+ * <p>
+ * Keyed by (tenant, normalized query, limitPerGroup). Entries are evicted by size (W-TinyLFU)
+ * and by TTL; the TTL is the upper bound on staleness if an invalidation signal is lost.
+ * Tenant-wide invalidation is driven by {@link SearchItemsChangeListener} whenever the indexer
+ * touches that tenant's {@code search_items} rows.
+ * <p>
+ * To avoid re-populating the cache with a result computed before an invalidation arrived,
+ * callers take a {@link #version(String)} before hitting the DB and hand it back to
+ * {@link #put(String, String, int, OmniboxResult, long)}; stale puts are dropped.
+ * <p>
+ * With read replicas ({@code app.omnibox.replicas.urls}) that check is not enough: the notification comes from
+ * the primary, and a query that starts after it can still read a replica that has not replayed the change.
+ * Every invalidation is therefore repeated once the replicas must have caught up, {@code max-lag} plus one
+ * {@code lag-check-interval} later (a replica is excluded at the first check past {@code max-lag}). Answers
+ * from a lagging replica are cached in between and served until the repeat sweeps them, so staleness stays
+ * within the bound replica reads already have instead of lasting up to the TTL. The trade-off: each tenant
+ * invalidation costs a second sweep and version bump (which also resets {@link TypeaheadSessionCache} state
+ * again). Refusing to cache for {@code max-lag} after each invalidation would be exact, but a tenant that
+ * the indexer writes every few seconds would never be cached. Invalidations of one tenant that arrive
+ * within the delay share one repeat, taken {@code max-lag} after the latest of them.
+ * <p>
+ * Metrics (all under {@code omnibox.cache.*}):
+ * <ul>
+ *   <li>{@code omnibox.cache.requests{tenant,result=hit|miss}}</li>
+ *   <li>{@code omnibox.cache.evictions{cause=SIZE|EXPIRED|...}} (capacity/TTL only, not invalidations)</li>
+ *   <li>{@code omnibox.cache.invalidations{scope=tenant|all|tenant-replica-lag|all-replica-lag}} (the last two
+ *       are the repeats)</li>
+ *   <li>{@code omnibox.cache.size} gauge</li>
+ * </ul>
+ */
+@Component
+public class OmniboxResultCache {
+
+    /** Cache key; query is the already-normalized input, lowercased (search is case-insensitive). */
+    record Key(String tenant, String query, int limitPerGroup) {}
+
+    /** A pending repeat of an invalidation; {@code tenant == null} is the global one. */
+    private record Repeat(String tenant) {}
+
+    private final boolean enabled;
+    private final MeterRegistry metrics;
+    private final Cache<Key, OmniboxResult> cache;
+
+    /** Monotonic invalidation counters: one global, one per tenant. */
+    private final AtomicLong globalVersion = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicLong> tenantVersions = new ConcurrentHashMap<>();
+
+    /** Delay of the repeated invalidation; 0 without replicas (reads then see every committed change). */
+    private final long repeatAfterNanos;
+    /** When each pending repeat is due ({@link System#nanoTime()}). */
+    private final ConcurrentHashMap<Repeat, Long> repeatsDue = new ConcurrentHashMap<>();
+
+    public OmniboxResultCache(MeterRegistry metrics,
+                              @Value("${app.omnibox.cache.enabled:true}") boolean enabled,
+                              @Value("${app.omnibox.cache.max-size:10000}") long maxSize,
+                              @Value("${app.omnibox.cache.ttl:30s}") Duration ttl,
+                              @Value("${app.omnibox.replicas.urls:}") List<String> replicaUrls,
+                              @Value("${app.omnibox.replicas.max-lag:5s}") Duration replicaMaxLag,
+                              @Value("${app.omnibox.replicas.lag-check-interval:1s}") Duration lagCheckInterval) {
+        this.enabled = enabled;
+        this.metrics = metrics;
+        this.repeatAfterNanos = replicaUrls.stream().allMatch(String::isBlank)
+                ? 0 : replicaMaxLag.plus(lagCheckInterval).toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .removalListener((Key k, OmniboxResult v, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        metrics.counter("omnibox.cache.evictions", "cause", cause.name()).increment();
+                    }
+                })
+                .build();
+        metrics.gaugeMapSize("omnibox.cache.size", Tags.empty(), cache.asMap());
+    }
+
+    /**
+     * Look up a cached result.
+     *
+     * @return cached result, or {@code null} on miss (or when the cache is disabled)
+     */
+    public OmniboxResult get(String tenant, String normalizedQuery, int limitPerGroup) {
+        if (!enabled) return null;
+        OmniboxResult hit = cache.getIfPresent(key(tenant, normalizedQuery, limitPerGroup));
+        metrics.counter("omnibox.cache.requests", "tenant", tenant, "result", hit == null ? "miss" : "hit").increment();
+        return hit;
+    }
+
+    /**
+     * Current invalidation version for a tenant; strictly increases on every tenant or global invalidation.
+     */
+    public long version(String tenant) {
+        return globalVersion.get() + tenantVersions.computeIfAbsent(tenant, t -> new AtomicLong()).get();
+    }
+
+    /**
+     * Store a result unless the tenant was invalidated after {@code versionBefore} was taken.
+     * <p>
+     * The version is checked again after the write: an invalidation that bumped the version between the first
+     * check and the write may already have swept the tenant's keys, so the entry is taken back out here.
+     * An invalidation that bumps it after the second check sweeps the entry itself.
+     */
+    public void put(String tenant, String normalizedQuery, int limitPerGroup, OmniboxResult result, long versionBefore) {
+        if (!enabled || result == null) return;
+        if (version(tenant) != versionBefore) return;
+        final Key key = key(tenant, normalizedQuery, limitPerGroup);
+        cache.put(key, result);
+        if (version(tenant) != versionBefore) {
+            cache.asMap().remove(key, result);
+        }
+    }
+
+    /** Drop every entry of one tenant (its {@code search_items} rows changed). */
+    public void invalidateTenant(String tenant) {
+        if (!enabled || tenant == null) return;
+        sweepTenant(tenant, "tenant");
+        scheduleRepeat(new Repeat(tenant));
+    }
+
+    /** Drop everything (e.g. change feed was interrupted and notifications may have been missed). */
+    public void invalidateAll() {
+        if (!enabled) return;
+        sweepAll("all");
+        scheduleRepeat(new Repeat(null));
+    }
+
+    private void sweepTenant(String tenant, String scope) {
+        tenantVersions.computeIfAbsent(tenant, t -> new AtomicLong()).incrementAndGet();
+        cache.asMap().keySet().removeIf(k -> k.tenant().equals(tenant));
+        metrics.counter("omnibox.cache.invalidations", "scope", scope).increment();
+    }
+
+    private void sweepAll(String scope) {
+        globalVersion.incrementAndGet();
+        cache.invalidateAll();
+        metrics.counter("omnibox.cache.invalidations", "scope", scope).increment();
+    }
+
+    /** (Re)sets the repeat to {@code repeatAfter} from now; only the first pending one schedules a task. */
+    private void scheduleRepeat(Repeat repeat) {
+        if (repeatAfterNanos == 0) return;
+        if (repeatsDue.put(repeat, System.nanoTime() + repeatAfterNanos) == null) {
+            runRepeatAfter(repeat, repeatAfterNanos);
+        }
+    }
+
+    private void runRepeatAfter(Repeat repeat, long delayNanos) {
+        CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(() -> repeat(repeat));
+    }
+
+    private void repeat(Repeat repeat) {
+        final Long due = repeatsDue.get(repeat);
+        if (due == null) return;
+        final long remaining = due - System.nanoTime();
+        // A later invalidation pushed the repeat back; if it moves again meanwhile, remove() fails and we re-check
+        if (remaining > 0 || !repeatsDue.remove(repeat, due)) {
+            runRepeatAfter(repeat, Math.max(remaining, 0));
+            return;
+        }
+        if (repeat.tenant() == null) sweepAll("all-replica-lag");
+        else sweepTenant(repeat.tenant(), "tenant-replica-lag");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private static Key key(String tenant, String normalizedQuery, int limitPerGroup) {
+        return new Key(tenant, normalizedQuery.toLowerCase(Locale.ROOT), limitPerGroup);
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.dimitryivaniuta.gateway.search.cache;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Postgres {@code LISTEN} loop that turns {@code search_items} changes into cache invalidations.
+ * <p>
+ * The indexer's migration installs a row trigger on {@code search_items} that does
+ * {@code pg_notify('search_items_changed', tenant_id)}. Postgres folds identical notifications
+ * raised in the same transaction, so a batch upsert for one tenant costs one message.
+ * <p>
+ * Uses a dedicated (non-pooled) connection so the Hikari pool keeps its full size for queries.
+ * If the connection drops we cannot know which notifications were missed, so the whole cache
+ * is flushed before re-subscribing.
+ */
+@Component
+@ConditionalOnProperty(name = "app.omnibox.cache.enabled", havingValue = "true", matchIfMissing = true)
+public class SearchItemsChangeListener implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchItemsChangeListener.class);
+
+    /** Channel name used by the trigger in indexer-search migrations. */
+    static final String CHANNEL = "search_items_changed";
+
+    private static final int POLL_TIMEOUT_MS = 1_000;
+
+    private final OmniboxResultCache cache;
+    private final DataSourceProperties dataSource;
+    private final Duration reconnectDelay;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public SearchItemsChangeListener(OmniboxResultCache cache,
+                                     DataSourceProperties dataSource,
+                                     @Value("${app.omnibox.cache.reconnect-delay:5s}") Duration reconnectDelay) {
+        this.cache = cache;
+        this.dataSource = dataSource;
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = Thread.ofPlatform().daemon().name("omnibox-cache-listen").start(this::loop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (worker != null) worker.interrupt();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void loop() {
+        while (running) {
+            try (Connection conn = DriverManager.getConnection(
+                    dataSource.determineUrl(), dataSource.determineUsername(), dataSource.determinePassword())) {
+                try (Statement st = conn.createStatement()) {
+                    st.execute("LISTEN " + CHANNEL);
+                }
+                // Anything cached before LISTEN took effect may already be stale
+                cache.invalidateAll();
+                log.info("Listening for search_items changes on channel '{}'", CHANNEL);
+
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] batch = pg.getNotifications(POLL_TIMEOUT_MS);
+                    if (batch == null) continue;
+                    for (PGNotification n : batch) {
+                        cache.invalidateTenant(n.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) return;
+                cache.invalidateAll();
+                log.warn("search_items change feed interrupted; cache flushed, retrying in {}. err={}",
+                        reconnectDelay, e.toString());
+                sleepQuietly(reconnectDelay);
+            }
+        }
+    }
+
+    private void sleepQuietly(Duration d) {
+        try {
+            Thread.sleep(d.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
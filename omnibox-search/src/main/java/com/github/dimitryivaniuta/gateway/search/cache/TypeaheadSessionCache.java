@@ -0,0 +1,153 @@
+package com.github.dimitryivaniuta.gateway.search.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import com.github.dimitryivaniuta.gateway.text.TextAnalyzer;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-user type-ahead session state used to answer longer prefixes without a DB round trip.
+ * <p>
+ * Under the prefix-AND semantics of {@code Tokenizer.toPrefixTsQuery} and the {@code like '%term%'}
+ * fallback, the match set for an extension of a query ("sam" → "samu", "sam" → "sam g") is a subset of
+ * the match set of the query itself. So when the last DB answer for a user was <em>complete</em>
+ * (no group reached its per-group cap), the next keystroke can be answered by filtering those rows in memory.
+ * <p>
+ * Rules:
+ * <ul>
+ *   <li>Only supersets produced by the full (FTS) plan are refined; the short-query plan matches word
+ *       prefixes only, so its rows are not a superset of an FTS match (which also matches substrings).</li>
+ *   <li>Negative caching: an empty answer of the full plan short-circuits every extension of that query.
+ *       An empty short-query answer does not: "xq" finding no word starting with it says nothing about
+ *       "xqz" inside a word.</li>
+ *   <li>State is tied to the tenant's cache version, so an indexer change drops it.</li>
+ *   <li>Refined rows keep the raw scores (and order) of the superset query; they are re-normalized
+ *       per response like any DB result.</li>
+ *   <li>The in-memory match approximates the SQL predicate (no stemming: "runn" matches "running" here but
+ *       not the stem "run" in Postgres), so refined answers are only served back to the same user and never
+ *       go into the tenant-wide {@link OmniboxResultCache}.</li>
+ * </ul>
+ * Requests without a user id are not tracked.
+ * <p>
+ * Metrics: {@code omnibox.refine.requests{tenant,result=refined|negative|miss}}.
+ */
+@Component
+public class TypeaheadSessionCache {
+
+    /** Last complete candidate set seen by one user. Query is lowercase-normalized. */
+    record Session(String query, SearchRows rows, boolean ftsPlan, long version) {}
+
+    record Key(String tenant, String user) {}
+
+    private final boolean enabled;
+    private final MeterRegistry metrics;
+    private final Cache<Key, Session> sessions;
+
+    public TypeaheadSessionCache(MeterRegistry metrics,
+                                 @Value("${app.omnibox.refine.enabled:true}") boolean enabled,
+                                 @Value("${app.omnibox.refine.max-sessions:5000}") long maxSessions,
+                                 @Value("${app.omnibox.refine.idle-timeout:60s}") Duration idleTimeout) {
+        this.enabled = enabled;
+        this.metrics = metrics;
+        this.sessions = Caffeine.newBuilder()
+                .maximumSize(maxSessions)
+                .expireAfterAccess(idleTimeout)
+                .build();
+    }
+
+    /**
+     * Try to answer {@code normalizedQuery} from the user's previous complete candidate set.
+     *
+     * @param version current cache version of the tenant (see {@link OmniboxResultCache#version(String)})
+     * @return refined rows (possibly empty), or {@code null} when the DB must be queried
+     */
+    public SearchRows refine(String tenant, String user, String normalizedQuery, long version) {
+        if (!enabled || user == null) return null;
+        final Key key = new Key(tenant, user);
+        final Session s = sessions.getIfPresent(key);
+        final String q = normalizedQuery.toLowerCase(Locale.ROOT);
+
+        if (s == null || s.version() != version || !q.startsWith(s.query())) {
+            metrics.counter("omnibox.refine.requests", "tenant", tenant, "result", "miss").increment();
+            return null;
+        }
+        if (s.rows().isEmpty() && s.ftsPlan()) {
+            metrics.counter("omnibox.refine.requests", "tenant", tenant, "result", "negative").increment();
+            return SearchRows.EMPTY;
+        }
+        if (!s.ftsPlan()) {
+            metrics.counter("omnibox.refine.requests", "tenant", tenant, "result", "miss").increment();
+            return null;
+        }
+
+        final List<String> toks = lowerTokens(q);
+        final SearchRows.Builder b = new SearchRows.Builder(s.rows().size());
+        for (SearchRow r : s.rows().rows()) {
+            if (matches(r, q, toks)) b.add(r);
+        }
+        final SearchRows out = b.build();
+        // The refined set is itself complete: keep narrowing from it on the next keystroke
+        sessions.put(key, new Session(q, out, true, version));
+        metrics.counter("omnibox.refine.requests", "tenant", tenant, "result", "refined").increment();
+        return out;
+    }
+
+    /**
+     * Remember the DB answer for a user's query.
+     *
+     * @param complete {@code true} when the DB returned every match (no group truncated by the cap)
+     * @param ftsPlan  {@code true} when the rows came from the full FTS plan
+     */
+    public void remember(String tenant, String user, String normalizedQuery,
+                         SearchRows rows, boolean complete, boolean ftsPlan, long version) {
+        if (!enabled || user == null) return;
+        final Key key = new Key(tenant, user);
+        if (!complete) {
+            // A truncated superset cannot be refined; forget the older one so it is not misused
+            sessions.invalidate(key);
+            return;
+        }
+        sessions.put(key, new Session(normalizedQuery.toLowerCase(Locale.ROOT), rows, ftsPlan, version));
+    }
+
+    // --------------------------- In-memory match (mirrors FULL_SQL predicate) ---------------------------
+
+    /**
+     * {@code title_norm|subtitle_norm like '%term%'} OR every token is a prefix of some word in title/subtitle
+     * (approximation of {@code tsv @@ 'tok1:* & tok2:*'}). Row text is folded like the indexed columns.
+     */
+    static boolean matches(SearchRow row, String term, List<String> toks) {
+        final String title = TextAnalyzer.normalize(row.title());
+        final String subtitle = TextAnalyzer.normalize(row.subtitle());
+        if (title.contains(term) || subtitle.contains(term)) return true;
+        for (String t : toks) {
+            if (!hasWordPrefix(title, t) && !hasWordPrefix(subtitle, t)) return false;
+        }
+        return true;
+    }
+
+    static boolean hasWordPrefix(String text, String prefix) {
+        final int last = text.length() - prefix.length();
+        for (int i = 0; i <= last; i++) {
+            boolean wordStart = i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1));
+            if (wordStart && text.startsWith(prefix, i)) return true;
+        }
+        return false;
+    }
+
+    private static List<String> lowerTokens(String lowerQuery) {
+        final List<String> out = new ArrayList<>(4);
+        for (String t : lowerQuery.split(" ")) {
+            if (!t.isBlank()) out.add(t);
+        }
+        return out;
+    }
+}
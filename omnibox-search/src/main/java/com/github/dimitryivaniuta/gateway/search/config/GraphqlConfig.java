@@ -1,5 +1,6 @@
 package com.github.dimitryivaniuta.gateway.search.config;
 
+import com.github.dimitryivaniuta.gateway.search.repository.QueryBudget;
 import graphql.GraphQLError;
 import graphql.analysis.MaxQueryComplexityInstrumentation;
 import graphql.analysis.MaxQueryDepthInstrumentation;
@@ -15,6 +16,7 @@ import org.springframework.graphql.execution.DataFetcherExceptionResolver;
 import org.springframework.graphql.execution.DataFetcherExceptionResolverAdapter;
 import org.springframework.graphql.server.WebGraphQlInterceptor;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +50,22 @@ public class GraphqlConfig {
         };
     }
 
+    /**
+     * Opens the request's {@link QueryBudget} and publishes it in the GraphQL context. The omnibox data fetchers
+     * run synchronously, so the response publisher only completes after they did; the budget's deadline
+     * (Postgres {@code statement_timeout}) is what bounds them. Statements are stopped early when a newer
+     * keystroke of the same user supersedes the request, or when a streamed subscription is cancelled.
+     */
+    @Bean
+    public WebGraphQlInterceptor queryBudgetInterceptor(@Value("${app.omnibox.budget:300ms}") Duration budget) {
+        return (request, chain) -> {
+            final QueryBudget b = QueryBudget.of(budget);
+            request.configureExecutionInput((executionInput, builder) ->
+                    builder.graphQLContext(ctx -> ctx.of(QueryBudget.CONTEXT_KEY, b)).build());
+            return chain.next(request);
+        };
+    }
+
     /** Depth/complexity limits using graphql-java instrumentation (no custom overrides). */
     @Bean
     public GraphQlSourceBuilderCustomizer hardeningCustomizer() {
@@ -1,24 +1,87 @@
 package com.github.dimitryivaniuta.gateway.search.config;
 
+import com.github.dimitryivaniuta.gateway.search.lb.HealthProbe;
 import com.github.dimitryivaniuta.gateway.search.lb.InMemoryLoadBalancer;
 import com.github.dimitryivaniuta.gateway.search.lb.LoadBalancer;
+import com.github.dimitryivaniuta.gateway.search.lb.LoadBalancerHealthChecker;
+import com.github.dimitryivaniuta.gateway.search.lb.LoadBalancerListener;
+import com.github.dimitryivaniuta.gateway.search.lb.LoadBalancerMetrics;
+import com.github.dimitryivaniuta.gateway.search.lb.OutlierDetection;
+import com.github.dimitryivaniuta.gateway.search.lb.SelectionStrategy;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 /**
  * Spring Boot auto-configuration.
  *
  * Drop this library on the classpath of any Spring Boot app and you'll get
  * a singleton {@link LoadBalancer} bean unless the app defines its own.
+ * It picks instances by {@code app.lb.strategy} (round-robin by default;
+ * {@code consistent-hash} keeps a tenant on the same nodes when the tenant id
+ * is passed to {@code choose}), holds up to {@code app.lb.capacity} instances
+ * (default 10), ejects outliers with {@link OutlierDetection#defaults()} and
+ * reports to Micrometer when a {@link MeterRegistry} is present.
+ *
+ * With {@code app.lb.health-check.enabled=true} the registered instances are
+ * also probed in the background ({@code GET address + path}, or the app's own
+ * {@link HealthProbe} bean).
  */
 @Configuration
 public class LoadBalancerAutoConfiguration {
 
     @Bean
     @ConditionalOnMissingBean(LoadBalancer.class)
-    public LoadBalancer loadBalancer() {
-        return new InMemoryLoadBalancer();
+    public LoadBalancer loadBalancer(ObjectProvider<MeterRegistry> metrics,
+                                     @Value("${app.lb.capacity:" + InMemoryLoadBalancer.MAX_CAPACITY + "}") int capacity,
+                                     @Value("${app.lb.strategy:round-robin}") String strategy,
+                                     @Value("${app.lb.load-factor:1.25}") double loadFactor) {
+        final MeterRegistry registry = metrics.getIfAvailable();
+        final LoadBalancerListener listener =
+                registry == null ? LoadBalancerListener.NONE : new LoadBalancerMetrics(registry);
+        return InMemoryLoadBalancer.builder()
+                .capacity(capacity)
+                .strategy(strategy(strategy, loadFactor))
+                .outlierDetection(OutlierDetection.defaults())
+                .listener(listener)
+                .build();
+    }
+
+    static SelectionStrategy strategy(String name, double loadFactor) {
+        return switch (name) {
+            case "round-robin" -> SelectionStrategy.roundRobin();
+            case "random" -> SelectionStrategy.random();
+            case "p2c" -> SelectionStrategy.powerOfTwoChoices();
+            case "least-outstanding" -> SelectionStrategy.leastOutstanding();
+            case "consistent-hash" -> SelectionStrategy.consistentHashing(loadFactor);
+            default -> throw new IllegalArgumentException("Unknown app.lb.strategy: " + name);
+        };
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(HealthProbe.class)
+    @ConditionalOnProperty(name = "app.lb.health-check.enabled", havingValue = "true")
+    public HealthProbe loadBalancerHealthProbe(
+            @Value("${app.lb.health-check.path:/actuator/health/readiness}") String path,
+            @Value("${app.lb.health-check.timeout:1s}") Duration timeout) {
+        return HealthProbe.http(path, timeout);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "app.lb.health-check.enabled", havingValue = "true")
+    public LoadBalancerHealthChecker loadBalancerHealthChecker(
+            LoadBalancer loadBalancer,
+            HealthProbe probe,
+            @Value("${app.lb.health-check.interval:5s}") Duration interval,
+            @Value("${app.lb.health-check.timeout:1s}") Duration timeout,
+            @Value("${app.lb.health-check.unhealthy-threshold:2}") int unhealthyThreshold) {
+        return new LoadBalancerHealthChecker(loadBalancer, probe, timeout, unhealthyThreshold).start(interval);
     }
 
 }
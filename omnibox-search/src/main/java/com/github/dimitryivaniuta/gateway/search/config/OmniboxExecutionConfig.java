@@ -0,0 +1,22 @@
+package com.github.dimitryivaniuta.gateway.search.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Executors for omnibox query work that runs off the request thread.
+ */
+@Configuration
+public class OmniboxExecutionConfig {
+
+    /**
+     * Virtual thread per task: fan-out queries spend their life blocked on JDBC, so carrier threads stay free
+     * and the only real concurrency limit is the Hikari pool.
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService omniboxExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("omnibox-vt-", 0).factory());
+    }
+}
@@ -0,0 +1,304 @@
+package com.github.dimitryivaniuta.gateway.search.engine;
+
+import com.github.dimitryivaniuta.gateway.search.feed.SearchItemSink;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import com.github.dimitryivaniuta.gateway.text.TextAnalyzer;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.ngram.EdgeNGramTokenFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Embedded Lucene engine: a local index on {@link MMapDirectory}, fed by {@link com.github.dimitryivaniuta.gateway.search.feed.SearchItemFeed}.
+ * <p>
+ * Layout, one document per {@code search_items} row:
+ * <ul>
+ *   <li>{@code tenant}, {@code type} — keyword fields used as filters</li>
+ *   <li>{@code title_prefix}, {@code subtitle_prefix} — edge n-grams (1..20) of the words of
+ *       {@link TextAnalyzer#indexForm}, identifier variants included, so a typed prefix is a plain term lookup</li>
+ *   <li>{@code entity_id} — keyword + doc values for the {@code score desc, entity_id asc} tie-break</li>
+ * </ul>
+ * Every query token must match a word prefix in title or subtitle (title weighted x2), the same AND semantics
+ * as {@code Tokenizer.toPrefixTsQuery}; short queries use the same rule instead of a substring scan. Query
+ * words come from {@link TextAnalyzer#tokens}, so this engine splits text exactly like the Postgres columns and
+ * the prefix and bitmap engines.
+ * <p>
+ * Segments are searched straight from the page cache; a near-real-time reopen thread makes changes visible
+ * within {@code app.omnibox.lucene.refresh-interval}. The index is rebuilt from the bootstrap on every start,
+ * so it never has to be reconciled with a stale on-disk copy. Until the bootstrap finishes the engine reports
+ * not ready and requests go to Postgres.
+ * <p>
+ * Metrics: {@code omnibox.lucene.docs} gauge.
+ */
+@Component
+@ConditionalOnProperty(name = "app.omnibox.lucene.enabled", havingValue = "true")
+public class LuceneSearchEngine implements SearchEngine, SearchItemSink {
+
+    private static final Logger log = LoggerFactory.getLogger(LuceneSearchEngine.class);
+
+    public static final String NAME = "lucene";
+
+    static final String F_KEY = "key";
+    static final String F_TENANT = "tenant";
+    static final String F_TYPE = "type";
+    static final String F_ID = "entity_id";
+    static final String F_TITLE = "title";
+    static final String F_SUBTITLE = "subtitle";
+    static final String F_TITLE_PREFIX = "title_prefix";
+    static final String F_SUBTITLE_PREFIX = "subtitle_prefix";
+
+    private static final int MAX_GRAM = 20;
+    private static final float TITLE_BOOST = 2f;
+    private static final Sort ORDER = new Sort(SortField.FIELD_SCORE, new SortField(F_ID, SortField.Type.STRING));
+
+    private final Directory dir;
+    private final IndexWriter writer;
+    private final SearcherManager searchers;
+    private final ControlledRealTimeReopenThread<IndexSearcher> reopener;
+
+    private volatile boolean ready;
+
+    public LuceneSearchEngine(MeterRegistry metrics,
+                              @Value("${app.omnibox.lucene.path:./data/lucene}") Path path,
+                              @Value("${app.omnibox.lucene.refresh-interval:200ms}") Duration refreshInterval)
+            throws IOException {
+        Files.createDirectories(path);
+        this.dir = new MMapDirectory(path);
+        final Analyzer prefix = prefixAnalyzer();
+        final Analyzer indexAnalyzer = new PerFieldAnalyzerWrapper(new KeywordAnalyzer(),
+                Map.of(F_TITLE_PREFIX, prefix, F_SUBTITLE_PREFIX, prefix));
+        this.writer = new IndexWriter(dir, new IndexWriterConfig(indexAnalyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE));
+        this.searchers = new SearcherManager(writer, null);
+
+        final double maxStaleSec = refreshInterval.toMillis() / 1000d;
+        this.reopener = new ControlledRealTimeReopenThread<>(writer, searchers, maxStaleSec, maxStaleSec / 10);
+        reopener.setName("omnibox-lucene-nrt");
+        reopener.setDaemon(true);
+        reopener.start();
+
+        metrics.gauge("omnibox.lucene.docs", writer, w -> w.getDocStats().numDocs);
+        log.info("Lucene omnibox index at {} (refresh every {})", path.toAbsolutePath(), refreshInterval);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    // --------------------------- SearchEngine ---------------------------
+
+    @Override
+    public SearchResult search(SearchRequest r) {
+        final List<String> tokens = analyze(r.query());
+        if (tokens.isEmpty()) return SearchResult.complete(SearchRows.EMPTY);
+
+        final BooleanQuery.Builder text = new BooleanQuery.Builder();
+        for (String t : tokens) {
+            text.add(new BooleanQuery.Builder()
+                    .add(new BoostQuery(new TermQuery(new Term(F_TITLE_PREFIX, t)), TITLE_BOOST), Occur.SHOULD)
+                    .add(new TermQuery(new Term(F_SUBTITLE_PREFIX, t)), Occur.SHOULD)
+                    .build(), Occur.MUST);
+        }
+        final Query textQuery = text.build();
+
+        final SearchRows.Builder out = new SearchRows.Builder(r.types().size() * r.perGroup());
+        final EnumSet<SearchEntityType> missing = EnumSet.noneOf(SearchEntityType.class);
+        IndexSearcher searcher = null;
+        try {
+            searcher = searchers.acquire();
+            final StoredFields stored = searcher.storedFields();
+            for (SearchEntityType type : r.types()) {
+                if (r.budget().isCancelled() || r.budget().remainingMillis() == 0) {
+                    missing.add(type);
+                    continue;
+                }
+                final Query q = new BooleanQuery.Builder()
+                        .add(new TermQuery(new Term(F_TENANT, r.tenant())), Occur.FILTER)
+                        .add(new TermQuery(new Term(F_TYPE, type.name())), Occur.FILTER)
+                        .add(textQuery, Occur.MUST)
+                        .build();
+                final TopDocs top = searcher.search(q, r.perGroup(), ORDER, true);
+                for (ScoreDoc sd : top.scoreDocs) {
+                    final Document d = stored.document(sd.doc);
+                    out.add(new SearchRow(type, d.get(F_ID), d.get(F_TITLE), d.get(F_SUBTITLE), sd.score));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            release(searcher);
+        }
+        return new SearchResult(out.build(), missing);
+    }
+
+    // --------------------------- SearchItemSink ---------------------------
+
+    @Override
+    public void upsert(String tenant, SearchEntityType type, String entityId, String title, String subtitle) {
+        final Document d = new Document();
+        d.add(new StringField(F_KEY, key(tenant, type, entityId), Field.Store.NO));
+        d.add(new StringField(F_TENANT, tenant, Field.Store.NO));
+        d.add(new StringField(F_TYPE, type.name(), Field.Store.NO));
+        d.add(new StringField(F_ID, entityId, Field.Store.YES));
+        d.add(new SortedDocValuesField(F_ID, new BytesRef(entityId)));
+        d.add(new StoredField(F_TITLE, title));
+        d.add(new TextField(F_TITLE_PREFIX, title, Field.Store.NO));
+        if (subtitle != null) {
+            d.add(new StoredField(F_SUBTITLE, subtitle));
+            d.add(new TextField(F_SUBTITLE_PREFIX, subtitle, Field.Store.NO));
+        }
+        try {
+            writer.updateDocument(new Term(F_KEY, key(tenant, type, entityId)), d);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void delete(String tenant, SearchEntityType type, String entityId) {
+        try {
+            writer.deleteDocuments(new Term(F_KEY, key(tenant, type, entityId)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void bootstrapped() {
+        try {
+            searchers.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ready = true;
+        log.info("Lucene omnibox index ready: docs={}", writer.getDocStats().numDocs);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        ready = false;
+        reopener.close();
+        searchers.close();
+        writer.close();
+        dir.close();
+    }
+
+    // --------------------------- Analysis ---------------------------
+
+    /** Words of {@link TextAnalyzer#indexForm}, each expanded to its edge n-grams. */
+    static Analyzer prefixAnalyzer() {
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                final Tokenizer source =
+                        new AnalyzedWordsTokenizer(text -> TextAnalyzer.tokens(TextAnalyzer.indexForm(text)));
+                return new TokenStreamComponents(source, new EdgeNGramTokenFilter(source, 1, MAX_GRAM, true));
+            }
+        };
+    }
+
+    /** Query words as indexed, cut to the longest indexed prefix. */
+    static List<String> analyze(String text) {
+        final List<String> words = TextAnalyzer.tokens(text);
+        final List<String> out = new ArrayList<>(words.size());
+        for (String w : words) out.add(w.length() > MAX_GRAM ? w.substring(0, MAX_GRAM) : w);
+        return out;
+    }
+
+    /** Emits the words a {@link TextAnalyzer} function makes of the whole field value. */
+    static final class AnalyzedWordsTokenizer extends Tokenizer {
+
+        private final Function<String, List<String>> words;
+        private final CharTermAttribute term = addAttribute(CharTermAttribute.class);
+        private final StringBuilder text = new StringBuilder();
+        private final char[] buffer = new char[256];
+        private Iterator<String> pending = Collections.emptyIterator();
+
+        AnalyzedWordsTokenizer(Function<String, List<String>> words) {
+            this.words = words;
+        }
+
+        @Override
+        public boolean incrementToken() {
+            if (!pending.hasNext()) return false;
+            clearAttributes();
+            term.append(pending.next());
+            return true;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            text.setLength(0);
+            for (int n = input.read(buffer); n > 0; n = input.read(buffer)) text.append(buffer, 0, n);
+            pending = words.apply(text.toString()).iterator();
+        }
+    }
+
+    private void release(IndexSearcher searcher) {
+        if (searcher == null) return;
+        try {
+            searchers.release(searcher);
+        } catch (IOException e) {
+            log.warn("Failed to release Lucene searcher: {}", e.toString());
+        }
+    }
+
+    private static String key(String tenant, SearchEntityType type, String entityId) {
+        return tenant + '\u0000' + type.name() + '\u0000' + entityId;
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.dimitryivaniuta.gateway.search.engine;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRepository;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import com.github.dimitryivaniuta.gateway.search.service.GroupFanout;
+import com.github.dimitryivaniuta.gateway.search.service.OmniboxCursor;
+import com.github.dimitryivaniuta.gateway.search.service.QueryCoalescer;
+import java.util.EnumSet;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Postgres FTS + trigram engine over {@code search_items} (the default).
+ * <p>
+ * All requested types in one {@code LATERAL} top-N statement, behind {@link QueryCoalescer}; or, with
+ * {@code app.omnibox.fanout.enabled}, one statement per type via {@link GroupFanout}.
+ * {@link #searchAfter} pages one type by keyset. A batch of all-type requests is one statement for the whole batch ({@link SearchRepository#queryBatch}).
+ */
+@Component
+@RequiredArgsConstructor
+public class PostgresSearchEngine implements SearchEngine {
+
+    public static final String NAME = "postgres";
+
+    /** Text search configuration used for {@code to_tsquery}. */
+    private static final String TS_CONFIG = "english";
+
+    private static final EnumSet<SearchEntityType> ALL_TYPES = EnumSet.allOf(SearchEntityType.class);
+
+    private final SearchRepository repo;
+    private final QueryCoalescer coalescer;
+    private final GroupFanout fanout;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public SearchResult search(SearchRequest r) {
+        if (r.types().size() == 1) {
+            // One group (streamed delivery): its own statement under the request budget, no fan-out deadline
+            final SearchEntityType type = r.types().iterator().next();
+            return SearchResult.complete(coalescer.execute(r.tenant(), r.prefixTsQuery(), r.term(), r.perGroup(),
+                    r.shortQuery(), type,
+                    () -> repo.queryType(r.tenant(), TS_CONFIG, r.prefixTsQuery(), r.term(), r.likePattern(), type,
+                            r.perGroup(), r.shortQuery(), r.budget())));
+        }
+        if (fanout.isEnabled() || !r.types().equals(ALL_TYPES)) {
+            // The single statement always answers every type; a subset goes through the per-type path
+            return fanout.search(r.tenant(), TS_CONFIG, r.prefixTsQuery(), r.term(), r.likePattern(),
+                    r.types(), r.perGroup(), r.shortQuery(), r.budget());
+        }
+        return SearchResult.complete(coalescer.execute(r.tenant(), r.prefixTsQuery(), r.term(), r.perGroup(),
+                r.shortQuery(), null,
+                () -> repo.query(r.tenant(), TS_CONFIG, r.prefixTsQuery(), r.term(), r.likePattern(),
+                        r.perGroup(), r.shortQuery(), r.budget())));
+    }
+
+    @Override
+    public SearchRows searchAfter(SearchRequest r, OmniboxCursor after) {
+        return repo.queryTypeAfter(r.tenant(), TS_CONFIG, r.prefixTsQuery(), r.term(), r.likePattern(),
+                after.type(), after.score(), after.entityId(), r.perGroup(), r.shortQuery(), r.budget());
+    }
+
+    @Override
+    public List<SearchResult> searchBatch(List<SearchRequest> requests) {
+        if (requests.stream().anyMatch(r -> !r.types().equals(ALL_TYPES))) {
+            return SearchEngine.super.searchBatch(requests);
+        }
+        final SearchRequest first = requests.get(0);
+        final List<SearchRepository.BatchQuery> queries = requests.stream()
+                .map(r -> new SearchRepository.BatchQuery(r.prefixTsQuery(), r.term(), r.likePattern(), r.shortQuery()))
+                .toList();
+        return repo.queryBatch(first.tenant(), TS_CONFIG, queries, first.perGroup(), first.budget()).stream()
+                .map(SearchResult::complete)
+                .toList();
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.dimitryivaniuta.gateway.search.engine;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import com.github.dimitryivaniuta.gateway.search.service.OmniboxCursor;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Candidate retrieval behind the omnibox.
+ * <p>
+ * An engine returns, for every requested entity type, at most {@code perGroup} rows in
+ * {@code score desc, entity_id asc} order; the service does caching, refinement and assembly on top.
+ * Implementations must honour the request's {@link com.github.dimitryivaniuta.gateway.search.repository.QueryBudget}
+ * and report groups they could not answer in time as missing rather than failing the whole request.
+ * <p>
+ * Engines are Spring beans; the active one is picked by {@code app.omnibox.engine.primary}
+ * (see {@link SearchEngineRouter}).
+ */
+public interface SearchEngine {
+
+    /** Stable engine id used in configuration and as the {@code engine} metric tag. */
+    String name();
+
+    SearchResult search(SearchRequest request);
+
+    /**
+     * Answer several requests of one tenant (same {@code perGroup} and budget), one result per request in
+     * the same order. Engines that can
+     * share one backend round trip across the requests override this; the default answers them one by one.
+     */
+    default List<SearchResult> searchBatch(List<SearchRequest> requests) {
+        final List<SearchResult> out = new ArrayList<>(requests.size());
+        for (SearchRequest r : requests) out.add(search(r));
+        return out;
+    }
+
+    /**
+     * Next page of the single type in {@code request.types()} after {@code after}, at most
+     * {@code request.perGroup()} rows, by keyset on this engine's {@code score desc, entity_id asc} order.
+     * Only engines whose scores are stable across calls can page; the default cannot.
+     *
+     * @throws UnsupportedOperationException if this engine does not page by keyset
+     */
+    default SearchRows searchAfter(SearchRequest request, OmniboxCursor after) {
+        throw new UnsupportedOperationException("Omnibox engine " + name() + " does not page by keyset");
+    }
+
+    /**
+     * {@code false} while a local engine is still loading; the router then answers with the Postgres engine.
+     */
+    default boolean isReady() {
+        return true;
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.dimitryivaniuta.gateway.search.engine;
+
+import com.github.dimitryivaniuta.gateway.search.repository.QueryBudget;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import com.github.dimitryivaniuta.gateway.search.service.OmniboxCursor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Picks the configured {@link SearchEngine} and times it; optionally mirrors traffic to a shadow engine.
+ * <p>
+ * {@code app.omnibox.engine.primary} answers the request. {@code app.omnibox.engine.shadow}, when set, gets
+ * the same request asynchronously under its own budget of the same length (so cancelling the user request
+ * never skews the comparison); its result is only measured, never returned.
+ * <p>
+ * A primary that is still loading is bypassed in favour of the Postgres engine ({@code role=fallback}).
+ * <p>
+ * Metrics: {@code omnibox.engine.timer{tenant,engine,role=primary|fallback|shadow,result=ok|empty|partial|timeout|error}}
+ * and {@code omnibox.engine.shadow.rejected{engine}} when the shadow could not be scheduled.
+ */
+@Component
+public class SearchEngineRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchEngineRouter.class);
+
+    private final MeterRegistry metrics;
+    private final ExecutorService executor;
+    private final SearchEngine primary;
+    private final SearchEngine shadow;
+    private final SearchEngine fallback;
+
+    public SearchEngineRouter(List<SearchEngine> engines,
+                              MeterRegistry metrics,
+                              ExecutorService omniboxExecutor,
+                              @Value("${app.omnibox.engine.primary:postgres}") String primaryName,
+                              @Value("${app.omnibox.engine.shadow:}") String shadowName) {
+        final Map<String, SearchEngine> byName = engines.stream()
+                .collect(Collectors.toMap(SearchEngine::name, Function.identity()));
+        this.metrics = metrics;
+        this.executor = omniboxExecutor;
+        this.primary = require(byName, primaryName);
+        this.shadow = StringUtils.hasText(shadowName) ? require(byName, shadowName) : null;
+        this.fallback = require(byName, PostgresSearchEngine.NAME);
+        if (shadow == primary) throw new IllegalArgumentException("Shadow engine must differ from primary: " + shadowName);
+        log.info("Omnibox engine: primary={}, shadow={}", primary.name(), shadow == null ? "-" : shadow.name());
+    }
+
+    /**
+     * Answer with the primary engine (Postgres while the primary is not {@link SearchEngine#isReady() ready}).
+     * Exceptions of the answering engine propagate to the caller.
+     */
+    public SearchResult search(SearchRequest request) {
+        if (shadow != null && shadow.isReady()) mirror(request);
+        return primary.isReady()
+                ? timed(primary, "primary", request)
+                : timed(fallback, "fallback", request);
+    }
+
+    /**
+     * Answer a batch with the primary engine (or Postgres while it loads). Batches are not mirrored to the
+     * shadow engine; the timer records one sample per batch.
+     */
+    public List<SearchResult> searchBatch(List<SearchRequest> requests) {
+        final SearchEngine engine = primary.isReady() ? primary : fallback;
+        final String role = engine == primary ? "primary" : "fallback";
+        final Timer.Sample sample = Timer.start(metrics);
+        String result = "error";
+        try {
+            final List<SearchResult> r = engine.searchBatch(requests);
+            result = r.stream().anyMatch(SearchResult::partial) ? "partial" : "ok";
+            return r;
+        } catch (RuntimeException e) {
+            if (QueryBudget.isTimeout(e)) result = "timeout";
+            throw e;
+        } finally {
+            sample.stop(metrics.timer("omnibox.engine.timer",
+                    "tenant", requests.get(0).tenant(), "engine", engine.name(), "role", role, "result", result));
+        }
+    }
+
+    /**
+     * Next keyset page with the primary engine (or Postgres while it loads); not mirrored to the shadow engine.
+     *
+     * @throws UnsupportedOperationException if the answering engine does not page by keyset
+     */
+    public SearchRows searchAfter(SearchRequest request, OmniboxCursor after) {
+        final SearchEngine engine = primary.isReady() ? primary : fallback;
+        final String role = engine == primary ? "primary" : "fallback";
+        final Timer.Sample sample = Timer.start(metrics);
+        String result = "error";
+        try {
+            final SearchRows r = engine.searchAfter(request, after);
+            result = r.isEmpty() ? "empty" : "ok";
+            return r;
+        } catch (RuntimeException e) {
+            if (QueryBudget.isTimeout(e)) result = "timeout";
+            throw e;
+        } finally {
+            sample.stop(metrics.timer("omnibox.engine.timer",
+                    "tenant", request.tenant(), "engine", engine.name(), "role", role, "result", result));
+        }
+    }
+
+    public String primaryName() {
+        return primary.name();
+    }
+
+    private void mirror(SearchRequest request) {
+        final SearchRequest copy = request.withBudget(
+                QueryBudget.of(Duration.ofMillis(request.budget().remainingMillis())));
+        try {
+            executor.execute(() -> {
+                try {
+                    timed(shadow, "shadow", copy);
+                } catch (RuntimeException e) {
+                    log.debug("Shadow engine {} failed. tenant={}, err={}", shadow.name(), copy.tenant(), e.toString());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            metrics.counter("omnibox.engine.shadow.rejected", "engine", shadow.name()).increment();
+        }
+    }
+
+    private SearchResult timed(SearchEngine engine, String role, SearchRequest request) {
+        final Timer.Sample sample = Timer.start(metrics);
+        String result = "error";
+        try {
+            final SearchResult r = engine.search(request);
+            result = r.partial() ? "partial" : r.rows().isEmpty() ? "empty" : "ok";
+            return r;
+        } catch (RuntimeException e) {
+            if (QueryBudget.isTimeout(e)) result = "timeout";
+            throw e;
+        } finally {
+            sample.stop(metrics.timer("omnibox.engine.timer",
+                    "tenant", request.tenant(), "engine", engine.name(), "role", role, "result", result));
+        }
+    }
+
+    private static SearchEngine require(Map<String, SearchEngine> byName, String name) {
+        final SearchEngine engine = byName.get(name);
+        if (engine == null) {
+            throw new IllegalArgumentException("Unknown omnibox engine '" + name + "', available: " + byName.keySet());
+        }
+        return engine;
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.dimitryivaniuta.gateway.search.engine;
+
+import com.github.dimitryivaniuta.gateway.search.repository.QueryBudget;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One omnibox retrieval, already normalized by the service.
+ *
+ * @param tenant        tenant id (every engine must stay inside it)
+ * @param query         normalized query as typed
+ * @param tokens        lowercase query tokens
+ * @param prefixTsQuery {@code tok1:* & tok2:*} form of the tokens (Postgres FTS)
+ * @param term          lowercase query used for substring/trigram matching
+ * @param types         entity types to answer
+ * @param perGroup      max rows per entity type
+ * @param shortQuery    query is too short for FTS; engines match by substring only
+ * @param budget        deadline and cancellation handle of the request
+ */
+public record SearchRequest(String tenant,
+                            String query,
+                            List<String> tokens,
+                            String prefixTsQuery,
+                            String term,
+                            Set<SearchEntityType> types,
+                            int perGroup,
+                            boolean shortQuery,
+                            QueryBudget budget) {
+
+    /** {@code %term%}, the LIKE pattern of the substring branch. */
+    public String likePattern() {
+        return "%" + term + "%";
+    }
+
+    /** Same request under another budget (e.g. for a shadow engine that must not share cancellation). */
+    public SearchRequest withBudget(QueryBudget other) {
+        return new SearchRequest(tenant, query, tokens, prefixTsQuery, term, types, perGroup, shortQuery, other);
+    }
+}
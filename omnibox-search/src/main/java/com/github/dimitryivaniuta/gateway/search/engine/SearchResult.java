@@ -0,0 +1,19 @@
+package com.github.dimitryivaniuta.gateway.search.engine;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import java.util.Set;
+
+/**
+ * Rows of an engine plus the groups it could not answer (deadline missed or failed).
+ */
+public record SearchResult(SearchRows rows, Set<SearchEntityType> missing) {
+
+    public static SearchResult complete(SearchRows rows) {
+        return new SearchResult(rows, Set.of());
+    }
+
+    public boolean partial() {
+        return !missing.isEmpty();
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.dimitryivaniuta.gateway.search.engine.bitmap;
+
+import com.github.dimitryivaniuta.gateway.search.engine.SearchEngine;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchRequest;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchResult;
+import com.github.dimitryivaniuta.gateway.search.feed.SearchItemSink;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory inverted index over {@code search_items}: per tenant, word prefix &rarr; Roaring bitmap of row
+ * ordinals (see {@link TenantBitmapIndex}).
+ * <p>
+ * A multi-word query ({@code sam gal main}) is answered by intersecting a few compressed bitmaps instead of
+ * merging GIN posting lists per call; scoring runs only on the rows left after the intersection. Matching is
+ * word-prefix AND, the semantics of {@code Tokenizer.toPrefixTsQuery}; short queries use the same rule.
+ * <p>
+ * Built from the feed bootstrap and kept current by the indexer events. Until the bootstrap finishes the
+ * engine reports not ready and requests go to Postgres.
+ * <p>
+ * Metrics, per tenant: {@code omnibox.bitmap.bytes{tenant,part=postings|terms|rows}} (estimated heap use),
+ * {@code omnibox.bitmap.rows{tenant}}, {@code omnibox.bitmap.terms{tenant}}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.omnibox.bitmap.enabled", havingValue = "true")
+public class BitmapIndexEngine implements SearchEngine, SearchItemSink {
+
+    private static final Logger log = LoggerFactory.getLogger(BitmapIndexEngine.class);
+
+    public static final String NAME = "bitmap";
+
+    private final MeterRegistry metrics;
+    private final ConcurrentHashMap<String, TenantBitmapIndex> tenants = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    public BitmapIndexEngine(MeterRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    // --------------------------- SearchEngine ---------------------------
+
+    @Override
+    public SearchResult search(SearchRequest r) {
+        // Split like indexed text, so "o'brien" or "main-st" match the words they were indexed as
+        final List<String> words = TenantBitmapIndex.words(r.query());
+        final TenantBitmapIndex index = tenants.get(r.tenant());
+        if (words.isEmpty() || index == null) return SearchResult.complete(SearchRows.EMPTY);
+        if (r.budget().isCancelled()) throw new QueryTimeoutException("Omnibox query cancelled before start");
+
+        final SearchRows.Builder out = new SearchRows.Builder(r.types().size() * r.perGroup());
+        index.search(words, r.types(), r.perGroup(), out::add);
+        return SearchResult.complete(out.build());
+    }
+
+    // --------------------------- SearchItemSink ---------------------------
+
+    @Override
+    public void upsert(String tenant, SearchEntityType type, String entityId, String title, String subtitle) {
+        index(tenant).upsert(type, entityId, title, subtitle);
+    }
+
+    @Override
+    public void delete(String tenant, SearchEntityType type, String entityId) {
+        final TenantBitmapIndex index = tenants.get(tenant);
+        if (index != null) index.delete(type, entityId);
+    }
+
+    @Override
+    public void bootstrapped() {
+        // Bulk load is done: switch containers to their compact (run) form before serving
+        tenants.values().forEach(TenantBitmapIndex::optimize);
+        ready = true;
+        log.info("Bitmap omnibox index ready: tenants={}, rows={}", tenants.size(),
+                tenants.values().stream().mapToLong(TenantBitmapIndex::rowCount).sum());
+    }
+
+    // --------------------------- Internals ---------------------------
+
+    private TenantBitmapIndex index(String tenant) {
+        final TenantBitmapIndex existing = tenants.get(tenant);
+        if (existing != null) return existing;
+        return tenants.computeIfAbsent(tenant, t -> {
+            final TenantBitmapIndex index = new TenantBitmapIndex(t);
+            bytesGauge(index, "postings", TenantBitmapIndex::postingBytes);
+            bytesGauge(index, "terms", TenantBitmapIndex::termBytes);
+            bytesGauge(index, "rows", TenantBitmapIndex::rowBytes);
+            Gauge.builder("omnibox.bitmap.rows", index, TenantBitmapIndex::rowCount)
+                    .tag("tenant", t).register(metrics);
+            Gauge.builder("omnibox.bitmap.terms", index, TenantBitmapIndex::termCount)
+                    .tag("tenant", t).register(metrics);
+            return index;
+        });
+    }
+
+    private void bytesGauge(TenantBitmapIndex index, String part, ToDoubleFunction<TenantBitmapIndex> value) {
+        Gauge.builder("omnibox.bitmap.bytes", index, value)
+                .tags("tenant", index.tenant(), "part", part)
+                .baseUnit("bytes")
+                .register(metrics);
+    }
+}
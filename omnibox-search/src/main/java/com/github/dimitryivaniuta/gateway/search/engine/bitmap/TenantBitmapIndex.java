@@ -0,0 +1,301 @@
+package com.github.dimitryivaniuta.gateway.search.engine.bitmap;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import com.github.dimitryivaniuta.gateway.text.TextAnalyzer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+/**
+ * In-memory inverted index of one tenant: word prefix &rarr; {@link RoaringBitmap} of dense row ordinals.
+ * <p>
+ * Every title/subtitle word contributes its prefixes of length 1..{@value #MAX_PREFIX}. A query is the
+ * intersection of the bitmaps of its words (smallest first, stopping as soon as it is empty), then of the
+ * requested entity type's bitmap; only those rows are scored, at most {@value #MAX_SCORED} per group. That
+ * bound keeps an unselective query (one letter) from re-tokenizing the whole tenant: its top-N is then the
+ * best of the first {@value #MAX_SCORED} matches in ordinal order. Ordinals of deleted rows are reused, so
+ * bitmaps stay dense.
+ * <p>
+ * Queries share a read lock; indexer changes take the write lock. Sizes are tracked incrementally as the
+ * bitmaps change, so the memory gauges cost nothing to read.
+ */
+final class TenantBitmapIndex {
+
+    /** Longest indexed prefix; longer query words are checked against the row text while scoring. */
+    static final int MAX_PREFIX = 20;
+
+    /** Most rows scored per group and query. */
+    static final int MAX_SCORED = 1_000;
+
+    // Rough per-object heap overheads for the memory gauges (headers, references, map entries)
+    private static final int TERM_OVERHEAD = 96;
+    private static final int ROW_OVERHEAD = 112;
+
+    private record Key(SearchEntityType type, String entityId) {}
+
+    private record Row(SearchEntityType type, String entityId, String title, String subtitle) {}
+
+    private final String tenant;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, RoaringBitmap> postings = new HashMap<>();
+    private final RoaringBitmap[] byType = new RoaringBitmap[SearchEntityType.COUNT];
+    private final Map<Key, Integer> ordinals = new HashMap<>();
+    private final List<Row> rows = new ArrayList<>();
+    private final RoaringBitmap free = new RoaringBitmap();
+
+    private volatile long postingBytes;
+    private volatile long termBytes;
+    private volatile long rowBytes;
+    private volatile int rowCount;
+
+    TenantBitmapIndex(String tenant) {
+        this.tenant = tenant;
+        for (int i = 0; i < byType.length; i++) byType[i] = new RoaringBitmap();
+    }
+
+    String tenant() {
+        return tenant;
+    }
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long postingBytes() {
+        return postingBytes;
+    }
+
+    long termBytes() {
+        return termBytes;
+    }
+
+    long rowBytes() {
+        return rowBytes;
+    }
+
+    // --------------------------- Writes ---------------------------
+
+    void upsert(SearchEntityType type, String entityId, String title, String subtitle) {
+        final Row row = new Row(type, entityId, title, subtitle);
+        final Set<String> next = prefixes(row);
+        lock.writeLock().lock();
+        try {
+            final Key key = new Key(type, entityId);
+            final Integer existing = ordinals.get(key);
+            if (existing != null) {
+                final Row old = rows.get(existing);
+                final Set<String> prev = prefixes(old);
+                for (String p : prev) if (!next.contains(p)) remove(p, existing);
+                for (String p : next) if (!prev.contains(p)) add(p, existing);
+                rows.set(existing, row);
+                rowBytes += bytes(row) - bytes(old);
+                return;
+            }
+            final int ord;
+            if (free.isEmpty()) {
+                ord = rows.size();
+                rows.add(row);
+            } else {
+                ord = free.first();
+                free.remove(ord);
+                rows.set(ord, row);
+            }
+            ordinals.put(key, ord);
+            byType[type.ordinal()].add(ord);
+            for (String p : next) add(p, ord);
+            rowBytes += bytes(row);
+            rowCount = ordinals.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void delete(SearchEntityType type, String entityId) {
+        lock.writeLock().lock();
+        try {
+            final Integer ord = ordinals.remove(new Key(type, entityId));
+            if (ord == null) return;
+            final Row old = rows.set(ord, null);
+            for (String p : prefixes(old)) remove(p, ord);
+            byType[type.ordinal()].remove(ord);
+            free.add(ord);
+            rowBytes -= bytes(old);
+            rowCount = ordinals.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Convert bitmaps to their most compact containers (run-length where it pays) and re-measure. */
+    void optimize() {
+        lock.writeLock().lock();
+        try {
+            long total = 0;
+            for (RoaringBitmap bm : postings.values()) {
+                bm.runOptimize();
+                total += bm.getSizeInBytes();
+            }
+            for (RoaringBitmap bm : byType) bm.runOptimize();
+            postingBytes = total;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(String prefix, int ord) {
+        RoaringBitmap bm = postings.get(prefix);
+        if (bm == null) {
+            bm = new RoaringBitmap();
+            postings.put(prefix, bm);
+            termBytes += TERM_OVERHEAD + prefix.length();
+            postingBytes += bm.getSizeInBytes();
+        }
+        final long before = bm.getSizeInBytes();
+        bm.add(ord);
+        postingBytes += bm.getSizeInBytes() - before;
+    }
+
+    private void remove(String prefix, int ord) {
+        final RoaringBitmap bm = postings.get(prefix);
+        if (bm == null) return;
+        final long before = bm.getSizeInBytes();
+        bm.remove(ord);
+        if (bm.isEmpty()) {
+            postings.remove(prefix);
+            termBytes -= TERM_OVERHEAD + prefix.length();
+            postingBytes -= before;
+        } else {
+            postingBytes += bm.getSizeInBytes() - before;
+        }
+    }
+
+    // --------------------------- Query ---------------------------
+
+    /** Receives result rows in group order. */
+    interface Sink {
+        void accept(SearchRow row);
+    }
+
+    /**
+     * Top {@code perGroup} rows per type: every query word must prefix a title or subtitle word.
+     */
+    void search(List<String> words, Set<SearchEntityType> types, int perGroup, Sink out) {
+        final List<SearchRow> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            final RoaringBitmap matched = intersect(words);
+            if (matched == null || matched.isEmpty()) return;
+
+            final PriorityQueue<SearchRow> top = new PriorityQueue<>(perGroup + 1, WORST_FIRST);
+            for (SearchEntityType t : types) {
+                // Ranking touches only the intersected rows of this group, and a bounded number of them
+                final PeekableIntIterator it = RoaringBitmap.and(matched, byType[t.ordinal()]).getIntIterator();
+                for (int scored = 0; scored < MAX_SCORED && it.hasNext(); scored++) {
+                    final Row row = rows.get(it.next());
+                    final double score = score(row, words);
+                    if (score <= 0) continue;
+                    top.add(new SearchRow(row.type(), row.entityId(), row.title(), row.subtitle(), score));
+                    if (top.size() > perGroup) top.poll();
+                }
+                final SearchRow[] sorted = top.toArray(new SearchRow[0]);
+                Arrays.sort(sorted, WORST_FIRST.reversed());
+                hits.addAll(Arrays.asList(sorted));
+                top.clear();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.forEach(out::accept);
+    }
+
+    /** AND of the words' postings, smallest first; {@code null} if a word matches nothing. */
+    private RoaringBitmap intersect(List<String> words) {
+        final RoaringBitmap[] lists = new RoaringBitmap[words.size()];
+        for (int i = 0; i < lists.length; i++) {
+            final String w = words.get(i);
+            lists[i] = postings.get(w.length() > MAX_PREFIX ? w.substring(0, MAX_PREFIX) : w);
+            if (lists[i] == null) return null;
+        }
+        Arrays.sort(lists, Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+        RoaringBitmap acc = lists[0];
+        for (int i = 1; i < lists.length && !acc.isEmpty(); i++) {
+            // The first AND allocates; the shared posting bitmaps are never modified
+            acc = RoaringBitmap.and(acc, lists[i]);
+        }
+        return acc;
+    }
+
+    private static final Comparator<SearchRow> WORST_FIRST = Comparator
+            .comparingDouble(SearchRow::score)
+            .thenComparing(SearchRow::entityId, Comparator.reverseOrder());
+
+    /** Per word: best of title (exact 1.0, prefix 0.8) and subtitle (exact 0.5, prefix 0.4); 0 if absent. */
+    private static double score(Row row, List<String> words) {
+        final List<String> title = words(row.title());
+        final List<String> subtitle = words(row.subtitle());
+        double total = 0;
+        for (String q : words) {
+            final double w = Math.max(best(title, q, 1.0, 0.8), best(subtitle, q, 0.5, 0.4));
+            if (w == 0) return 0;
+            total += w;
+        }
+        return total;
+    }
+
+    private static double best(List<String> words, String q, double exact, double prefix) {
+        double best = 0;
+        for (String w : words) {
+            if (w.equals(q)) return exact;
+            if (w.startsWith(q)) best = prefix;
+        }
+        return best;
+    }
+
+    // --------------------------- Text ---------------------------
+
+    /** Folded words (shared {@link TextAnalyzer}), the same analysis as queries and the Postgres columns. */
+    static List<String> words(String text) {
+        return TextAnalyzer.tokens(text);
+    }
+
+    private static Set<String> prefixes(Row row) {
+        final Set<String> out = new LinkedHashSet<>();
+        addPrefixes(row.title(), out);
+        addPrefixes(row.subtitle(), out);
+        return out;
+    }
+
+    private static void addPrefixes(String text, Set<String> out) {
+        for (String w : words(text)) {
+            final int max = Math.min(MAX_PREFIX, w.length());
+            for (int len = 1; len <= max; len++) out.add(w.substring(0, len));
+        }
+    }
+
+    private static long bytes(Row row) {
+        return ROW_OVERHEAD + length(row.entityId()) + length(row.title()) + length(row.subtitle());
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+}
@@ -0,0 +1,212 @@
+package com.github.dimitryivaniuta.gateway.search.engine.prefix;
+
+import com.github.dimitryivaniuta.gateway.search.engine.SearchEngine;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchRequest;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchResult;
+import com.github.dimitryivaniuta.gateway.search.feed.SearchItemSink;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Off-heap prefix index: one memory-mapped {@link PrefixSnapshot} file per tenant plus a small on-heap delta.
+ * <p>
+ * The term dictionary holds every suffix of every title/subtitle word in sorted order, so a typed prefix is a
+ * binary search plus a contiguous run of terms; postings, items and strings are read straight from the page
+ * cache. Every query word must match (AND); score is the sum of per-word weights (title &gt; subtitle,
+ * word start &gt; inside the word), ties by entity id — the group order of the SQL path.
+ * <p>
+ * Restart: snapshot files found under {@code app.omnibox.prefix.path} are mapped in the constructor and
+ * serve immediately. The feed bootstrap then replays {@code search_items}; rows identical to the snapshot
+ * copy cost nothing, changed rows go to the delta, and snapshot rows the bootstrap no longer sees are
+ * dropped once it finishes. Live events from the {@code *.events.v1} topics go to the delta as well.
+ * A background thread folds a tenant's delta into a new snapshot when it reaches
+ * {@code compact-threshold} entries, or every {@code snapshot-interval} if it is non-empty.
+ * <p>
+ * Metrics: {@code omnibox.prefix.mapped.bytes}, {@code omnibox.prefix.overlay.entries},
+ * {@code omnibox.prefix.tenants} gauges.
+ */
+@Component
+@ConditionalOnProperty(name = "app.omnibox.prefix.enabled", havingValue = "true")
+public class PrefixIndexEngine implements SearchEngine, SearchItemSink {
+
+    private static final Logger log = LoggerFactory.getLogger(PrefixIndexEngine.class);
+
+    public static final String NAME = "prefix";
+
+    private static final String SUFFIX = ".opx";
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Path dir;
+    private final int compactThreshold;
+    private final long snapshotIntervalNanos;
+    private final ConcurrentHashMap<String, TenantPrefixIndex> tenants = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> lastCompacted = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService compactor;
+    private final long startedNanos = System.nanoTime();
+
+    private volatile boolean ready;
+    private volatile boolean reconciling = true;
+
+    public PrefixIndexEngine(MeterRegistry metrics,
+                             @Value("${app.omnibox.prefix.path:./data/prefix}") Path dir,
+                             @Value("${app.omnibox.prefix.compact-threshold:10000}") int compactThreshold,
+                             @Value("${app.omnibox.prefix.snapshot-interval:5m}") Duration snapshotInterval)
+            throws IOException {
+        this.dir = dir;
+        this.compactThreshold = compactThreshold;
+        this.snapshotIntervalNanos = snapshotInterval.toNanos();
+        Files.createDirectories(dir);
+        load();
+        // Snapshots answer right away; the bootstrap only corrects what changed while the pod was down
+        ready = !tenants.isEmpty();
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "omnibox-prefix-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(this::compactDue, 1, 1, TimeUnit.SECONDS);
+
+        metrics.gauge("omnibox.prefix.mapped.bytes", tenants,
+                m -> m.values().stream().mapToLong(TenantPrefixIndex::mappedBytes).sum());
+        metrics.gauge("omnibox.prefix.overlay.entries", tenants,
+                m -> m.values().stream().mapToLong(TenantPrefixIndex::overlaySize).sum());
+        metrics.gauge("omnibox.prefix.tenants", tenants, ConcurrentHashMap::size);
+        log.info("Prefix omnibox index at {}: {} tenant snapshot(s) mapped", dir.toAbsolutePath(), tenants.size());
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    // --------------------------- SearchEngine ---------------------------
+
+    @Override
+    public SearchResult search(SearchRequest r) {
+        final List<String> words = PrefixTerms.queryWords(r.query());
+        final TenantPrefixIndex index = tenants.get(r.tenant());
+        if (words.isEmpty() || index == null) return SearchResult.complete(SearchRows.EMPTY);
+        if (r.budget().isCancelled()) throw new QueryTimeoutException("Omnibox query cancelled before start");
+
+        final SearchRows.Builder out = new SearchRows.Builder(r.types().size() * r.perGroup());
+        index.search(words, r.types(), r.perGroup(), out::add);
+        return SearchResult.complete(out.build());
+    }
+
+    // --------------------------- SearchItemSink ---------------------------
+
+    @Override
+    public void upsert(String tenant, SearchEntityType type, String entityId, String title, String subtitle) {
+        index(tenant).upsert(new PrefixItem(type, entityId, title, subtitle));
+    }
+
+    @Override
+    public void delete(String tenant, SearchEntityType type, String entityId) {
+        index(tenant).delete(type, entityId);
+    }
+
+    @Override
+    public void bootstrapped() {
+        int gone = 0;
+        for (TenantPrefixIndex index : tenants.values()) gone += index.endReconcile();
+        reconciling = false;
+        ready = true;
+        log.info("Prefix omnibox index reconciled: tenants={}, removed={}", tenants.size(), gone);
+        // Persist the reconciled state so the next restart starts from it
+        compactor.execute(() -> tenants.values().forEach(this::compact));
+    }
+
+    @PreDestroy
+    public void close() {
+        ready = false;
+        compactor.shutdownNow();
+    }
+
+    // --------------------------- Internals ---------------------------
+
+    private TenantPrefixIndex index(String tenant) {
+        return tenants.computeIfAbsent(tenant, t -> {
+            final TenantPrefixIndex index = new TenantPrefixIndex(t, file(t), null);
+            if (reconciling) index.beginReconcile();
+            return index;
+        });
+    }
+
+    private void load() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path f : files) {
+                final String name = f.getFileName().toString();
+                final String tenant;
+                try {
+                    tenant = new String(HEX.parseHex(name.substring(0, name.length() - SUFFIX.length())),
+                            StandardCharsets.UTF_8);
+                } catch (IllegalArgumentException e) {
+                    log.warn("Ignoring unexpected file in prefix index directory: {}", f);
+                    continue;
+                }
+                try {
+                    final TenantPrefixIndex index = new TenantPrefixIndex(tenant, f, PrefixSnapshot.open(f));
+                    index.beginReconcile();
+                    tenants.put(tenant, index);
+                } catch (IOException e) {
+                    // Unreadable snapshot: start the tenant empty, the bootstrap refills it
+                    log.warn("Skipping prefix snapshot {}: {}", f, e.toString());
+                }
+            }
+        }
+    }
+
+    /** Tenant ids are arbitrary strings; hex keeps the file name portable. */
+    private Path file(String tenant) {
+        return dir.resolve(HEX.formatHex(tenant.getBytes(StandardCharsets.UTF_8)) + SUFFIX);
+    }
+
+    private void compactDue() {
+        if (reconciling) return;
+        final long now = System.nanoTime();
+        for (TenantPrefixIndex index : tenants.values()) {
+            final int pending = index.overlaySize();
+            if (pending == 0) continue;
+            final long last = lastCompacted.getOrDefault(index.tenant(), startedNanos);
+            if (pending >= compactThreshold || now - last >= snapshotIntervalNanos) compact(index);
+        }
+    }
+
+    private void compact(TenantPrefixIndex index) {
+        try {
+            final long t0 = System.nanoTime();
+            index.compact();
+            lastCompacted.put(index.tenant(), System.nanoTime());
+            log.debug("Prefix snapshot of tenant {} written in {} ms", index.tenant(),
+                    (System.nanoTime() - t0) / 1_000_000L);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Prefix snapshot of tenant {} failed: {}", index.tenant(), e.toString());
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.dimitryivaniuta.gateway.search.engine.prefix;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+
+/** One {@code search_items} row as held by the prefix index. */
+record PrefixItem(SearchEntityType type, String entityId, String title, String subtitle) {
+
+    /** Snapshot order: by type, then entity id (the SQL tie-break order within a group). */
+    static int compare(SearchEntityType t1, String id1, SearchEntityType t2, String id2) {
+        final int c = Integer.compare(t1.ordinal(), t2.ordinal());
+        return c != 0 ? c : id1.compareTo(id2);
+    }
+}
@@ -0,0 +1,276 @@
+package com.github.dimitryivaniuta.gateway.search.engine.prefix;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable, memory-mapped prefix index of one tenant.
+ * <p>
+ * Everything lives in the mapped file (page cache, off-heap); the only heap object is this reader.
+ * File layout, big-endian:
+ * <pre>
+ * header   magic, itemCount, termCount, postingCount, then section offsets (items, terms, postings, strings)
+ * items    itemCount x (type, idRef, titleRef, subtitleRef)      sorted by (type, entity id)
+ * terms    termCount x (termRef, firstPosting, postingCount)     sorted by UTF-8 bytes
+ * postings postingCount x (ordinal &lt;&lt; 2 | flags)               per term, ascending ordinal
+ * strings  (length, UTF-8 bytes)*                                 ids, titles, subtitles, terms
+ * </pre>
+ * Because items are stored in (type, id) order, ordinal order within a type is the id tie-break order.
+ * A single mapping limits one tenant's file to 2 GB.
+ */
+final class PrefixSnapshot {
+
+    /** "OPX2": terms come from the shared TextAnalyzer; older files are skipped and rebuilt by the bootstrap. */
+    private static final int MAGIC = 0x4F505832;
+    private static final int HEADER = 4 * 4 + 4 * 8;
+    private static final int ITEM_BYTES = 16;
+    private static final int TERM_BYTES = 12;
+    private static final int NULL_REF = -1;
+
+    private final MappedByteBuffer buf;
+    private final long fileBytes;
+    private final int itemCount;
+    private final int termCount;
+    private final int itemsOff;
+    private final int termsOff;
+    private final int postingsOff;
+    private final int stringsOff;
+
+    private PrefixSnapshot(MappedByteBuffer buf, long fileBytes) throws IOException {
+        this.buf = buf;
+        this.fileBytes = fileBytes;
+        if (buf.getInt(0) != MAGIC) throw new IOException("Not an omnibox prefix snapshot");
+        this.itemCount = buf.getInt(4);
+        this.termCount = buf.getInt(8);
+        this.itemsOff = (int) buf.getLong(16);
+        this.termsOff = (int) buf.getLong(24);
+        this.postingsOff = (int) buf.getLong(32);
+        this.stringsOff = (int) buf.getLong(40);
+    }
+
+    static PrefixSnapshot open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = ch.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Prefix snapshot over 2 GB: " + file);
+            // The mapping outlives the channel; it is released when this reader is collected
+            return new PrefixSnapshot(ch.map(FileChannel.MapMode.READ_ONLY, 0, size), size);
+        }
+    }
+
+    int size() {
+        return itemCount;
+    }
+
+    long fileBytes() {
+        return fileBytes;
+    }
+
+    SearchEntityType type(int ord) {
+        return SearchEntityType.ofOrdinal(buf.getInt(itemsOff + ord * ITEM_BYTES));
+    }
+
+    String entityId(int ord) {
+        return string(buf.getInt(itemsOff + ord * ITEM_BYTES + 4));
+    }
+
+    String title(int ord) {
+        return string(buf.getInt(itemsOff + ord * ITEM_BYTES + 8));
+    }
+
+    String subtitle(int ord) {
+        return string(buf.getInt(itemsOff + ord * ITEM_BYTES + 12));
+    }
+
+    PrefixItem item(int ord) {
+        return new PrefixItem(type(ord), entityId(ord), title(ord), subtitle(ord));
+    }
+
+    /** Ordinal of (type, id), or {@code -1}. */
+    int find(SearchEntityType type, String entityId) {
+        int lo = 0;
+        int hi = itemCount - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int c = PrefixItem.compare(type(mid), entityId(mid), type, entityId);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /** Feed every posting of every term starting with {@code prefix} (UTF-8) to {@code sink}. */
+    void forEachPosting(byte[] prefix, IntConsumer sink) {
+        for (int t = lowerBound(prefix); t < termCount && startsWith(t, prefix); t++) {
+            final int at = termsOff + t * TERM_BYTES;
+            final int first = buf.getInt(at + 4);
+            final int count = buf.getInt(at + 8);
+            for (int p = 0; p < count; p++) sink.accept(buf.getInt(postingsOff + (first + p) * 4));
+        }
+    }
+
+    // --------------------------- Term dictionary ---------------------------
+
+    private int lowerBound(byte[] key) {
+        int lo = 0;
+        int hi = termCount;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (compareTerm(mid, key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Unsigned byte comparison of term {@code t} with {@code key}, without decoding. */
+    private int compareTerm(int t, byte[] key) {
+        final int ref = stringsOff + buf.getInt(termsOff + t * TERM_BYTES);
+        final int len = buf.getInt(ref);
+        final int n = Math.min(len, key.length);
+        for (int i = 0; i < n; i++) {
+            final int c = Integer.compare(buf.get(ref + 4 + i) & 0xFF, key[i] & 0xFF);
+            if (c != 0) return c;
+        }
+        return Integer.compare(len, key.length);
+    }
+
+    private boolean startsWith(int t, byte[] prefix) {
+        final int ref = stringsOff + buf.getInt(termsOff + t * TERM_BYTES);
+        if (buf.getInt(ref) < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf.get(ref + 4 + i) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private String string(int ref) {
+        if (ref == NULL_REF) return null;
+        final int at = stringsOff + ref;
+        final byte[] b = new byte[buf.getInt(at)];
+        buf.get(at + 4, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // --------------------------- Writer ---------------------------
+
+    /**
+     * Write {@code items} as a snapshot. The file is written next to {@code file} and atomically moved
+     * into place, so readers only ever map complete files.
+     */
+    static void write(Path file, List<PrefixItem> items) throws IOException {
+        final List<PrefixItem> sorted = new ArrayList<>(items);
+        sorted.sort((a, b) -> PrefixItem.compare(a.type(), a.entityId(), b.type(), b.entityId()));
+
+        final Strings strings = new Strings();
+        final int[] refs = new int[sorted.size() * 3];
+        final Map<String, Postings> byTerm = new HashMap<>();
+        for (int ord = 0; ord < sorted.size(); ord++) {
+            final PrefixItem it = sorted.get(ord);
+            refs[ord * 3] = strings.add(it.entityId());
+            refs[ord * 3 + 1] = strings.add(it.title());
+            refs[ord * 3 + 2] = it.subtitle() == null ? NULL_REF : strings.add(it.subtitle());
+            final int o = ord;
+            final PrefixTerms.TermSink sink = (term, flags) ->
+                    byTerm.computeIfAbsent(term, k -> new Postings()).add(o << 2 | flags);
+            PrefixTerms.forEachTerm(it.title(), true, sink);
+            PrefixTerms.forEachTerm(it.subtitle(), false, sink);
+        }
+
+        final byte[][] terms = new byte[byTerm.size()][];
+        int i = 0;
+        for (String term : byTerm.keySet()) terms[i++] = term.getBytes(StandardCharsets.UTF_8);
+        Arrays.sort(terms, Arrays::compareUnsigned);
+
+        int postingCount = 0;
+        for (Postings p : byTerm.values()) postingCount += p.size;
+
+        final int itemsOff = HEADER;
+        final int termsOff = itemsOff + sorted.size() * ITEM_BYTES;
+        final int postingsOff = termsOff + terms.length * TERM_BYTES;
+        final int stringsOff = postingsOff + postingCount * 4;
+
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(sorted.size());
+            out.writeInt(terms.length);
+            out.writeInt(postingCount);
+            out.writeLong(itemsOff);
+            out.writeLong(termsOff);
+            out.writeLong(postingsOff);
+            out.writeLong(stringsOff);
+
+            for (int ord = 0; ord < sorted.size(); ord++) {
+                out.writeInt(sorted.get(ord).type().ordinal());
+                out.writeInt(refs[ord * 3]);
+                out.writeInt(refs[ord * 3 + 1]);
+                out.writeInt(refs[ord * 3 + 2]);
+            }
+            final Postings[] ordered = new Postings[terms.length];
+            int first = 0;
+            for (int t = 0; t < terms.length; t++) {
+                final String term = new String(terms[t], StandardCharsets.UTF_8);
+                ordered[t] = byTerm.get(term);
+                out.writeInt(strings.add(term));
+                out.writeInt(first);
+                out.writeInt(ordered[t].size);
+                first += ordered[t].size;
+            }
+            for (Postings p : ordered) {
+                for (int k = 0; k < p.size; k++) out.writeInt(p.values[k]);
+            }
+            strings.writeTo(out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Growable int list; ordinals arrive in ascending order, duplicates (same ordinal and flags) are dropped. */
+    private static final class Postings {
+        int[] values = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size > 0 && values[size - 1] == v) return;
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+    }
+
+    /** String section under construction; refs are offsets relative to the section start. */
+    private static final class Strings {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+
+        int add(String s) {
+            final int ref = bytes.size();
+            final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            bytes.write(b.length >>> 24);
+            bytes.write(b.length >>> 16);
+            bytes.write(b.length >>> 8);
+            bytes.write(b.length);
+            bytes.writeBytes(b);
+            return ref;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            bytes.writeTo(out);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.dimitryivaniuta.gateway.search.engine.prefix;
+
+import com.github.dimitryivaniuta.gateway.text.TextAnalyzer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Term extraction and match weights shared by the snapshot writer and the query path.
+ * <p>
+ * Text is split into folded words by the shared {@link TextAnalyzer} (lowercase, accents removed, anything
+ * that is not a letter or digit separates). Every <em>suffix</em> of
+ * a word is a term, so a prefix lookup in the sorted dictionary finds words that contain the query text:
+ * "an" hits "anna" (at word start) and "joanne" (inside the word), which is the {@code like '%an%'} branch
+ * of the full-query SQL without a trigram scan. Each posting carries two flags: title vs subtitle, and
+ * whether the match is at the start of the word; the weight of a match depends only on these flags.
+ */
+final class PrefixTerms {
+
+    static final int TITLE = 1;
+    static final int WORD_START = 2;
+
+    /** Longer words are indexed by their first MAX_WORD chars (bounds suffix blow-up). */
+    static final int MAX_WORD = 24;
+
+    /** Receives one term with its posting flags. */
+    interface TermSink {
+        void accept(String term, int flags);
+    }
+
+    private PrefixTerms() {}
+
+    static void forEachTerm(String text, boolean title, TermSink sink) {
+        if (text == null) return;
+        final int base = title ? TITLE : 0;
+        for (String word : TextAnalyzer.tokens(text)) {
+            final String w = word.length() > MAX_WORD ? word.substring(0, MAX_WORD) : word;
+            for (int i = 0; i < w.length(); i++) {
+                sink.accept(w.substring(i), base | (i == 0 ? WORD_START : 0));
+            }
+        }
+    }
+
+    /** Lowercase words of a query, split exactly like indexed text. */
+    static List<String> queryWords(String query) {
+        final List<String> out = new ArrayList<>(4);
+        for (String w : TextAnalyzer.tokens(query)) {
+            out.add(w.length() > MAX_WORD ? w.substring(0, MAX_WORD) : w);
+        }
+        return out;
+    }
+
+    /** Title beats subtitle, word start beats inside-word. */
+    static float weight(int flags) {
+        return switch (flags & (TITLE | WORD_START)) {
+            case TITLE | WORD_START -> 1.0f;
+            case TITLE -> 0.6f;
+            case WORD_START -> 0.5f;
+            default -> 0.3f;
+        };
+    }
+
+    /**
+     * Score of an item that is not in a snapshot (delta overlay): sum over query words of the best match
+     * weight, or {@code 0} if some word does not occur.
+     */
+    static float score(PrefixItem item, List<String> queryWords) {
+        final List<String> title = TextAnalyzer.tokens(item.title());
+        final List<String> subtitle = TextAnalyzer.tokens(item.subtitle());
+        float total = 0f;
+        for (String q : queryWords) {
+            final float w = Math.max(best(title, q, TITLE), best(subtitle, q, 0));
+            if (w == 0f) return 0f;
+            total += w;
+        }
+        return total;
+    }
+
+    private static float best(List<String> words, String q, int base) {
+        float best = 0f;
+        for (String word : words) {
+            final String w = word.length() > MAX_WORD ? word.substring(0, MAX_WORD) : word;
+            final int at = w.indexOf(q);
+            if (at < 0) continue;
+            best = Math.max(best, weight(base | (w.startsWith(q) ? WORD_START : 0)));
+        }
+        return best;
+    }
+}
@@ -0,0 +1,323 @@
+package com.github.dimitryivaniuta.gateway.search.engine.prefix;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Prefix index of one tenant: the last mapped {@link PrefixSnapshot} plus an on-heap delta overlay.
+ * <p>
+ * Changes since the snapshot live in the overlay (upserts and tombstones); the snapshot ordinals they replace
+ * are flagged in a shadow bit set, so queries read the snapshot, skip shadowed ordinals and scan the (small)
+ * overlay. {@link #compact()} folds the overlay into a new snapshot file and swaps it in; changes that arrive
+ * while the file is written stay in the new overlay.
+ * <p>
+ * Writers serialize on this object; queries take no lock and read one immutable {@link State} reference.
+ */
+final class TenantPrefixIndex {
+
+    record Key(SearchEntityType type, String entityId) {}
+
+    /** Overlay entry; {@code item == null} is a delete. {@code seq} orders it against a running compaction. */
+    record Entry(PrefixItem item, long seq) {}
+
+    /** What a query sees. The snapshot may be {@code null} (tenant never compacted). */
+    private record State(PrefixSnapshot snapshot, Bits shadowed, ConcurrentHashMap<Key, Entry> overlay) {}
+
+    private final String tenant;
+    private final Path file;
+    private volatile State state;
+    private long seq;
+
+    /** Snapshot ordinals confirmed by the startup bootstrap; {@code null} outside reconciliation. */
+    private Bits seen;
+
+    TenantPrefixIndex(String tenant, Path file, PrefixSnapshot snapshot) {
+        this.tenant = tenant;
+        this.file = file;
+        this.state = new State(snapshot, new Bits(snapshot == null ? 0 : snapshot.size()), new ConcurrentHashMap<>());
+    }
+
+    String tenant() {
+        return tenant;
+    }
+
+    int overlaySize() {
+        return state.overlay().size();
+    }
+
+    long mappedBytes() {
+        final PrefixSnapshot s = state.snapshot();
+        return s == null ? 0L : s.fileBytes();
+    }
+
+    // --------------------------- Writes ---------------------------
+
+    synchronized void upsert(PrefixItem item) {
+        final State s = state;
+        final int ord = s.snapshot() == null ? -1 : s.snapshot().find(item.type(), item.entityId());
+        if (ord >= 0 && seen != null) {
+            seen.set(ord);
+            // Bootstrap confirms the snapshot copy as-is: nothing to overlay
+            if (!s.shadowed().get(ord) && sameContent(s.snapshot(), ord, item)) return;
+        }
+        if (ord >= 0) s.shadowed().set(ord);
+        s.overlay().put(new Key(item.type(), item.entityId()), new Entry(item, ++seq));
+    }
+
+    synchronized void delete(SearchEntityType type, String entityId) {
+        final State s = state;
+        final int ord = s.snapshot() == null ? -1 : s.snapshot().find(type, entityId);
+        if (ord >= 0) s.shadowed().set(ord);
+        s.overlay().put(new Key(type, entityId), new Entry(null, ++seq));
+    }
+
+    /** Start tracking which snapshot rows the bootstrap still finds in {@code search_items}. */
+    synchronized void beginReconcile() {
+        final PrefixSnapshot snap = state.snapshot();
+        seen = new Bits(snap == null ? 0 : snap.size());
+    }
+
+    /** Snapshot rows the bootstrap did not see were deleted while the pod was down. */
+    synchronized int endReconcile() {
+        final State s = state;
+        int gone = 0;
+        if (s.snapshot() != null && seen != null) {
+            for (int ord = 0; ord < s.snapshot().size(); ord++) {
+                if (!seen.get(ord) && !s.shadowed().get(ord)) {
+                    s.shadowed().set(ord);
+                    s.overlay().put(new Key(s.snapshot().type(ord), s.snapshot().entityId(ord)), new Entry(null, ++seq));
+                    gone++;
+                }
+            }
+        }
+        seen = null;
+        return gone;
+    }
+
+    // --------------------------- Compaction ---------------------------
+
+    /** Write overlay + live snapshot rows to a new file and swap it in. No-op when the overlay is empty. */
+    void compact() throws IOException {
+        final State before;
+        final long upTo;
+        final List<Entry> folded;
+        synchronized (this) {
+            before = state;
+            if (before.overlay().isEmpty()) return;
+            upTo = seq;
+            folded = new ArrayList<>(before.overlay().values());
+        }
+
+        // Heavy part without the lock: decode live snapshot rows, merge, write, map
+        final List<PrefixItem> items = new ArrayList<>();
+        final PrefixSnapshot old = before.snapshot();
+        if (old != null) {
+            for (int ord = 0; ord < old.size(); ord++) {
+                if (!before.shadowed().get(ord)) items.add(old.item(ord));
+            }
+        }
+        for (Entry e : folded) {
+            if (e.item() != null && e.seq() <= upTo) items.add(e.item());
+        }
+        Files.createDirectories(file.getParent());
+        PrefixSnapshot.write(file, items);
+        final PrefixSnapshot next = PrefixSnapshot.open(file);
+
+        synchronized (this) {
+            // Entries newer than the fold (or replaced since) move to the new overlay
+            final ConcurrentHashMap<Key, Entry> overlay = new ConcurrentHashMap<>();
+            final Bits shadowed = new Bits(next.size());
+            for (Map.Entry<Key, Entry> e : state.overlay().entrySet()) {
+                if (e.getValue().seq() <= upTo) continue;
+                overlay.put(e.getKey(), e.getValue());
+                final int ord = next.find(e.getKey().type(), e.getKey().entityId());
+                if (ord >= 0) shadowed.set(ord);
+            }
+            state = new State(next, shadowed, overlay);
+        }
+    }
+
+    // --------------------------- Query ---------------------------
+
+    /**
+     * Top {@code perGroup} rows per type: every query word must occur in title or subtitle words;
+     * score = sum of best match weights; ties by entity id.
+     */
+    void search(List<String> words, Set<SearchEntityType> types, int perGroup, Sink out) {
+        final State s = state;
+        @SuppressWarnings("unchecked")
+        final PriorityQueue<Hit>[] top = new PriorityQueue[SearchEntityType.COUNT];
+        final Comparator<Hit> worstFirst = worstFirst(s.snapshot());
+        for (SearchEntityType t : types) top[t.ordinal()] = new PriorityQueue<>(perGroup + 1, worstFirst);
+
+        if (s.snapshot() != null && s.snapshot().size() > 0) {
+            searchSnapshot(s, words, top, perGroup);
+        }
+        for (Entry e : s.overlay().values()) {
+            final PrefixItem it = e.item();
+            if (it == null || top[it.type().ordinal()] == null) continue;
+            final float score = PrefixTerms.score(it, words);
+            if (score > 0f) offer(top[it.type().ordinal()], new Hit(score, -1, it), perGroup);
+        }
+
+        for (SearchEntityType t : types) {
+            final PriorityQueue<Hit> q = top[t.ordinal()];
+            final Hit[] sorted = q.toArray(new Hit[0]);
+            Arrays.sort(sorted, worstFirst.reversed());
+            for (Hit h : sorted) {
+                final PrefixItem it = h.item() != null ? h.item() : s.snapshot().item(h.ord());
+                out.accept(new SearchRow(t, it.entityId(), it.title(), it.subtitle(), h.score()));
+            }
+        }
+    }
+
+    /** Receives result rows in group order. */
+    interface Sink {
+        void accept(SearchRow row);
+    }
+
+    private void searchSnapshot(State s, List<String> words, PriorityQueue<Hit>[] top, int perGroup) {
+        final PrefixSnapshot snap = s.snapshot();
+        final Scratch sc = Scratch.get(snap.size());
+        final int base = sc.reserve(words.size());
+        for (int k = 0; k < words.size(); k++) {
+            final int required = base + k;      // matched words 0..k-1 (unused for k = 0)
+            final int stamp = base + k + 1;     // matched words 0..k
+            final boolean first = k == 0;
+            final boolean last = k == words.size() - 1;
+            final IntConsumer visit = posting -> {
+                final int ord = posting >>> 2;
+                if (s.shadowed().get(ord)) return;
+                final int mark = sc.mark[ord];
+                final float w = PrefixTerms.weight(posting);
+                if (mark == stamp) {
+                    // another term/field of the same word: keep the best weight only
+                    if (w > sc.best[ord]) {
+                        sc.total[ord] += w - sc.best[ord];
+                        sc.best[ord] = w;
+                    }
+                } else if (first || mark == required) {
+                    sc.total[ord] = (first ? 0f : sc.total[ord]) + w;
+                    sc.best[ord] = w;
+                    sc.mark[ord] = stamp;
+                    if (last) sc.push(ord);
+                }
+            };
+            snap.forEachPosting(words.get(k).getBytes(StandardCharsets.UTF_8), visit);
+        }
+
+        for (int i = 0; i < sc.candidates; i++) {
+            final int ord = sc.touched[i];
+            final PriorityQueue<Hit> q = top[snap.type(ord).ordinal()];
+            if (q == null) continue;
+            final float score = sc.total[ord];
+            final Hit worst = q.size() < perGroup ? null : q.peek();
+            // Cheap reject before allocating: ordinals ascend with entity id inside a type
+            if (worst != null && worst.item() == null
+                    && (score < worst.score() || (score == worst.score() && ord > worst.ord()))) continue;
+            offer(q, new Hit(score, ord, null), perGroup);
+        }
+    }
+
+    private void offer(PriorityQueue<Hit> q, Hit h, int perGroup) {
+        q.add(h);
+        if (q.size() > perGroup) q.poll();
+    }
+
+    /** A candidate from the snapshot ({@code ord >= 0}) or the overlay ({@code item != null}). */
+    private record Hit(float score, int ord, PrefixItem item) {}
+
+    /** Lower score first; on equal score the higher entity id is worse. */
+    private static Comparator<Hit> worstFirst(PrefixSnapshot snap) {
+        return (a, b) -> {
+            final int c = Float.compare(a.score(), b.score());
+            if (c != 0) return c;
+            if (a.item() == null && b.item() == null) return Integer.compare(b.ord(), a.ord());
+            final String idA = a.item() != null ? a.item().entityId() : snap.entityId(a.ord());
+            final String idB = b.item() != null ? b.item().entityId() : snap.entityId(b.ord());
+            return idB.compareTo(idA);
+        };
+    }
+
+    private static boolean sameContent(PrefixSnapshot snap, int ord, PrefixItem item) {
+        return item.title().equals(snap.title(ord)) && Objects.equals(item.subtitle(), snap.subtitle(ord));
+    }
+
+    // --------------------------- Helpers ---------------------------
+
+    /** Fixed-size bit set safe for concurrent readers and (serialized) writers. */
+    static final class Bits {
+        private final AtomicLongArray words;
+
+        Bits(int size) {
+            this.words = new AtomicLongArray(Math.max(1, (size + 63) >>> 6));
+        }
+
+        boolean get(int i) {
+            return (words.get(i >>> 6) & (1L << i)) != 0;
+        }
+
+        void set(int i) {
+            final int w = i >>> 6;
+            words.set(w, words.get(w) | (1L << i));
+        }
+    }
+
+    /**
+     * Per-thread scoring arrays reused across queries. Stamps instead of clearing: a slot belongs to the
+     * current query only if its mark is within the range reserved for it.
+     */
+    private static final class Scratch {
+        private static final ThreadLocal<Scratch> LOCAL = ThreadLocal.withInitial(Scratch::new);
+
+        int[] mark = new int[0];
+        float[] total = new float[0];
+        float[] best = new float[0];
+        int[] touched = new int[16];
+        int candidates;
+        private int next = 1;
+
+        static Scratch get(int size) {
+            final Scratch s = LOCAL.get();
+            if (s.mark.length < size) {
+                s.mark = new int[size];
+                s.total = new float[size];
+                s.best = new float[size];
+                s.next = 1;
+            }
+            s.candidates = 0;
+            return s;
+        }
+
+        /** Reserve {@code words + 1} fresh stamp values; returns the first one. */
+        int reserve(int words) {
+            if (next > Integer.MAX_VALUE - words - 2) {
+                Arrays.fill(mark, 0);
+                next = 1;
+            }
+            final int base = next;
+            next += words + 1;
+            return base;
+        }
+
+        void push(int ord) {
+            if (candidates == touched.length) touched = Arrays.copyOf(touched, candidates * 2);
+            touched[candidates++] = ord;
+        }
+    }
+}
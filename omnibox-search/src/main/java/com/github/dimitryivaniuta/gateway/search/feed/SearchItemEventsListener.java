@@ -0,0 +1,124 @@
+package com.github.dimitryivaniuta.gateway.search.feed;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumes the indexer's source topics and applies them to the local engines through {@link SearchItemFeed}.
+ * <p>
+ * Mirrors the projection rules of the indexer consumers ({@code ContactEventsConsumer} and friends in
+ * indexer-search) so local engines hold exactly what {@code search_items} holds: upsert on
+ * {@code *Created/*Updated} with {@code visible=true}, delete on {@code *Deleted} or {@code visible=false},
+ * listing subtitle = subtitle + mlsId.
+ * <p>
+ * Every pod needs every event, so each instance consumes in a group of its own. The group id is stable per
+ * host ({@code omnibox-feed-$HOSTNAME}; set {@code app.omnibox.feed.group-id} where host names change on
+ * every start), so restarts do not leave abandoned groups on the broker.
+ * <p>
+ * History comes from {@link SearchItemsBootstrap}, which scans {@code search_items} some time after the
+ * partitions are assigned. So that no event falls between that scan and the consumer position, the first
+ * assignment of every partition seeks to a timestamp taken when this listener was created (before the scan),
+ * minus {@code app.omnibox.feed.replay-window} to cover events the indexer had not written yet. Replaying is
+ * safe: events are applied in order per key, so the last one wins, and {@link SearchItemFeed} keeps an event
+ * over the older bootstrap copy of the same row.
+ */
+@Component
+@ConditionalOnProperty(name = "app.omnibox.feed.enabled", havingValue = "true")
+public class SearchItemEventsListener implements ConsumerSeekAware {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchItemEventsListener.class);
+
+    static final String CONTACT_TOPIC = "contact.events.v1";
+    static final String LISTING_TOPIC = "listing.events.v1";
+    static final String TRANSACTION_TOPIC = "transaction.events.v1";
+
+    private final ObjectMapper om;
+    private final SearchItemFeed feed;
+    /** Epoch millis the first assignment of each partition seeks to. */
+    private final long replayFrom;
+    private final Set<TopicPartition> positioned = ConcurrentHashMap.newKeySet();
+
+    public SearchItemEventsListener(ObjectMapper om,
+                                    SearchItemFeed feed,
+                                    @Value("${app.omnibox.feed.replay-window:5m}") Duration replayWindow) {
+        this.om = om;
+        this.feed = feed;
+        this.replayFrom = System.currentTimeMillis() - replayWindow.toMillis();
+    }
+
+    /**
+     * Positions every partition seen for the first time at {@link #replayFrom}; later assignments of the same
+     * partition (rebalance within this process) continue from the committed offset.
+     */
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        for (TopicPartition tp : assignments.keySet()) {
+            if (positioned.add(tp)) callback.seekToTimestamp(tp.topic(), tp.partition(), replayFrom);
+        }
+    }
+
+    @KafkaListener(
+            topics = {CONTACT_TOPIC, LISTING_TOPIC, TRANSACTION_TOPIC},
+            groupId = "${app.omnibox.feed.group-id:omnibox-feed-${HOSTNAME:local}}")
+    public void onMessage(ConsumerRecord<String, String> record) {
+        try {
+            switch (record.topic()) {
+                case CONTACT_TOPIC -> apply(record, SearchEntityType.CONTACT, "contactId", "CONTACT");
+                case LISTING_TOPIC -> apply(record, SearchEntityType.LISTING, "listingId", "LISTING");
+                case TRANSACTION_TOPIC -> apply(record, SearchEntityType.TRANSACTION, "transactionId", "TRANSACTION");
+                default -> log.info("Ignored record from unexpected topic {}", record.topic());
+            }
+        } catch (Exception e) {
+            // Defensive: never throw out of the listener; log and continue
+            log.error("Failed to apply search event. topic={}, key={}, error={}",
+                    record.topic(), record.key(), e.toString(), e);
+        }
+    }
+
+    private void apply(ConsumerRecord<String, String> record, SearchEntityType entityType, String idField,
+                       String eventPrefix) throws Exception {
+        final JsonNode root = om.readTree(record.value());
+        final String type = textOrEmpty(root, "type").toUpperCase(Locale.ROOT);
+        final String tenantId = textOrEmpty(root, "tenantId");
+        final String entityId = textOrEmpty(root, idField);
+        if (tenantId.isBlank() || entityId.isBlank()) return;
+
+        final boolean visible = root.hasNonNull("visible") && root.get("visible").asBoolean();
+        if (type.equals(eventPrefix + "CREATED") || type.equals(eventPrefix + "UPDATED")) {
+            if (!visible) {
+                feed.delete(tenantId, entityType, entityId);
+                return;
+            }
+            final String title = textOrEmpty(root, "title");
+            if (title.isBlank()) return;
+            String subtitle = textOrEmpty(root, "subtitle");
+            if (entityType == SearchEntityType.LISTING) subtitle = subtitle + textOrEmpty(root, "mlsId");
+            feed.upsert(tenantId, entityType, entityId, title, subtitle.isBlank() ? null : subtitle);
+        } else if (type.equals(eventPrefix + "DELETED")) {
+            feed.delete(tenantId, entityType, entityId);
+        }
+    }
+
+    private static String textOrEmpty(JsonNode node, String field) {
+        if (node == null || !node.has(field) || node.get(field).isNull()) {
+            return "";
+        }
+        final String v = node.get(field).asText("");
+        return v == null ? "" : v.trim();
+    }
+}
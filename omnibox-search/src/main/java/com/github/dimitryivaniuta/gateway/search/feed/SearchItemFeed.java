@@ -0,0 +1,111 @@
+package com.github.dimitryivaniuta.gateway.search.feed;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fans {@code search_items} changes out to every {@link SearchItemSink}.
+ * <p>
+ * Two sources feed it: {@link SearchItemEventsListener} (live indexer events) and {@link SearchItemsBootstrap}
+ * (one scan of {@code search_items} at startup). The listener starts first, so an event may overtake the
+ * bootstrap row for the same item. From construction (the listener needs this bean, so no event can come
+ * earlier) until the bootstrap ends, keys touched by events are remembered and the (older) bootstrap copy of
+ * those keys is skipped. Deletes are covered too: a deleted key is touched.
+ * <p>
+ * A local engine without the feed never loads (or never sees a change), so enabling one while
+ * {@code app.omnibox.feed.enabled} is off fails startup instead of leaving every request on Postgres.
+ * <p>
+ * Metrics: {@code omnibox.feed.changes{source=event|bootstrap,op=upsert|delete|skipped}}.
+ */
+@Component
+public class SearchItemFeed {
+
+    record Key(String tenant, SearchEntityType type, String entityId) {}
+
+    private final List<SearchItemSink> sinks;
+    private final MeterRegistry metrics;
+
+    private final Set<Key> touchedBeforeBootstrapEnd = ConcurrentHashMap.newKeySet();
+    /** Until {@link #endBootstrap()}; without sinks there is no bootstrap and nothing to remember. */
+    private volatile boolean bootstrapping;
+
+    /** Serializes an event and the bootstrap copy of the same key (check-then-apply). */
+    private final Object[] stripes = new Object[64];
+
+    public SearchItemFeed(ObjectProvider<SearchItemSink> sinks,
+                          MeterRegistry metrics,
+                          @Value("${app.omnibox.feed.enabled:false}") boolean enabled) {
+        this.sinks = sinks.orderedStream().toList();
+        this.metrics = metrics;
+        for (int i = 0; i < stripes.length; i++) stripes[i] = new Object();
+        this.bootstrapping = !this.sinks.isEmpty();
+        if (!enabled && !this.sinks.isEmpty()) {
+            final List<String> names = this.sinks.stream().map(SearchItemSink::name).toList();
+            throw new IllegalStateException("Local omnibox engines " + names
+                    + " are enabled but app.omnibox.feed.enabled is false; they would never be loaded");
+        }
+    }
+
+    /** {@code true} when at least one local engine wants the feed. */
+    public boolean hasSinks() {
+        return !sinks.isEmpty();
+    }
+
+    // --------------------------- Live events ---------------------------
+
+    public void upsert(String tenant, SearchEntityType type, String entityId, String title, String subtitle) {
+        if (bootstrapping) {
+            final Key key = new Key(tenant, type, entityId);
+            synchronized (stripe(key)) {
+                touchedBeforeBootstrapEnd.add(key);
+                for (SearchItemSink s : sinks) s.upsert(tenant, type, entityId, title, subtitle);
+            }
+        } else {
+            for (SearchItemSink s : sinks) s.upsert(tenant, type, entityId, title, subtitle);
+        }
+        metrics.counter("omnibox.feed.changes", "source", "event", "op", "upsert").increment();
+    }
+
+    public void delete(String tenant, SearchEntityType type, String entityId) {
+        if (bootstrapping) {
+            final Key key = new Key(tenant, type, entityId);
+            synchronized (stripe(key)) {
+                touchedBeforeBootstrapEnd.add(key);
+                for (SearchItemSink s : sinks) s.delete(tenant, type, entityId);
+            }
+        } else {
+            for (SearchItemSink s : sinks) s.delete(tenant, type, entityId);
+        }
+        metrics.counter("omnibox.feed.changes", "source", "event", "op", "delete").increment();
+    }
+
+    // --------------------------- Bootstrap ---------------------------
+
+    void bootstrapRow(String tenant, SearchEntityType type, String entityId, String title, String subtitle) {
+        final Key key = new Key(tenant, type, entityId);
+        synchronized (stripe(key)) {
+            if (touchedBeforeBootstrapEnd.contains(key)) {
+                metrics.counter("omnibox.feed.changes", "source", "bootstrap", "op", "skipped").increment();
+                return;
+            }
+            for (SearchItemSink s : sinks) s.upsert(tenant, type, entityId, title, subtitle);
+        }
+        metrics.counter("omnibox.feed.changes", "source", "bootstrap", "op", "upsert").increment();
+    }
+
+    private Object stripe(Key key) {
+        return stripes[Math.floorMod(key.hashCode(), stripes.length)];
+    }
+
+    void endBootstrap() {
+        bootstrapping = false;
+        touchedBeforeBootstrapEnd.clear();
+        for (SearchItemSink s : sinks) s.bootstrapped();
+    }
+}
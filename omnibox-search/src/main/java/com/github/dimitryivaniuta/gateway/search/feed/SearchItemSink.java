@@ -0,0 +1,23 @@
+package com.github.dimitryivaniuta.gateway.search.feed;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+
+/**
+ * Local copy of {@code search_items} kept by an in-process engine.
+ * <p>
+ * Fed by {@link SearchItemFeed} with the same changes the indexer writes to Postgres: first a bootstrap
+ * scan of {@code search_items}, then the {@code *.events.v1} topics. Calls may come from several threads
+ * (Kafka listener threads and the bootstrap runner) and must be idempotent.
+ */
+public interface SearchItemSink {
+
+    /** Name used in logs and metric tags. */
+    String name();
+
+    void upsert(String tenant, SearchEntityType type, String entityId, String title, String subtitle);
+
+    void delete(String tenant, SearchEntityType type, String entityId);
+
+    /** Every row that existed at startup has been delivered; the sink may start serving. */
+    default void bootstrapped() {}
+}
@@ -0,0 +1,63 @@
+package com.github.dimitryivaniuta.gateway.search.feed;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Loads the current {@code search_items} into the local engines once the event listener is running.
+ * <p>
+ * Streams the table through a server-side cursor (fetch size, inside a read-only transaction) so the
+ * full table is never materialized on the heap.
+ */
+@Component
+@ConditionalOnProperty(name = "app.omnibox.feed.enabled", havingValue = "true")
+public class SearchItemsBootstrap implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchItemsBootstrap.class);
+
+    private static final int FETCH_SIZE = 5_000;
+
+    private static final String SQL = """
+            select tenant_id, entity_type, entity_id, title, subtitle
+            from search_items
+            """;
+
+    private final SearchItemFeed feed;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    public SearchItemsBootstrap(SearchItemFeed feed, JdbcTemplate jdbc, TransactionTemplate tx) {
+        this.feed = feed;
+        this.jdbc = new JdbcTemplate(jdbc.getDataSource());
+        this.jdbc.setFetchSize(FETCH_SIZE);
+        this.tx = tx;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!feed.hasSinks()) {
+            log.info("search_items feed enabled but no local engine is active; skipping bootstrap");
+            return;
+        }
+        final long start = System.nanoTime();
+        final long[] rows = {0};
+        tx.executeWithoutResult(status -> jdbc.query(SQL, rs -> {
+            final SearchEntityType type = SearchEntityType.fromDb(rs.getString(2));
+            if (type == null) return;
+            feed.bootstrapRow(rs.getString(1), type, rs.getString(3), rs.getString(4), rs.getString(5));
+            rows[0]++;
+        }));
+        // Only on success: a failed bootstrap fails startup instead of serving a partial index
+        feed.endBootstrap();
+        log.info("Bootstrapped local search engines from search_items: rows={}, took={}ms",
+                rows[0], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+}
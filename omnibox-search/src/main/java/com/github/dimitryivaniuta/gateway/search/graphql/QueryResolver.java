@@ -1,14 +1,23 @@
 package com.github.dimitryivaniuta.gateway.search.graphql;
 
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.OmniboxGroup;
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.OmniboxPage;
 import com.github.dimitryivaniuta.gateway.search.graphql.dto.OmniboxResult;
+import com.github.dimitryivaniuta.gateway.search.repository.QueryBudget;
 import com.github.dimitryivaniuta.gateway.search.service.OmniboxService;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import java.util.List;
 import lombok.RequiredArgsConstructor;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.ContextValue;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
 import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
 
 @Controller
 @RequiredArgsConstructor
@@ -18,9 +27,42 @@ public class QueryResolver {
 
     @QueryMapping
     public OmniboxResult omnibox(@Argument @NotBlank String q,
-                                 @Argument(name = "limitPerGroup") @Min(1) @Max(20) Integer limit) {
+                                 @Argument(name = "limitPerGroup") @Min(1) @Max(20) Integer limit,
+                                 @ContextValue(name = QueryBudget.CONTEXT_KEY, required = false) QueryBudget budget) {
         int l = (limit == null ? 5 : limit);
-        return service.search(q, l);
+        return service.search(q, l, budget);
+    }
+
+    /** Several omnibox queries in one round trip; one result per input, in input order. */
+    @QueryMapping
+    public List<OmniboxResult> omniboxBatch(@Argument @NotEmpty @Size(max = 50) List<String> queries,
+                                           @Argument(name = "limitPerGroup") @Min(1) @Max(20) Integer limit,
+                                           @ContextValue(name = QueryBudget.CONTEXT_KEY, required = false) QueryBudget budget) {
+        int l = (limit == null ? 5 : limit);
+        return service.searchBatch(queries, l, budget);
+    }
+
+    /**
+     * Streamed omnibox: one {@link OmniboxGroup} per entity type, pushed as each group is ready
+     * (SSE: {@code Accept: text/event-stream} on the GraphQL endpoint).
+     */
+    @SubscriptionMapping
+    public Flux<OmniboxGroup> omniboxStream(@Argument @NotBlank String q,
+                                            @Argument(name = "limitPerGroup") @Min(1) @Max(20) Integer limit,
+                                            @ContextValue(name = QueryBudget.CONTEXT_KEY, required = false) QueryBudget budget) {
+        int l = (limit == null ? 5 : limit);
+        return service.stream(q, l, budget);
+    }
+
+    /** Next page of one group, after a cursor from {@code nextCursors} or a previous page. */
+    @QueryMapping
+    public OmniboxPage omniboxMore(@Argument @NotBlank String q,
+                                   @Argument @NotBlank String type,
+                                   @Argument @NotBlank String after,
+                                   @Argument @Min(1) @Max(50) Integer first,
+                                   @ContextValue(name = QueryBudget.CONTEXT_KEY, required = false) QueryBudget budget) {
+        int n = (first == null ? 10 : first);
+        return service.more(q, type, after, n, budget);
     }
 
 }
\ No newline at end of file
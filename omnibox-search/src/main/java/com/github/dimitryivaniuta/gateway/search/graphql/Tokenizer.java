@@ -1,26 +1,30 @@
 package com.github.dimitryivaniuta.gateway.search.graphql;
 
-import java.util.Arrays;
+import com.github.dimitryivaniuta.gateway.text.TextAnalyzer;
 import java.util.List;
 
+/**
+ * Query-side analysis. Delegates to the shared {@link TextAnalyzer}, which the indexer also uses to write
+ * {@code search_items.title_norm/subtitle_norm}, so query words and stored words are folded the same way.
+ */
 public final class Tokenizer {
     private Tokenizer() {}
 
+    /** Lowercase, accent-folded words joined by single spaces: {@code "  Zoë  O'Brien"} -> {@code "zoe o brien"}. */
     public static String normalize(String q) {
-        return q == null ? "" : q.strip().replaceAll("\\s+", " ");
+        return TextAnalyzer.normalize(q);
     }
 
     public static List<String> tokens(String q) {
-        var n = normalize(q);
-        if (n.isEmpty()) return List.of();
-        return Arrays.stream(n.split(" "))
-                .filter(t -> !t.isBlank())
-                .toList();
+        return TextAnalyzer.tokens(q);
     }
 
-    /** Build prefix tsquery like: sam gal -> 'sam:* & gal:*' */
+    /**
+     * Build prefix tsquery like: sam gal -> 'sam:* & gal:*'. Tokens from {@link #tokens} hold only letters and
+     * digits, so no tsquery operator can leak in from user input.
+     */
     public static String toPrefixTsQuery(List<String> toks) {
         if (toks.isEmpty()) return "";
         return String.join(" & ", toks.stream().map(t -> t + ":*").toList());
     }
-}
\ No newline at end of file
+}
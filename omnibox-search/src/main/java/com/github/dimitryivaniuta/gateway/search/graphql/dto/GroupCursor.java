@@ -0,0 +1,4 @@
+package com.github.dimitryivaniuta.gateway.search.graphql.dto;
+
+/** Where the next page of one group starts; pass {@code after} to {@code omniboxMore}. */
+public record GroupCursor(String group, String after) {}
@@ -0,0 +1,12 @@
+package com.github.dimitryivaniuta.gateway.search.graphql.dto;
+
+import java.util.List;
+
+/**
+ * One group of a streamed omnibox answer.
+ *
+ * @param group      entity type label, e.g. {@code CONTACT}
+ * @param nextCursor {@code omniboxMore} cursor when the group filled {@code limitPerGroup}
+ * @param missing    the group did not answer within the request budget
+ */
+public record OmniboxGroup(String group, List<SearchHit> hits, String nextCursor, boolean missing) {}
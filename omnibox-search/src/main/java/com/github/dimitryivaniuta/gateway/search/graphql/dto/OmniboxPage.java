@@ -0,0 +1,9 @@
+package com.github.dimitryivaniuta.gateway.search.graphql.dto;
+
+import java.util.List;
+
+/** One page of a single omnibox group; {@code endCursor} is {@code null} when there is nothing more. */
+public record OmniboxPage(List<SearchHit> hits, String endCursor, boolean hasMore) {
+
+    public static final OmniboxPage EMPTY = new OmniboxPage(List.of(), null, false);
+}
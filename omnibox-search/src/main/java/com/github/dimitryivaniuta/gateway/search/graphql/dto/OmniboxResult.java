@@ -11,5 +11,9 @@ public record OmniboxResult(
         @Singular("referral") List<SearchHitReferral> referrals,
         @Singular("transaction") List<SearchHitTransaction> transactions,
         @Singular("product") List<SearchHitProduct> products,
-        @Singular("mailing") List<SearchHitMailing> mailings
+        @Singular("mailing") List<SearchHitMailing> mailings,
+        /* Groups that did not answer within the request deadline (fan-out mode); empty when complete. */
+        @Singular("missingGroup") List<String> missingGroups,
+        /* Groups that filled limitPerGroup and may have more; each cursor feeds omniboxMore. */
+        @Singular("nextCursor") List<GroupCursor> nextCursors
 ) {}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.github.dimitryivaniuta.gateway.search.lb;
+
+/**
+ * A {@link LoadBalancer} whose membership changes at runtime: instances come and go (autoscaling, health
+ * checks), carry weights, and every change is versioned.
+ * <p>
+ * Thread-safety: the operations here MUST be safe concurrently with each other and with the reads and picks of
+ * {@link LoadBalancer}.
+ */
+public interface DynamicLoadBalancer extends LoadBalancer {
+
+    /**
+     * Register, or update the weight of an already registered address. Unlike {@link #register(String)} this
+     * is idempotent, for instances that re-announce themselves (autoscaled replicas, heartbeats).
+     *
+     * @param weight share of the traffic relative to the other instances; {@code 0} takes no new requests
+     * @return {@code true} if the address was added, {@code false} if it was already registered
+     * @throws IllegalArgumentException  if address is null/blank or weight is negative or not finite
+     * @throws CapacityExceededException if a new address does not fit
+     */
+    boolean registerOrUpdate(String address, double weight);
+
+    /**
+     * Remove an instance. Requests already routed to it are unaffected; their {@code release} is ignored.
+     *
+     * @return {@code true} if the address was registered
+     */
+    boolean deregister(String address);
+
+    /**
+     * Change an instance's weight at runtime, e.g. from its measured capacity.
+     *
+     * @throws IllegalArgumentException if the address is not registered or the weight is negative or not finite
+     */
+    void setWeight(String address, double weight);
+
+    /**
+     * Registered addresses plus a version that changes whenever they or their weights do, so callers can
+     * cache anything derived from the membership and cheaply tell when to rebuild it.
+     */
+    Membership membership();
+}
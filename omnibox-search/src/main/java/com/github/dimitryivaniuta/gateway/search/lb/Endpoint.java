@@ -0,0 +1,167 @@
+package com.github.dimitryivaniuta.gateway.search.lb;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A registered instance as seen by a {@link SelectionStrategy}: its address and weight plus the number of
+ * requests handed to it by {@link LoadBalancer#choose(Object)} and not yet
+ * {@linkplain LoadBalancer#release released}.
+ * <p>
+ * Also carries the instance's health: the verdict of the active health check and, from reported call
+ * outcomes, the passive outlier state (consecutive failures, latency average, ejection and its back-off
+ * level). Strategies only ever see instances that are in rotation.
+ * <p>
+ * One object per address for as long as it stays registered, so the state survives registry changes.
+ */
+public final class Endpoint {
+
+    /** Weight of the newest sample in the latency average. */
+    private static final double ALPHA = 0.2;
+
+    private final String address;
+    private final long addressHash;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile double weight;
+
+    private volatile boolean healthy = true;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong latencyBits = new AtomicLong(Double.doubleToRawLongBits(0d));
+
+    /** {@code System.nanoTime()} at which the ejection ends; meaningful only while {@link #ejected}. */
+    private volatile long ejectedUntil;
+    private volatile boolean ejected;
+    private int ejections;
+    private long lastReadmitNanos;
+
+    Endpoint(String address, double weight) {
+        this.address = address;
+        this.addressHash = RendezvousStrategy.hash(address);
+        this.weight = checkWeight(weight);
+    }
+
+    public String address() {
+        return address;
+    }
+
+    public int outstanding() {
+        return outstanding.get();
+    }
+
+    /** Share of the traffic relative to the other instances; {@code 0} takes no new requests. */
+    public double weight() {
+        return weight;
+    }
+
+    /** Verdict of the last active health check; {@code true} until a check says otherwise. */
+    public boolean healthy() {
+        return healthy;
+    }
+
+    /** Temporarily out of rotation because of observed errors or latency. */
+    public boolean ejected() {
+        return ejected;
+    }
+
+    /** Average reported call latency in nanoseconds; 0 before the first report. */
+    public double latencyNanos() {
+        return Double.longBitsToDouble(latencyBits.get());
+    }
+
+    boolean inRotation() {
+        return healthy && !ejected;
+    }
+
+    long addressHash() {
+        return addressHash;
+    }
+
+    void weight(double weight) {
+        this.weight = checkWeight(weight);
+    }
+
+    static double checkWeight(double weight) {
+        if (!(weight >= 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("weight must be a finite number >= 0: " + weight);
+        }
+        return weight;
+    }
+
+    void acquired() {
+        outstanding.incrementAndGet();
+    }
+
+    void released() {
+        // Never below zero, even if a caller releases twice
+        outstanding.getAndUpdate(n -> n > 0 ? n - 1 : 0);
+    }
+
+    /**
+     * @return {@code true} when the health verdict changed
+     */
+    boolean health(boolean healthy) {
+        if (this.healthy == healthy) return false;
+        this.healthy = healthy;
+        return true;
+    }
+
+    /**
+     * Records one call outcome.
+     *
+     * @return consecutive failures so far (0 after a success)
+     */
+    int outcome(long latencyNanos, boolean success) {
+        latencyBits.updateAndGet(bits -> {
+            final double prev = Double.longBitsToDouble(bits);
+            final double next = prev == 0d ? latencyNanos : prev + ALPHA * (latencyNanos - prev);
+            return Double.doubleToRawLongBits(next);
+        });
+        if (success) {
+            consecutiveFailures.set(0);
+            return 0;
+        }
+        return consecutiveFailures.incrementAndGet();
+    }
+
+    /**
+     * Takes the instance out of rotation for {@code base * 2^level}, capped at {@code max}. The level grows
+     * with every ejection and resets once the instance has stayed in rotation for {@code max}.
+     *
+     * @return the ejection time, or {@code null} if the instance was already ejected
+     */
+    synchronized Long eject(long nowNanos, long baseNanos, long maxNanos) {
+        if (ejected) return null;
+        if (ejections > 0 && nowNanos - lastReadmitNanos >= maxNanos) ejections = 0;
+        long duration = Math.min(baseNanos, maxNanos);
+        for (int level = 0; level < ejections && duration < maxNanos; level++) {
+            duration = Math.min(maxNanos, duration * 2);
+        }
+        ejections++;
+        ejectedUntil = nowNanos + duration;
+        consecutiveFailures.set(0);
+        ejected = true;
+        return duration;
+    }
+
+    /** Ejection end, for the registry's next readmission check. */
+    long ejectedUntil() {
+        return ejectedUntil;
+    }
+
+    /**
+     * @return {@code true} if the instance was ejected and its time is up; it is back in rotation
+     */
+    synchronized boolean readmit(long nowNanos) {
+        if (!ejected || nowNanos - ejectedUntil < 0) return false;
+        ejected = false;
+        lastReadmitNanos = nowNanos;
+        // Judge the readmitted instance on fresh calls, not on the ones that got it ejected
+        latencyBits.set(Double.doubleToRawLongBits(0d));
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return address;
+    }
+}
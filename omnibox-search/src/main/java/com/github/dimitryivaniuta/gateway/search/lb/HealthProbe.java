@@ -0,0 +1,35 @@
+package com.github.dimitryivaniuta.gateway.search.lb;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Active health check of one instance, run by {@link LoadBalancerHealthChecker}.
+ * <p>
+ * Returning {@code false} or throwing both count as a failed check. Tests plug in a local stub.
+ */
+@FunctionalInterface
+public interface HealthProbe {
+
+    boolean isHealthy(String address) throws Exception;
+
+    /**
+     * {@code GET address + path}; healthy on a 2xx answer within {@code timeout}.
+     *
+     * @param path e.g. {@code "/actuator/health/readiness"}
+     */
+    static HealthProbe http(String path, Duration timeout) {
+        final HttpClient client = HttpClient.newBuilder().connectTimeout(timeout).build();
+        return address -> {
+            final HttpRequest request = HttpRequest.newBuilder(URI.create(address + path))
+                    .timeout(timeout)
+                    .GET()
+                    .build();
+            final int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            return status >= 200 && status < 300;
+        };
+    }
+}
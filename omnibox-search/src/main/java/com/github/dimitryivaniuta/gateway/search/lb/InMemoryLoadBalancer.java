@@ -2,71 +2,379 @@ package com.github.dimitryivaniuta.gateway.search.lb;
 
 import org.springframework.util.StringUtils;
 
-import java.util.LinkedHashSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 
 /**
  * Thread-safe in-memory LoadBalancer implementation.
  * Guarantees:
- *  - preserves insertion order (LinkedHashSet)
+ *  - preserves insertion order
  *  - enforces uniqueness
- *  - enforces max capacity = 10
+ *  - enforces a capacity, MAX_CAPACITY = 10 unless built with another one
+ * <p>
+ * The registry is an immutable {@link Snapshot} behind an {@link AtomicReference}: reads
+ * ({@link #getInstances()}, {@link #membership()}, {@link #size()}, {@link #choose(Object)}) are one volatile
+ * load and never copy or block; {@link #register(String)}, {@link #deregister(String)} and
+ * {@link #setWeight(String, double)} build the next snapshot and install it with a CAS, retrying if another
+ * writer won. Membership changes are rare and the registry small, so copying on write is cheap. Each of those
+ * writes bumps the {@link Membership#version() version}.
+ * <p>
+ * Instances are picked by a {@link SelectionStrategy} (round-robin by default) among those in rotation: healthy
+ * per the last {@linkplain #reportHealth active check} and not ejected by {@link OutlierDetection}. The snapshot
+ * carries that list too and is rebuilt whenever an instance enters or leaves rotation; ejections end on their
+ * own, checked on the next {@code choose}. If no instance is in rotation, all of them are used rather than
+ * none.
  */
-public class InMemoryLoadBalancer implements LoadBalancer {
+public class InMemoryLoadBalancer implements DynamicLoadBalancer {
 
     /**
-     * Hard limit required by spec.
+     * Default capacity, the limit required by the original spec.
      */
     public static final int MAX_CAPACITY = 10;
 
-    // LinkedHashSet -> predictable iteration order + uniqueness.
-    private final Set<String> addresses = new LinkedHashSet<>();
+    private final AtomicReference<Snapshot> registry = new AtomicReference<>(Snapshot.EMPTY);
 
-    // ReadWriteLock -> concurrent reads, exclusive writes.
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+    private final int capacity;
+    private final SelectionStrategy strategy;
+    private final OutlierDetection outliers;
+    private final LoadBalancerListener listener;
+    private final LongSupplier nanoClock;
+
+    public InMemoryLoadBalancer() {
+        this(builder());
+    }
+
+    public InMemoryLoadBalancer(SelectionStrategy strategy) {
+        this(builder().strategy(strategy));
+    }
+
+    public InMemoryLoadBalancer(SelectionStrategy strategy, OutlierDetection outliers, LoadBalancerListener listener) {
+        this(builder().strategy(strategy).outlierDetection(outliers).listener(listener));
+    }
+
+    private InMemoryLoadBalancer(Builder builder) {
+        if (builder.capacity < 1) throw new IllegalArgumentException("capacity must be >= 1");
+        this.capacity = builder.capacity;
+        this.strategy = Objects.requireNonNull(builder.strategy, "strategy");
+        this.outliers = Objects.requireNonNull(builder.outliers, "outliers");
+        this.listener = Objects.requireNonNull(builder.listener, "listener");
+        this.nanoClock = builder.nanoClock;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
 
     @Override
     public void register(String address) {
+        register(address, DEFAULT_WEIGHT, false);
+    }
+
+    @Override
+    public boolean registerOrUpdate(String address, double weight) {
+        return register(address, weight, true);
+    }
+
+    private boolean register(String address, double weight, boolean update) {
         if (!StringUtils.hasText(address)) {
             throw new IllegalArgumentException("address must not be null/blank");
         }
 
-        lock.writeLock().lock();
-        try {
-            if (addresses.contains(address)) {
-                throw new DuplicateAddressException(address);
+        final Endpoint endpoint = new Endpoint(address, weight);
+        boolean reweighted = false;
+        while (true) {
+            final Snapshot current = registry.get();
+            final Endpoint existing = current.byAddress.get(address);
+            if (existing != null) {
+                if (!update) throw new DuplicateAddressException(address);
+                // Reweight the endpoint of this snapshot: if a deregister wins meanwhile, the CAS fails and the
+                // retry registers the address again instead of failing the lookup
+                if (existing.weight() != weight) {
+                    existing.weight(weight);
+                    reweighted = true;
+                }
+                if (!reweighted || registry.compareAndSet(current, current.reversioned())) return false;
+                continue;
             }
 
-            if (addresses.size() >= MAX_CAPACITY) {
-                throw new CapacityExceededException(MAX_CAPACITY);
+            if (current.endpoints.size() >= capacity) {
+                throw new CapacityExceededException(capacity);
             }
 
-            addresses.add(address);
-        } finally {
-            lock.writeLock().unlock();
+            if (registry.compareAndSet(current, current.with(endpoint))) {
+                listener.onRegistered(endpoint);
+                return true;
+            }
         }
     }
 
     @Override
-    public List<String> getInstances() {
-        lock.readLock().lock();
-        try {
-            // snapshot copy -> caller cannot mutate our internal state
-            return List.copyOf(addresses);
-        } finally {
-            lock.readLock().unlock();
+    public boolean deregister(String address) {
+        if (address == null) return false;
+        while (true) {
+            final Snapshot current = registry.get();
+            final Endpoint endpoint = current.byAddress.get(address);
+            if (endpoint == null) return false;
+            if (registry.compareAndSet(current, current.without(endpoint))) {
+                listener.onDeregistered(endpoint);
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void setWeight(String address, double weight) {
+        Endpoint.checkWeight(weight);
+        boolean changed = false;
+        // Bump after the write: whoever reads the new version also sees the new weight
+        while (true) {
+            final Snapshot current = registry.get();
+            final Endpoint endpoint = address == null ? null : current.byAddress.get(address);
+            if (endpoint == null) throw new IllegalArgumentException("Address not registered: " + address);
+            if (endpoint.weight() != weight) {
+                endpoint.weight(weight);
+                changed = true;
+            }
+            if (!changed || registry.compareAndSet(current, current.reversioned())) return;
         }
     }
 
+    @Override
+    public Membership membership() {
+        return registry.get().membership;
+    }
+
+    @Override
+    public List<String> getInstances() {
+        // already immutable -> no copy
+        return registry.get().membership.addresses();
+    }
+
     @Override
     public int size() {
-        lock.readLock().lock();
-        try {
-            return addresses.size();
-        } finally {
-            lock.readLock().unlock();
+        return registry.get().endpoints.size();
+    }
+
+    @Override
+    public Optional<String> choose(Object key) {
+        Snapshot snapshot = registry.get();
+        if (snapshot.endpoints.isEmpty()) return Optional.empty();
+        if (snapshot.anyEjected && nanoClock.getAsLong() - snapshot.nextReadmitNanos >= 0) {
+            snapshot = readmitDue();
+        }
+        final List<Endpoint> candidates = snapshot.inRotation.isEmpty() ? snapshot.endpoints : snapshot.inRotation;
+        final Endpoint chosen = strategy.select(candidates, key);
+        chosen.acquired();
+        return Optional.of(chosen.address());
+    }
+
+    @Override
+    public void release(String address) {
+        final Endpoint endpoint = endpoint(address);
+        if (endpoint != null) endpoint.released();
+    }
+
+    @Override
+    public void release(String address, Duration latency, boolean success) {
+        final Endpoint endpoint = endpoint(address);
+        if (endpoint == null) return;
+        endpoint.released();
+        final int failures = endpoint.outcome(latency.toNanos(), success);
+        if (!outliers.enabled() || endpoint.ejected()) return;
+
+        if (outliers.consecutiveFailures() > 0 && failures >= outliers.consecutiveFailures()) {
+            eject(endpoint, "errors");
+        } else if (isLatencyOutlier(endpoint)) {
+            eject(endpoint, "latency");
+        }
+    }
+
+    @Override
+    public void reportHealth(String address, boolean healthy) {
+        final Endpoint endpoint = endpoint(address);
+        if (endpoint != null && endpoint.health(healthy)) {
+            refresh();
+            listener.onHealthChanged(endpoint, healthy);
+        }
+    }
+
+    private Endpoint endpoint(String address) {
+        return address == null ? null : registry.get().byAddress.get(address);
+    }
+
+    private boolean isLatencyOutlier(Endpoint endpoint) {
+        if (outliers.latencyFactor() <= 0) return false;
+        final double latency = endpoint.latencyNanos();
+        if (latency <= outliers.latencyFloor().toNanos()) return false;
+
+        final List<Endpoint> peers = registry.get().inRotation;
+        final double[] latencies = new double[peers.size()];
+        int n = 0;
+        for (Endpoint peer : peers) {
+            if (peer.latencyNanos() > 0) latencies[n++] = peer.latencyNanos();
+        }
+        if (n < OutlierDetection.MIN_LATENCY_PEERS) return false;
+        Arrays.sort(latencies, 0, n);
+        final double median = n % 2 == 1 ? latencies[n / 2] : (latencies[n / 2 - 1] + latencies[n / 2]) / 2;
+        return latency > outliers.latencyFactor() * median;
+    }
+
+    private void eject(Endpoint endpoint, String reason) {
+        final Snapshot snapshot = registry.get();
+        long ejected = 0;
+        for (Endpoint e : snapshot.endpoints) {
+            if (e.ejected()) ejected++;
+        }
+        // Racing ejections may overshoot the bound by one; the next readmission corrects it
+        if ((ejected + 1) * 100 > (long) outliers.maxEjectedPercent() * snapshot.endpoints.size()) return;
+
+        final Long duration = endpoint.eject(nanoClock.getAsLong(),
+                outliers.baseEjection().toNanos(), outliers.maxEjection().toNanos());
+        if (duration == null) return;
+        refresh();
+        listener.onEjected(endpoint, reason, Duration.ofNanos(duration));
+    }
+
+    private Snapshot readmitDue() {
+        final long now = nanoClock.getAsLong();
+        final List<Endpoint> readmitted = new ArrayList<>(1);
+        for (Endpoint e : registry.get().endpoints) {
+            if (e.readmit(now)) readmitted.add(e);
+        }
+        final Snapshot snapshot = refresh();
+        readmitted.forEach(listener::onReadmitted);
+        return snapshot;
+    }
+
+    /** Re-derives the rotation from the endpoints' current state. */
+    private Snapshot refresh() {
+        while (true) {
+            final Snapshot current = registry.get();
+            final Snapshot next = current.rederived();
+            if (registry.compareAndSet(current, next)) return next;
+        }
+    }
+
+    /**
+     * One immutable version of the registry.
+     *
+     * @param membership       version and addresses, in registration order like {@code endpoints}
+     * @param inRotation       endpoints that may be chosen
+     * @param anyEjected       whether an endpoint is ejected
+     * @param nextReadmitNanos earliest end of an ejection, if {@code anyEjected}
+     */
+    private record Snapshot(List<Endpoint> endpoints,
+                            Membership membership,
+                            Map<String, Endpoint> byAddress,
+                            List<Endpoint> inRotation,
+                            boolean anyEjected,
+                            long nextReadmitNanos) {
+
+        static final Snapshot EMPTY =
+                new Snapshot(List.of(), new Membership(0L, List.of()), Map.of(), List.of(), false, 0L);
+
+        Snapshot with(Endpoint added) {
+            final List<Endpoint> next = new ArrayList<>(endpoints.size() + 1);
+            next.addAll(endpoints);
+            next.add(added);
+            return derive(next, membership.version() + 1);
+        }
+
+        Snapshot without(Endpoint removed) {
+            final List<Endpoint> next = new ArrayList<>(endpoints);
+            next.remove(removed);
+            return derive(next, membership.version() + 1);
+        }
+
+        Snapshot reversioned() {
+            return new Snapshot(endpoints, new Membership(membership.version() + 1, membership.addresses()),
+                    byAddress, inRotation, anyEjected, nextReadmitNanos);
+        }
+
+        Snapshot rederived() {
+            final List<Endpoint> inRotation = new ArrayList<>(endpoints.size());
+            long nextReadmit = 0L;
+            boolean anyEjected = false;
+            for (Endpoint e : endpoints) {
+                if (e.inRotation()) inRotation.add(e);
+                if (e.ejected()) {
+                    // Compared as nanoTime differences, so a plain min would break across wrap-around
+                    if (!anyEjected || e.ejectedUntil() - nextReadmit < 0) nextReadmit = e.ejectedUntil();
+                    anyEjected = true;
+                }
+            }
+            return new Snapshot(endpoints, membership, byAddress,
+                    inRotation.size() == endpoints.size() ? endpoints : List.copyOf(inRotation),
+                    anyEjected, nextReadmit);
+        }
+
+        private static Snapshot derive(List<Endpoint> endpoints, long version) {
+            final List<String> addresses = new ArrayList<>(endpoints.size());
+            final Map<String, Endpoint> byAddress = new HashMap<>();
+            for (Endpoint e : endpoints) {
+                addresses.add(e.address());
+                byAddress.put(e.address(), e);
+            }
+            return new Snapshot(List.copyOf(endpoints), new Membership(version, List.copyOf(addresses)),
+                    Map.copyOf(byAddress), List.of(), false, 0L).rederived();
+        }
+    }
+
+    /**
+     * Settings of an {@link InMemoryLoadBalancer}; defaults: capacity {@value #MAX_CAPACITY}, round-robin,
+     * {@link OutlierDetection#defaults()}, no listener.
+     */
+    public static final class Builder {
+
+        private int capacity = MAX_CAPACITY;
+        private SelectionStrategy strategy = SelectionStrategy.roundRobin();
+        private OutlierDetection outliers = OutlierDetection.defaults();
+        private LoadBalancerListener listener = LoadBalancerListener.NONE;
+        private LongSupplier nanoClock = System::nanoTime;
+
+        private Builder() {
+        }
+
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder strategy(SelectionStrategy strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+        public Builder outlierDetection(OutlierDetection outliers) {
+            this.outliers = outliers;
+            return this;
+        }
+
+        public Builder listener(LoadBalancerListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /** For tests: the clock ejections are timed with. */
+        Builder nanoClock(LongSupplier nanoClock) {
+            this.nanoClock = nanoClock;
+            return this;
+        }
+
+        public InMemoryLoadBalancer build() {
+            return new InMemoryLoadBalancer(this);
         }
     }
 }
@@ -1,27 +1,38 @@
 package com.github.dimitryivaniuta.gateway.search.lb;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 
 /**
- * Simple registry-style load balancer that stores unique instance addresses.
+ * Simple registry-style load balancer that stores unique, weighted instance addresses and picks one per
+ * request, skipping instances that are unhealthy or ejected as outliers.
  * <p>
  * Thread-safety:
- * - All implementations MUST be safe for concurrent register() + reads.
+ * - All implementations MUST be safe for concurrent register() + reads + choose().
+ * <p>
+ * Only {@link #register(String)}, {@link #getInstances()} and {@link #size()} are mandatory; the defaults of
+ * the other methods describe the behaviour of a fixed, unweighted registry. Registries that also remove
+ * instances, weigh them and version their membership implement {@link DynamicLoadBalancer}; callers that need
+ * those operations check for it.
  */
 public interface LoadBalancer {
 
+    /** Weight of an instance registered without one. */
+    double DEFAULT_WEIGHT = 1.0;
+
     /**
      * Register new instance address.
      * <p>
      * Rules:
      * - Address must be non-null/non-blank.
      * - Address must not already be registered.
-     * - Registry cannot exceed MAX_CAPACITY.
+     * - Registry cannot exceed its capacity (MAX_CAPACITY unless configured otherwise).
      *
      * @param address service instance address (e.g. "http://10.0.0.12:8080")
      * @throws IllegalArgumentException  if address is null/blank
      * @throws DuplicateAddressException if address already exists
-     * @throws CapacityExceededException if capacity (10) already reached
+     * @throws CapacityExceededException if capacity (default 10) already reached
      */
     void register(String address);
 
@@ -35,4 +46,53 @@ public interface LoadBalancer {
      * @return how many instances are currently registered
      */
     int size();
+
+    /**
+     * Pick an instance for one request, without a routing key.
+     *
+     * @return the chosen address, empty if nothing is registered
+     */
+    default Optional<String> next() {
+        return choose(null);
+    }
+
+    /**
+     * Pick an instance for one request. Callers should {@link #release(String)} the address when the request
+     * completes, so strategies that balance by outstanding requests see it finish.
+     * <p>
+     * The default picks by the key's hash (the first instance for a {@code null} key).
+     *
+     * @param key routing key, may be {@code null}
+     * @return the chosen address, empty if nothing is registered
+     */
+    default Optional<String> choose(Object key) {
+        final List<String> instances = getInstances();
+        if (instances.isEmpty()) return Optional.empty();
+        return Optional.of(instances.get(key == null ? 0 : Math.floorMod(key.hashCode(), instances.size())));
+    }
+
+    /**
+     * The request routed to {@code address} by {@link #next()}/{@link #choose(Object)} has completed.
+     * Unknown addresses are ignored.
+     */
+    default void release(String address) {
+    }
+
+    /**
+     * Like {@link #release(String)}, also reporting how the call went, so implementations with outlier
+     * detection can take failing or slow instances out of rotation.
+     *
+     * @param latency time the call took
+     * @param success {@code false} for errors and timeouts that the instance is to blame for
+     */
+    default void release(String address, Duration latency, boolean success) {
+        release(address);
+    }
+
+    /**
+     * Verdict of an active health check (see {@link LoadBalancerHealthChecker}). Unhealthy instances are not
+     * chosen until a later check reports them healthy. Unknown addresses are ignored.
+     */
+    default void reportHealth(String address, boolean healthy) {
+    }
 }
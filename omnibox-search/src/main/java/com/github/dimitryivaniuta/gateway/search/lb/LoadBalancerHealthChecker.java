@@ -0,0 +1,101 @@
+package com.github.dimitryivaniuta.gateway.search.lb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background active health checks: every {@code interval}, probes each registered instance in parallel and
+ * reports the verdict to the {@link LoadBalancer}.
+ * <p>
+ * An instance turns unhealthy after {@code unhealthyThreshold} failed checks in a row and healthy again after
+ * one successful check. A probe that has not answered within {@code timeout} counts as failed.
+ */
+public class LoadBalancerHealthChecker implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadBalancerHealthChecker.class);
+
+    private final LoadBalancer lb;
+    private final HealthProbe probe;
+    private final Duration timeout;
+    private final int unhealthyThreshold;
+
+    private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+    private final ExecutorService probes = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("lb-health-check").factory());
+
+    public LoadBalancerHealthChecker(LoadBalancer lb, HealthProbe probe, Duration timeout, int unhealthyThreshold) {
+        this.lb = lb;
+        this.probe = probe;
+        this.timeout = timeout;
+        this.unhealthyThreshold = Math.max(1, unhealthyThreshold);
+    }
+
+    /** Starts checking every {@code interval}, the first round right away. */
+    public LoadBalancerHealthChecker start(Duration interval) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkNow();
+            } catch (RuntimeException e) {
+                log.warn("Load balancer health check round failed", e);
+            }
+        }, 0, Math.max(1, interval.toMillis()), TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /** One round of checks; returns when every probe has answered or timed out. */
+    public void checkNow() {
+        final List<String> addresses = lb.getInstances();
+        final List<Future<Boolean>> results = new ArrayList<>(addresses.size());
+        for (String address : addresses) {
+            results.add(probes.submit(() -> probe.isHealthy(address)));
+        }
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        for (int i = 0; i < addresses.size(); i++) {
+            record(addresses.get(i), outcome(addresses.get(i), results.get(i), deadline));
+        }
+        failures.keySet().retainAll(addresses);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        probes.shutdownNow();
+    }
+
+    private boolean outcome(String address, Future<Boolean> result, long deadline) {
+        try {
+            return Boolean.TRUE.equals(result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            result.cancel(true);
+            log.debug("Health check of {} failed: {}", address, e.toString());
+            return false;
+        }
+    }
+
+    private void record(String address, boolean healthy) {
+        if (healthy) {
+            failures.remove(address);
+            lb.reportHealth(address, true);
+            return;
+        }
+        final int failed = failures.merge(address, 1, Integer::sum);
+        if (failed >= unhealthyThreshold) {
+            lb.reportHealth(address, false);
+        }
+    }
+}
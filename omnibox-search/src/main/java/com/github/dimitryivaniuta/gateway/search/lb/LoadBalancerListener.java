@@ -0,0 +1,34 @@
+package com.github.dimitryivaniuta.gateway.search.lb;
+
+import java.time.Duration;
+
+/**
+ * Registry events of an {@link InMemoryLoadBalancer}, e.g. for metrics or logs. Called synchronously on the
+ * thread that caused the event, so implementations must be quick and must not throw.
+ */
+public interface LoadBalancerListener {
+
+    LoadBalancerListener NONE = new LoadBalancerListener() {};
+
+    default void onRegistered(Endpoint endpoint) {
+    }
+
+    default void onDeregistered(Endpoint endpoint) {
+    }
+
+    /** The active health check changed its verdict. */
+    default void onHealthChanged(Endpoint endpoint, boolean healthy) {
+    }
+
+    /**
+     * Outlier detection took the instance out of rotation.
+     *
+     * @param reason {@code errors} or {@code latency}
+     */
+    default void onEjected(Endpoint endpoint, String reason, Duration duration) {
+    }
+
+    /** An ejection ended and the instance is back in rotation. */
+    default void onReadmitted(Endpoint endpoint) {
+    }
+}
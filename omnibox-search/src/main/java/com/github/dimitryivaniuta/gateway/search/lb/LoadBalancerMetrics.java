@@ -0,0 +1,75 @@
+package com.github.dimitryivaniuta.gateway.search.lb;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Micrometer view of the registry:
+ * <ul>
+ *   <li>{@code omnibox.lb.instance.healthy{address}}, {@code omnibox.lb.instance.ejected{address}} (1/0),
+ *       {@code omnibox.lb.instance.outstanding{address}}, {@code omnibox.lb.instance.weight{address}}</li>
+ *   <li>{@code omnibox.lb.ejections{address,reason=errors|latency}}, {@code omnibox.lb.readmissions{address}},
+ *       {@code omnibox.lb.health.changes{address,healthy}}</li>
+ * </ul>
+ * Meters of a deregistered address are removed.
+ */
+public class LoadBalancerMetrics implements LoadBalancerListener {
+
+    private final MeterRegistry metrics;
+
+    public LoadBalancerMetrics(MeterRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onRegistered(Endpoint endpoint) {
+        final String address = endpoint.address();
+        Gauge.builder("omnibox.lb.instance.healthy", endpoint, e -> e.healthy() ? 1 : 0)
+                .tag("address", address).register(metrics);
+        Gauge.builder("omnibox.lb.instance.ejected", endpoint, e -> e.ejected() ? 1 : 0)
+                .tag("address", address).register(metrics);
+        Gauge.builder("omnibox.lb.instance.outstanding", endpoint, Endpoint::outstanding)
+                .tag("address", address).register(metrics);
+        Gauge.builder("omnibox.lb.instance.weight", endpoint, Endpoint::weight)
+                .tag("address", address).register(metrics);
+    }
+
+    @Override
+    public void onDeregistered(Endpoint endpoint) {
+        // Addresses come and go with autoscaling; do not keep reporting the gone ones
+        for (Meter meter : List.copyOf(metrics.getMeters())) {
+            if (meter.getId().getName().startsWith("omnibox.lb.")
+                    && endpoint.address().equals(meter.getId().getTag("address"))) {
+                metrics.remove(meter);
+            }
+        }
+    }
+
+    @Override
+    public void onHealthChanged(Endpoint endpoint, boolean healthy) {
+        Counter.builder("omnibox.lb.health.changes")
+                .tag("address", endpoint.address())
+                .tag("healthy", Boolean.toString(healthy))
+                .register(metrics).increment();
+    }
+
+    @Override
+    public void onEjected(Endpoint endpoint, String reason, Duration duration) {
+        Counter.builder("omnibox.lb.ejections")
+                .tag("address", endpoint.address())
+                .tag("reason", reason)
+                .register(metrics).increment();
+    }
+
+    @Override
+    public void onReadmitted(Endpoint endpoint) {
+        Counter.builder("omnibox.lb.readmissions")
+                .tag("address", endpoint.address())
+                .register(metrics).increment();
+    }
+}
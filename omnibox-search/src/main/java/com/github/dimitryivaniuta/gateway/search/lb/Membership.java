@@ -0,0 +1,17 @@
+package com.github.dimitryivaniuta.gateway.search.lb;
+
+import java.util.List;
+
+/**
+ * One version of a {@link DynamicLoadBalancer}'s membership.
+ *
+ * @param version   changes with every registration, deregistration or weight change; equal versions of
+ *                  the same load balancer mean equal membership
+ * @param addresses registered addresses in registration order, immutable
+ */
+public record Membership(long version, List<String> addresses) {
+
+    public Membership {
+        addresses = List.copyOf(addresses);
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.dimitryivaniuta.gateway.search.lb;
+
+import java.time.Duration;
+
+/**
+ * Passive outlier detection settings: when reported call outcomes take an instance out of rotation.
+ * <p>
+ * An instance is ejected after {@code consecutiveFailures} failed calls in a row, or when its latency average
+ * exceeds both {@code latencyFloor} and {@code latencyFactor} x the median of the instances in rotation.
+ * Ejection lasts {@code baseEjection}, doubling with every further ejection up to {@code maxEjection}, after
+ * which the instance is readmitted on its own. At most {@code maxEjectedPercent} of the instances are ejected
+ * at once, so a shared downstream problem cannot empty the rotation.
+ *
+ * @param consecutiveFailures failures in a row that eject; {@code 0} disables error ejection
+ * @param latencyFactor       multiple of the median latency that ejects; {@code 0} disables latency ejection
+ * @param latencyFloor        latency averages below this never eject
+ * @param baseEjection        first ejection time
+ * @param maxEjection         longest ejection time; also how long an instance must stay in rotation to reset
+ *                            its back-off
+ * @param maxEjectedPercent   upper bound of ejected instances, in percent of the registry
+ */
+public record OutlierDetection(int consecutiveFailures,
+                               double latencyFactor,
+                               Duration latencyFloor,
+                               Duration baseEjection,
+                               Duration maxEjection,
+                               int maxEjectedPercent) {
+
+    /** Needs this many instances with a latency average before latency outliers are judged. */
+    static final int MIN_LATENCY_PEERS = 3;
+
+    public OutlierDetection {
+        if (consecutiveFailures < 0) throw new IllegalArgumentException("consecutiveFailures must be >= 0");
+        if (latencyFactor < 0) throw new IllegalArgumentException("latencyFactor must be >= 0");
+        if (baseEjection.isNegative() || maxEjection.compareTo(baseEjection) < 0) {
+            throw new IllegalArgumentException("need 0 <= baseEjection <= maxEjection");
+        }
+        if (maxEjectedPercent < 0 || maxEjectedPercent > 100) {
+            throw new IllegalArgumentException("maxEjectedPercent must be within 0..100");
+        }
+    }
+
+    /** 5 failures in a row or 3x the median latency (above 50 ms); 30 s doubling up to 5 min; at most half. */
+    public static OutlierDetection defaults() {
+        return new OutlierDetection(5, 3.0, Duration.ofMillis(50), Duration.ofSeconds(30), Duration.ofMinutes(5), 50);
+    }
+
+    public static OutlierDetection disabled() {
+        return new OutlierDetection(0, 0, Duration.ZERO, Duration.ZERO, Duration.ZERO, 0);
+    }
+
+    boolean enabled() {
+        return maxEjectedPercent > 0 && (consecutiveFailures > 0 || latencyFactor > 0);
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.dimitryivaniuta.gateway.search.lb;
+
+import java.util.List;
+
+/**
+ * Key affinity by weighted rendezvous (highest random weight) hashing, with bounded loads.
+ * <p>
+ * Every (key, instance) pair gets a pseudo-random score, scaled by the instance's weight
+ * ({@code weight / -ln(u)}, u uniform in (0, 1) from the pair's hash); the key goes to the best-scoring
+ * instance. An instance joining takes only the keys it now wins, about {@code 1/n} of them, and one leaving
+ * hands over only its own keys. Nothing else moves, so per-node caches keep their hit rate across scale
+ * events. Keeping no ring means nothing to rebuild: membership and weights are read as they are.
+ * <p>
+ * Bounded loads: an instance already holding more than {@code loadFactor} x its weighted share of all
+ * outstanding requests is skipped in favour of the key's next-best instance. A hot tenant thus spills over to
+ * a stable second (third, ...) choice instead of overloading its first. Because the bounds add up to more
+ * than the total, some instance always fits.
+ * <p>
+ * Requests without a key go to {@link SelectionStrategy#powerOfTwoChoices()}. O(n) per pick; meant for
+ * registries of tens of instances.
+ */
+final class RendezvousStrategy implements SelectionStrategy {
+
+    private final double loadFactor;
+    private final SelectionStrategy keyless = SelectionStrategy.powerOfTwoChoices();
+
+    RendezvousStrategy(double loadFactor) {
+        if (!(loadFactor > 1.0) || Double.isInfinite(loadFactor)) {
+            throw new IllegalArgumentException("loadFactor must be a finite number > 1: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+    }
+
+    @Override
+    public Endpoint select(List<Endpoint> endpoints, Object key) {
+        if (key == null) return keyless.select(endpoints, null);
+        final int n = endpoints.size();
+        if (n == 1) return endpoints.get(0);
+
+        final long keyHash = hash(key.toString());
+        long outstanding = 0;
+        double totalWeight = 0;
+        for (Endpoint e : endpoints) {
+            outstanding += e.outstanding();
+            totalWeight += e.weight();
+        }
+        // All weights 0: treat them as equal rather than leaving every instance without a share
+        final boolean unweighted = totalWeight <= 0;
+        final double sharePerWeight = loadFactor * (outstanding + 1) / (unweighted ? n : totalWeight);
+
+        final double[] scores = new double[n];
+        for (int i = 0; i < n; i++) {
+            final Endpoint e = endpoints.get(i);
+            scores[i] = score(keyHash, e.addressHash(), unweighted ? 1.0 : e.weight());
+        }
+        // Best score first; the first instance under its bound takes the request
+        int first = -1;
+        for (int round = 0; round < n; round++) {
+            int best = -1;
+            for (int i = 0; i < n; i++) {
+                if (scores[i] >= 0 && (best < 0 || scores[i] > scores[best])) best = i;
+            }
+            if (first < 0) first = best;
+            final Endpoint e = endpoints.get(best);
+            final double bound = Math.ceil(sharePerWeight * (unweighted ? 1.0 : e.weight()));
+            if (e.outstanding() + 1 <= bound) return e;
+            scores[best] = -1;
+        }
+        // Only possible if loads moved while we looked: stay with the key's home
+        return endpoints.get(first);
+    }
+
+    /** {@code weight / -ln(u)}: the highest of these is a weighted random pick, stable per (key, instance). */
+    private static double score(long keyHash, long addressHash, double weight) {
+        if (weight <= 0) return 0;
+        final long h = mix(keyHash ^ addressHash);
+        final double u = ((h >>> 11) + 0.5) * 0x1.0p-53; // in (0, 1)
+        return weight / -Math.log(u);
+    }
+
+    /** 64-bit FNV-1a of the string's chars, finished with {@link #mix(long)}. */
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /** SplitMix64 finalizer: every input bit affects every output bit. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
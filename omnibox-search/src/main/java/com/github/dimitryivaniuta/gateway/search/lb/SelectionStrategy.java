@@ -0,0 +1,143 @@
+package com.github.dimitryivaniuta.gateway.search.lb;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks the instance for one request.
+ * <p>
+ * Implementations are called concurrently, without locks, on an immutable snapshot of the registry and
+ * must be thread-safe. The built-in strategies honour {@link Endpoint#weight()} (instances with weight 0 are
+ * only picked when all weights are 0). Only {@link #consistentHashing(double)} uses the key; the others
+ * ignore it.
+ */
+@FunctionalInterface
+public interface SelectionStrategy {
+
+    /**
+     * @param endpoints registered instances in registration order; never empty, never modified
+     * @param key       caller's routing key, may be {@code null}
+     * @return one of {@code endpoints}
+     */
+    Endpoint select(List<Endpoint> endpoints, Object key);
+
+    /**
+     * Each instance in turn. With unequal weights, the turn sequence is a Weyl sequence over the cumulative
+     * weights: instances come up in proportion to their weight, interleaved rather than in runs.
+     */
+    static SelectionStrategy roundRobin() {
+        final AtomicLong next = new AtomicLong();
+        return (endpoints, key) -> {
+            final long turn = next.getAndIncrement();
+            final double total = weighted(endpoints);
+            if (total <= 0) return endpoints.get((int) Math.floorMod(turn, (long) endpoints.size()));
+            // frac(turn * golden ratio) is evenly spread over [0, 1) for consecutive turns
+            final double point = ((turn * 0x9E3779B97F4A7C15L) >>> 11) * 0x1.0p-53;
+            return at(endpoints, point * total);
+        };
+    }
+
+    /** Random instance, with probability proportional to its weight. */
+    static SelectionStrategy random() {
+        return (endpoints, key) -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final double total = weighted(endpoints);
+            if (total <= 0) return endpoints.get(random.nextInt(endpoints.size()));
+            return at(endpoints, random.nextDouble() * total);
+        };
+    }
+
+    /**
+     * Two distinct random instances, the one with fewer outstanding requests per unit of weight wins. Nearly
+     * as good as {@link #leastOutstanding()} at spreading load, in constant time and without every caller
+     * piling onto the same momentarily idle instance.
+     */
+    static SelectionStrategy powerOfTwoChoices() {
+        final SelectionStrategy drawnTwoDrained = leastOutstanding();
+        return (endpoints, key) -> {
+            final int n = endpoints.size();
+            if (n == 1) return endpoints.get(0);
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final int a = random.nextInt(n);
+            final int b = (a + 1 + random.nextInt(n - 1)) % n;
+            final Endpoint first = endpoints.get(a);
+            final Endpoint second = endpoints.get(b);
+            final double firstLoad = load(first);
+            final double secondLoad = load(second);
+            if (firstLoad == Double.POSITIVE_INFINITY && secondLoad == Double.POSITIVE_INFINITY) {
+                // Both have weight 0: look for one that takes traffic
+                return drawnTwoDrained.select(endpoints, key);
+            }
+            return secondLoad < firstLoad ? second : first;
+        };
+    }
+
+    /** The instance with the fewest outstanding requests per unit of weight; ties go to a random one of them. */
+    static SelectionStrategy leastOutstanding() {
+        return (endpoints, key) -> {
+            final int n = endpoints.size();
+            // Scan from a random offset so ties do not all land on the first instance
+            final int start = ThreadLocalRandom.current().nextInt(n);
+            Endpoint best = endpoints.get(start);
+            double bestLoad = load(best);
+            for (int i = 1; i < n; i++) {
+                final Endpoint e = endpoints.get((start + i) % n);
+                final double load = load(e);
+                if (load < bestLoad) {
+                    best = e;
+                    bestLoad = load;
+                }
+            }
+            return best;
+        };
+    }
+
+    /**
+     * Key affinity: the same key (e.g. the tenant id) keeps landing on the same instance, so its per-node
+     * caches and in-memory indexes stay warm, and scale events move as few keys as possible. An instance
+     * holding more than {@code loadFactor} x its share of the outstanding requests passes the key on to the
+     * key's next choice. See {@link RendezvousStrategy}.
+     *
+     * @param loadFactor {@code > 1}; lower spreads hot keys sooner, higher keeps affinity longer (1.25 is a
+     *                   good start)
+     */
+    static SelectionStrategy consistentHashing(double loadFactor) {
+        return new RendezvousStrategy(loadFactor);
+    }
+
+    /**
+     * @return the sum of the weights if they differ, {@code 0} if they are all equal (plain, unweighted pick)
+     */
+    private static double weighted(List<Endpoint> endpoints) {
+        final double first = endpoints.get(0).weight();
+        double total = 0;
+        boolean equal = true;
+        for (Endpoint e : endpoints) {
+            final double w = e.weight();
+            total += w;
+            equal &= w == first;
+        }
+        return equal ? 0 : total;
+    }
+
+    /** The endpoint whose cumulative weight range contains {@code point}, {@code 0 <= point < total}. */
+    private static Endpoint at(List<Endpoint> endpoints, double point) {
+        Endpoint last = null;
+        for (Endpoint e : endpoints) {
+            if (e.weight() <= 0) continue;
+            point -= e.weight();
+            if (point < 0) return e;
+            last = e;
+        }
+        // Rounding, or a weight lowered since the total was taken
+        return last != null ? last : endpoints.get(0);
+    }
+
+    /** Outstanding requests (counting the one being placed) per unit of weight. */
+    private static double load(Endpoint e) {
+        final double weight = e.weight();
+        if (weight <= 0) return Double.POSITIVE_INFINITY;
+        return (e.outstanding() + 1) / weight;
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.dimitryivaniuta.gateway.search.repository;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.dao.QueryTimeoutException;
+
+/**
+ * Latency budget of one omnibox request.
+ * <p>
+ * The repository turns the remaining budget into a transaction-local Postgres {@code statement_timeout},
+ * so the server abandons a runaway query on its own. Statements in flight are registered here so
+ * {@link #cancel()} (newer keystroke of the same user, fan-out group past its deadline, streamed
+ * subscription cancelled) can stop them through
+ * JDBC {@link Statement#cancel()} instead of letting them pin a pooled connection.
+ * <p>
+ * A {@link #child(Duration) child} budget never outlives its parent; cancelling the parent cancels
+ * the statements of every child.
+ */
+public final class QueryBudget {
+
+    /** GraphQL context key under which the request's budget is published. */
+    public static final String CONTEXT_KEY = "omniboxQueryBudget";
+
+    /** Postgres SQLSTATE for both {@code statement_timeout} and a client-side cancel. */
+    static final String QUERY_CANCELED = "57014";
+
+    private final long deadlineNanos;
+    private final QueryBudget parent;
+    private final Set<Statement> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+    private volatile boolean superseded;
+
+    private QueryBudget(long deadlineNanos, QueryBudget parent) {
+        this.deadlineNanos = deadlineNanos;
+        this.parent = parent;
+    }
+
+    /** Budget starting now. */
+    public static QueryBudget of(Duration budget) {
+        return new QueryBudget(System.nanoTime() + budget.toNanos(), null);
+    }
+
+    /** Sub-budget capped by {@code limit} and by this budget's own deadline. */
+    public QueryBudget child(Duration limit) {
+        return new QueryBudget(Math.min(deadlineNanos, System.nanoTime() + limit.toNanos()), this);
+    }
+
+    /** Milliseconds left; {@code 0} once the deadline passed. */
+    public long remainingMillis() {
+        return Math.max(0L, (deadlineNanos - System.nanoTime()) / 1_000_000L);
+    }
+
+    public boolean isCancelled() {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+
+    /** {@code true} when a newer request of the same user replaced this one. */
+    public boolean isSuperseded() {
+        return superseded || (parent != null && parent.isSuperseded());
+    }
+
+    /** Cancel because the answer is no longer wanted (the user typed on). */
+    public void supersede() {
+        superseded = true;
+        cancel();
+    }
+
+    /** Stop every statement running under this budget (and its children); later queries fail fast. */
+    public void cancel() {
+        cancelled = true;
+        for (Statement st : running) {
+            try {
+                st.cancel();
+            } catch (SQLException ignored) {
+                // statement already finished or connection gone; nothing left to stop
+            }
+        }
+    }
+
+    /**
+     * Remaining budget for a query that is about to start.
+     *
+     * @throws QueryTimeoutException when the budget is spent or cancelled
+     */
+    long startMillis() {
+        if (isCancelled()) throw new QueryTimeoutException("Omnibox query cancelled before start");
+        final long ms = remainingMillis();
+        if (ms <= 0) throw new QueryTimeoutException("Omnibox budget exhausted before query start");
+        return ms;
+    }
+
+    void register(Statement st) throws SQLException {
+        running.add(st);
+        if (parent != null) parent.register(st);
+        // cancel() may have run between startMillis() and now
+        if (isCancelled()) throw new SQLException("Omnibox query cancelled", QUERY_CANCELED);
+    }
+
+    void unregister(Statement st) {
+        running.remove(st);
+        if (parent != null) parent.unregister(st);
+    }
+
+    /**
+     * {@code true} if {@code e} means the query ran out of budget or was cancelled (as opposed to failing).
+     */
+    public static boolean isTimeout(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof QueryTimeoutException) return true;
+            if (t instanceof SQLException sql && QUERY_CANCELED.equals(sql.getSQLState())) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.dimitryivaniuta.gateway.search.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One read replica: its connection pool plus the load signals {@link ReadReplicaRouter} selects by.
+ * <p>
+ * Latency is the time a connection is held, which for the omnibox's one-statement transactions is the query
+ * time; it is kept as an exponentially weighted moving average. A replica is <em>available</em> unless its
+ * replication lag is over the limit or opening a connection failed within the retry window.
+ * <p>
+ * Metrics: {@code omnibox.replica.timer{replica}}, {@code omnibox.replica.inflight{replica}},
+ * {@code omnibox.replica.lag{replica}} (seconds), {@code omnibox.replica.available{replica}}.
+ */
+final class ReadReplica {
+
+    /** Weight of the newest sample in the latency average. */
+    private static final double ALPHA = 0.2;
+
+    private final String name;
+    private final HikariDataSource pool;
+    private final Timer timer;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong latencyBits = new AtomicLong(Double.doubleToRawLongBits(0d));
+
+    private volatile double lagSeconds;
+    private volatile boolean lagging;
+    private volatile long downUntilNanos;
+
+    ReadReplica(String name, HikariDataSource pool, MeterRegistry metrics) {
+        this.name = name;
+        this.pool = pool;
+        this.downUntilNanos = System.nanoTime();
+        this.timer = Timer.builder("omnibox.replica.timer").tag("replica", name).register(metrics);
+        Gauge.builder("omnibox.replica.inflight", inFlight, AtomicInteger::get)
+                .tag("replica", name).register(metrics);
+        Gauge.builder("omnibox.replica.lag", this, r -> r.lagSeconds)
+                .tag("replica", name).baseUnit("seconds").register(metrics);
+        Gauge.builder("omnibox.replica.available", this, r -> r.available(System.nanoTime()) ? 1 : 0)
+                .tag("replica", name).register(metrics);
+    }
+
+    String name() {
+        return name;
+    }
+
+    HikariDataSource pool() {
+        return pool;
+    }
+
+    boolean available(long nowNanos) {
+        return !lagging && nowNanos - downUntilNanos >= 0;
+    }
+
+    /** Expected wait for one more query: average latency scaled by the queries already running. */
+    double cost() {
+        return latency() * (inFlight.get() + 1);
+    }
+
+    double latency() {
+        return Double.longBitsToDouble(latencyBits.get());
+    }
+
+    void acquired() {
+        inFlight.incrementAndGet();
+    }
+
+    void released(long heldNanos) {
+        inFlight.decrementAndGet();
+        timer.record(heldNanos, TimeUnit.NANOSECONDS);
+        latencyBits.updateAndGet(bits -> {
+            final double prev = Double.longBitsToDouble(bits);
+            final double next = prev == 0d ? heldNanos : prev + ALPHA * (heldNanos - prev);
+            return Double.doubleToRawLongBits(next);
+        });
+    }
+
+    /** Opening a connection failed: skip this replica until {@code nowNanos + retryAfterNanos}. */
+    void failed(long nowNanos, long retryAfterNanos) {
+        downUntilNanos = nowNanos + retryAfterNanos;
+    }
+
+    /**
+     * @return {@code true} when the lagging state changed
+     */
+    boolean lag(double seconds, double maxLagSeconds) {
+        lagSeconds = seconds;
+        final boolean over = seconds > maxLagSeconds;
+        if (over == lagging) return false;
+        lagging = over;
+        return true;
+    }
+}
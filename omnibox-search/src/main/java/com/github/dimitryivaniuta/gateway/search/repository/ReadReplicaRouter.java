@@ -0,0 +1,265 @@
+package com.github.dimitryivaniuta.gateway.search.repository;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Spreads omnibox reads over Postgres streaming replicas ({@code app.omnibox.replicas.urls}).
+ * <p>
+ * Each connection request picks a replica by power of two choices: two random available replicas, the one
+ * with the lower expected wait (latency average x (in-flight + 1)) wins. That keeps load off a replica that
+ * is slow right now without the herding of always picking the single best one. A replica is skipped while
+ * <ul>
+ *   <li>its replay lag is over {@code max-lag} (checked every {@code lag-check-interval}), so the omnibox
+ *       does not serve results older than that bound. A replica whose WAL receiver is not streaming counts as
+ *       over the limit whatever it has replayed;</li>
+ *   <li>opening a connection to it failed within the last {@code retry-after}.</li>
+ * </ul>
+ * With no replica configured or none available, reads go to the primary {@code spring.datasource}. Replica
+ * pools copy the primary's Hikari settings and credentials; only the URL, pool name and (optionally) size
+ * differ.
+ * <p>
+ * Only {@link SearchRepository} reads through here. Writes, {@code LISTEN} and the feed bootstrap stay on the
+ * primary. This is deliberately not a {@link DataSource} bean, which would replace Spring Boot's.
+ * <p>
+ * Metrics (besides the per-replica ones of {@link ReadReplica}):
+ * {@code omnibox.replica.fallback{reason=unavailable|connect-error}}.
+ */
+@Component
+public class ReadReplicaRouter implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadReplicaRouter.class);
+
+    /** The primary's WAL position, read before the replicas are asked how far they have replayed. */
+    private static final String PRIMARY_LSN_SQL = "select pg_current_wal_lsn()::text";
+
+    /**
+     * Replay lag in seconds: 0 when not in recovery or replayed up to the primary's position ({@code ?}, may be
+     * {@code null} if unknown), infinite when no WAL receiver is streaming (disconnected, or reconnecting: it
+     * no longer receives anything, so "replayed all it received" would say 0 forever). Without
+     * {@code pg_read_all_stats} the receiver's {@code status} reads {@code null}; its row still exists only
+     * while the receiver process runs.
+     */
+    private static final String LAG_SQL = """
+            select case
+                     when not pg_is_in_recovery() then 0
+                     when not exists (select 1 from pg_stat_wal_receiver
+                                      where coalesce(status, 'streaming') = 'streaming') then 'Infinity'::float8
+                     when pg_last_wal_replay_lsn() >= ?::pg_lsn then 0
+                     else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 'Infinity'::float8)
+                   end
+            """;
+
+    private final DataSource primary;
+    private final List<ReadReplica> replicas;
+    private final DataSource reads;
+    private final double maxLagSeconds;
+    private final long retryAfterNanos;
+    private final Counter unavailable;
+    private final Counter connectError;
+    private final ScheduledExecutorService lagChecks;
+
+    public ReadReplicaRouter(DataSource primary,
+                             DataSourceProperties properties,
+                             MeterRegistry metrics,
+                             @Value("${app.omnibox.replicas.urls:}") List<String> urls,
+                             @Value("${app.omnibox.replicas.pool-size:0}") int poolSize,
+                             @Value("${app.omnibox.replicas.max-lag:5s}") Duration maxLag,
+                             @Value("${app.omnibox.replicas.lag-check-interval:1s}") Duration lagCheckInterval,
+                             @Value("${app.omnibox.replicas.retry-after:5s}") Duration retryAfter) {
+        this.primary = primary;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        this.retryAfterNanos = retryAfter.toNanos();
+        this.unavailable = Counter.builder("omnibox.replica.fallback").tag("reason", "unavailable").register(metrics);
+        this.connectError = Counter.builder("omnibox.replica.fallback").tag("reason", "connect-error").register(metrics);
+
+        final List<ReadReplica> list = new ArrayList<>();
+        for (String url : urls) {
+            if (url.isBlank()) continue;
+            final String name = "replica-" + list.size();
+            list.add(new ReadReplica(name, pool(name, url.strip(), poolSize, primary, properties), metrics));
+            log.info("Omnibox read replica {}: {}", name, url.strip());
+        }
+        this.replicas = List.copyOf(list);
+
+        if (replicas.isEmpty()) {
+            this.reads = primary;
+            this.lagChecks = null;
+        } else {
+            this.reads = new RoutingDataSource();
+            this.lagChecks = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().daemon().name("omnibox-replica-lag").factory());
+            final long every = Math.max(1, lagCheckInterval.toMillis());
+            lagChecks.scheduleWithFixedDelay(this::checkLag, 0, every, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** The {@link DataSource} omnibox reads use: the routing one, or the primary when no replica is configured. */
+    public DataSource dataSource() {
+        return reads;
+    }
+
+    /** The pools behind {@link #dataSource()}: every replica pool, or the primary when no replica is configured. */
+    public List<DataSource> pools() {
+        if (replicas.isEmpty()) return List.of(primary);
+        return replicas.stream().<DataSource>map(ReadReplica::pool).toList();
+    }
+
+    @Override
+    public void destroy() {
+        if (lagChecks != null) lagChecks.shutdownNow();
+        replicas.forEach(r -> r.pool().close());
+    }
+
+    /** Power of two choices over the available replicas; {@code null} if there is none. */
+    static ReadReplica choose(List<ReadReplica> replicas, long nowNanos) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        ReadReplica first = null;
+        ReadReplica second = null;
+        int available = 0;
+        // Reservoir sample of two: every pair of available replicas is equally likely
+        for (ReadReplica r : replicas) {
+            if (!r.available(nowNanos)) continue;
+            final int slot = available < 2 ? available : random.nextInt(available + 1);
+            available++;
+            if (slot == 0) first = r;
+            else if (slot == 1) second = r;
+        }
+        if (second == null) return first;
+        return second.cost() < first.cost() ? second : first;
+    }
+
+    private Connection connection() throws SQLException {
+        final ReadReplica replica = choose(replicas, System.nanoTime());
+        if (replica == null) {
+            unavailable.increment();
+            return primary.getConnection();
+        }
+        final Connection conn;
+        try {
+            conn = replica.pool().getConnection();
+        } catch (SQLException e) {
+            log.warn("Read replica {} unavailable, using the primary for {}: {}",
+                    replica.name(), Duration.ofNanos(retryAfterNanos), e.getMessage());
+            replica.failed(System.nanoTime(), retryAfterNanos);
+            connectError.increment();
+            return primary.getConnection();
+        }
+        replica.acquired();
+        return tracked(conn, replica, System.nanoTime());
+    }
+
+    /** Records how long the connection was held when it goes back to the pool. */
+    private static Connection tracked(Connection conn, ReadReplica replica, long acquiredNanos) {
+        final AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+                        replica.released(System.nanoTime() - acquiredNanos);
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private void checkLag() {
+        final String primaryLsn = primaryLsn();
+        for (ReadReplica replica : replicas) {
+            try (Connection conn = replica.pool().getConnection();
+                 PreparedStatement st = conn.prepareStatement(LAG_SQL)) {
+                st.setString(1, primaryLsn);
+                final double lag;
+                try (ResultSet rs = st.executeQuery()) {
+                    rs.next();
+                    lag = rs.getDouble(1);
+                }
+                if (replica.lag(lag, maxLagSeconds)) {
+                    log.warn("Read replica {} {}, {} (max {}s)", replica.name(),
+                            Double.isInfinite(lag) ? "WAL receiver not streaming" : "lag " + lag + "s",
+                            lag > maxLagSeconds ? "excluded" : "back in rotation", maxLagSeconds);
+                }
+            } catch (SQLException e) {
+                replica.failed(System.nanoTime(), retryAfterNanos);
+                log.debug("Lag check of read replica {} failed: {}", replica.name(), e.getMessage());
+            } catch (RuntimeException e) {
+                log.warn("Lag check of read replica {} failed", replica.name(), e);
+            }
+        }
+    }
+
+    /** {@code null} when the primary cannot tell (down, or itself in recovery): lag then goes by replay time. */
+    private String primaryLsn() {
+        try (Connection conn = primary.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(PRIMARY_LSN_SQL)) {
+            return rs.next() ? rs.getString(1) : null;
+        } catch (SQLException e) {
+            log.debug("Reading the primary WAL position for the replica lag check failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static HikariDataSource pool(String name, String url, int poolSize,
+                                         DataSource primary, DataSourceProperties properties) {
+        final HikariConfig config = new HikariConfig();
+        if (primary instanceof HikariConfig hikari) {
+            hikari.copyStateTo(config);
+        } else {
+            config.setUsername(properties.determineUsername());
+            config.setPassword(properties.determinePassword());
+        }
+        config.setJdbcUrl(url);
+        config.setPoolName("omnibox-" + name);
+        config.setReadOnly(true);
+        if (poolSize > 0) {
+            config.setMaximumPoolSize(poolSize);
+            config.setMinimumIdle(Math.min(config.getMinimumIdle(), poolSize));
+        }
+        // Pools start empty and connect lazily, so a replica that is down at startup does not fail the app
+        config.setInitializationFailTimeout(-1);
+        return new HikariDataSource(config);
+    }
+
+    private final class RoutingDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return connection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLFeatureNotSupportedException("Replica credentials come from spring.datasource");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.dimitryivaniuta.gateway.search.repository;
+
+/**
+ * Entity type labels as persisted in {@code search_items.entity_type} (UPPERCASE).
+ * <p>
+ * Declaration order is the response/group order of the omnibox.
+ */
+public enum SearchEntityType {
+    CONTACT,
+    LISTING,
+    REFERRAL,
+    TRANSACTION,
+    PRODUCT,
+    MAILING;
+
+    private static final SearchEntityType[] VALUES = values();
+
+    /** Number of groups; handy for fixed-size per-group arrays. */
+    public static final int COUNT = VALUES.length;
+
+    /**
+     * Map a DB label to its constant without allocating (no {@code valueOf} exception path).
+     *
+     * @return the constant, or {@code null} for labels the omnibox does not serve
+     */
+    public static SearchEntityType fromDb(String label) {
+        if (label == null) return null;
+        return switch (label) {
+            case "CONTACT" -> CONTACT;
+            case "LISTING" -> LISTING;
+            case "REFERRAL" -> REFERRAL;
+            case "TRANSACTION" -> TRANSACTION;
+            case "PRODUCT" -> PRODUCT;
+            case "MAILING" -> MAILING;
+            default -> null;
+        };
+    }
+
+    public static SearchEntityType ofOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -1,68 +1,364 @@
 package com.github.dimitryivaniuta.gateway.search.repository;
 
+import java.sql.ResultSet;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.stereotype.Repository;
-import lombok.RequiredArgsConstructor;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.*;
 
+/**
+ * Omnibox read queries over {@code search_items}.
+ * <p>
+ * Both plans return the top {@code limitPerGroup} rows <em>per entity type</em>, computed in the DB with a
+ * {@code LATERAL} top-N per type: every group gets its share regardless of how many strong matches another
+ * group has, and only rows that will be rendered cross the wire. Rows come back ordered by group, then
+ * {@code score desc, entity_id asc}.
+ * <p>
+ * The full plan matches FTS prefixes ({@code tsv}) or substrings of the normalized columns; the short plan
+ * (1-2 character queries, the first keystrokes) reads the pre-ranked {@code search_prefixes} edge-n-gram
+ * table maintained by the indexer, one B-tree range per type.
+ * <p>
+ * Every query runs in a short transaction whose {@code statement_timeout} is the caller's remaining
+ * {@link QueryBudget}; the statement is registered with the budget while it runs so it can be cancelled
+ * over JDBC. A spent budget surfaces as {@link org.springframework.dao.QueryTimeoutException} or a
+ * translated SQLSTATE {@code 57014}; see {@link QueryBudget#isTimeout(Throwable)}.
+ * <p>
+ * Connections come from {@link ReadReplicaRouter}: a read replica when any is configured and healthy, else the
+ * primary.
+ */
 @Repository
-@RequiredArgsConstructor
 public class SearchRepository {
     private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    public SearchRepository(ReadReplicaRouter reads) {
+        this.jdbc = new NamedParameterJdbcTemplate(reads.dataSource());
+        this.tx = new TransactionTemplate(new DataSourceTransactionManager(reads.dataSource()));
+    }
 
 
-    public List<Map<String, Object>> query(String tenantId,
-                                           String cfg,
-                                           String prefixTsQuery,
-                                           String term,
-                                           String likePattern,
-                                           int hardCap,
-                                           boolean shortQuery) {
-        String sql = shortQuery ? SHORT_SQL : FULL_SQL;
+    public SearchRows query(String tenantId,
+                            String cfg,
+                            String prefixTsQuery,
+                            String term,
+                            String likePattern,
+                            int limitPerGroup,
+                            boolean shortQuery,
+                            QueryBudget budget) {
+        ParsedSql sql = shortQuery ? SHORT_PARSED : FULL_PARSED;
         var params = Map.of(
                 "tenant", tenantId,
                 "cfg", cfg,
                 "prefix", prefixTsQuery,
                 "term", term,
                 "pattern", likePattern,
-                "hardCap", hardCap
+                "perGroup", limitPerGroup
         );
-        return jdbc.queryForList(sql, params);
+        return run(sql, params, budget);
     }
 
+    /**
+     * Top-N of a single entity type; used by the per-type fan-out mode so each group runs (and can time out)
+     * independently.
+     */
+    public SearchRows queryType(String tenantId,
+                                String cfg,
+                                String prefixTsQuery,
+                                String term,
+                                String likePattern,
+                                SearchEntityType type,
+                                int limit,
+                                boolean shortQuery,
+                                QueryBudget budget) {
+        ParsedSql sql = shortQuery ? SHORT_TYPE_PARSED : FULL_TYPE_PARSED;
+        var params = Map.of(
+                "tenant", tenantId,
+                "cfg", cfg,
+                "prefix", prefixTsQuery,
+                "term", term,
+                "pattern", likePattern,
+                "type", type.name(),
+                "perGroup", limit
+        );
+        return run(sql, params, budget);
+    }
 
-    private static final String FULL_SQL = """
+    /**
+     * Next page of one entity type after a keyset position: rows strictly after {@code (afterScore, afterId)}
+     * in {@code score desc, entity_id asc} order, so deep pages cost the same as the first (no offset).
+     */
+    public SearchRows queryTypeAfter(String tenantId,
+                                     String cfg,
+                                     String prefixTsQuery,
+                                     String term,
+                                     String likePattern,
+                                     SearchEntityType type,
+                                     double afterScore,
+                                     String afterId,
+                                     int limit,
+                                     boolean shortQuery,
+                                     QueryBudget budget) {
+        ParsedSql sql = shortQuery ? SHORT_AFTER_PARSED : FULL_AFTER_PARSED;
+        var params = Map.of(
+                "tenant", tenantId,
+                "cfg", cfg,
+                "prefix", prefixTsQuery,
+                "term", term,
+                "pattern", likePattern,
+                "type", type.name(),
+                "afterScore", afterScore,
+                "afterId", afterId,
+                "perGroup", limit
+        );
+        return run(sql, params, budget);
+    }
+
+    /**
+     * Several omnibox queries of one tenant in one statement: the queries are unnested into rows and each
+     * gets the same {@code LATERAL} per-type top-N as {@link #query}. Short queries pass no tsquery and are
+     * read from the {@code search_prefixes} table.
+     *
+     * @return one {@link SearchRows} per input, in input order
+     */
+    public List<SearchRows> queryBatch(String tenantId,
+                                       String cfg,
+                                       List<BatchQuery> queries,
+                                       int limitPerGroup,
+                                       QueryBudget budget) {
+        final int n = queries.size();
+        final String[] prefixes = new String[n];
+        final String[] terms = new String[n];
+        final String[] patterns = new String[n];
+        for (int i = 0; i < n; i++) {
+            final BatchQuery q = queries.get(i);
+            prefixes[i] = q.shortQuery() ? null : q.prefixTsQuery();
+            terms[i] = q.term();
+            patterns[i] = q.likePattern();
+        }
+        var params = Map.of(
+                "tenant", tenantId,
+                "cfg", cfg,
+                "prefixes", prefixes,
+                "terms", terms,
+                "patterns", patterns,
+                "perGroup", limitPerGroup
+        );
+        return execute(BATCH_PARSED, params, budget, rs -> SearchRowsExtractor.INSTANCE.extractBatch(rs, n));
+    }
+
+    /** One query of {@link #queryBatch}. */
+    public record BatchQuery(String prefixTsQuery, String term, String likePattern, boolean shortQuery) {}
+
+    private SearchRows run(ParsedSql sql, Map<String, ?> params, QueryBudget budget) {
+        return execute(sql, params, budget, SearchRowsExtractor.INSTANCE);
+    }
+
+    private <T> T execute(ParsedSql sql, Map<String, ?> params, QueryBudget budget, ResultSetExtractor<T> extractor) {
+        final long timeoutMs = budget.startMillis();
+        final PreparedStatementCreator psc = creator(sql, params);
+        return tx.execute(status -> {
+            // is_local = true: the timeout ends with this transaction and never leaks into the pool
+            jdbc.getJdbcOperations().queryForObject(SET_TIMEOUT, String.class, timeoutMs + "ms");
+            return jdbc.getJdbcOperations().execute(psc, ps -> {
+                try {
+                    budget.register(ps);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return extractor.extractData(rs);
+                    }
+                } finally {
+                    budget.unregister(ps);
+                }
+            });
+        });
+    }
+
+    /** Same expansion NamedParameterJdbcTemplate does, but leaves us the PreparedStatement to cancel. */
+    private static PreparedStatementCreator creator(ParsedSql sql, Map<String, ?> params) {
+        var source = new MapSqlParameterSource(params);
+        var factory = new PreparedStatementCreatorFactory(
+                NamedParameterUtils.substituteNamedParameters(sql, source),
+                NamedParameterUtils.buildSqlParameterList(sql, source));
+        return factory.newPreparedStatementCreator(NamedParameterUtils.buildValueArray(sql, source, null));
+    }
+
+    private static final String SET_TIMEOUT = "select set_config('statement_timeout', ?, true)";
+
+    /**
+     * Entity types served by the omnibox, in response order. Kept inline (not a bind parameter) so the
+     * planner sees a constant VALUES list and plans one bounded top-N per type.
+     */
+    private static final String TYPES = """
+            (values (1, 'CONTACT'), (2, 'LISTING'), (3, 'REFERRAL'), (4, 'TRANSACTION'), (5, 'PRODUCT'), (6, 'MAILING'))
+                as t(ord, entity_type)""";
+
+    private static final String TS_QUERY = """
             with q as (
                 select to_tsquery(CAST(:cfg AS regconfig), CAST(:prefix AS text)) as query
             )
-            select entity_type,
-                entity_id,
-                title,
-                subtitle,
-                ts_rank(tsv, q.query) as fts_score,
-                greatest(similarity(lower(title), :term), similarity(lower(subtitle), :term)) as trigram,
-                (ts_rank(tsv, q.query) * 0.9 + greatest(0.0, similarity(lower(title), :term)) * 0.3) as score
-            from search_items si, q
-            where si.tenant_id = :tenant
-                and (tsv @@ q.query or lower(title) like :pattern or lower(subtitle) like :pattern)
-            order by score desc, entity_id asc
-            limit :hardCap
             """;
 
+    /**
+     * Day-granular recency factor from the indexer's {@code updated_at}: 1.0 today, 0.9 after a month, towards
+     * 0.8 for old rows. {@code current_date} keeps a row's score stable within a day, so keyset cursors hold.
+     */
+    private static final String RECENCY = "(0.8 + 0.2 / (1 + (current_date - si.updated_at::date) / 30.0))";
 
-    private static final String SHORT_SQL = """
-            select entity_type,
-                entity_id,
-                title,
-                subtitle,
-                0.0 as fts_score,
-                greatest(similarity(lower(title), :term), similarity(lower(subtitle), :term)) as trigram,
-                greatest(similarity(lower(title), :term), similarity(lower(subtitle), :term)) * 0.3 as score
+    /**
+     * Scored matches of one group; {@code %s} is the entity type expression (lateral column or bind param).
+     * Each ranking function runs once per candidate row: {@code offset 0} keeps {@code f} a separate plan node,
+     * otherwise the planner inlines its expressions into every reference. The score is the match relevance
+     * times the stored {@code static_rank} (title length, entity type) times {@link #RECENCY}.
+     */
+    private static final String FULL_GROUP = """
+            select si.entity_type,
+                si.entity_id,
+                si.title,
+                si.subtitle,
+                f.fts as fts_score,
+                greatest(f.title_sim, f.subtitle_sim) as trigram,
+                (f.fts * 0.9 + f.title_sim * 0.3) * si.static_rank * %s as score
             from search_items si
+            cross join q
+            cross join lateral (
+                select ts_rank(si.tsv, q.query) as fts,
+                    similarity(si.title_norm, :term) as title_sim,
+                    similarity(si.subtitle_norm, :term) as subtitle_sim
+                offset 0
+            ) f
             where si.tenant_id = :tenant
-                and (lower(title) like :pattern or lower(subtitle) like :pattern)
-            order by score desc, entity_id asc
-            limit :hardCap
+                and si.entity_type = %%s
+                and (si.tsv @@ q.query or si.title_norm like :pattern or si.subtitle_norm like :pattern)
+            """.formatted(RECENCY);
+
+    /**
+     * Short queries (one word of 1-2 characters, below what a trigram index can serve): pre-ranked rows of the
+     * {@code search_prefixes} edge-n-gram table, read in {@code (tenant_id, prefix, entity_type, rank desc,
+     * entity_id)} index order and joined to the item for its text. Matches words starting with the query.
+     */
+    private static final String SHORT_GROUP = """
+            select si.entity_type,
+                si.entity_id,
+                si.title,
+                si.subtitle,
+                0.0 as fts_score,
+                0.0 as trigram,
+                sp.rank as score
+            from search_prefixes sp
+            join search_items si
+                on si.tenant_id = sp.tenant_id and si.entity_type = sp.entity_type and si.entity_id = sp.entity_id
+            where sp.tenant_id = :tenant
+                and sp.prefix = :term
+                and sp.entity_type = %s
+            """;
+
+    /** Per-group order and cap; the order is also the keyset order of {@link #queryTypeAfter}. */
+    private static final String TOP_N = """
+            order by score desc, si.entity_id asc
+            limit :perGroup
             """;
-}
\ No newline at end of file
+
+    /** Rows after a keyset position; {@code %s} is a group's match query without {@link #TOP_N}. */
+    private static final String AFTER = """
+            select g.*
+            from (
+            %s) g
+            where g.score < CAST(:afterScore AS double precision)
+                or (g.score = CAST(:afterScore AS double precision) and g.entity_id > :afterId)
+            order by g.score desc, g.entity_id asc
+            limit :perGroup
+            """;
+
+    private static final String ALL_GROUPS = """
+            select g.*
+            from %s
+            cross join lateral (
+            %s) g
+            order by t.ord, g.score desc, g.entity_id asc
+            """;
+
+    /**
+     * Batch form: {@code b} holds one row per query ({@code idx} = input position). The tsquery is {@code null}
+     * for short queries: per query only one branch of the lateral union passes its one-time filter, the FTS
+     * match of {@link #FULL_GROUP} or the prefix-table read of {@link #SHORT_GROUP}. {@code idx} is appended as
+     * the last column.
+     */
+    private static final String BATCH_SQL = """
+            with b as (
+                select u.prefix, u.term, u.pattern, u.idx,
+                    to_tsquery(CAST(:cfg AS regconfig), u.prefix) as query
+                from unnest(CAST(:prefixes AS text[]), CAST(:terms AS text[]), CAST(:patterns AS text[]))
+                    with ordinality as u(prefix, term, pattern, idx)
+            )
+            select g.*, b.idx
+            from b
+            cross join %s
+            cross join lateral (
+                (select si.entity_type,
+                    si.entity_id,
+                    si.title,
+                    si.subtitle,
+                    f.fts as fts_score,
+                    greatest(f.title_sim, f.subtitle_sim) as trigram,
+                    (f.fts * 0.9 + f.title_sim * 0.3) * si.static_rank * %s as score
+                from search_items si
+                cross join lateral (
+                    select ts_rank(si.tsv, b.query) as fts,
+                        similarity(si.title_norm, b.term) as title_sim,
+                        similarity(si.subtitle_norm, b.term) as subtitle_sim
+                    offset 0
+                ) f
+                where b.query is not null
+                    and si.tenant_id = :tenant
+                    and si.entity_type = t.entity_type
+                    and (si.tsv @@ b.query or si.title_norm like b.pattern or si.subtitle_norm like b.pattern)
+                order by score desc, si.entity_id asc
+                limit :perGroup)
+                union all
+                (select si.entity_type,
+                    si.entity_id,
+                    si.title,
+                    si.subtitle,
+                    0.0,
+                    0.0,
+                    sp.rank
+                from search_prefixes sp
+                join search_items si
+                    on si.tenant_id = sp.tenant_id and si.entity_type = sp.entity_type and si.entity_id = sp.entity_id
+                where b.query is null
+                    and sp.tenant_id = :tenant
+                    and sp.prefix = b.term
+                    and sp.entity_type = t.entity_type
+                order by sp.rank desc, sp.entity_id asc
+                limit :perGroup)
+            ) g
+            order by b.idx, t.ord, g.score desc, g.entity_id asc
+            """.formatted(TYPES, RECENCY);
+
+    private static final String FULL_SQL = TS_QUERY + ALL_GROUPS.formatted(TYPES, FULL_GROUP.formatted("t.entity_type") + TOP_N);
+
+    private static final String SHORT_SQL = ALL_GROUPS.formatted(TYPES, SHORT_GROUP.formatted("t.entity_type") + TOP_N);
+
+    private static final String FULL_TYPE_SQL = TS_QUERY + FULL_GROUP.formatted(":type") + TOP_N;
+
+    private static final String SHORT_TYPE_SQL = SHORT_GROUP.formatted(":type") + TOP_N;
+
+    private static final String FULL_AFTER_SQL = TS_QUERY + AFTER.formatted(FULL_GROUP.formatted(":type"));
+
+    private static final String SHORT_AFTER_SQL = AFTER.formatted(SHORT_GROUP.formatted(":type"));
+
+    private static final ParsedSql FULL_PARSED = NamedParameterUtils.parseSqlStatement(FULL_SQL);
+    private static final ParsedSql SHORT_PARSED = NamedParameterUtils.parseSqlStatement(SHORT_SQL);
+    private static final ParsedSql FULL_TYPE_PARSED = NamedParameterUtils.parseSqlStatement(FULL_TYPE_SQL);
+    private static final ParsedSql SHORT_TYPE_PARSED = NamedParameterUtils.parseSqlStatement(SHORT_TYPE_SQL);
+    private static final ParsedSql FULL_AFTER_PARSED = NamedParameterUtils.parseSqlStatement(FULL_AFTER_SQL);
+    private static final ParsedSql SHORT_AFTER_PARSED = NamedParameterUtils.parseSqlStatement(SHORT_AFTER_SQL);
+    private static final ParsedSql BATCH_PARSED = NamedParameterUtils.parseSqlStatement(BATCH_SQL);
+}
@@ -0,0 +1,12 @@
+package com.github.dimitryivaniuta.gateway.search.repository;
+
+/**
+ * One omnibox candidate row as read from {@code search_items}.
+ *
+ * @param type     interned entity type (never {@code null})
+ * @param entityId source entity id
+ * @param title    search title
+ * @param subtitle optional secondary text ({@code null} when absent)
+ * @param score    raw (un-normalized) relevance score from SQL
+ */
+public record SearchRow(SearchEntityType type, String entityId, String title, String subtitle, double score) {}
@@ -0,0 +1,80 @@
+package com.github.dimitryivaniuta.gateway.search.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Typed candidate set plus the score range needed for per-response normalization.
+ * <p>
+ * Min/max are accumulated while rows are added, so callers never rescan the list.
+ */
+public final class SearchRows {
+
+    public static final SearchRows EMPTY = new SearchRows(List.of(), 0.0d, 1.0d);
+
+    private final List<SearchRow> rows;
+    private final double minScore;
+    private final double maxScore;
+
+    private SearchRows(List<SearchRow> rows, double minScore, double maxScore) {
+        this.rows = rows;
+        this.minScore = minScore;
+        this.maxScore = maxScore;
+    }
+
+    /** Build from an existing list (single pass over scores). */
+    public static SearchRows of(List<SearchRow> rows) {
+        if (rows.isEmpty()) return EMPTY;
+        Builder b = new Builder(rows.size());
+        for (SearchRow r : rows) b.add(r);
+        return b.build();
+    }
+
+    public List<SearchRow> rows() {
+        return rows;
+    }
+
+    public double minScore() {
+        return minScore;
+    }
+
+    public double maxScore() {
+        return maxScore;
+    }
+
+    public boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Accumulates rows and the score range in one pass. Not thread-safe; {@link #build()} hands the list over
+     * behind a read-only view (no copy), so a builder is not reused after building.
+     */
+    public static final class Builder {
+        private final ArrayList<SearchRow> rows;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        public Builder(int expectedSize) {
+            this.rows = new ArrayList<>(expectedSize);
+        }
+
+        public Builder add(SearchRow r) {
+            rows.add(r);
+            final double s = r.score();
+            if (s < min) min = s;
+            if (s > max) max = s;
+            return this;
+        }
+
+        public SearchRows build() {
+            if (rows.isEmpty()) return EMPTY;
+            return new SearchRows(Collections.unmodifiableList(rows), min, max);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.dimitryivaniuta.gateway.search.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+/**
+ * Maps the omnibox SELECT straight into {@link SearchRows}: columns are read by position with primitive
+ * getters, entity types are resolved to {@link SearchEntityType} constants, and the score range is tracked
+ * during the same pass. Rows with an entity type the omnibox does not serve are skipped.
+ * <p>
+ * Column layout (shared by every omnibox query):
+ * {@code entity_type, entity_id, title, subtitle, fts_score, trigram, score}; the batch query appends the
+ * 1-based input position as an eighth column.
+ */
+public final class SearchRowsExtractor implements ResultSetExtractor<SearchRows> {
+
+    public static final SearchRowsExtractor INSTANCE = new SearchRowsExtractor();
+
+    private static final int COL_ENTITY_TYPE = 1;
+    private static final int COL_ENTITY_ID = 2;
+    private static final int COL_TITLE = 3;
+    private static final int COL_SUBTITLE = 4;
+    private static final int COL_SCORE = 7;
+    private static final int COL_BATCH_INDEX = 8;
+
+    /** Default per-request capacity (6 groups x default limit 5). */
+    private static final int EXPECTED_ROWS = 32;
+
+    private SearchRowsExtractor() {}
+
+    @Override
+    public SearchRows extractData(ResultSet rs) throws SQLException {
+        SearchRows.Builder b = new SearchRows.Builder(EXPECTED_ROWS);
+        while (rs.next()) {
+            final SearchRow row = row(rs);
+            if (row != null) b.add(row);
+        }
+        return b.build();
+    }
+
+    /**
+     * Split a batch result (ordered by input position) into one {@link SearchRows} per input.
+     */
+    public List<SearchRows> extractBatch(ResultSet rs, int queries) throws SQLException {
+        final SearchRows.Builder[] builders = new SearchRows.Builder[queries];
+        while (rs.next()) {
+            final SearchRow row = row(rs);
+            if (row == null) continue;
+            final int i = rs.getInt(COL_BATCH_INDEX) - 1;
+            if (builders[i] == null) builders[i] = new SearchRows.Builder(EXPECTED_ROWS);
+            builders[i].add(row);
+        }
+        final List<SearchRows> out = new ArrayList<>(queries);
+        for (SearchRows.Builder b : builders) out.add(b == null ? SearchRows.EMPTY : b.build());
+        return out;
+    }
+
+    private static SearchRow row(ResultSet rs) throws SQLException {
+        final SearchEntityType type = SearchEntityType.fromDb(rs.getString(COL_ENTITY_TYPE));
+        if (type == null) return null;
+        final String subtitle = rs.getString(COL_SUBTITLE);
+        return new SearchRow(
+                type,
+                rs.getString(COL_ENTITY_ID),
+                rs.getString(COL_TITLE),
+                subtitle == null || subtitle.isEmpty() ? null : subtitle,
+                rs.getDouble(COL_SCORE));
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.dimitryivaniuta.gateway.search.service;
+
+import com.github.dimitryivaniuta.gateway.search.engine.SearchResult;
+import com.github.dimitryivaniuta.gateway.search.repository.QueryBudget;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRepository;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Optional execution mode: one top-N query per entity type, run concurrently on virtual threads under a
+ * single per-request deadline.
+ * <p>
+ * Groups that have not answered when the deadline hits are reported as missing instead of holding the
+ * whole response hostage; their statements are cancelled through a per-group {@link QueryBudget} capped by
+ * both the fan-out deadline and the request budget. Each group is timed separately so the dominating type is visible:
+ * {@code omnibox.group.timer{tenant,type,result=ok|empty|error}} (recorded when the query actually ends,
+ * also for groups that missed the deadline) and {@code omnibox.group.timeouts{tenant,type}}.
+ */
+@Component
+public class GroupFanout {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupFanout.class);
+
+    private final SearchRepository repo;
+    private final QueryCoalescer coalescer;
+    private final MeterRegistry metrics;
+    private final ExecutorService executor;
+    private final boolean enabled;
+    private final Duration deadline;
+
+    public GroupFanout(SearchRepository repo,
+                       QueryCoalescer coalescer,
+                       MeterRegistry metrics,
+                       ExecutorService omniboxExecutor,
+                       @Value("${app.omnibox.fanout.enabled:false}") boolean enabled,
+                       @Value("${app.omnibox.fanout.deadline:150ms}") Duration deadline) {
+        this.repo = repo;
+        this.coalescer = coalescer;
+        this.metrics = metrics;
+        this.executor = omniboxExecutor;
+        this.enabled = enabled;
+        this.deadline = deadline;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Query every type in {@code types} concurrently and merge what finished before the deadline
+     * (late or failed groups are listed in {@link SearchResult#missing()}).
+     * Rows are merged in {@link SearchEntityType} order, so the result has the same shape as the single-SQL plan.
+     */
+    public SearchResult search(String tenant, String cfg, String prefixTs, String term, String pattern,
+                          Set<SearchEntityType> types, int perGroup, boolean shortQuery, QueryBudget budget) {
+        final long deadlineNanos = System.nanoTime() + deadline.toNanos();
+
+        final Map<SearchEntityType, Future<SearchRows>> inFlight = new EnumMap<>(SearchEntityType.class);
+        final Map<SearchEntityType, QueryBudget> groupBudgets = new EnumMap<>(SearchEntityType.class);
+        for (SearchEntityType type : types) {
+            // A group nobody waits for any more is cancelled instead of finishing in the background
+            final QueryBudget groupBudget = budget.child(deadline);
+            groupBudgets.put(type, groupBudget);
+            inFlight.put(type, executor.submit(() -> timed(tenant, type,
+                    () -> coalescer.execute(tenant, prefixTs, term, perGroup, shortQuery, type,
+                            () -> repo.queryType(tenant, cfg, prefixTs, term, pattern, type, perGroup, shortQuery,
+                                    groupBudget)))));
+        }
+
+        final SearchRows.Builder merged = new SearchRows.Builder(types.size() * perGroup);
+        final EnumSet<SearchEntityType> missing = EnumSet.noneOf(SearchEntityType.class);
+        for (Map.Entry<SearchEntityType, Future<SearchRows>> e : inFlight.entrySet()) {
+            final SearchEntityType type = e.getKey();
+            final Future<SearchRows> f = e.getValue();
+            try {
+                final long remaining = Math.max(0L, deadlineNanos - System.nanoTime());
+                for (SearchRow r : f.get(remaining, TimeUnit.NANOSECONDS).rows()) merged.add(r);
+            } catch (TimeoutException te) {
+                missing.add(type);
+                groupBudgets.get(type).cancel();
+                f.cancel(true);
+                metrics.counter("omnibox.group.timeouts", "tenant", tenant, "type", type.name()).increment();
+            } catch (ExecutionException ee) {
+                missing.add(type);
+                log.warn("Omnibox group query failed. tenant={}, type={}, err={}", tenant, type, ee.getCause().toString());
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                missing.add(type);
+                groupBudgets.get(type).cancel();
+                f.cancel(true);
+            }
+        }
+        return new SearchResult(merged.build(), missing);
+    }
+
+    private SearchRows timed(String tenant, SearchEntityType type, Supplier<SearchRows> call) {
+        final Timer.Sample sample = Timer.start(metrics);
+        String result = "error";
+        try {
+            SearchRows rows = call.get();
+            result = rows.isEmpty() ? "empty" : "ok";
+            return rows;
+        } finally {
+            sample.stop(metrics.timer("omnibox.group.timer", "tenant", tenant, "type", type.name(), "result", result));
+        }
+    }
+}
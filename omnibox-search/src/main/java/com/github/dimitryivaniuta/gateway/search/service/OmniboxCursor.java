@@ -0,0 +1,60 @@
+package com.github.dimitryivaniuta.gateway.search.service;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyset position inside one omnibox group: the raw SQL score and entity id of the last row a client has.
+ * <p>
+ * Groups are ordered by {@code score desc, entity_id asc}, so "after this row" is a plain predicate on the
+ * pair and the next page costs the same at any depth. On the wire the cursor is opaque (URL-safe Base64);
+ * the score is kept exactly ({@link Double#toString} round-trips) so equal scores tie-break on the id.
+ * <p>
+ * A score only orders rows of the query that produced it, so the cursor carries a hash of that query's
+ * lower-cased normalized text ({@link #queryHash}); {@code omniboxMore} rejects a cursor of another query.
+ */
+public record OmniboxCursor(SearchEntityType type, int queryHash, double score, String entityId) {
+
+    private static final char SEP = '\n';
+
+    /**
+     * @param term lower-cased normalized query the row was found by ({@code SearchRequest.term()})
+     */
+    public static OmniboxCursor after(SearchRow row, String term) {
+        return new OmniboxCursor(row.type(), queryHash(term), row.score(), row.entityId());
+    }
+
+    public static int queryHash(String term) {
+        return term.hashCode();
+    }
+
+    /** {@code true} if this cursor was issued for {@code term}. */
+    public boolean isFor(String term) {
+        return queryHash == queryHash(term);
+    }
+
+    public String encode() {
+        final String raw = type.name() + SEP + Integer.toHexString(queryHash) + SEP + score + SEP + entityId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code cursor} was not produced by {@link #encode()}
+     */
+    public static OmniboxCursor decode(String cursor) {
+        try {
+            final String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            final int a = raw.indexOf(SEP);
+            final int b = raw.indexOf(SEP, a + 1);
+            final int c = raw.indexOf(SEP, b + 1);
+            final SearchEntityType type = SearchEntityType.fromDb(raw.substring(0, a));
+            if (type == null || b < 0 || c < 0) throw new IllegalArgumentException("Invalid omnibox cursor");
+            return new OmniboxCursor(type, Integer.parseUnsignedInt(raw.substring(a + 1, b), 16),
+                    Double.parseDouble(raw.substring(b + 1, c)), raw.substring(c + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid omnibox cursor", e);
+        }
+    }
+}
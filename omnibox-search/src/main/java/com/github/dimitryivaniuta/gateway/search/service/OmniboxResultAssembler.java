@@ -0,0 +1,260 @@
+package com.github.dimitryivaniuta.gateway.search.service;
+
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.*;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import com.github.dimitryivaniuta.gateway.search.util.ScoreNormalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Turns a typed candidate set into the grouped GraphQL response.
+ * <p>
+ * Single pass over the rows: each row is routed by its {@link SearchEntityType} ordinal, capped per group,
+ * and its score normalized against the range already collected in {@link SearchRows}. Input order within a
+ * group is preserved (SQL orders by {@code score desc, entity_id asc}).
+ */
+public final class OmniboxResultAssembler {
+
+    private OmniboxResultAssembler() {}
+
+    /**
+     * @param rows     typed candidates (any group order; per-group order is kept)
+     * @param perGroup max hits emitted per entity type
+     */
+    public static OmniboxResult assemble(SearchRows rows, int perGroup) {
+        return assemble(rows, perGroup, Set.of());
+    }
+
+    /**
+     * @param missing groups that did not answer in time; reported as {@code missingGroups}
+     */
+    public static OmniboxResult assemble(SearchRows rows, int perGroup, Set<SearchEntityType> missing) {
+        return assemble(rows, perGroup, missing, null);
+    }
+
+    /**
+     * @param cursorTerm when not {@code null}, emit a {@code nextCursors} entry bound to this query term for
+     *                   every group that filled {@code perGroup}; only valid when the row scores are the SQL
+     *                   scores of this very query (not refined from another one)
+     */
+    public static OmniboxResult assemble(SearchRows rows, int perGroup, Set<SearchEntityType> missing,
+                                         String cursorTerm) {
+        OmniboxResult.OmniboxResultBuilder builder = OmniboxResult.builder();
+        for (SearchEntityType t : missing) builder.missingGroup(t.name());
+        if (rows.isEmpty()) return builder.build();
+
+        final double min = rows.minScore();
+        final double max = rows.maxScore();
+        final int[] taken = new int[SearchEntityType.COUNT];
+        final SearchRow[] last = cursorTerm != null ? new SearchRow[SearchEntityType.COUNT] : null;
+
+        for (SearchRow r : rows.rows()) {
+            final int g = r.type().ordinal();
+            if (taken[g] >= perGroup) continue;
+            if (++taken[g] == perGroup && last != null) last[g] = r;
+            final float score = (float) ScoreNormalizer.normalize(r.score(), min, max);
+            switch (r.type()) {
+                case CONTACT -> builder.contact(toContact(r, score));
+                case LISTING -> builder.listing(toListing(r, score));
+                case REFERRAL -> builder.referral(toReferral(r, score));
+                case TRANSACTION -> builder.transaction(toTransaction(r, score));
+                case PRODUCT -> builder.product(toProduct(r, score));
+                case MAILING -> builder.mailing(toMailing(r, score));
+            }
+        }
+        if (last != null) {
+            for (SearchRow r : last) {
+                if (r != null) {
+                    builder.nextCursor(new GroupCursor(r.type().name(), OmniboxCursor.after(r, cursorTerm).encode()));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * One streamed group; scores are normalized within the group (the other groups are not known yet).
+     *
+     * @param rows    rows of {@code type} only, in SQL order
+     * @param cursorTerm emit {@code nextCursor} when the group is full (same rule as {@code nextCursors})
+     */
+    public static OmniboxGroup group(SearchEntityType type, SearchRows rows, int perGroup, String cursorTerm) {
+        final List<SearchRow> all = rows.rows();
+        final int n = Math.min(perGroup, all.size());
+        final List<SearchHit> hits = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            final SearchRow r = all.get(i);
+            hits.add(toHit(r, (float) ScoreNormalizer.normalize(r.score(), rows.minScore(), rows.maxScore())));
+        }
+        final String next = cursorTerm != null && n == perGroup
+                ? OmniboxCursor.after(all.get(n - 1), cursorTerm).encode() : null;
+        return new OmniboxGroup(type.name(), hits, next, false);
+    }
+
+    /** A group that missed the budget. */
+    public static OmniboxGroup missingGroup(SearchEntityType type) {
+        return new OmniboxGroup(type.name(), List.of(), null, true);
+    }
+
+    /**
+     * An assembled (e.g. cached) answer as stream groups, in response order. Its scores were normalized across
+     * all groups; they are rescaled to each group's own range so the groups match what {@link #group} streams
+     * for fresh rows (min-max normalization is affine, so this equals normalizing the raw scores per group,
+     * up to float rounding).
+     */
+    public static List<OmniboxGroup> groups(OmniboxResult result) {
+        final List<OmniboxGroup> out = new ArrayList<>(SearchEntityType.COUNT);
+        for (SearchEntityType t : SearchEntityType.values()) {
+            final List<? extends SearchHit> hits = switch (t) {
+                case CONTACT -> result.contacts();
+                case LISTING -> result.listings();
+                case REFERRAL -> result.referrals();
+                case TRANSACTION -> result.transactions();
+                case PRODUCT -> result.products();
+                case MAILING -> result.mailings();
+            };
+            final String next = result.nextCursors().stream()
+                    .filter(c -> c.group().equals(t.name()))
+                    .map(GroupCursor::after)
+                    .findFirst().orElse(null);
+            out.add(new OmniboxGroup(t.name(), withinGroup(hits), next, result.missingGroups().contains(t.name())));
+        }
+        return out;
+    }
+
+    /**
+     * One {@code omniboxMore} page of a single group.
+     *
+     * @param rows  up to {@code first + 1} rows of one type in keyset order; the extra row only signals more
+     * @param first page size
+     * @param term  query term the next cursor is bound to
+     */
+    public static OmniboxPage page(SearchRows rows, int first, String term) {
+        if (rows.isEmpty()) return OmniboxPage.EMPTY;
+        final List<SearchRow> all = rows.rows();
+        final int n = Math.min(first, all.size());
+        final double min = rows.minScore();
+        final double max = rows.maxScore();
+        final List<SearchHit> hits = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            final SearchRow r = all.get(i);
+            hits.add(toHit(r, (float) ScoreNormalizer.normalize(r.score(), min, max)));
+        }
+        final boolean hasMore = all.size() > first;
+        return new OmniboxPage(hits, hasMore ? OmniboxCursor.after(all.get(n - 1), term).encode() : null, hasMore);
+    }
+
+    /**
+     * A per-group top-N answer is the complete match set only if no group hit the cap.
+     */
+    public static boolean everyGroupBelow(SearchRows rows, int perGroup) {
+        final int[] counts = new int[SearchEntityType.COUNT];
+        for (SearchRow r : rows.rows()) {
+            if (++counts[r.type().ordinal()] >= perGroup) return false;
+        }
+        return true;
+    }
+
+    // --------------------------- Mapping helpers ---------------------------
+
+    private static List<SearchHit> withinGroup(List<? extends SearchHit> hits) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (SearchHit h : hits) {
+            min = Math.min(min, h.score());
+            max = Math.max(max, h.score());
+        }
+        final List<SearchHit> out = new ArrayList<>(hits.size());
+        for (SearchHit h : hits) out.add(withScore(h, (float) ScoreNormalizer.normalize(h.score(), min, max)));
+        return out;
+    }
+
+    private static SearchHit withScore(SearchHit h, float score) {
+        return switch (h) {
+            case SearchHitContact c -> new SearchHitContact(c.id(), c.title(), c.subtitle(), score, c.contactId());
+            case SearchHitListing l ->
+                    new SearchHitListing(l.id(), l.title(), l.subtitle(), score, l.listingId(), l.mlsId());
+            case SearchHitReferral r -> new SearchHitReferral(r.id(), r.title(), r.subtitle(), score, r.referralId());
+            case SearchHitTransaction t ->
+                    new SearchHitTransaction(t.id(), t.title(), t.subtitle(), score, t.transactionId());
+            case SearchHitProduct p -> new SearchHitProduct(p.id(), p.title(), p.subtitle(), score, p.productId());
+            case SearchHitMailing m -> new SearchHitMailing(m.id(), m.title(), m.subtitle(), score, m.mailingId());
+            default -> throw new IllegalArgumentException("Unknown hit type: " + h.getClass().getName());
+        };
+    }
+
+    private static SearchHit toHit(SearchRow r, float score) {
+        return switch (r.type()) {
+            case CONTACT -> toContact(r, score);
+            case LISTING -> toListing(r, score);
+            case REFERRAL -> toReferral(r, score);
+            case TRANSACTION -> toTransaction(r, score);
+            case PRODUCT -> toProduct(r, score);
+            case MAILING -> toMailing(r, score);
+        };
+    }
+
+    private static SearchHitContact toContact(SearchRow r, float score) {
+        return SearchHitContact.builder()
+                .id("c_" + r.entityId())
+                .title(r.title())
+                .subtitle(r.subtitle())
+                .score(score)
+                .contactId(r.entityId())
+                .build();
+    }
+
+    private static SearchHitListing toListing(SearchRow r, float score) {
+        // mlsId is not selected by the omnibox SQL (it is folded into subtitle by the indexer)
+        return SearchHitListing.builder()
+                .id("l_" + r.entityId())
+                .title(r.title())
+                .subtitle(r.subtitle())
+                .score(score)
+                .listingId(r.entityId())
+                .build();
+    }
+
+    private static SearchHitReferral toReferral(SearchRow r, float score) {
+        return SearchHitReferral.builder()
+                .id("r_" + r.entityId())
+                .title(r.title())
+                .subtitle(r.subtitle())
+                .score(score)
+                .referralId(r.entityId())
+                .build();
+    }
+
+    private static SearchHitTransaction toTransaction(SearchRow r, float score) {
+        return SearchHitTransaction.builder()
+                .id("t_" + r.entityId())
+                .title(r.title())
+                .subtitle(r.subtitle())
+                .score(score)
+                .transactionId(r.entityId())
+                .build();
+    }
+
+    private static SearchHitProduct toProduct(SearchRow r, float score) {
+        return SearchHitProduct.builder()
+                .id("p_" + r.entityId())
+                .title(r.title())
+                .subtitle(r.subtitle())
+                .score(score)
+                .productId(r.entityId())
+                .build();
+    }
+
+    private static SearchHitMailing toMailing(SearchRow r, float score) {
+        return SearchHitMailing.builder()
+                .id("m_" + r.entityId())
+                .title(r.title())
+                .subtitle(r.subtitle())
+                .score(score)
+                .mailingId(r.entityId())
+                .build();
+    }
+}
@@ -1,57 +1,100 @@
 package com.github.dimitryivaniuta.gateway.search.service;
 
+import com.github.dimitryivaniuta.gateway.search.cache.OmniboxResultCache;
+import com.github.dimitryivaniuta.gateway.search.cache.TypeaheadSessionCache;
+import com.github.dimitryivaniuta.gateway.search.engine.PostgresSearchEngine;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchEngineRouter;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchRequest;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchResult;
 import com.github.dimitryivaniuta.gateway.search.graphql.Tokenizer;
-import com.github.dimitryivaniuta.gateway.search.graphql.dto.*;
-import com.github.dimitryivaniuta.gateway.search.repository.SearchRepository;
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.OmniboxGroup;
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.OmniboxPage;
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.OmniboxResult;
+import com.github.dimitryivaniuta.gateway.search.repository.QueryBudget;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import com.github.dimitryivaniuta.gateway.search.security.TenantContext;
 import com.github.dimitryivaniuta.gateway.search.security.TenantContextHolder;
-import com.github.dimitryivaniuta.gateway.search.util.ScoreNormalizer;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
 import java.util.*;
-import lombok.RequiredArgsConstructor;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
- * Omnibox (type-ahead) search across multiple entity types backed by a read-optimized Postgres model.
+ * Omnibox (type-ahead) search across multiple entity types; candidates come from a pluggable
+ * {@link com.github.dimitryivaniuta.gateway.search.engine.SearchEngine} (Postgres by default).
  * <p>
  * Features:
  * <ul>
  *   <li>Tenant isolation via {@link TenantContextHolder}</li>
- *   <li>Case-insensitive tokenization, prefix tsquery, short-query fallback (ILIKE+trgm)</li>
+ *   <li>Case-insensitive tokenization, prefix tsquery, short-query lookup in the prefix table</li>
  *   <li>Score normalization to [0..1] per request</li>
- *   <li>Per-entity capping, deterministic ordering (done in SQL), safe mapping</li>
+ *   <li>Per-entity top-N and deterministic ordering (done in SQL), typed single-pass mapping</li>
+ *   <li>Tenant-scoped result cache, invalidated when the indexer changes the tenant's rows</li>
+ *   <li>Per-user type-ahead refinement of complete candidate sets (see {@link TypeaheadSessionCache})</li>
+ *   <li>Single-flight coalescing of identical in-flight DB queries (see {@link QueryCoalescer})</li>
+ *   <li>Optional per-type fan-out with a deadline and partial results (see {@link GroupFanout})</li>
+ *   <li>Older in-flight query of the same user cancelled on a new keystroke (see {@link SupersedeRegistry})</li>
+ *   <li>Per-request latency budget enforced in Postgres and by JDBC cancel (see {@link QueryBudget})</li>
+ *   <li>Batch of queries answered in one engine round trip ({@link #searchBatch})</li>
+ *   <li>Streamed delivery, one group at a time as each is ready ({@link #stream})</li>
+ *   <li>Keyset "show more" per group ({@link #more}, cursors in {@code nextCursors})</li>
  *   <li>Micrometer RED metrics and DB timer</li>
  * </ul>
  */
 @Service
-@RequiredArgsConstructor
 public class OmniboxService {
 
     private static final Logger log = LoggerFactory.getLogger(OmniboxService.class);
 
-    /** Max rows fetched from DB before we slice per-group (keeps memory & latency bounded). */
-    private static final int HARD_CAP = 200;
-
     /** Guardrails for client-provided per-group limit. */
     private static final int MIN_LIMIT = 1;
     private static final int MAX_LIMIT = 50;
     private static final int DEFAULT_LIMIT = 5;
+    private static final int DEFAULT_MORE = 10;
 
-    /** Short-query threshold: for queries length ≤ this, use ILIKE+trgm fallback for responsiveness. */
-    private static final int SHORT_QUERY_LEN = 2;
+    /**
+     * Short-query threshold: queries of length ≤ this are answered from {@code search_prefixes} (too short for
+     * trigram indexes). Must not exceed the longest stored prefix (3).
+     */
+    static final int SHORT_QUERY_LEN = 2;
 
-    /** Entity type labels as persisted in search_items.entity_type (UPPERCASE). */
-    private static final String TYPE_CONTACT = "CONTACT";
-    private static final String TYPE_LISTING = "LISTING";
-    private static final String TYPE_REFERRAL = "REFERRAL";
-    private static final String TYPE_TRANSACTION = "TRANSACTION";
-    private static final String TYPE_PRODUCT = "PRODUCT";
-    private static final String TYPE_MAILING = "MAILING";
+    /** Groups requested from the engine (the omnibox has no per-request type filter). */
+    private static final Set<SearchEntityType> ALL_TYPES = EnumSet.allOf(SearchEntityType.class);
 
-    private final SearchRepository repo;
     private final MeterRegistry metrics;
+    private final OmniboxResultCache cache;
+    private final TypeaheadSessionCache sessions;
+    private final SearchEngineRouter engines;
+    private final SupersedeRegistry supersede;
+    private final ExecutorService omniboxExecutor;
+    /** Per-request latency budget when the caller did not bring one (see {@link QueryBudget}). */
+    private final Duration defaultBudget;
+
+    public OmniboxService(MeterRegistry metrics,
+                          OmniboxResultCache cache,
+                          TypeaheadSessionCache sessions,
+                          SearchEngineRouter engines,
+                          SupersedeRegistry supersede,
+                          ExecutorService omniboxExecutor,
+                          @Value("${app.omnibox.budget:300ms}") Duration defaultBudget) {
+        this.metrics = metrics;
+        this.cache = cache;
+        this.sessions = sessions;
+        this.engines = engines;
+        this.supersede = supersede;
+        this.omniboxExecutor = omniboxExecutor;
+        this.defaultBudget = defaultBudget;
+    }
 
     /**
      * Execute omnibox search.
@@ -61,6 +104,17 @@ public class OmniboxService {
      * @return grouped, normalized results
      */
     public OmniboxResult search(String q, int limitPerGroup) {
+        return search(q, limitPerGroup, null);
+    }
+
+    /**
+     * Execute omnibox search within a latency budget.
+     *
+     * @param budget request budget from the GraphQL context; {@code null} starts a fresh one of
+     *               {@code app.omnibox.budget}
+     */
+    public OmniboxResult search(String q, int limitPerGroup, QueryBudget budget) {
+        final QueryBudget b = budget != null ? budget : QueryBudget.of(defaultBudget);
         final String tenant = TenantContextHolder.getRequiredTenant();
 
         // Normalize/guard inputs early
@@ -72,155 +126,301 @@ public class OmniboxService {
             return OmniboxResult.builder().build();
         }
 
-        final List<String> toks = Tokenizer.tokens(norm);
-        final boolean shortQuery = norm.length() <= SHORT_QUERY_LEN;
-        final String prefixTs = Tokenizer.toPrefixTsQuery(toks);
-        final String term = norm.toLowerCase(Locale.ROOT);
-        final String pattern = "%" + term + "%"; // for ILIKE/trgm fallback branch
+        final String user = userId();
+        // A newer keystroke from the same user makes any older in-flight query pointless
+        supersede.begin(tenant, user, b);
+        try {
+            return search(tenant, user, norm, perGroup, b);
+        } finally {
+            supersede.end(tenant, user, b);
+        }
+    }
+
+    /**
+     * Execute several omnibox queries in one engine round trip (one SQL statement with the Postgres engine).
+     * <p>
+     * Cached answers are served from the cache; duplicates within the batch are asked once. There is no
+     * per-user refinement or supersede here: a batch is not a keystroke stream. If the engine call fails,
+     * every uncached query gets an empty result, as a single failing omnibox query would.
+     *
+     * @param queries raw inputs
+     * @return one result per input, in input order
+     */
+    public List<OmniboxResult> searchBatch(List<String> queries, int limitPerGroup, QueryBudget budget) {
+        final QueryBudget b = budget != null ? budget : QueryBudget.of(defaultBudget);
+        final String tenant = TenantContextHolder.getRequiredTenant();
+        final int perGroup = clamp(limitPerGroup, MIN_LIMIT, MAX_LIMIT, DEFAULT_LIMIT);
+        metrics.summary("omnibox.batch.size", "tenant", tenant).record(queries.size());
+
+        final OmniboxResult[] out = new OmniboxResult[queries.size()];
+        // normalized query -> input positions, for the queries the cache could not answer
+        final Map<String, List<Integer>> pending = new LinkedHashMap<>();
+        final long cacheVersion = cache.version(tenant);
+        for (int i = 0; i < out.length; i++) {
+            final String norm = Tokenizer.normalize(queries.get(i));
+            if (norm.isEmpty()) {
+                metrics.counter("omnibox.requests.total", "tenant", tenant, "result", "empty").increment();
+                out[i] = OmniboxResult.builder().build();
+                continue;
+            }
+            final OmniboxResult cached = cache.get(tenant, norm, perGroup);
+            if (cached != null) {
+                metrics.counter("omnibox.requests.total", "tenant", tenant, "result", "cached").increment();
+                out[i] = cached;
+                continue;
+            }
+            pending.computeIfAbsent(norm, k -> new ArrayList<>(1)).add(i);
+        }
+        if (pending.isEmpty()) return Arrays.asList(out);
+
+        final List<SearchRequest> requests = new ArrayList<>(pending.size());
+        for (String norm : pending.keySet()) {
+            final List<String> toks = Tokenizer.tokens(norm);
+            requests.add(new SearchRequest(tenant, norm, toks, Tokenizer.toPrefixTsQuery(toks),
+                    norm.toLowerCase(Locale.ROOT), ALL_TYPES, perGroup, norm.length() <= SHORT_QUERY_LEN, b));
+        }
 
-        // Observe DB time separately (helps isolate JDBC/PG latency from mapping)
         final Timer.Sample sample = Timer.start(metrics);
-        final List<Map<String, Object>> rows;
+        final List<SearchResult> found;
         try {
-            rows = repo.query(tenant, "english", prefixTs, term, pattern, HARD_CAP, shortQuery);
+            found = engines.searchBatch(requests);
         } catch (Exception e) {
-            // Defensive: never fail the UX; emit metric + safe empty response
-            metrics.counter("omnibox.requests.total", "tenant", tenant, "result", "error").increment();
-            log.error("Omnibox DB query failed. tenant={}, q='{}', shortQuery={}, err={}",
-                    tenant, redact(norm), shortQuery, e.toString(), e);
-            sample.stop(metrics.timer("omnibox.db.timer", "tenant", tenant, "result", "error"));
-            return OmniboxResult.builder().build();
+            final String outcome = failureOutcome(b, e);
+            metrics.counter("omnibox.requests.total", "tenant", tenant, "result", outcome).increment(pending.size());
+            if ("error".equals(outcome)) {
+                log.error("Omnibox batch query failed. tenant={}, queries={}, err={}",
+                        tenant, pending.size(), e.toString(), e);
+            }
+            sample.stop(metrics.timer("omnibox.db.timer", "tenant", tenant, "result", outcome));
+            for (List<Integer> positions : pending.values()) {
+                for (int i : positions) out[i] = OmniboxResult.builder().build();
+            }
+            return Arrays.asList(out);
+        }
+        sample.stop(metrics.timer("omnibox.db.timer", "tenant", tenant, "result", "ok"));
+
+        int k = 0;
+        for (Map.Entry<String, List<Integer>> e : pending.entrySet()) {
+            final SearchResult r = found.get(k++);
+            final OmniboxResult result = OmniboxResultAssembler.assemble(r.rows(), perGroup, r.missing(),
+                    cursorTerm(e.getKey().toLowerCase(Locale.ROOT)));
+            metrics.counter("omnibox.requests.total", "tenant", tenant, "result", dbResult(r.rows(), r.missing()))
+                    .increment(e.getValue().size());
+            if (!r.partial()) cache.put(tenant, e.getKey(), perGroup, result, cacheVersion);
+            for (int i : e.getValue()) out[i] = result;
         }
-        sample.stop(metrics.timer("omnibox.db.timer", "tenant", tenant, "result", rows.isEmpty() ? "empty" : "ok"));
+        return Arrays.asList(out);
+    }
 
-        if (rows.isEmpty()) {
+    /**
+     * Streamed variant of {@link #search(String, int, QueryBudget)}: one query per group, each group pushed
+     * as soon as it is ready, so fast groups render first. Total work equals the fan-out mode.
+     * <p>
+     * A cached answer is replayed at once, its scores rescaled per group like streamed ones; a complete
+     * streamed answer is cached for the next request.
+     * Cancelling the subscription cancels the statements still running.
+     */
+    public Flux<OmniboxGroup> stream(String q, int limitPerGroup, QueryBudget budget) {
+        final QueryBudget b = budget != null ? budget : QueryBudget.of(defaultBudget);
+        final String tenant = TenantContextHolder.getRequiredTenant();
+        final String norm = Tokenizer.normalize(q);
+        final int perGroup = clamp(limitPerGroup, MIN_LIMIT, MAX_LIMIT, DEFAULT_LIMIT);
+        if (norm.isEmpty()) {
             metrics.counter("omnibox.requests.total", "tenant", tenant, "result", "empty").increment();
-            return OmniboxResult.builder().build();
+            return Flux.empty();
         }
-
-        // Normalize scores to [0..1] for client-friendly blending
-        double max = rows.stream().mapToDouble(r -> ((Number) r.get("score")).doubleValue()).max().orElse(1.0);
-        double min = rows.stream().mapToDouble(r -> ((Number) r.get("score")).doubleValue()).min().orElse(0.0);
-
-        // Group by entity_type (kept uppercase consistently from the DB)
-        Map<String, List<Map<String, Object>>> byType = new LinkedHashMap<>(8);
-        for (Map<String, Object> r : rows) {
-            final String t = str(r.get("entity_type"));
-            byType.computeIfAbsent(t, k -> new ArrayList<>()).add(r);
+        final OmniboxResult cached = cache.get(tenant, norm, perGroup);
+        if (cached != null) {
+            metrics.counter("omnibox.requests.total", "tenant", tenant, "result", "cached").increment();
+            return Flux.fromIterable(OmniboxResultAssembler.groups(cached));
         }
+        final long cacheVersion = cache.version(tenant);
 
-        // Build response (slice per group)
-        OmniboxResult.OmniboxResultBuilder builder = OmniboxResult.builder();
+        final List<String> toks = Tokenizer.tokens(norm);
+        final String prefixTs = Tokenizer.toPrefixTsQuery(toks);
+        final String term = norm.toLowerCase(Locale.ROOT);
+        final boolean shortQuery = norm.length() <= SHORT_QUERY_LEN;
+        final String cursorTerm = cursorTerm(term);
+        final Map<SearchEntityType, SearchRows> answered =
+                Collections.synchronizedMap(new EnumMap<>(SearchEntityType.class));
+        final Set<SearchEntityType> missing = ConcurrentHashMap.newKeySet();
+
+        return Flux.fromIterable(ALL_TYPES)
+                .flatMap(type -> Mono.fromFuture(() -> CompletableFuture.supplyAsync(() -> engines.search(
+                                new SearchRequest(tenant, norm, toks, prefixTs, term, EnumSet.of(type), perGroup,
+                                        shortQuery, b)), omniboxExecutor))
+                        .map(found -> {
+                            if (found.partial()) {
+                                missing.add(type);
+                                return OmniboxResultAssembler.missingGroup(type);
+                            }
+                            answered.put(type, found.rows());
+                            return OmniboxResultAssembler.group(type, found.rows(), perGroup, cursorTerm);
+                        })
+                        .onErrorResume(e -> {
+                            missing.add(type);
+                            log.debug("Omnibox streamed group {}. tenant={}, type={}, err={}",
+                                    failureOutcome(b, e), tenant, type, e.toString());
+                            return Mono.just(OmniboxResultAssembler.missingGroup(type));
+                        }), ALL_TYPES.size())
+                .doOnNext(g -> metrics.counter("omnibox.stream.groups", "tenant", tenant,
+                        "result", g.missing() ? "missing" : g.hits().isEmpty() ? "empty" : "ok").increment())
+                .doOnComplete(() -> {
+                    final SearchRows.Builder all = new SearchRows.Builder(ALL_TYPES.size() * perGroup);
+                    for (SearchEntityType t : ALL_TYPES) {
+                        final SearchRows rows = answered.get(t);
+                        if (rows != null) rows.rows().forEach(all::add);
+                    }
+                    final SearchRows rows = all.build();
+                    metrics.counter("omnibox.requests.total", "tenant", tenant, "result", dbResult(rows, missing))
+                            .increment();
+                    if (missing.isEmpty()) {
+                        cache.put(tenant, norm, perGroup,
+                                OmniboxResultAssembler.assemble(rows, perGroup, Set.of(), cursorTerm), cacheVersion);
+                    }
+                })
+                .doOnCancel(b::cancel);
+    }
+
+    /**
+     * Next page of one group after a cursor from {@code nextCursors} (or a previous page), by keyset.
+     *
+     * @param group entity type label, e.g. {@code CONTACT}
+     * @param after opaque cursor ({@link OmniboxCursor})
+     * @param first page size
+     * @throws IllegalArgumentException for an unknown group, a cursor of another group or query, or an engine
+     *                                  that does not page by keyset
+     */
+    public OmniboxPage more(String q, String group, String after, int first, QueryBudget budget) {
+        final QueryBudget b = budget != null ? budget : QueryBudget.of(defaultBudget);
+        final String tenant = TenantContextHolder.getRequiredTenant();
+        final SearchEntityType type = SearchEntityType.fromDb(group == null ? null : group.toUpperCase(Locale.ROOT));
+        if (type == null) throw new IllegalArgumentException("Unknown omnibox group: " + group);
+        final OmniboxCursor cursor = OmniboxCursor.decode(after);
+        if (cursor.type() != type) throw new IllegalArgumentException("Cursor belongs to group " + cursor.type());
 
-        slice(byType.get(TYPE_CONTACT), perGroup).forEach(r -> builder.contact(toContact(r, min, max)));
-        slice(byType.get(TYPE_LISTING), perGroup).forEach(r -> builder.listing(toListing(r, min, max)));
-        slice(byType.get(TYPE_REFERRAL), perGroup).forEach(r -> builder.referral(toReferral(r, min, max)));
-        slice(byType.get(TYPE_TRANSACTION), perGroup).forEach(r -> builder.transaction(toTransaction(r, min, max)));
-        slice(byType.get(TYPE_PRODUCT), perGroup).forEach(r -> builder.product(toProduct(r, min, max)));
-        slice(byType.get(TYPE_MAILING), perGroup).forEach(r -> builder.mailing(toMailing(r, min, max)));
+        final String norm = Tokenizer.normalize(q);
+        if (norm.isEmpty()) return OmniboxPage.EMPTY;
+        final String term = norm.toLowerCase(Locale.ROOT);
+        // Scores only order rows of the query that produced them
+        if (!cursor.isFor(term)) throw new IllegalArgumentException("Cursor belongs to another query");
+        final int pageSize = clamp(first, MIN_LIMIT, MAX_LIMIT, DEFAULT_MORE);
+        final List<String> toks = Tokenizer.tokens(norm);
+        // One extra row tells whether another page exists
+        final SearchRequest request = new SearchRequest(tenant, norm, toks, Tokenizer.toPrefixTsQuery(toks),
+                term, EnumSet.of(type), pageSize + 1, norm.length() <= SHORT_QUERY_LEN, b);
 
-        metrics.counter("omnibox.requests.total", "tenant", tenant, "result", "ok").increment();
-        return builder.build();
+        final Timer.Sample sample = Timer.start(metrics);
+        try {
+            final SearchRows rows = engines.searchAfter(request, cursor);
+            final String outcome = rows.isEmpty() ? "empty" : "ok";
+            sample.stop(metrics.timer("omnibox.more.timer", "tenant", tenant, "result", outcome));
+            return OmniboxResultAssembler.page(rows, pageSize, term);
+        } catch (UnsupportedOperationException e) {
+            sample.stop(metrics.timer("omnibox.more.timer", "tenant", tenant, "result", "unsupported"));
+            throw new IllegalArgumentException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            final String outcome = failureOutcome(b, e);
+            sample.stop(metrics.timer("omnibox.more.timer", "tenant", tenant, "result", outcome));
+            if ("error".equals(outcome)) {
+                log.error("Omnibox page query failed. tenant={}, group={}, err={}", tenant, type, e.toString(), e);
+            }
+            return OmniboxPage.EMPTY;
+        }
     }
 
-    // --------------------------- Mapping helpers ---------------------------
+    private OmniboxResult search(String tenant, String user, String norm, int perGroup, QueryBudget b) {
+        final OmniboxResult cached = cache.get(tenant, norm, perGroup);
+        if (cached != null) {
+            metrics.counter("omnibox.requests.total", "tenant", tenant, "result", "cached").increment();
+            return cached;
+        }
+        // Taken before the DB call so an invalidation racing with the query prevents caching its result
+        final long cacheVersion = cache.version(tenant);
 
-    private List<Map<String, Object>> slice(List<Map<String, Object>> list, int n) {
-        if (list == null || list.isEmpty()) return List.of();
-        return list.size() <= n ? list : list.subList(0, n);
-    }
+        final List<String> toks = Tokenizer.tokens(norm);
+        final boolean shortQuery = norm.length() <= SHORT_QUERY_LEN;
+        final String prefixTs = Tokenizer.toPrefixTsQuery(toks);
+        final String term = norm.toLowerCase(Locale.ROOT);
 
-    private float normScore(Map<String, Object> r, double min, double max) {
-        double raw = ((Number) r.get("score")).doubleValue();
-        return (float) ScoreNormalizer.normalize(raw, min, max);
-    }
+        // Longer prefix of the user's previous complete answer: filter it in memory, no DB call
+        SearchRows rows = sessions.refine(tenant, user, norm, cacheVersion);
+        Set<SearchEntityType> missing = Set.of();
+        // Refined rows carry the scores of the earlier query: no keyset cursors for them
+        final boolean fresh = rows == null;
+        if (rows == null) {
+            // Observe DB time separately (helps isolate JDBC/PG latency from mapping)
+            final Timer.Sample sample = Timer.start(metrics);
+            try {
+                final SearchResult found = engines.search(
+                        new SearchRequest(tenant, norm, toks, prefixTs, term, ALL_TYPES, perGroup, shortQuery, b));
+                rows = found.rows();
+                missing = found.missing();
+            } catch (Exception e) {
+                // Defensive: never fail the UX; emit metric + safe empty response.
+                // Budget overruns and aborted requests are expected under load: count them apart from errors.
+                final String outcome = failureOutcome(b, e);
+                metrics.counter("omnibox.requests.total", "tenant", tenant, "result", outcome).increment();
+                if ("error".equals(outcome)) {
+                    log.error("Omnibox DB query failed. tenant={}, q='{}', shortQuery={}, err={}",
+                            tenant, redact(norm), shortQuery, e.toString(), e);
+                } else {
+                    log.debug("Omnibox DB query {}. tenant={}, q='{}', shortQuery={}",
+                            outcome, tenant, redact(norm), shortQuery);
+                }
+                sample.stop(metrics.timer("omnibox.db.timer", "tenant", tenant, "result", outcome));
+                return OmniboxResult.builder().build();
+            }
+            sample.stop(metrics.timer("omnibox.db.timer", "tenant", tenant, "result", dbResult(rows, missing)));
+            sessions.remember(tenant, user, norm, rows,
+                    missing.isEmpty() && OmniboxResultAssembler.everyGroupBelow(rows, perGroup), !shortQuery, cacheVersion);
+        }
 
-    private SearchHitContact toContact(Map<String, Object> r, double min, double max) {
-        final String id = str(r.get("entity_id"));
-        return SearchHitContact.builder()
-                .id("c_" + id)
-                .title(str(r.get("title")))
-                .subtitle(optStr(r.get("subtitle")))
-                .score(normScore(r, min, max))
-                .contactId(id)
-                .build();
+        // Group, cap per group (bounds refined supersets too) and normalize scores to [0..1] in one pass
+        final OmniboxResult result = OmniboxResultAssembler.assemble(rows, perGroup, missing,
+                fresh ? cursorTerm(term) : null);
+        metrics.counter("omnibox.requests.total", "tenant", tenant, "result", dbResult(rows, missing)).increment();
+        if (fresh && missing.isEmpty()) {
+            // Partial answers are never cached: the next keystroke deserves another chance at every group.
+            // Refined answers are not either: they approximate the SQL match on one user's rows, so they stay
+            // in that user's session instead of being served to the whole tenant.
+            cache.put(tenant, norm, perGroup, result, cacheVersion);
+        }
+        return result;
     }
 
-    private SearchHitListing toListing(Map<String, Object> r, double min, double max) {
-        final String id = str(r.get("entity_id"));
-        // mlsId may or may not be selected by the repo; read defensively
-        final String mlsId = optStr(r.get("mls_id"));
-        return SearchHitListing.builder()
-                .id("l_" + id)
-                .title(str(r.get("title")))
-                .subtitle(optStr(r.get("subtitle")))
-                .score(normScore(r, min, max))
-                .listingId(id)
-                .mlsId(mlsId)
-                .build();
-    }
+    // --------------------------- Small utils ---------------------------
 
-    private SearchHitReferral toReferral(Map<String, Object> r, double min, double max) {
-        final String id = str(r.get("entity_id"));
-        return SearchHitReferral.builder()
-                .id("r_" + id)
-                .title(str(r.get("title")))
-                .subtitle(optStr(r.get("subtitle")))
-                .score(normScore(r, min, max))
-                .referralId(id)
-                .build();
+    /**
+     * Term the keyset cursors of an answer are bound to; {@code null} (no cursors) unless Postgres is the primary
+     * engine, as cursors need the Postgres scores.
+     */
+    private String cursorTerm(String term) {
+        return PostgresSearchEngine.NAME.equals(engines.primaryName()) ? term : null;
     }
 
-    private SearchHitTransaction toTransaction(Map<String, Object> r, double min, double max) {
-        final String id = str(r.get("entity_id"));
-        return SearchHitTransaction.builder()
-                .id("t_" + id)
-                .title(str(r.get("title")))
-                .subtitle(optStr(r.get("subtitle")))
-                .score(normScore(r, min, max))
-                .transactionId(id)
-                .build();
+    private static String failureOutcome(QueryBudget b, Throwable e) {
+        if (b.isSuperseded()) return "superseded";
+        if (b.isCancelled()) return "cancelled";
+        return QueryBudget.isTimeout(e) ? "timeout" : "error";
     }
 
-    private SearchHitProduct toProduct(Map<String, Object> r, double min, double max) {
-        final String id = str(r.get("entity_id"));
-        return SearchHitProduct.builder()
-                .id("p_" + id)
-                .title(str(r.get("title")))
-                .subtitle(optStr(r.get("subtitle")))
-                .score(normScore(r, min, max))
-                .productId(id)
-                .build();
+    private static String dbResult(SearchRows rows, Set<SearchEntityType> missing) {
+        if (!missing.isEmpty()) return "partial";
+        return rows.isEmpty() ? "empty" : "ok";
     }
 
-    private SearchHitMailing toMailing(Map<String, Object> r, double min, double max) {
-        final String id = str(r.get("entity_id"));
-        return SearchHitMailing.builder()
-                .id("m_" + id)
-                .title(str(r.get("title")))
-                .subtitle(optStr(r.get("subtitle")))
-                .score(normScore(r, min, max))
-                .mailingId(id)
-                .build();
+    private static String userId() {
+        final TenantContext ctx = TenantContextHolder.get();
+        return ctx == null ? null : ctx.userId();
     }
 
-    // --------------------------- Small utils ---------------------------
-
     private static int clamp(int value, int min, int max, int dflt) {
         if (value < min) return dflt;
         if (value > max) return max;
         return value;
     }
 
-    private static String str(Object o) {
-        return o == null ? "" : String.valueOf(o);
-    }
-
-    private static String optStr(Object o) {
-        String s = (o == null ? "" : String.valueOf(o));
-        return s.isEmpty() ? null : s;
-    }
-
     /**
      * Light-touch redaction for logs (extend to mask emails/phones if needed).
      */
@@ -0,0 +1,228 @@
+package com.github.dimitryivaniuta.gateway.search.service;
+
+import com.github.dimitryivaniuta.gateway.search.engine.PostgresSearchEngine;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchRequest;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchResult;
+import com.github.dimitryivaniuta.gateway.search.graphql.Tokenizer;
+import com.github.dimitryivaniuta.gateway.search.repository.ReadReplicaRouter;
+import com.github.dimitryivaniuta.gateway.search.repository.QueryBudget;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Startup warmup: the pod reports ready only after its first queries stop being the slowest ones.
+ * <p>
+ * Spring Boot flips readiness to {@code ACCEPTING_TRAFFIC} after every {@link ApplicationRunner} has
+ * returned, so running here keeps the pod out of the load balancer while it:
+ * <ol>
+ *   <li>fills the pools omnibox reads use up to their {@code minimum-idle}: every read replica pool, or the
+ *       primary when no replica is configured (connections are otherwise opened lazily, on the first real
+ *       requests);</li>
+ *   <li>runs the full (FTS) and short (prefix-table) omnibox statements for the seed queries, round after round,
+ *       until the round time settles (JIT compiled, statements prepared server-side, index pages in the
+ *       buffer cache) or {@code app.omnibox.warmup.max-duration} is reached.</li>
+ * </ol>
+ * Seeds come from {@code app.omnibox.warmup.seeds} or, if none are configured, from word prefixes of the most
+ * recently indexed {@code search_items} rows. Warmup never fails startup: errors are logged and readiness
+ * proceeds. Results are not cached, so no stale entry survives warmup.
+ * <p>
+ * Metrics: {@code omnibox.warmup.duration{result=settled|timeout|failed}}, {@code omnibox.warmup.queries}.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnProperty(name = "app.omnibox.warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class OmniboxWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(OmniboxWarmup.class);
+
+    /** Round time within this ratio of the previous round counts as settled. */
+    private static final double SETTLED_RATIO = 0.10;
+    private static final int MIN_ROUNDS = 5;
+    private static final Duration QUERY_BUDGET = Duration.ofSeconds(2);
+
+    private static final String RECENT_SQL = """
+            select tenant_id, title
+            from search_items
+            order by id desc
+            limit ?
+            """;
+
+    private static final EnumSet<SearchEntityType> ALL_TYPES = EnumSet.allOf(SearchEntityType.class);
+
+    private final ApplicationContext context;
+    private final PostgresSearchEngine postgres;
+    private final ReadReplicaRouter reads;
+    private final JdbcTemplate jdbc;
+    private final MeterRegistry metrics;
+    private final ExecutorService executor;
+
+    private final List<String> seeds;
+    private final String seedTenant;
+    private final int sampleRows;
+    private final int concurrency;
+    private final int poolWarm;
+    private final Duration maxDuration;
+
+    public OmniboxWarmup(ApplicationContext context,
+                         PostgresSearchEngine postgres,
+                         ReadReplicaRouter reads,
+                         JdbcTemplate jdbc,
+                         MeterRegistry metrics,
+                         ExecutorService omniboxExecutor,
+                         @Value("${app.omnibox.warmup.seeds:}") List<String> seeds,
+                         @Value("${app.omnibox.warmup.tenant:demo-tenant}") String seedTenant,
+                         @Value("${app.omnibox.warmup.sample-rows:50}") int sampleRows,
+                         @Value("${app.omnibox.warmup.concurrency:4}") int concurrency,
+                         @Value("${spring.datasource.hikari.minimum-idle:10}") int poolWarm,
+                         @Value("${app.omnibox.warmup.max-duration:30s}") Duration maxDuration) {
+        this.context = context;
+        this.postgres = postgres;
+        this.reads = reads;
+        this.jdbc = jdbc;
+        this.metrics = metrics;
+        this.executor = omniboxExecutor;
+        this.seeds = seeds;
+        this.seedTenant = seedTenant;
+        this.sampleRows = sampleRows;
+        this.concurrency = Math.max(1, concurrency);
+        this.poolWarm = poolWarm;
+        this.maxDuration = maxDuration;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // Already the state during startup; published explicitly so the gate does not depend on runner order
+        AvailabilityChangeEvent.publish(context, ReadinessState.REFUSING_TRAFFIC);
+        final long start = System.nanoTime();
+        String result = "failed";
+        try {
+            for (DataSource pool : reads.pools()) fillPool(pool);
+            final List<SearchRequest> requests = requests();
+            result = requests.isEmpty() ? "settled" : runRounds(requests, start);
+        } catch (Exception e) {
+            log.warn("Omnibox warmup failed; accepting traffic cold. err={}", e.toString());
+        } finally {
+            final long took = System.nanoTime() - start;
+            metrics.timer("omnibox.warmup.duration", "result", result).record(took, TimeUnit.NANOSECONDS);
+            log.info("Omnibox warmup {} in {} ms", result, TimeUnit.NANOSECONDS.toMillis(took));
+        }
+    }
+
+    /** Open {@code minimum-idle} connections at once so the pool is full before the first request. */
+    private void fillPool(DataSource pool) throws Exception {
+        // Replica pools may size minimum-idle down to app.omnibox.replicas.pool-size; -1 is Hikari's "unset"
+        final int idle = pool instanceof HikariDataSource hikari ? hikari.getMinimumIdle() : -1;
+        final int size = idle >= 0 ? idle : poolWarm;
+        final CountDownLatch allOpen = new CountDownLatch(size);
+        final List<Future<?>> opened = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            opened.add(executor.submit(() -> {
+                try (Connection c = pool.getConnection()) {
+                    c.isValid(1);
+                    // Hold until every connection is out, otherwise the pool just hands back the same one
+                    allOpen.countDown();
+                    allOpen.await(5, TimeUnit.SECONDS);
+                } catch (SQLException e) {
+                    allOpen.countDown();
+                    log.debug("Omnibox warmup could not open a connection: {}", e.toString());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : opened) f.get();
+    }
+
+    private List<SearchRequest> requests() {
+        final Set<Seed> picked = new LinkedHashSet<>();
+        if (!seeds.isEmpty()) {
+            for (String q : seeds) picked.add(new Seed(seedTenant, q));
+        } else {
+            jdbc.query(RECENT_SQL, rs -> {
+                final List<String> words = Tokenizer.tokens(rs.getString(2));
+                if (words.isEmpty()) return;
+                final String tenant = rs.getString(1);
+                final String word = words.get(0);
+                // One short (prefix-table plan) and one full (FTS plan) query per sampled row
+                picked.add(new Seed(tenant, word.substring(0, Math.min(2, word.length()))));
+                picked.add(new Seed(tenant, word.substring(0, Math.min(4, word.length()))));
+                if (words.size() > 1) picked.add(new Seed(tenant, word + " " + words.get(1)));
+            }, sampleRows);
+        }
+        final List<SearchRequest> out = new ArrayList<>(picked.size());
+        for (Seed s : picked) {
+            final String norm = Tokenizer.normalize(s.query());
+            if (norm.isEmpty()) continue;
+            final List<String> toks = Tokenizer.tokens(norm);
+            final boolean shortQuery = norm.length() <= OmniboxService.SHORT_QUERY_LEN;
+            out.add(new SearchRequest(s.tenant(), norm, toks, Tokenizer.toPrefixTsQuery(toks),
+                    norm.toLowerCase(Locale.ROOT), ALL_TYPES, 5, shortQuery, null));
+        }
+        return out;
+    }
+
+    /** Rounds over every seed until the round time settles; returns the outcome tag. */
+    private String runRounds(List<SearchRequest> requests, long start) throws Exception {
+        final long deadline = start + maxDuration.toNanos();
+        long previous = Long.MAX_VALUE;
+        for (int round = 1; System.nanoTime() < deadline; round++) {
+            final long t0 = System.nanoTime();
+            final List<Future<?>> inFlight = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i += concurrency) {
+                inFlight.clear();
+                for (int j = i; j < Math.min(i + concurrency, requests.size()); j++) {
+                    final SearchRequest r = requests.get(j);
+                    inFlight.add(executor.submit(() -> warm(r)));
+                }
+                for (Future<?> f : inFlight) f.get();
+            }
+            final long took = System.nanoTime() - t0;
+            if (round >= MIN_ROUNDS && Math.abs(took - previous) <= previous * SETTLED_RATIO) {
+                log.debug("Omnibox warmup settled after {} rounds ({} queries each)", round, requests.size());
+                return "settled";
+            }
+            previous = took;
+        }
+        return "timeout";
+    }
+
+    private void warm(SearchRequest r) {
+        try {
+            final SearchResult found = postgres.search(r.withBudget(QueryBudget.of(QUERY_BUDGET)));
+            // Also exercise the mapping path the real request takes
+            OmniboxResultAssembler.assemble(found.rows(), r.perGroup(), found.missing(), r.term());
+        } catch (RuntimeException e) {
+            log.debug("Omnibox warmup query failed. tenant={}, q='{}', err={}", r.tenant(), r.query(), e.toString());
+        }
+        metrics.counter("omnibox.warmup.queries").increment();
+    }
+
+    private record Seed(String tenant, String query) {}
+}
@@ -0,0 +1,98 @@
+package com.github.dimitryivaniuta.gateway.search.service;
+
+import com.github.dimitryivaniuta.gateway.search.repository.QueryBudget;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single-flight in front of the repository: concurrent calls with the same key share one DB execution.
+ * <p>
+ * The first caller (the leader) runs the query; callers arriving while it is in flight wait for the same
+ * result instead of taking another pooled connection. The entry is removed as soon as the leader finishes,
+ * so nothing is served after the fact — this is not a cache and adds no staleness.
+ * A failure of the leader is rethrown to every waiter. The shared statement runs under the leader's
+ * {@link QueryBudget}; if it is cancelled or times out, each waiter retries once under its own budget.
+ * <p>
+ * Metrics: {@code omnibox.coalesce.requests{tenant,result=leader|joined}}; {@code joined} is the number
+ * of DB calls saved.
+ */
+@Component
+public class QueryCoalescer {
+
+    /**
+     * Everything that shapes the SQL answer. {@code type} is {@code null} for the all-groups statement.
+     */
+    record Key(String tenant, String prefix, String term, int perGroup, boolean shortQuery, SearchEntityType type) {}
+
+    private final MeterRegistry metrics;
+    private final boolean enabled;
+    private final ConcurrentHashMap<Key, CompletableFuture<SearchRows>> inFlight = new ConcurrentHashMap<>();
+
+    public QueryCoalescer(MeterRegistry metrics,
+                          @Value("${app.omnibox.coalesce.enabled:true}") boolean enabled) {
+        this.metrics = metrics;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Run {@code query}, or join an identical one already in flight.
+     */
+    public SearchRows execute(String tenant, String prefix, String term, int perGroup, boolean shortQuery,
+                              SearchEntityType type, Supplier<SearchRows> query) {
+        if (!enabled) return query.get();
+        return execute(new Key(tenant, prefix, term, perGroup, shortQuery, type), query, true);
+    }
+
+    private SearchRows execute(Key key, Supplier<SearchRows> query, boolean mayRetry) {
+        final String tenant = key.tenant();
+        final CompletableFuture<SearchRows> mine = new CompletableFuture<>();
+        final CompletableFuture<SearchRows> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            metrics.counter("omnibox.coalesce.requests", "tenant", tenant, "result", "joined").increment();
+            try {
+                return await(existing);
+            } catch (RuntimeException e) {
+                // The leader's request was superseded/aborted or spent its own budget; ours may still have time
+                if (mayRetry && QueryBudget.isTimeout(e)) return execute(key, query, false);
+                throw e;
+            }
+        }
+
+        metrics.counter("omnibox.coalesce.requests", "tenant", tenant, "result", "leader").increment();
+        try {
+            final SearchRows rows = query.get();
+            inFlight.remove(key, mine);
+            mine.complete(rows);
+            return rows;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /** Number of distinct queries currently executing (exposed for tests/diagnostics). */
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    private static SearchRows await(CompletableFuture<SearchRows> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a coalesced omnibox query", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
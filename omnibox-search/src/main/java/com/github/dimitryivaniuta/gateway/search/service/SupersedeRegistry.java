@@ -0,0 +1,50 @@
+package com.github.dimitryivaniuta.gateway.search.service;
+
+import com.github.dimitryivaniuta.gateway.search.repository.QueryBudget;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks the in-flight omnibox request of each (tenant, user) and cancels it when the same user sends a newer one.
+ * <p>
+ * The frontend abandons the previous keystroke's request, but an abandoned HTTP request rarely stops the
+ * server-side work. Here the older request's {@link QueryBudget} is superseded, which cancels its statements
+ * over JDBC; the request itself completes with an empty answer nobody reads.
+ * Requests without a user id are not tracked.
+ * <p>
+ * Metrics: {@code omnibox.supersede.cancelled{tenant}} (also visible as
+ * {@code omnibox.requests.total{result=superseded}} once the cancelled request unwinds).
+ */
+@Component
+public class SupersedeRegistry {
+
+    record Key(String tenant, String user) {}
+
+    private final MeterRegistry metrics;
+    private final boolean enabled;
+    private final ConcurrentHashMap<Key, QueryBudget> inFlight = new ConcurrentHashMap<>();
+
+    public SupersedeRegistry(MeterRegistry metrics,
+                             @Value("${app.omnibox.supersede.enabled:true}") boolean enabled) {
+        this.metrics = metrics;
+        this.enabled = enabled;
+    }
+
+    /** Register {@code budget} as the user's current request and supersede the previous one, if any. */
+    public void begin(String tenant, String user, QueryBudget budget) {
+        if (!enabled || user == null) return;
+        final QueryBudget previous = inFlight.put(new Key(tenant, user), budget);
+        if (previous != null && previous != budget) {
+            previous.supersede();
+            metrics.counter("omnibox.supersede.cancelled", "tenant", tenant).increment();
+        }
+    }
+
+    /** Forget {@code budget}, unless a newer request of the same user already replaced it. */
+    public void end(String tenant, String user, QueryBudget budget) {
+        if (!enabled || user == null) return;
+        inFlight.remove(new Key(tenant, user), budget);
+    }
+}
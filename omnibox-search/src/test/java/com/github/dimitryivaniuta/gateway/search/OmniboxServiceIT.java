@@ -1,4 +1,125 @@
 package com.github.dimitryivaniuta.gateway.search;
 
-public class OmniboxServiceIT {
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.GroupCursor;
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.OmniboxPage;
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.OmniboxResult;
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.SearchHitContact;
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.SearchHitListing;
+import com.github.dimitryivaniuta.gateway.search.security.TenantContext;
+import com.github.dimitryivaniuta.gateway.search.security.TenantContextHolder;
+import com.github.dimitryivaniuta.gateway.search.service.OmniboxService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link OmniboxService} against Postgres with the indexer's schema (its Flyway migrations). The result
+ * cache is off so every call reaches SQL; there is no user, so no type-ahead refinement either.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(properties = {
+        "spring.flyway.locations=filesystem:../indexer-search/src/main/resources/db/migration",
+        "app.omnibox.cache.enabled=false",
+        "app.omnibox.warmup.enabled=false"
+})
+class OmniboxServiceIT {
+
+    private static final String T = "it-tenant";
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:17-alpine");
+
+    @Autowired
+    OmniboxService service;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @BeforeEach
+    void seed() {
+        jdbc.update("delete from search_items where tenant_id = ?", T);
+        final List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            rows.add(new Object[]{T, "CONTACT", "c" + i, "John Smith " + i, "john" + i + "@acme.test"});
+        }
+        rows.add(new Object[]{T, "LISTING", "l1", "12 Smith Street", "MLS 4411"});
+        rows.add(new Object[]{T, "LISTING", "l2", "Acme Tower", "MLS 4412"});
+        rows.add(new Object[]{T, "REFERRAL", "r1", "Referral from Smith", null});
+        rows.add(new Object[]{T, "PRODUCT", "p1", "Acme Anvil", "heavy"});
+        rows.add(new Object[]{T, "MAILING", "m1", "Spring newsletter", "acme customers"});
+        rows.add(new Object[]{"other-tenant", "CONTACT", "x1", "John Smith", null});
+        jdbc.batchUpdate("""
+                insert into search_items (tenant_id, entity_type, entity_id, title, subtitle)
+                values (?, ?, ?, ?, ?)
+                on conflict (tenant_id, entity_type, entity_id) do nothing
+                """, rows);
+        TenantContextHolder.set(new TenantContext(T, null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContextHolder.clear();
+    }
+
+    @Test
+    @DisplayName("searchBatch answers every term with the same groups as separate search calls")
+    void searchBatch_matchesSeparateSearches() {
+        final List<String> terms = List.of("smith", "acme", "John Sm", "smith", "nothing-here", "", "MLS 4411");
+
+        final List<OmniboxResult> batch = service.searchBatch(terms, 5, null);
+
+        assertThat(batch).hasSameSizeAs(terms);
+        for (int i = 0; i < terms.size(); i++) {
+            assertThat(batch.get(i)).as("term '%s'", terms.get(i)).isEqualTo(service.search(terms.get(i), 5));
+        }
+        // The data is what the comparison is about: full groups, several types, other tenant excluded
+        assertThat(batch.get(0).contacts()).hasSize(5);
+        assertThat(batch.get(0).nextCursors()).isNotEmpty();
+        assertThat(batch.get(0).listings()).extracting(SearchHitListing::listingId).containsExactly("l1");
+        assertThat(batch.get(1).products()).isNotEmpty();
+        assertThat(batch.get(4).contacts()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("omniboxMore walks a group by keyset from the first answer without gaps or duplicates")
+    void more_walksAllPagesOnce() {
+        final OmniboxResult first = service.search("smith", 3);
+        final List<String> ids = new ArrayList<>();
+        first.contacts().forEach(h -> ids.add(h.contactId()));
+        String after = first.nextCursors().stream()
+                .filter(c -> c.group().equals("CONTACT"))
+                .map(GroupCursor::after)
+                .findFirst().orElseThrow();
+
+        int pages = 0;
+        while (after != null) {
+            final OmniboxPage page = service.more("smith", "CONTACT", after, 4, null);
+            page.hits().forEach(h -> ids.add(((SearchHitContact) h).contactId()));
+            assertThat(page.hasMore()).isEqualTo(page.endCursor() != null);
+            after = page.endCursor();
+            assertThat(++pages).isLessThanOrEqualTo(3);
+        }
+
+        // 12 contacts: 3 in the answer, then pages of 4, 4 and 1
+        assertThat(ids).doesNotHaveDuplicates()
+                .containsExactlyInAnyOrder("c0", "c1", "c2", "c3", "c4", "c5", "c6", "c7", "c8", "c9", "c10", "c11");
+        assertThat(pages).isEqualTo(3);
+        assertThatThrownBy(() -> service.more("acme", "CONTACT", first.nextCursors().get(0).after(), 4, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
 }
@@ -1,4 +1,38 @@
 package com.github.dimitryivaniuta.gateway.search;
 
+import com.github.dimitryivaniuta.gateway.search.graphql.Tokenizer;
+import com.github.dimitryivaniuta.gateway.text.TextAnalyzer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 public class TokenizerTest {
+
+    @Test
+    @DisplayName("queries are lowercased, accent-folded and split on anything that is not a letter or digit")
+    void normalize_foldsAndSplits() {
+        assertThat(Tokenizer.normalize("  Zoë   O'Brien ")).isEqualTo("zoe o brien");
+        assertThat(Tokenizer.normalize("Straße Łódź école")).isEqualTo("strasse lodz ecole");
+        final String normalized = "sam gal";
+        assertThat(Tokenizer.normalize(normalized)).isSameAs(normalized);
+        assertThat(Tokenizer.normalize(null)).isEmpty();
+        assertThat(Tokenizer.normalize(" -- ")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("tsquery operators and LIKE wildcards in user input never reach the SQL")
+    void tokens_areSafeForTsQuery() {
+        assertThat(Tokenizer.tokens("a&b:*|!(c) 50%_off")).containsExactly("a", "b", "c", "50", "off");
+        assertThat(Tokenizer.toPrefixTsQuery(Tokenizer.tokens("Sam  GAL"))).isEqualTo("sam:* & gal:*");
+    }
+
+    @Test
+    @DisplayName("stored form adds joined and split identifier variants after the words")
+    void indexForm_addsIdentifierVariants() {
+        assertThat(TextAnalyzer.indexForm("MLS-12345 Main St")).isEqualTo("mls 12345 main st mls12345");
+        assertThat(TextAnalyzer.indexForm("MLS12345")).isEqualTo("mls12345 mls 12345");
+        assertThat(TextAnalyzer.indexForm("(555) 123-4567")).isEqualTo("555 123 4567 1234567");
+        assertThat(TextAnalyzer.indexForm("joe.doe@acme.io")).isEqualTo("joe doe acme io joedoeacmeio");
+    }
 }
@@ -0,0 +1,129 @@
+package com.github.dimitryivaniuta.gateway.search.cache;
+
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.OmniboxResult;
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.SearchHitContact;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OmniboxResultCacheTest {
+
+    private final SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+    private final OmniboxResultCache cache = new OmniboxResultCache(metrics, true, 100, Duration.ofMinutes(1),
+            List.of(), Duration.ofSeconds(5), Duration.ofSeconds(1));
+
+    private static OmniboxResult result(String title) {
+        return OmniboxResult.builder()
+                .contact(new SearchHitContact("c-" + title, title, null, 1f, "c-" + title))
+                .build();
+    }
+
+    @Test
+    @DisplayName("a result computed before an invalidation is not stored")
+    void put_dropsStaleVersion() {
+        final long before = cache.version("t1");
+        cache.invalidateTenant("t1");
+
+        cache.put("t1", "sam", 5, result("Sam"), before);
+        assertThat(cache.get("t1", "sam", 5)).isNull();
+
+        cache.put("t1", "sam", 5, result("Sam"), cache.version("t1"));
+        assertThat(cache.get("t1", "sam", 5)).isEqualTo(result("Sam"));
+    }
+
+    @Test
+    @DisplayName("tenant invalidation drops that tenant only; key is case-insensitive and per limit")
+    void invalidateTenant_isScoped() {
+        cache.put("t1", "Sam", 5, result("Sam"), cache.version("t1"));
+        cache.put("t2", "sam", 5, result("Other"), cache.version("t2"));
+
+        assertThat(cache.get("t1", "SAM", 5)).isEqualTo(result("Sam"));
+        assertThat(cache.get("t1", "sam", 10)).isNull();
+
+        final long t2Before = cache.version("t2");
+        cache.invalidateTenant("t1");
+
+        assertThat(cache.get("t1", "sam", 5)).isNull();
+        assertThat(cache.get("t2", "sam", 5)).isEqualTo(result("Other"));
+        assertThat(cache.version("t2")).isEqualTo(t2Before);
+        assertThat(metrics.counter("omnibox.cache.invalidations", "scope", "tenant").count()).isEqualTo(1d);
+    }
+
+    @Test
+    @DisplayName("global invalidation drops everything and bumps every tenant's version")
+    void invalidateAll_bumpsEveryTenant() {
+        final long t1Before = cache.version("t1");
+        cache.put("t1", "sam", 5, result("Sam"), t1Before);
+        cache.put("t2", "sam", 5, result("Other"), cache.version("t2"));
+
+        cache.invalidateAll();
+
+        assertThat(cache.get("t1", "sam", 5)).isNull();
+        assertThat(cache.get("t2", "sam", 5)).isNull();
+        cache.put("t1", "sam", 5, result("Sam"), t1Before);
+        assertThat(cache.get("t1", "sam", 5)).isNull();
+    }
+
+    @Test
+    @DisplayName("with replicas, an answer cached right after an invalidation is swept again after max-lag")
+    void replicas_invalidationRepeatedAfterMaxLag() throws Exception {
+        final OmniboxResultCache replicated = new OmniboxResultCache(metrics, true, 100, Duration.ofMinutes(1),
+                List.of("jdbc:postgresql://replica/db"), Duration.ofMillis(250), Duration.ofMillis(50));
+
+        replicated.invalidateTenant("t1");
+        replicated.invalidateTenant("t2");
+        // A query started after the notification, answered by a replica that has not replayed the change yet
+        replicated.put("t1", "sam", 5, result("Old Sam"), replicated.version("t1"));
+        assertThat(replicated.get("t1", "sam", 5)).isEqualTo(result("Old Sam"));
+        // A second notification within max-lag pushes the repeat back instead of adding one
+        Thread.sleep(100);
+        replicated.invalidateTenant("t1");
+        replicated.put("t1", "sam", 5, result("Old Sam"), replicated.version("t1"));
+        Thread.sleep(100);
+        assertThat(replicated.get("t1", "sam", 5)).isEqualTo(result("Old Sam"));
+
+        awaitNull(replicated, "t1");
+
+        // Once repeated, the tenant caches as usual again; one repeat per tenant
+        replicated.put("t1", "sam", 5, result("Sam"), replicated.version("t1"));
+        Thread.sleep(400);
+        assertThat(replicated.get("t1", "sam", 5)).isEqualTo(result("Sam"));
+        assertThat(metrics.counter("omnibox.cache.invalidations", "scope", "tenant-replica-lag").count())
+                .isEqualTo(2d);
+    }
+
+    @Test
+    @DisplayName("without replicas an invalidation is not repeated")
+    void noReplicas_invalidationNotRepeated() throws Exception {
+        final OmniboxResultCache primaryOnly = new OmniboxResultCache(metrics, true, 100, Duration.ofMinutes(1),
+                List.of(""), Duration.ofMillis(10), Duration.ofMillis(10));
+
+        primaryOnly.invalidateTenant("t1");
+        primaryOnly.put("t1", "sam", 5, result("Sam"), primaryOnly.version("t1"));
+        Thread.sleep(100);
+
+        assertThat(primaryOnly.get("t1", "sam", 5)).isEqualTo(result("Sam"));
+        assertThat(metrics.counter("omnibox.cache.invalidations", "scope", "tenant-replica-lag").count()).isZero();
+    }
+
+    private static void awaitNull(OmniboxResultCache cache, String tenant) throws InterruptedException {
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.get(tenant, "sam", 5) != null && System.nanoTime() < end) Thread.sleep(5);
+        assertThat(cache.get(tenant, "sam", 5)).isNull();
+    }
+
+    @Test
+    @DisplayName("disabled cache never stores")
+    void disabled_neverStores() {
+        final OmniboxResultCache off = new OmniboxResultCache(metrics, false, 100, Duration.ofMinutes(1),
+            List.of(), Duration.ofSeconds(5), Duration.ofSeconds(1));
+        off.put("t1", "sam", 5, result("Sam"), off.version("t1"));
+        assertThat(off.get("t1", "sam", 5)).isNull();
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.dimitryivaniuta.gateway.search.cache;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TypeaheadSessionCacheTest {
+
+    private static final String T = "t1";
+    private static final String U = "u1";
+
+    private final TypeaheadSessionCache sessions =
+            new TypeaheadSessionCache(new SimpleMeterRegistry(), true, 100, Duration.ofMinutes(1));
+
+    private static SearchRow row(String id, String title, String subtitle) {
+        return new SearchRow(SearchEntityType.CONTACT, id, title, subtitle, 0.5d);
+    }
+
+    private static SearchRows rows(SearchRow... rows) {
+        return SearchRows.of(List.of(rows));
+    }
+
+    @Test
+    @DisplayName("longer prefix is answered by filtering the complete superset")
+    void refine_filtersSuperset() {
+        var rows = rows(
+                row("1", "Samuel Gallagher", "Main St"),
+                row("2", "Sam Smith", "Oak Ave"),
+                row("3", "Samantha Lee", "Gala Rd"));
+        sessions.remember(T, U, "sam", rows, true, true, 0L);
+
+        assertThat(sessions.refine(T, U, "samu", 0L).rows()).extracting(SearchRow::entityId).containsExactly("1");
+        // refined set becomes the new session state
+        assertThat(sessions.refine(T, U, "samue", 0L).rows()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("multi-token extension requires every token to prefix a word")
+    void refine_multiToken() {
+        var rows = rows(
+                row("1", "Samuel Gallagher", null),
+                row("2", "Sam Smith", "Gala Rd"),
+                row("3", "Samantha Lee", "Oak"));
+        sessions.remember(T, U, "sam", rows, true, true, 0L);
+
+        assertThat(sessions.refine(T, U, "sam ga", 0L).rows()).extracting(SearchRow::entityId).containsExactly("1", "2");
+    }
+
+    @Test
+    @DisplayName("empty FTS answer short-circuits every extension; truncated or stale sets are not reused")
+    void refine_negativeAndGuards() {
+        sessions.remember(T, U, "xqa", SearchRows.EMPTY, true, true, 0L);
+        assertThat(sessions.refine(T, U, "xqaz", 0L).isEmpty()).isTrue();
+
+        // Short (word-prefix) plan: no word starts with "xq", but "xqz" may still occur inside a word
+        sessions.remember(T, U, "xq", SearchRows.EMPTY, true, false, 0L);
+        assertThat(sessions.refine(T, U, "xqz", 0L)).isNull();
+
+        sessions.remember(T, U, "sam", rows(row("1", "Sam", null)), false, true, 0L);
+        assertThat(sessions.refine(T, U, "samu", 0L)).isNull();
+
+        sessions.remember(T, U, "sam", rows(row("1", "Sam", null)), true, true, 0L);
+        assertThat(sessions.refine(T, U, "samu", 1L)).isNull();
+        assertThat(sessions.refine(T, null, "samu", 0L)).isNull();
+    }
+}
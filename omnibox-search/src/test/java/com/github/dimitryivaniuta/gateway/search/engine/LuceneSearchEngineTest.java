@@ -0,0 +1,136 @@
+package com.github.dimitryivaniuta.gateway.search.engine;
+
+import com.github.dimitryivaniuta.gateway.search.repository.QueryBudget;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LuceneSearchEngineTest {
+
+    private static final SearchEntityType C = SearchEntityType.CONTACT;
+    private static final SearchEntityType L = SearchEntityType.LISTING;
+
+    @TempDir
+    Path dir;
+
+    private LuceneSearchEngine engine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        engine = new LuceneSearchEngine(new SimpleMeterRegistry(), dir, Duration.ofMillis(50));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        engine.close();
+    }
+
+    private static SearchRequest request(String tenant, String q, Set<SearchEntityType> types, int perGroup) {
+        final List<String> toks = List.of(q.toLowerCase(Locale.ROOT).split(" "));
+        return new SearchRequest(tenant, q, toks, null, q.toLowerCase(Locale.ROOT), types, perGroup,
+                q.length() <= 2, QueryBudget.of(Duration.ofSeconds(5)));
+    }
+
+    private List<String> ids(String tenant, String q, Set<SearchEntityType> types, int perGroup) {
+        return engine.search(request(tenant, q, types, perGroup)).rows().rows().stream()
+                .map(SearchRow::entityId).toList();
+    }
+
+    @Test
+    @DisplayName("not ready until the bootstrap finished")
+    void readyAfterBootstrap() {
+        assertThat(engine.isReady()).isFalse();
+        engine.upsert("t1", C, "1", "Sam Gallagher", null);
+        engine.bootstrapped();
+        assertThat(engine.isReady()).isTrue();
+    }
+
+    @Test
+    @DisplayName("every token must prefix a word of title or subtitle; tenants and types stay apart")
+    void prefixAnd_tenantAndTypeScoped() {
+        engine.upsert("t1", C, "1", "Samuel Gallagher", "Main St");
+        engine.upsert("t1", C, "2", "Sam Smith", "Gala Rd");
+        engine.upsert("t1", C, "3", "Pete Sampras", null);
+        engine.upsert("t1", L, "4", "Samson Loft", null);
+        engine.upsert("t2", C, "5", "Sam Other", null);
+        engine.bootstrapped();
+
+        assertThat(ids("t1", "sam", EnumSet.of(C), 10)).containsExactlyInAnyOrder("1", "2", "3");
+        assertThat(ids("t1", "sam ga", EnumSet.of(C), 10)).containsExactlyInAnyOrder("1", "2");
+        assertThat(ids("t1", "SAM MAIN", EnumSet.of(C), 10)).containsExactly("1");
+        assertThat(ids("t1", "sam", EnumSet.of(L), 10)).containsExactly("4");
+        assertThat(ids("t2", "sam", EnumSet.of(C, L), 10)).containsExactly("5");
+        assertThat(ids("t1", "sam", EnumSet.of(C), 2)).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("apostrophes and hyphens split words as in the shared analyzer; identifiers match joined")
+    void sharedAnalyzer_splitsLikeOtherEngines() {
+        engine.upsert("t1", C, "1", "Pat O'Brien", null);
+        engine.upsert("t1", C, "2", "Brien Olsen", null);
+        engine.upsert("t1", C, "3", "Bob Stone", "12 Main-St");
+        engine.upsert("t1", C, "4", "Ann Lee", "Main Street");
+        engine.upsert("t1", C, "5", "Mainland Ave", null);
+        engine.upsert("t1", L, "6", "Zoë Loft", "MLS-12345");
+        engine.bootstrapped();
+
+        // Same data and answers as the bitmap and prefix index tests
+        assertThat(ids("t1", "o'brien", EnumSet.of(C), 10)).containsExactlyInAnyOrder("1", "2");
+        assertThat(ids("t1", "main-st", EnumSet.of(C), 10)).containsExactlyInAnyOrder("3", "4");
+        // Folding and the identifier variants of TextAnalyzer.indexForm, as in the Postgres columns
+        assertThat(ids("t1", "zoe", EnumSet.of(L), 10)).containsExactly("6");
+        assertThat(ids("t1", "mls123", EnumSet.of(L), 10)).containsExactly("6");
+        assertThat(ids("t1", "mainst", EnumSet.of(C), 10)).containsExactly("3");
+    }
+
+    @Test
+    @DisplayName("title matches outrank subtitle matches; ties break by entity id")
+    void ordering_titleBoostThenId() {
+        engine.upsert("t1", C, "b", "Oak Avenue", null);
+        engine.upsert("t1", C, "a", "Oak Street", null);
+        engine.upsert("t1", C, "0", "Pete", "Oak Lane");
+        engine.bootstrapped();
+
+        assertThat(ids("t1", "oak", EnumSet.of(C), 10)).containsExactly("a", "b", "0");
+    }
+
+    @Test
+    @DisplayName("upserts replace and deletes remove the row of the same key")
+    void upsertReplaces_deleteRemoves() {
+        engine.upsert("t1", C, "1", "Sam Gallagher", null);
+        engine.upsert("t1", C, "2", "Sam Smith", null);
+        engine.upsert("t1", C, "1", "Pete Gallagher", null);
+        engine.delete("t1", C, "2");
+        engine.bootstrapped();
+
+        assertThat(ids("t1", "sam", EnumSet.of(C), 10)).isEmpty();
+        assertThat(ids("t1", "pete", EnumSet.of(C), 10)).containsExactly("1");
+    }
+
+    @Test
+    @DisplayName("groups left when the budget is spent are reported missing")
+    void cancelledBudget_groupsMissing() {
+        engine.upsert("t1", C, "1", "Sam", null);
+        engine.bootstrapped();
+        final SearchRequest r = request("t1", "sam", EnumSet.of(C, L), 5);
+        r.budget().cancel();
+
+        final SearchResult result = engine.search(r);
+        assertThat(result.rows().isEmpty()).isTrue();
+        assertThat(result.missing()).containsExactlyInAnyOrder(C, L);
+    }
+}
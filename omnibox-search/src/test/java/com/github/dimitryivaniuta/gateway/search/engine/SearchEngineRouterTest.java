@@ -0,0 +1,216 @@
+package com.github.dimitryivaniuta.gateway.search.engine;
+
+import com.github.dimitryivaniuta.gateway.search.repository.QueryBudget;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchEngineRouterTest {
+
+    private static final String T = "t1";
+    private static final SearchEntityType C = SearchEntityType.CONTACT;
+
+    private final SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private final StubEngine postgres = new StubEngine(PostgresSearchEngine.NAME, r -> rows("pg"));
+    private final StubEngine lucene = new StubEngine(LuceneSearchEngine.NAME, r -> rows("lucene"));
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private SearchEngineRouter router(String primary, String shadow) {
+        return new SearchEngineRouter(List.of(postgres, lucene), metrics, executor, primary, shadow);
+    }
+
+    private static SearchRequest request() {
+        return new SearchRequest(T, "sam", List.of("sam"), "sam:*", "sam", EnumSet.of(C), 5, false,
+                QueryBudget.of(Duration.ofSeconds(5)));
+    }
+
+    private static SearchResult rows(String id) {
+        return SearchResult.complete(SearchRows.of(List.of(new SearchRow(C, id, "Sam", null, 1d))));
+    }
+
+    private double timerCount(String engine, String role, String result) {
+        return metrics.timer("omnibox.engine.timer",
+                "tenant", T, "engine", engine, "role", role, "result", result).count();
+    }
+
+    private static String answeredBy(SearchResult result) {
+        return result.rows().rows().get(0).entityId();
+    }
+
+    @Test
+    @DisplayName("a ready primary answers and is timed as role=primary")
+    void readyPrimary_answers() {
+        final SearchResult result = router(LuceneSearchEngine.NAME, "").search(request());
+
+        assertThat(answeredBy(result)).isEqualTo("lucene");
+        assertThat(postgres.calls.get()).isZero();
+        assertThat(timerCount("lucene", "primary", "ok")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("while the primary is not ready, Postgres answers as role=fallback")
+    void primaryNotReady_fallsBackToPostgres() {
+        lucene.ready = false;
+        final SearchEngineRouter router = router(LuceneSearchEngine.NAME, "");
+
+        assertThat(answeredBy(router.search(request()))).isEqualTo("pg");
+        assertThat(lucene.calls.get()).isZero();
+        assertThat(timerCount("postgres", "fallback", "ok")).isEqualTo(1);
+
+        lucene.ready = true;
+        assertThat(answeredBy(router.search(request()))).isEqualTo("lucene");
+    }
+
+    @Test
+    @DisplayName("the shadow gets the request under its own budget and never changes the answer")
+    void shadow_mirroredUnderOwnBudget() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final StubEngine shadow = new StubEngine(LuceneSearchEngine.NAME, r -> {
+            await(release);
+            throw new IllegalStateException("shadow broke");
+        });
+        final SearchEngineRouter router = new SearchEngineRouter(List.of(postgres, shadow), metrics, executor,
+                PostgresSearchEngine.NAME, LuceneSearchEngine.NAME);
+        final SearchRequest request = request();
+
+        final SearchResult result = router.search(request);
+        request.budget().cancel();
+        release.countDown();
+
+        assertThat(answeredBy(result)).isEqualTo("pg");
+        assertThat(shadow.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        final SearchRequest mirrored = shadow.last.get();
+        assertThat(mirrored.budget()).isNotSameAs(request.budget());
+        assertThat(mirrored.budget().isCancelled()).isFalse();
+        assertThat(mirrored.withBudget(request.budget())).isEqualTo(request);
+        awaitCount(() -> timerCount("lucene", "shadow", "error"));
+        assertThat(timerCount("postgres", "primary", "ok")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("a shadow that cannot be scheduled is counted and the primary still answers")
+    void shadowRejected_counted() {
+        final SearchEngineRouter router = router(PostgresSearchEngine.NAME, "lucene");
+        executor.shutdown();
+
+        assertThat(answeredBy(router.search(request()))).isEqualTo("pg");
+        assertThat(metrics.counter("omnibox.engine.shadow.rejected", "engine", "lucene").count()).isEqualTo(1);
+        assertThat(lucene.calls.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("the result tag tells partial, empty, timeout and error answers apart")
+    void resultTags() {
+        final SearchEngineRouter router = router(PostgresSearchEngine.NAME, "");
+
+        postgres.answer = r -> new SearchResult(SearchRows.EMPTY, Set.of(C));
+        router.search(request());
+        postgres.answer = r -> SearchResult.complete(SearchRows.EMPTY);
+        router.search(request());
+        postgres.answer = r -> {
+            throw new QueryTimeoutException("statement_timeout");
+        };
+        assertThatThrownBy(() -> router.search(request())).isInstanceOf(QueryTimeoutException.class);
+        postgres.answer = r -> {
+            throw new IllegalStateException("boom");
+        };
+        assertThatThrownBy(() -> router.search(request())).isInstanceOf(IllegalStateException.class);
+
+        assertThat(timerCount("postgres", "primary", "partial")).isEqualTo(1);
+        assertThat(timerCount("postgres", "primary", "empty")).isEqualTo(1);
+        assertThat(timerCount("postgres", "primary", "timeout")).isEqualTo(1);
+        assertThat(timerCount("postgres", "primary", "error")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("unknown engines, a shadow equal to the primary and a missing Postgres engine are rejected")
+    void constructor_rejectsBadConfiguration() {
+        assertThatThrownBy(() -> router("elastic", ""))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown omnibox engine 'elastic'");
+        assertThatThrownBy(() -> router(PostgresSearchEngine.NAME, "elastic"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown omnibox engine 'elastic'");
+        assertThatThrownBy(() -> router(LuceneSearchEngine.NAME, LuceneSearchEngine.NAME))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("must differ from primary");
+        assertThatThrownBy(() -> new SearchEngineRouter(List.of(lucene), metrics, executor, "lucene", ""))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("'postgres'");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitCount(DoubleSupplier count) throws InterruptedException {
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count.getAsDouble() == 0 && System.nanoTime() < end) Thread.sleep(5);
+        assertThat(count.getAsDouble()).isEqualTo(1);
+    }
+
+    /** Answers through {@link #answer}; remembers the last request. */
+    static final class StubEngine implements SearchEngine {
+
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicReference<SearchRequest> last = new AtomicReference<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        private final String name;
+        volatile Function<SearchRequest, SearchResult> answer;
+        volatile boolean ready = true;
+
+        StubEngine(String name, Function<SearchRequest, SearchResult> answer) {
+            this.name = name;
+            this.answer = answer;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public SearchResult search(SearchRequest request) {
+            calls.incrementAndGet();
+            last.set(request);
+            entered.countDown();
+            return answer.apply(request);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.dimitryivaniuta.gateway.search.engine.bitmap;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TenantBitmapIndexTest {
+
+    private final TenantBitmapIndex index = new TenantBitmapIndex("t1");
+
+    private List<String> ids(String query) {
+        final List<String> out = new ArrayList<>();
+        index.search(TenantBitmapIndex.words(query), EnumSet.allOf(SearchEntityType.class), 5,
+                (SearchRow r) -> out.add(r.type() + ":" + r.entityId()));
+        return out;
+    }
+
+    @Test
+    @DisplayName("every word must prefix a title or subtitle word; title and exact matches rank first")
+    void multiWordQuery_intersectsAndRanks() {
+        index.upsert(SearchEntityType.CONTACT, "1", "Sam Gallagher", "12 Main St");
+        index.upsert(SearchEntityType.CONTACT, "2", "Sam Gal", "Mainland Ave");
+        index.upsert(SearchEntityType.CONTACT, "3", "Samantha Green", "Main St");
+        index.upsert(SearchEntityType.LISTING, "9", "12 Main St", "Sam Gallagher listing");
+
+        assertThat(ids("sam gal main")).containsExactly("CONTACT:2", "CONTACT:1", "LISTING:9");
+        assertThat(ids("SAM  green")).containsExactly("CONTACT:3");
+        assertThat(ids("zzz")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("apostrophes and hyphens split words as in the shared analyzer")
+    void sharedAnalyzer_splitsLikeOtherEngines() {
+        index.upsert(SearchEntityType.CONTACT, "1", "Pat O'Brien", null);
+        index.upsert(SearchEntityType.CONTACT, "2", "Brien Olsen", null);
+        index.upsert(SearchEntityType.CONTACT, "3", "Bob Stone", "12 Main-St");
+        index.upsert(SearchEntityType.CONTACT, "4", "Ann Lee", "Main Street");
+        index.upsert(SearchEntityType.CONTACT, "5", "Mainland Ave", null);
+
+        assertThat(ids("o'brien")).containsExactlyInAnyOrder("CONTACT:1", "CONTACT:2");
+        assertThat(ids("main-st")).containsExactlyInAnyOrder("CONTACT:3", "CONTACT:4");
+    }
+
+    @Test
+    @DisplayName("only the requested groups are searched, each from its own type bitmap")
+    void typeFilter_usesTypeBitmaps() {
+        index.upsert(SearchEntityType.CONTACT, "1", "Sam Gallagher", null);
+        index.upsert(SearchEntityType.LISTING, "2", "Sam Street Loft", null);
+        index.upsert(SearchEntityType.PRODUCT, "3", "Sample kit", null);
+
+        final List<String> out = new ArrayList<>();
+        index.search(TenantBitmapIndex.words("sam"),
+                EnumSet.of(SearchEntityType.LISTING, SearchEntityType.PRODUCT), 5,
+                (SearchRow r) -> out.add(r.type() + ":" + r.entityId()));
+        assertThat(out).containsExactly("LISTING:2", "PRODUCT:3");
+    }
+
+    @Test
+    @DisplayName("an unselective query scores a bounded number of rows per group")
+    void unselectiveQuery_scoresBoundedCandidates() {
+        for (int i = 0; i < TenantBitmapIndex.MAX_SCORED; i++) {
+            index.upsert(SearchEntityType.CONTACT, String.format("c%05d", i), "Sam " + i, null);
+        }
+        // Exact one-letter match, but past the scoring bound in ordinal order
+        index.upsert(SearchEntityType.CONTACT, "best", "S", null);
+        index.upsert(SearchEntityType.LISTING, "l1", "S", null);
+
+        final List<String> hits = ids("s");
+        assertThat(hits).hasSize(6);
+        assertThat(hits).startsWith("CONTACT:c00000").doesNotContain("CONTACT:best").endsWith("LISTING:l1");
+        assertThat(ids("sam 999")).containsExactly("CONTACT:c00999");
+    }
+
+    @Test
+    @DisplayName("updates and deletes move postings; freed ordinals are reused and memory is released")
+    void updatesAndDeletes_keepPostingsAndAccountingInSync() {
+        index.upsert(SearchEntityType.CONTACT, "1", "Anna", null);
+        index.upsert(SearchEntityType.CONTACT, "2", "Bob", null);
+
+        index.upsert(SearchEntityType.CONTACT, "1", "Hanna", null);
+        assertThat(ids("anna")).isEmpty();
+        assertThat(ids("han")).containsExactly("CONTACT:1");
+
+        index.delete(SearchEntityType.CONTACT, "1");
+        index.delete(SearchEntityType.CONTACT, "2");
+        assertThat(ids("han")).isEmpty();
+        assertThat(index.rowCount()).isZero();
+        assertThat(index.termCount()).isZero();
+        assertThat(index.termBytes()).isZero();
+        assertThat(index.postingBytes()).isZero();
+        assertThat(index.rowBytes()).isZero();
+
+        index.upsert(SearchEntityType.LISTING, "7", "Hannover Road", null);
+        assertThat(ids("hann road")).containsExactly("LISTING:7");
+        assertThat(index.rowCount()).isEqualTo(1);
+    }
+}
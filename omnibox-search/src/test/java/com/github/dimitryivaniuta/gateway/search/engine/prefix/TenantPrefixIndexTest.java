@@ -0,0 +1,82 @@
+package com.github.dimitryivaniuta.gateway.search.engine.prefix;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TenantPrefixIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<String> ids(TenantPrefixIndex index, String query) {
+        final List<String> out = new ArrayList<>();
+        index.search(PrefixTerms.queryWords(query), EnumSet.allOf(SearchEntityType.class), 5,
+                (SearchRow r) -> out.add(r.entityId()));
+        return out;
+    }
+
+    @Test
+    @DisplayName("snapshot and delta answer the same AND prefix query, best match first")
+    void snapshotAndOverlay_rankTheSame() throws Exception {
+        final Path file = dir.resolve("t1.opx");
+        final TenantPrefixIndex index = new TenantPrefixIndex("t1", file, null);
+        index.upsert(new PrefixItem(SearchEntityType.CONTACT, "2", "Joanne Smith", "joanne@acme.io"));
+        index.upsert(new PrefixItem(SearchEntityType.CONTACT, "1", "Anna Smith", null));
+        index.upsert(new PrefixItem(SearchEntityType.CONTACT, "3", "Bob Stone", "anna's assistant"));
+
+        assertThat(ids(index, "an sm")).containsExactly("1", "2");
+        assertThat(ids(index, "an")).containsExactly("1", "2", "3");
+
+        index.compact();
+        assertThat(index.overlaySize()).isZero();
+        assertThat(ids(index, "an sm")).containsExactly("1", "2");
+        assertThat(ids(index, "an")).containsExactly("1", "2", "3");
+
+        index.delete(SearchEntityType.CONTACT, "1");
+        index.upsert(new PrefixItem(SearchEntityType.CONTACT, "4", "Andy Smart", null));
+        assertThat(ids(index, "an sm")).containsExactly("4", "2");
+    }
+
+    @Test
+    @DisplayName("apostrophes and hyphens split words as in the shared analyzer")
+    void sharedAnalyzer_splitsLikeOtherEngines() {
+        final TenantPrefixIndex index = new TenantPrefixIndex("t1", dir.resolve("t1.opx"), null);
+        index.upsert(new PrefixItem(SearchEntityType.CONTACT, "1", "Pat O'Brien", null));
+        index.upsert(new PrefixItem(SearchEntityType.CONTACT, "2", "Brien Olsen", null));
+        index.upsert(new PrefixItem(SearchEntityType.CONTACT, "3", "Bob Stone", "12 Main-St"));
+        index.upsert(new PrefixItem(SearchEntityType.CONTACT, "4", "Ann Lee", "Main Street"));
+        index.upsert(new PrefixItem(SearchEntityType.CONTACT, "5", "Mainland Ave", null));
+
+        assertThat(ids(index, "o'brien")).containsExactlyInAnyOrder("1", "2");
+        assertThat(ids(index, "main-st")).containsExactlyInAnyOrder("3", "4");
+    }
+
+    @Test
+    @DisplayName("restart maps the snapshot and the bootstrap drops rows deleted meanwhile")
+    void restart_reconcilesWithBootstrap() throws Exception {
+        final Path file = dir.resolve("t1.opx");
+        final TenantPrefixIndex before = new TenantPrefixIndex("t1", file, null);
+        before.upsert(new PrefixItem(SearchEntityType.CONTACT, "1", "Anna", null));
+        before.upsert(new PrefixItem(SearchEntityType.LISTING, "7", "Ann Street 5", "MLS-9"));
+        before.compact();
+
+        final TenantPrefixIndex after = new TenantPrefixIndex("t1", file, PrefixSnapshot.open(file));
+        assertThat(ids(after, "ann")).containsExactly("1", "7");
+
+        after.beginReconcile();
+        after.upsert(new PrefixItem(SearchEntityType.LISTING, "7", "Ann Street 5", "MLS-9"));
+        assertThat(after.overlaySize()).isZero();
+        assertThat(after.endReconcile()).isEqualTo(1);
+        assertThat(ids(after, "ann")).containsExactly("7");
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.dimitryivaniuta.gateway.search.feed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchItemEventsListenerTest {
+
+    private final SearchItemFeedTest.RecordingSink sink = new SearchItemFeedTest.RecordingSink();
+    private final SearchItemEventsListener listener = new SearchItemEventsListener(
+            new ObjectMapper(), SearchItemFeedTest.feed(sink, true), Duration.ofMinutes(5));
+
+    private void send(String topic, String json) {
+        listener.onMessage(new ConsumerRecord<>(topic, 0, 0L, "k", json));
+    }
+
+    @Test
+    @DisplayName("events are projected like the indexer does: visible upserts, hidden and deleted rows removed")
+    void events_projectedLikeTheIndexer() {
+        send(SearchItemEventsListener.CONTACT_TOPIC,
+                "{\"type\":\"ContactCreated\",\"tenantId\":\"t1\",\"contactId\":\"c1\","
+                        + "\"title\":\"Sam\",\"visible\":true}");
+        send(SearchItemEventsListener.LISTING_TOPIC,
+                "{\"type\":\"ListingUpdated\",\"tenantId\":\"t1\",\"listingId\":\"l1\",\"title\":\"Loft\","
+                        + "\"subtitle\":\"Main St \",\"mlsId\":\"MLS7\",\"visible\":true}");
+        send(SearchItemEventsListener.CONTACT_TOPIC,
+                "{\"type\":\"ContactCreated\",\"tenantId\":\"t1\",\"contactId\":\"c2\","
+                        + "\"title\":\"Hidden\",\"visible\":false}");
+        assertThat(sink.titles)
+                .containsExactlyInAnyOrderEntriesOf(Map.of("t1/c1", "Sam", "t1/l1", "Loft | Main StMLS7"));
+
+        send(SearchItemEventsListener.CONTACT_TOPIC,
+                "{\"type\":\"ContactDeleted\",\"tenantId\":\"t1\",\"contactId\":\"c1\"}");
+        send(SearchItemEventsListener.CONTACT_TOPIC, "not json");
+        assertThat(sink.titles).containsOnlyKeys("t1/l1");
+    }
+
+    @Test
+    @DisplayName("first assignment of a partition seeks to before startup; a rebalance keeps the position")
+    void firstAssignment_seeksToReplayStart() {
+        final List<Object[]> seeks = new ArrayList<>();
+        final ConsumerSeekCallback callback = (ConsumerSeekCallback) Proxy.newProxyInstance(
+                ConsumerSeekCallback.class.getClassLoader(), new Class<?>[]{ConsumerSeekCallback.class},
+                (p, m, a) -> {
+                    if ("seekToTimestamp".equals(m.getName()) && a.length == 3) {
+                        seeks.add(a);
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(m.getName());
+                });
+        final TopicPartition p0 = new TopicPartition(SearchItemEventsListener.CONTACT_TOPIC, 0);
+        final TopicPartition p1 = new TopicPartition(SearchItemEventsListener.CONTACT_TOPIC, 1);
+        final long before = System.currentTimeMillis();
+
+        listener.onPartitionsAssigned(Map.of(p0, 10L), callback);
+        listener.onPartitionsAssigned(Map.of(p0, 42L, p1, 0L), callback);
+
+        assertThat(seeks).hasSize(2);
+        assertThat(seeks).extracting(a -> a[1]).containsExactlyInAnyOrder(0, 1);
+        assertThat(seeks).allSatisfy(a ->
+                assertThat((long) a[2]).isLessThanOrEqualTo(before - Duration.ofMinutes(5).toMillis()));
+    }
+}
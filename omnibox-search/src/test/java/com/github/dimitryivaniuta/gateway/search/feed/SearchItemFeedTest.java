@@ -0,0 +1,103 @@
+package com.github.dimitryivaniuta.gateway.search.feed;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchItemFeedTest {
+
+    private static final SearchEntityType C = SearchEntityType.CONTACT;
+
+    /** Latest title per entity id, or absent after a delete. */
+    static final class RecordingSink implements SearchItemSink {
+        final Map<String, String> titles = new HashMap<>();
+        boolean bootstrapped;
+
+        @Override
+        public String name() {
+            return "recording";
+        }
+
+        @Override
+        public synchronized void upsert(String tenant, SearchEntityType type, String entityId, String title,
+                                        String subtitle) {
+            titles.put(tenant + "/" + entityId, subtitle == null ? title : title + " | " + subtitle);
+        }
+
+        @Override
+        public synchronized void delete(String tenant, SearchEntityType type, String entityId) {
+            titles.remove(tenant + "/" + entityId);
+        }
+
+        @Override
+        public void bootstrapped() {
+            bootstrapped = true;
+        }
+    }
+
+    static SearchItemFeed feed(SearchItemSink sink, boolean enabled) {
+        final StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        if (sink != null) beans.addBean("sink", sink);
+        return new SearchItemFeed(beans.getBeanProvider(SearchItemSink.class), new SimpleMeterRegistry(), enabled);
+    }
+
+    @Test
+    @DisplayName("an event during the bootstrap wins over the older bootstrap copy of the same row")
+    void eventDuringBootstrap_winsOverSnapshot() {
+        final RecordingSink sink = new RecordingSink();
+        final SearchItemFeed feed = feed(sink, true);
+
+        feed.bootstrapRow("t1", C, "0", "First row", null);
+        feed.upsert("t1", C, "1", "Sam New", null);
+        feed.delete("t1", C, "2");
+        feed.bootstrapRow("t1", C, "1", "Sam Old", null);
+        feed.bootstrapRow("t1", C, "2", "Deleted", null);
+        feed.bootstrapRow("t1", C, "3", "Untouched", null);
+        assertThat(sink.bootstrapped).isFalse();
+        feed.endBootstrap();
+
+        assertThat(sink.titles).containsExactlyInAnyOrderEntriesOf(
+                Map.of("t1/0", "First row", "t1/1", "Sam New", "t1/3", "Untouched"));
+        assertThat(sink.bootstrapped).isTrue();
+
+        // After the bootstrap, events apply directly and nothing is remembered
+        feed.upsert("t1", C, "3", "Changed", null);
+        assertThat(sink.titles).containsEntry("t1/3", "Changed");
+    }
+
+    @Test
+    @DisplayName("an event consumed before the bootstrap scan starts still wins over the bootstrap copy")
+    void eventBeforeBootstrap_winsOverSnapshot() {
+        final RecordingSink sink = new RecordingSink();
+        final SearchItemFeed feed = feed(sink, true);
+
+        // The listener is subscribed before the bootstrap runner; these arrive before the first row is read
+        feed.upsert("t1", C, "1", "Sam New", null);
+        feed.delete("t1", C, "2");
+
+        feed.bootstrapRow("t1", C, "1", "Sam Old", null);
+        feed.bootstrapRow("t1", C, "2", "Deleted", null);
+        feed.endBootstrap();
+
+        assertThat(sink.titles).containsExactlyEntriesOf(Map.of("t1/1", "Sam New"));
+    }
+
+    @Test
+    @DisplayName("a local engine with the feed disabled fails startup; no engine, no feed is fine")
+    void sinkWithoutFeed_failsStartup() {
+        assertThatThrownBy(() -> feed(new RecordingSink(), false))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("recording")
+                .hasMessageContaining("app.omnibox.feed.enabled");
+
+        assertThat(feed(null, false).hasSinks()).isFalse();
+    }
+}
@@ -6,7 +6,16 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.runner.ApplicationContextRunner;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -102,6 +111,196 @@ class InMemoryLoadBalancerTest {
         assertThat(lb.getInstances()).containsExactly("http://a:8080");
     }
 
+    @Test
+    @DisplayName("concurrent register() should keep addresses unique and stop at MAX_CAPACITY")
+    void register_concurrent_consistent() throws Exception {
+        InMemoryLoadBalancer lb = new InMemoryLoadBalancer();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                done.add(pool.submit(() -> {
+                    start.await();
+                    // every thread races for the same 2 * MAX_CAPACITY addresses
+                    for (int i = 0; i < 2 * InMemoryLoadBalancer.MAX_CAPACITY; i++) {
+                        try {
+                            lb.register("http://svc-" + i + ":8080");
+                            accepted.incrementAndGet();
+                        } catch (DuplicateAddressException | CapacityExceededException ignored) {
+                            // expected for all but one registration per address
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : done) f.get(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(accepted.get()).isEqualTo(InMemoryLoadBalancer.MAX_CAPACITY);
+        assertThat(lb.getInstances()).hasSize(InMemoryLoadBalancer.MAX_CAPACITY).doesNotHaveDuplicates();
+    }
+
+    @Test
+    @DisplayName("next() should be empty without instances and round-robin by default")
+    void next_roundRobin() {
+        InMemoryLoadBalancer lb = new InMemoryLoadBalancer();
+        assertThat(lb.next()).isEmpty();
+
+        lb.register("http://a:8080");
+        lb.register("http://b:8080");
+        lb.register("http://c:8080");
+
+        List<String> picks = new ArrayList<>();
+        for (int i = 0; i < 6; i++) picks.add(lb.next().orElseThrow());
+        assertThat(picks).containsExactly(
+                "http://a:8080", "http://b:8080", "http://c:8080",
+                "http://a:8080", "http://b:8080", "http://c:8080");
+    }
+
+    @Test
+    @DisplayName("least-outstanding and power-of-two-choices should avoid the busy instance until it is released")
+    void loadAwareStrategies_followOutstanding() {
+        for (SelectionStrategy strategy : List.of(SelectionStrategy.leastOutstanding(),
+                SelectionStrategy.powerOfTwoChoices())) {
+            InMemoryLoadBalancer lb = new InMemoryLoadBalancer(strategy);
+            lb.register("http://a:8080");
+            lb.register("http://b:8080");
+
+            String busy = lb.next().orElseThrow();
+            for (int i = 0; i < 20; i++) {
+                String other = lb.choose("ignored").orElseThrow();
+                assertThat(other).isNotEqualTo(busy);
+                lb.release(other);
+            }
+
+            lb.release(busy);
+            lb.release(busy); // a double release must not go below zero
+            Set<String> picked = new HashSet<>();
+            for (int i = 0; i < 50; i++) {
+                String address = lb.next().orElseThrow();
+                picked.add(address);
+                lb.release(address);
+            }
+            assertThat(picked).containsExactlyInAnyOrder("http://a:8080", "http://b:8080");
+        }
+    }
+
+    @Test
+    @DisplayName("deregister() should remove an instance, free its slot and bump the membership version")
+    void deregister_removes() {
+        InMemoryLoadBalancer lb = InMemoryLoadBalancer.builder().capacity(2).build();
+        lb.register("http://a:8080");
+        lb.register("http://b:8080");
+        Membership before = lb.membership();
+
+        assertThat(lb.deregister("http://a:8080")).isTrue();
+        assertThat(lb.deregister("http://a:8080")).isFalse();
+        assertThat(lb.getInstances()).containsExactly("http://b:8080");
+        assertThat(lb.membership().version()).isGreaterThan(before.version());
+        assertThat(before.addresses()).containsExactly("http://a:8080", "http://b:8080");
+
+        lb.register("http://c:8080");
+        assertThat(lb.getInstances()).containsExactly("http://b:8080", "http://c:8080");
+        assertThatThrownBy(() -> lb.register("http://d:8080"))
+                .isInstanceOf(CapacityExceededException.class)
+                .hasMessageContaining("Max allowed: 2");
+    }
+
+    @Test
+    @DisplayName("registerOrUpdate() should be idempotent and only bump the version on a change")
+    void registerOrUpdate_idempotent() {
+        InMemoryLoadBalancer lb = new InMemoryLoadBalancer();
+
+        assertThat(lb.registerOrUpdate("http://a:8080", 1.0)).isTrue();
+        long version = lb.membership().version();
+
+        assertThat(lb.registerOrUpdate("http://a:8080", 1.0)).isFalse();
+        assertThat(lb.membership().version()).isEqualTo(version);
+        assertThat(lb.membership()).isSameAs(lb.membership());
+
+        assertThat(lb.registerOrUpdate("http://a:8080", 3.0)).isFalse();
+        assertThat(lb.membership().version()).isGreaterThan(version);
+        assertThat(lb.size()).isEqualTo(1);
+
+        // Same addresses, different weights: the version still tells them apart
+        Membership weighted = lb.membership();
+        lb.setWeight("http://a:8080", 2.0);
+        assertThat(lb.membership().addresses()).isEqualTo(weighted.addresses());
+        assertThat(lb.membership().version()).isGreaterThan(weighted.version());
+    }
+
+    @Test
+    @DisplayName("registerOrUpdate() racing deregister() should register the address again, never fail")
+    void registerOrUpdate_racingDeregister_registers() throws Exception {
+        InMemoryLoadBalancer lb = new InMemoryLoadBalancer();
+        String address = "http://a:8080";
+        lb.register(address);
+        int threads = 4;
+        int rounds = 200_000;
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (ExecutorService pool = Executors.newFixedThreadPool(2 * threads)) {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                done.add(pool.submit(() -> {
+                    start.await();
+                    // alternating weights, so every call that finds the address takes the reweight path
+                    for (int i = 0; i < rounds; i++) lb.registerOrUpdate(address, 1.0 + i % 2);
+                    return null;
+                }));
+                done.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < rounds; i++) lb.deregister(address);
+                    return null;
+                }));
+            }
+            start.countDown();
+            // An "Address not registered" from an updater surfaces here as an ExecutionException
+            for (Future<?> f : done) f.get(30, TimeUnit.SECONDS);
+        }
+
+        boolean present = lb.size() == 1;
+        long version = lb.membership().version();
+        assertThat(lb.registerOrUpdate(address, 3.0)).isEqualTo(!present);
+        assertThat(lb.getInstances()).containsExactly(address);
+        assertThat(lb.membership().version()).isGreaterThan(version);
+    }
+
+    @Test
+    @DisplayName("weights should split traffic proportionally and can change at runtime")
+    void weights_splitTraffic() {
+        for (SelectionStrategy strategy : List.of(SelectionStrategy.roundRobin(), SelectionStrategy.random())) {
+            InMemoryLoadBalancer lb = new InMemoryLoadBalancer(strategy);
+            lb.registerOrUpdate("http://a:8080", 3.0);
+            lb.registerOrUpdate("http://b:8080", 1.0);
+
+            assertThat(countA(lb, 4_000)).isBetween(2_700, 3_300);
+
+            lb.setWeight("http://a:8080", 0);
+            assertThat(countA(lb, 100)).isZero();
+        }
+
+        InMemoryLoadBalancer lb = new InMemoryLoadBalancer();
+        assertThatIllegalArgumentException().isThrownBy(() -> lb.setWeight("http://missing:8080", 1.0));
+        lb.register("http://a:8080");
+        assertThatIllegalArgumentException().isThrownBy(() -> lb.setWeight("http://a:8080", -1));
+        assertThatIllegalArgumentException().isThrownBy(() -> lb.setWeight("http://a:8080", Double.NaN));
+    }
+
+    private static int countA(LoadBalancer lb, int picks) {
+        int a = 0;
+        for (int i = 0; i < picks; i++) {
+            String address = lb.next().orElseThrow();
+            if (address.equals("http://a:8080")) a++;
+            lb.release(address);
+        }
+        return a;
+    }
+
     @Test
     @DisplayName("Spring Boot autoconfiguration should expose LoadBalancer bean by default")
     void springAutoConfig_exposesBean() {
@@ -113,6 +312,8 @@ class InMemoryLoadBalancerTest {
 
                     bean.register("http://boot:8080");
                     assertThat(bean.getInstances()).containsExactly("http://boot:8080");
+                    // Autoscaling and health checks can add, remove and weigh instances of the default one
+                    assertThat(bean).isInstanceOf(DynamicLoadBalancer.class);
                 });
     }
 
@@ -144,6 +345,7 @@ class InMemoryLoadBalancerTest {
 
                     // Should be our custom one, not InMemoryLoadBalancer
                     assertThat(bean.getInstances()).containsExactly("custom");
+                    assertThat(bean).isNotInstanceOf(DynamicLoadBalancer.class);
                 });
     }
 }
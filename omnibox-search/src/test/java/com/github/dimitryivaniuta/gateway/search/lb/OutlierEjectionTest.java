@@ -0,0 +1,144 @@
+package com.github.dimitryivaniuta.gateway.search.lb;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Health checks and outlier ejection of {@link InMemoryLoadBalancer}, on a manual clock.
+ */
+class OutlierEjectionTest {
+
+    private static final Duration FAST = Duration.ofMillis(10);
+    private static final OutlierDetection DETECTION = new OutlierDetection(
+            3, 3.0, Duration.ofMillis(50), Duration.ofSeconds(30), Duration.ofMinutes(2), 50);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+    private final InMemoryLoadBalancer lb = InMemoryLoadBalancer.builder()
+            .outlierDetection(DETECTION)
+            .listener(new LoadBalancerMetrics(metrics))
+            .nanoClock(clock::get)
+            .build();
+
+    private void registerAll(String... addresses) {
+        for (String a : addresses) lb.register(a);
+    }
+
+    private Set<String> picks(int n) {
+        Set<String> picked = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            String address = lb.next().orElseThrow();
+            picked.add(address);
+            lb.release(address, FAST, true);
+        }
+        return picked;
+    }
+
+    private void fail(String address, int times) {
+        for (int i = 0; i < times; i++) lb.release(address, FAST, false);
+    }
+
+    private void advance(Duration d) {
+        clock.addAndGet(d.toNanos());
+    }
+
+    @Test
+    @DisplayName("consecutive failures eject an instance with exponential back-off; it is readmitted on its own")
+    void consecutiveFailures_ejectWithBackoff() {
+        registerAll("a", "b", "c", "d");
+
+        fail("a", 2);
+        lb.release("a", FAST, true); // a success resets the streak
+        fail("a", 2);
+        assertThat(picks(8)).contains("a");
+
+        fail("a", 3);
+        assertThat(picks(8)).containsExactlyInAnyOrder("b", "c", "d");
+        assertThat(metrics.counter("omnibox.lb.ejections", "address", "a", "reason", "errors").count()).isEqualTo(1);
+
+        advance(Duration.ofSeconds(30));
+        assertThat(picks(8)).contains("a");
+        assertThat(metrics.counter("omnibox.lb.readmissions", "address", "a").count()).isEqualTo(1);
+
+        // Second ejection right after readmission: twice as long
+        fail("a", 3);
+        advance(Duration.ofSeconds(30));
+        assertThat(picks(8)).doesNotContain("a");
+        advance(Duration.ofSeconds(30));
+        assertThat(picks(8)).contains("a");
+    }
+
+    @Test
+    @DisplayName("an instance far slower than the median is ejected")
+    void slowInstance_ejected() {
+        registerAll("a", "b", "c", "d");
+        for (String a : new String[]{"a", "b", "c"}) lb.release(a, Duration.ofMillis(20), true);
+
+        lb.release("d", Duration.ofMillis(40), true); // slow, but under the floor
+        assertThat(picks(8)).contains("d");
+
+        lb.release("d", Duration.ofSeconds(2), true);
+        assertThat(picks(8)).containsExactlyInAnyOrder("a", "b", "c");
+        assertThat(metrics.counter("omnibox.lb.ejections", "address", "d", "reason", "latency").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("no more than maxEjectedPercent of the instances are ejected at once")
+    void ejection_bounded() {
+        registerAll("a", "b", "c", "d");
+
+        fail("a", 3);
+        fail("b", 3);
+        fail("c", 3);
+
+        assertThat(picks(8)).containsExactlyInAnyOrder("c", "d");
+    }
+
+    @Test
+    @DisplayName("unhealthy instances leave rotation; with none healthy, all are used")
+    void unhealthy_outOfRotation() {
+        registerAll("a", "b");
+
+        lb.reportHealth("a", false);
+        assertThat(picks(6)).containsExactly("b");
+        assertThat(metrics.get("omnibox.lb.instance.healthy").tag("address", "a").gauge().value()).isZero();
+
+        lb.reportHealth("b", false);
+        assertThat(picks(6)).containsExactlyInAnyOrder("a", "b");
+
+        lb.reportHealth("a", true);
+        assertThat(picks(6)).containsExactly("a");
+    }
+
+    @Test
+    @DisplayName("the health checker reports failed probes after the threshold and recovers on one success")
+    void healthChecker_usesProbe() {
+        registerAll("a", "b");
+        Set<String> down = new HashSet<>(Set.of("a"));
+        HealthProbe stub = address -> {
+            if (address.equals("b")) throw new IllegalStateException("connection refused");
+            return !down.contains(address);
+        };
+
+        try (LoadBalancerHealthChecker checker = new LoadBalancerHealthChecker(lb, stub, Duration.ofSeconds(1), 2)) {
+            checker.checkNow();
+            assertThat(picks(4)).containsExactlyInAnyOrder("a", "b");
+
+            checker.checkNow();
+            // both unhealthy -> panic mode uses all of them
+            assertThat(picks(4)).containsExactlyInAnyOrder("a", "b");
+
+            down.clear();
+            checker.checkNow();
+            assertThat(picks(4)).containsExactly("a");
+        }
+    }
+}
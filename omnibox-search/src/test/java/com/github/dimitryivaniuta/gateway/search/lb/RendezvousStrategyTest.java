@@ -0,0 +1,97 @@
+package com.github.dimitryivaniuta.gateway.search.lb;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RendezvousStrategyTest {
+
+    private static final int TENANTS = 10_000;
+
+    private static InMemoryLoadBalancer lb(int instances) {
+        InMemoryLoadBalancer lb = InMemoryLoadBalancer.builder()
+                .capacity(64)
+                .strategy(SelectionStrategy.consistentHashing(1.25))
+                .build();
+        for (int i = 0; i < instances; i++) lb.register("http://node-" + i + ":8080");
+        return lb;
+    }
+
+    /** Tenant -> instance, each request released before the next (no load). */
+    private static Map<String, String> assignment(LoadBalancer lb) {
+        Map<String, String> home = new HashMap<>();
+        for (int t = 0; t < TENANTS; t++) {
+            String tenant = "tenant-" + t;
+            String address = lb.choose(tenant).orElseThrow();
+            lb.release(address);
+            home.put(tenant, address);
+        }
+        return home;
+    }
+
+    @Test
+    @DisplayName("a tenant keeps landing on the same instance, and tenants spread evenly")
+    void sameTenant_sameInstance() {
+        InMemoryLoadBalancer lb = lb(5);
+        Map<String, String> first = assignment(lb);
+
+        assertThat(assignment(lb)).isEqualTo(first);
+        Map<String, Integer> perInstance = new HashMap<>();
+        first.values().forEach(a -> perInstance.merge(a, 1, Integer::sum));
+        assertThat(perInstance).hasSize(5);
+        assertThat(perInstance.values()).allSatisfy(n -> assertThat(n).isBetween(1_700, 2_300));
+    }
+
+    @Test
+    @DisplayName("an instance leaving or joining moves only the tenants it loses or wins")
+    void scaleEvents_minimalRemapping() {
+        InMemoryLoadBalancer lb = lb(10);
+        Map<String, String> before = assignment(lb);
+
+        lb.deregister("http://node-3:8080");
+        Map<String, String> afterLeave = assignment(lb);
+        before.forEach((tenant, address) -> {
+            if (!address.equals("http://node-3:8080")) assertThat(afterLeave.get(tenant)).isEqualTo(address);
+        });
+
+        lb.register("http://node-10:8080");
+        Map<String, String> afterJoin = assignment(lb);
+        int moved = 0;
+        for (var e : afterLeave.entrySet()) {
+            String now = afterJoin.get(e.getKey());
+            if (!now.equals(e.getValue())) {
+                assertThat(now).isEqualTo("http://node-10:8080");
+                moved++;
+            }
+        }
+        // about 1/10 of the tenants move to the new instance
+        assertThat(moved).isBetween(TENANTS / 10 - 300, TENANTS / 10 + 300);
+    }
+
+    @Test
+    @DisplayName("a hot tenant spills over once its instance is above its bounded share")
+    void hotTenant_boundedLoad() {
+        InMemoryLoadBalancer lb = lb(4);
+        Map<String, Integer> outstanding = new HashMap<>();
+
+        // 100 concurrent requests of one tenant, none released yet
+        for (int i = 0; i < 100; i++) {
+            outstanding.merge(lb.choose("hot-tenant").orElseThrow(), 1, Integer::sum);
+        }
+
+        // no instance above ceil(1.25 * 100 / 4)
+        assertThat(outstanding.values()).allSatisfy(n -> assertThat(n).isLessThanOrEqualTo(32));
+        assertThat(outstanding).hasSizeGreaterThan(1);
+    }
+
+    @Test
+    @DisplayName("requests without a key still get an instance")
+    void noKey_fallsBack() {
+        InMemoryLoadBalancer lb = lb(3);
+        assertThat(lb.next()).isPresent();
+    }
+}
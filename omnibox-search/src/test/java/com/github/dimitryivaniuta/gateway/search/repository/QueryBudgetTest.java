@@ -0,0 +1,82 @@
+package com.github.dimitryivaniuta.gateway.search.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryBudgetTest {
+
+    /** Statement that only counts {@code cancel()} calls. */
+    private static Statement statement(AtomicInteger cancels) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{Statement.class},
+                (p, m, a) -> {
+                    if ("cancel".equals(m.getName())) {
+                        cancels.incrementAndGet();
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(m.getName());
+                });
+    }
+
+    @Test
+    @DisplayName("an expired budget refuses to start a query and reports a timeout")
+    void expiredBudget_failsFastAsTimeout() throws Exception {
+        final QueryBudget b = QueryBudget.of(Duration.ofMillis(1));
+        Thread.sleep(5);
+
+        assertThat(b.remainingMillis()).isZero();
+        assertThatThrownBy(b::startMillis)
+                .isInstanceOf(QueryTimeoutException.class)
+                .satisfies(e -> assertThat(QueryBudget.isTimeout(e)).isTrue());
+    }
+
+    @Test
+    @DisplayName("a child budget is capped by its parent's deadline")
+    void child_neverOutlivesParent() {
+        final QueryBudget parent = QueryBudget.of(Duration.ofMillis(200));
+        assertThat(parent.child(Duration.ofSeconds(10)).remainingMillis()).isLessThanOrEqualTo(200);
+        assertThat(parent.child(Duration.ofMillis(50)).remainingMillis()).isLessThanOrEqualTo(50);
+    }
+
+    @Test
+    @DisplayName("cancel stops registered statements over JDBC, including those of children")
+    void cancel_cancelsRunningStatements() throws Exception {
+        final QueryBudget parent = QueryBudget.of(Duration.ofSeconds(5));
+        final QueryBudget child = parent.child(Duration.ofSeconds(1));
+        final AtomicInteger cancels = new AtomicInteger();
+        final Statement own = statement(cancels);
+        final Statement childs = statement(cancels);
+        final Statement finished = statement(cancels);
+        parent.register(own);
+        child.register(childs);
+        parent.register(finished);
+        parent.unregister(finished);
+
+        parent.cancel();
+
+        assertThat(cancels).hasValue(2);
+        assertThat(child.isCancelled()).isTrue();
+        assertThatThrownBy(child::startMillis).isInstanceOf(QueryTimeoutException.class);
+    }
+
+    @Test
+    @DisplayName("a statement registered after cancel is refused with the query-canceled SQLSTATE")
+    void register_afterCancel_refused() {
+        final QueryBudget b = QueryBudget.of(Duration.ofSeconds(5));
+        b.supersede();
+
+        assertThat(b.isSuperseded()).isTrue();
+        assertThatThrownBy(() -> b.register(statement(new AtomicInteger())))
+                .isInstanceOf(SQLException.class)
+                .satisfies(e -> assertThat(QueryBudget.isTimeout(e)).isTrue());
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.dimitryivaniuta.gateway.search.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadReplicaRouterTest {
+
+    private final SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+
+    private ReadReplica replica(String name, long latencyNanos) {
+        // An unstarted pool: choose() never opens connections
+        ReadReplica r = new ReadReplica(name, new HikariDataSource(), metrics);
+        r.acquired();
+        r.released(latencyNanos);
+        return r;
+    }
+
+    @Test
+    @DisplayName("of two replicas, the one with the lower latency x in-flight wins")
+    void twoReplicas_lowerCostWins() {
+        ReadReplica fast = replica("fast", 1_000_000);
+        ReadReplica slow = replica("slow", 20_000_000);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(ReadReplicaRouter.choose(List.of(fast, slow), System.nanoTime())).isSameAs(fast);
+        }
+
+        // Enough queries queued on the fast one make the slow one cheaper
+        for (int i = 0; i < 30; i++) fast.acquired();
+        assertThat(ReadReplicaRouter.choose(List.of(fast, slow), System.nanoTime())).isSameAs(slow);
+    }
+
+    @Test
+    @DisplayName("lagging and failed replicas are skipped; none available yields null")
+    void unavailableReplicas_skipped() {
+        ReadReplica lagging = replica("lagging", 1_000_000);
+        ReadReplica failed = replica("failed", 1_000_000);
+        ReadReplica healthy = replica("healthy", 50_000_000);
+        lagging.lag(30, 5);
+        failed.failed(System.nanoTime(), 60_000_000_000L);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(ReadReplicaRouter.choose(List.of(lagging, failed, healthy), System.nanoTime()))
+                    .isSameAs(healthy);
+        }
+        assertThat(ReadReplicaRouter.choose(List.of(lagging, failed), System.nanoTime())).isNull();
+
+        // Caught up again
+        lagging.lag(0.5, 5);
+        assertThat(ReadReplicaRouter.choose(List.of(lagging, failed), System.nanoTime())).isSameAs(lagging);
+    }
+
+    @Test
+    @DisplayName("a replica without a streaming WAL receiver (infinite lag) is out until it streams again")
+    void deadWalReceiver_excluded() {
+        ReadReplica replica = replica("disconnected", 1_000_000);
+
+        assertThat(replica.lag(Double.POSITIVE_INFINITY, 5)).isTrue();
+        assertThat(ReadReplicaRouter.choose(List.of(replica), System.nanoTime())).isNull();
+
+        assertThat(replica.lag(0, 5)).isTrue();
+        assertThat(ReadReplicaRouter.choose(List.of(replica), System.nanoTime())).isSameAs(replica);
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.dimitryivaniuta.gateway.search.service;
+
+import com.github.dimitryivaniuta.gateway.search.engine.SearchResult;
+import com.github.dimitryivaniuta.gateway.search.repository.QueryBudget;
+import com.github.dimitryivaniuta.gateway.search.repository.ReadReplicaRouter;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRepository;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GroupFanoutTest {
+
+    private static final String T = "t1";
+    private static final SearchEntityType C = SearchEntityType.CONTACT;
+    private static final SearchEntityType L = SearchEntityType.LISTING;
+    private static final SearchEntityType P = SearchEntityType.PRODUCT;
+
+    private final SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private GroupFanout fanout(SearchRepository repo, Duration deadline) {
+        return new GroupFanout(repo, new QueryCoalescer(metrics, true), metrics, executor, true, deadline);
+    }
+
+    private static SearchResult search(GroupFanout fanout, Set<SearchEntityType> types, QueryBudget budget) {
+        return fanout.search(T, "simple", "sam:*", "sam", "%sam%", types, 5, false, budget);
+    }
+
+    @Test
+    @DisplayName("a group past the deadline is missing and cancelled; the others are returned")
+    void slowGroup_missingCancelledAndCounted() throws Exception {
+        final StubRepository repo = new StubRepository(L);
+        final QueryBudget request = QueryBudget.of(Duration.ofSeconds(5));
+
+        final SearchResult result = search(fanout(repo, Duration.ofMillis(100)), EnumSet.of(C, L, P), request);
+
+        assertThat(result.partial()).isTrue();
+        assertThat(result.missing()).containsExactly(L);
+        assertThat(result.rows().rows()).extracting(SearchRow::type).containsExactly(C, P);
+        // The slow statement's budget was cancelled, not just abandoned; the request's own budget is untouched
+        assertThat(repo.slowCancelled.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(repo.slowBudget.get().isCancelled()).isTrue();
+        assertThat(request.isCancelled()).isFalse();
+        assertThat(metrics.counter("omnibox.group.timeouts", "tenant", T, "type", "LISTING").count()).isEqualTo(1);
+        assertThat(metrics.counter("omnibox.group.timeouts", "tenant", T, "type", "CONTACT").count()).isZero();
+        // Every group is timed, the late one when its statement actually ends
+        assertThat(metrics.timer("omnibox.group.timer", "tenant", T, "type", "CONTACT", "result", "ok").count())
+                .isEqualTo(1);
+        awaitCount(() -> metrics.timer("omnibox.group.timer", "tenant", T, "type", "LISTING", "result", "error")
+                .count());
+    }
+
+    @Test
+    @DisplayName("a failing group is missing without counting a timeout")
+    void failingGroup_missingNotTimedOut() {
+        final StubRepository repo = new StubRepository(null) {
+            @Override
+            SearchRows answer(SearchEntityType type, QueryBudget budget) {
+                if (type == P) throw new DataAccessResourceFailureException("replica gone");
+                return super.answer(type, budget);
+            }
+        };
+
+        final SearchResult result =
+                search(fanout(repo, Duration.ofSeconds(1)), EnumSet.of(C, P), QueryBudget.of(Duration.ofSeconds(5)));
+
+        assertThat(result.missing()).containsExactly(P);
+        assertThat(result.rows().rows()).extracting(SearchRow::type).containsExactly(C);
+        assertThat(metrics.counter("omnibox.group.timeouts", "tenant", T, "type", "PRODUCT").count()).isZero();
+    }
+
+    @Test
+    @DisplayName("every group answering in time gives a complete result in entity type order")
+    void allGroupsInTime_complete() {
+        final SearchResult result = search(fanout(new StubRepository(null), Duration.ofSeconds(1)),
+                EnumSet.of(P, C, L), QueryBudget.of(Duration.ofSeconds(5)));
+
+        assertThat(result.partial()).isFalse();
+        assertThat(result.rows().rows()).extracting(SearchRow::type).containsExactly(C, L, P);
+    }
+
+    private static void awaitCount(LongSupplier count) throws InterruptedException {
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count.getAsLong() == 0 && System.nanoTime() < end) Thread.sleep(5);
+        assertThat(count.getAsLong()).isEqualTo(1);
+    }
+
+    /** One row per type; the {@code slow} type blocks until its budget is cancelled. */
+    static class StubRepository extends SearchRepository {
+
+        final AtomicReference<QueryBudget> slowBudget = new AtomicReference<>();
+        final CountDownLatch slowCancelled = new CountDownLatch(1);
+        private final SearchEntityType slow;
+
+        StubRepository(SearchEntityType slow) {
+            super(new ReadReplicaRouter(new SimpleDriverDataSource(), new DataSourceProperties(),
+                    new SimpleMeterRegistry(), List.of(), 0,
+                    Duration.ofSeconds(5), Duration.ofSeconds(1), Duration.ofSeconds(5)));
+            this.slow = slow;
+        }
+
+        @Override
+        public SearchRows queryType(String tenantId, String cfg, String prefixTsQuery, String term,
+                                    String likePattern, SearchEntityType type, int limit, boolean shortQuery,
+                                    QueryBudget budget) {
+            return answer(type, budget);
+        }
+
+        SearchRows answer(SearchEntityType type, QueryBudget budget) {
+            if (type == slow) {
+                slowBudget.set(budget);
+                try {
+                    while (!budget.isCancelled()) Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (budget.isCancelled()) slowCancelled.countDown();
+                throw new QueryTimeoutException("cancelled");
+            }
+            return SearchRows.of(List.of(new SearchRow(type, type.name().toLowerCase(), "Sam", null, 1d)));
+        }
+    }
+}
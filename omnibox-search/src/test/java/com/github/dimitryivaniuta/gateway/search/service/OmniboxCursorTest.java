@@ -0,0 +1,44 @@
+package com.github.dimitryivaniuta.gateway.search.service;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OmniboxCursorTest {
+
+    @Test
+    @DisplayName("cursor round-trips the exact score and an id with separators in it")
+    void encodeDecode_roundTrips() {
+        final OmniboxCursor c = new OmniboxCursor(SearchEntityType.LISTING, OmniboxCursor.queryHash("main st"),
+                0.1f * 0.9 + 0.3 / 7, "id\nwith/sep");
+        final String wire = c.encode();
+
+        assertThat(wire).doesNotContain("+", "/", "=");
+        assertThat(OmniboxCursor.decode(wire)).isEqualTo(c);
+    }
+
+    @Test
+    @DisplayName("garbage is rejected as an invalid cursor")
+    void decode_rejectsGarbage() {
+        assertThatThrownBy(() -> OmniboxCursor.decode("not a cursor"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> OmniboxCursor.decode(new OmniboxCursor(SearchEntityType.CONTACT, -1, 1d, "1")
+                .encode().substring(0, 4)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("a cursor is bound to the query it was issued for")
+    void after_bindsTheQuery() {
+        final SearchRow row = new SearchRow(SearchEntityType.CONTACT, "7", "John", null, 0.5d);
+        final OmniboxCursor c = OmniboxCursor.decode(OmniboxCursor.after(row, "john").encode());
+
+        assertThat(c.isFor("john")).isTrue();
+        assertThat(c.isFor("jon")).isFalse();
+        assertThat(c.entityId()).isEqualTo("7");
+    }
+}
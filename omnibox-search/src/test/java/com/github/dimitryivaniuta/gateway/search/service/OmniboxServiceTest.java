@@ -0,0 +1,145 @@
+package com.github.dimitryivaniuta.gateway.search.service;
+
+import com.github.dimitryivaniuta.gateway.search.cache.OmniboxResultCache;
+import com.github.dimitryivaniuta.gateway.search.cache.TypeaheadSessionCache;
+import com.github.dimitryivaniuta.gateway.search.engine.PostgresSearchEngine;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchEngine;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchEngineRouter;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchRequest;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchResult;
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.OmniboxGroup;
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.OmniboxResult;
+import com.github.dimitryivaniuta.gateway.search.graphql.dto.SearchHit;
+import com.github.dimitryivaniuta.gateway.search.repository.QueryBudget;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import com.github.dimitryivaniuta.gateway.search.security.TenantContext;
+import com.github.dimitryivaniuta.gateway.search.security.TenantContextHolder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OmniboxServiceTest {
+
+    private static final String T = "t1";
+
+    private final SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final OmniboxResultCache cache = new OmniboxResultCache(metrics, true, 100, Duration.ofMinutes(1),
+            List.of(), Duration.ofSeconds(5), Duration.ofSeconds(1));
+    private final TypeaheadSessionCache sessions =
+            new TypeaheadSessionCache(metrics, true, 100, Duration.ofMinutes(1));
+    private final FakeEngine engine = new FakeEngine(Map.of(
+            "run", List.of(contact("1", "Running club", 0.9d), contact("2", "Run Smith", 0.4d)),
+            // The SQL match of "runn" (stemmed tsvector) is not what the in-memory refinement of "run" finds
+            "runn", List.of(contact("3", "Runner Lee", 0.2d)),
+            "main", List.of(contact("4", "Main Contact", 0.9d), contact("5", "Mainz Office", 0.4d),
+                    new SearchRow(SearchEntityType.LISTING, "l1", "1 Main St", null, 0.6d))));
+    private final OmniboxService service = new OmniboxService(metrics, cache, sessions,
+            new SearchEngineRouter(List.of(engine), metrics, executor, PostgresSearchEngine.NAME, ""),
+            new SupersedeRegistry(metrics, true), executor, Duration.ofSeconds(5));
+
+    @AfterEach
+    void tearDown() {
+        TenantContextHolder.clear();
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("a refined answer stays in the user's session; the shared cache only holds the DB answer")
+    void refinedAnswer_isNotSharedWithTheTenant() {
+        as("u1");
+        service.search("run", 5, budget());
+        final OmniboxResult refined = service.search("runn", 5, budget());
+        assertThat(engine.calls.get()).isEqualTo(1);
+        assertThat(cache.get(T, "runn", 5)).isNull();
+
+        as("u2");
+        final OmniboxResult fromDb = service.search("runn", 5, budget());
+        assertThat(engine.calls.get()).isEqualTo(2);
+
+        assertThat(refined).isNotEqualTo(fromDb);
+        assertThat(cache.get(T, "runn", 5)).isEqualTo(fromDb);
+    }
+
+    @Test
+    @DisplayName("a cached answer streams the same per-group scores as the fresh stream that cached it")
+    void stream_cachedGroupsNormalizedLikeFreshOnes() {
+        as("u1");
+        final List<OmniboxGroup> fresh = service.stream("main", 5, budget()).collectList().block();
+        final int calls = engine.calls.get();
+        final List<OmniboxGroup> cached = service.stream("main", 5, budget()).collectList().block();
+
+        assertThat(engine.calls.get()).isEqualTo(calls);
+        // Across groups the lone listing would score 0.4 on the contacts' range; within its group it is 0
+        assertThat(cached).containsExactlyInAnyOrderElementsOf(fresh);
+        assertThat(cached).filteredOn(g -> g.group().equals("LISTING"))
+                .singleElement()
+                .satisfies(g -> assertThat(g.hits()).extracting(SearchHit::score).containsExactly(0f));
+        assertThat(cached).filteredOn(g -> g.group().equals("CONTACT"))
+                .singleElement()
+                .satisfies(g -> assertThat(g.hits()).extracting(SearchHit::score).containsExactly(1f, 0f));
+    }
+
+    @Test
+    @DisplayName("a cursor of another query is rejected before any engine call")
+    void more_rejectsCursorOfAnotherQuery() {
+        as("u1");
+        final String cursor = OmniboxCursor.after(contact("2", "Run Smith", 0.4d), "run").encode();
+
+        assertThatThrownBy(() -> service.more("runn", "CONTACT", cursor, 5, budget()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("another query");
+        assertThat(engine.calls.get()).isZero();
+    }
+
+    private static void as(String user) {
+        TenantContextHolder.set(new TenantContext(T, user));
+    }
+
+    private static QueryBudget budget() {
+        return QueryBudget.of(Duration.ofSeconds(5));
+    }
+
+    private static SearchRow contact(String id, String title, double score) {
+        return new SearchRow(SearchEntityType.CONTACT, id, title, null, score);
+    }
+
+    /** Answers from a fixed table keyed by the lowercase query; counts the calls. */
+    static final class FakeEngine implements SearchEngine {
+
+        final AtomicInteger calls = new AtomicInteger();
+        private final Map<String, List<SearchRow>> answers;
+
+        FakeEngine(Map<String, List<SearchRow>> answers) {
+            this.answers = answers;
+        }
+
+        @Override
+        public String name() {
+            return PostgresSearchEngine.NAME;
+        }
+
+        @Override
+        public SearchResult search(SearchRequest request) {
+            calls.incrementAndGet();
+            final SearchRows.Builder b = new SearchRows.Builder(4);
+            for (SearchRow r : answers.getOrDefault(request.term(), List.of())) {
+                if (request.types().contains(r.type())) b.add(r);
+            }
+            return SearchResult.complete(b.build());
+        }
+    }
+}
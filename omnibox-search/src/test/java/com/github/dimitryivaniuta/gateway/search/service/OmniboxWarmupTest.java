@@ -0,0 +1,177 @@
+package com.github.dimitryivaniuta.gateway.search.service;
+
+import com.github.dimitryivaniuta.gateway.search.engine.PostgresSearchEngine;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchRequest;
+import com.github.dimitryivaniuta.gateway.search.engine.SearchResult;
+import com.github.dimitryivaniuta.gateway.search.repository.ReadReplicaRouter;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.actuate.availability.ReadinessStateHealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ApplicationAvailabilityBean;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Readiness around {@link OmniboxWarmup}: a minimal Spring application with the warmup runner and fake
+ * engine/JDBC beans, started on another thread so readiness can be observed while the runner is busy.
+ */
+class OmniboxWarmupTest {
+
+    private final AtomicReference<ConfigurableApplicationContext> context = new AtomicReference<>();
+
+    @AfterEach
+    void tearDown() {
+        final ConfigurableApplicationContext ctx = context.get();
+        if (ctx != null) ctx.close();
+    }
+
+    @Test
+    @DisplayName("readiness is OUT_OF_SERVICE while warmup queries run and UP once warmup is done")
+    void readiness_heldUntilWarmupFinishes() throws Exception {
+        final CompletableFuture<ConfigurableApplicationContext> started = start("--app.omnibox.warmup.seeds=john");
+
+        assertThat(BlockingEngine.entered.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(readiness()).isEqualTo(Status.OUT_OF_SERVICE);
+        assertThat(started).isNotDone();
+
+        BlockingEngine.release.countDown();
+        started.get(10, TimeUnit.SECONDS);
+        assertThat(readiness()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    @DisplayName("a failing warmup still releases readiness and is counted as failed")
+    void readiness_releasedWhenWarmupFails() throws Exception {
+        // No seeds: warmup samples search_items through the failing JdbcTemplate
+        final ConfigurableApplicationContext ctx = start().get(10, TimeUnit.SECONDS);
+
+        assertThat(readiness()).isEqualTo(Status.UP);
+        assertThat(ctx.getBean(MeterRegistry.class).timer("omnibox.warmup.duration", "result", "failed").count())
+                .isEqualTo(1);
+    }
+
+    private CompletableFuture<ConfigurableApplicationContext> start(String... args) {
+        BlockingEngine.reset();
+        final SpringApplication app = new SpringApplication(WarmupSlice.class);
+        app.setWebApplicationType(WebApplicationType.NONE);
+        app.addInitializers(context::set);
+        return CompletableFuture.supplyAsync(() -> app.run(withDefaults(args)));
+    }
+
+    private static String[] withDefaults(String... args) {
+        final String[] all = new String[args.length + 3];
+        all[0] = "--spring.datasource.hikari.minimum-idle=0";
+        all[1] = "--app.omnibox.warmup.max-duration=200ms";
+        all[2] = "--spring.main.banner-mode=off";
+        System.arraycopy(args, 0, all, 3, args.length);
+        return all;
+    }
+
+    private Status readiness() {
+        final ApplicationAvailability availability = context.get().getBean(ApplicationAvailability.class);
+        return new ReadinessStateHealthIndicator(availability).health().getStatus();
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @Import(OmniboxWarmup.class)
+    static class WarmupSlice {
+
+        @Bean
+        ApplicationAvailabilityBean applicationAvailability() {
+            return new ApplicationAvailabilityBean();
+        }
+
+        @Bean
+        PostgresSearchEngine postgresSearchEngine() {
+            return new BlockingEngine();
+        }
+
+        @Bean
+        DataSource dataSource() {
+            return new SimpleDriverDataSource();
+        }
+
+        @Bean
+        ReadReplicaRouter readReplicaRouter(DataSource dataSource, MeterRegistry metrics) {
+            return new ReadReplicaRouter(dataSource, new DataSourceProperties(), metrics, List.of(), 0,
+                    Duration.ofSeconds(5), Duration.ofSeconds(1), Duration.ofSeconds(5));
+        }
+
+        @Bean
+        JdbcTemplate jdbcTemplate() {
+            return new FailingJdbcTemplate();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean(destroyMethod = "shutdownNow")
+        ExecutorService omniboxExecutor() {
+            return Executors.newFixedThreadPool(4);
+        }
+    }
+
+    /** The first warmup query waits for {@link #release}; the rest answer empty at once. */
+    static final class BlockingEngine extends PostgresSearchEngine {
+
+        static CountDownLatch entered;
+        static CountDownLatch release;
+
+        BlockingEngine() {
+            super(null, null, null);
+        }
+
+        static void reset() {
+            entered = new CountDownLatch(1);
+            release = new CountDownLatch(1);
+        }
+
+        @Override
+        public SearchResult search(SearchRequest request) {
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return SearchResult.complete(SearchRows.EMPTY);
+        }
+    }
+
+    static final class FailingJdbcTemplate extends JdbcTemplate {
+
+        @Override
+        public void query(String sql, RowCallbackHandler rch, Object... args) {
+            throw new DataAccessResourceFailureException("database is down");
+        }
+    }
+}
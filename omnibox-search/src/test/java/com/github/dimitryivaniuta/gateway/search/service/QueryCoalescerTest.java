@@ -0,0 +1,78 @@
+package com.github.dimitryivaniuta.gateway.search.service;
+
+import com.github.dimitryivaniuta.gateway.search.repository.SearchEntityType;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRow;
+import com.github.dimitryivaniuta.gateway.search.repository.SearchRows;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryCoalescerTest {
+
+    private final SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+    private final QueryCoalescer coalescer = new QueryCoalescer(metrics, true);
+
+    private static final SearchRows ROWS = SearchRows.of(List.of(
+            new SearchRow(SearchEntityType.CONTACT, "1", "Sam", null, 1d)));
+
+    @Test
+    @DisplayName("identical concurrent calls share one execution")
+    void concurrentCalls_shareOneExecution() throws Exception {
+        final int callers = 8;
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService pool = Executors.newFixedThreadPool(callers)) {
+            List<Future<SearchRows>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> coalescer.execute("t1", "sam:*", "sam", 5, false, null, () -> {
+                    executions.incrementAndGet();
+                    await(release);
+                    return ROWS;
+                })));
+            }
+            // let every caller register before the leader finishes
+            while (metrics.counter("omnibox.coalesce.requests", "tenant", "t1", "result", "joined").count() < callers - 1) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+            for (Future<SearchRows> f : results) {
+                assertThat(f.get(5, TimeUnit.SECONDS)).isSameAs(ROWS);
+            }
+        }
+
+        assertThat(executions).hasValue(1);
+        assertThat(coalescer.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("nothing is reused once the leader finished; failures are not remembered")
+    void sequentialCalls_executeEachTime() {
+        assertThatThrownBy(() -> coalescer.execute("t1", "sam:*", "sam", 5, false, null, () -> {
+            throw new IllegalStateException("db down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(coalescer.execute("t1", "sam:*", "sam", 5, false, null, () -> ROWS)).isSameAs(ROWS);
+        assertThat(coalescer.inFlight()).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
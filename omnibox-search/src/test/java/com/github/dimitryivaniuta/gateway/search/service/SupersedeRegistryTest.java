@@ -0,0 +1,94 @@
+package com.github.dimitryivaniuta.gateway.search.service;
+
+import com.github.dimitryivaniuta.gateway.search.repository.QueryBudget;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SupersedeRegistryTest {
+
+    private final SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+    private final SupersedeRegistry registry = new SupersedeRegistry(metrics, true);
+
+    private static QueryBudget budget() {
+        return QueryBudget.of(Duration.ofSeconds(5));
+    }
+
+    private double cancelled(String tenant) {
+        return metrics.counter("omnibox.supersede.cancelled", "tenant", tenant).count();
+    }
+
+    @Test
+    @DisplayName("a second query of the same user supersedes the first one's budget")
+    void sameUser_secondQueryCancelsFirst() {
+        final QueryBudget first = budget();
+        final QueryBudget second = budget();
+        final QueryBudget groupOfFirst = first.child(Duration.ofMillis(150));
+
+        registry.begin("t1", "u1", first);
+        registry.begin("t1", "u1", second);
+
+        assertThat(first.isSuperseded()).isTrue();
+        assertThat(first.isCancelled()).isTrue();
+        assertThat(groupOfFirst.isCancelled()).isTrue();
+        assertThat(second.isCancelled()).isFalse();
+        assertThat(cancelled("t1")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("other users and the same user id in another tenant are not cancelled")
+    void otherUsersAndTenants_untouched() {
+        final QueryBudget u1 = budget();
+        final QueryBudget u2 = budget();
+        final QueryBudget u1OtherTenant = budget();
+
+        registry.begin("t1", "u1", u1);
+        registry.begin("t1", "u2", u2);
+        registry.begin("t2", "u1", u1OtherTenant);
+
+        assertThat(u1.isCancelled()).isFalse();
+        assertThat(u2.isCancelled()).isFalse();
+        assertThat(u1OtherTenant.isCancelled()).isFalse();
+        assertThat(cancelled("t1")).isZero();
+        assertThat(cancelled("t2")).isZero();
+    }
+
+    @Test
+    @DisplayName("a finished query is forgotten; ending a superseded one keeps the newer one tracked")
+    void end_forgetsOnlyItsOwnBudget() {
+        final QueryBudget first = budget();
+        registry.begin("t1", "u1", first);
+        registry.end("t1", "u1", first);
+        registry.begin("t1", "u1", budget());
+        assertThat(first.isCancelled()).isFalse();
+
+        final QueryBudget current = budget();
+        final QueryBudget next = budget();
+        registry.begin("t1", "u1", current);
+        registry.begin("t1", "u1", next);
+        // The superseded request unwinds after its successor started
+        registry.end("t1", "u1", current);
+        registry.begin("t1", "u1", budget());
+        assertThat(next.isSuperseded()).isTrue();
+    }
+
+    @Test
+    @DisplayName("requests without a user and a disabled registry cancel nothing")
+    void anonymousOrDisabled_notTracked() {
+        final QueryBudget anonymous = budget();
+        registry.begin("t1", null, anonymous);
+        registry.begin("t1", null, budget());
+        assertThat(anonymous.isCancelled()).isFalse();
+
+        final SupersedeRegistry disabled = new SupersedeRegistry(metrics, false);
+        final QueryBudget first = budget();
+        disabled.begin("t1", "u1", first);
+        disabled.begin("t1", "u1", budget());
+        assertThat(first.isCancelled()).isFalse();
+        assertThat(cancelled("t1")).isZero();
+    }
+}